@@ -0,0 +1,28 @@
+package edu.wsu.eecs.gfc.core;
+
+/**
+ * The storage of the adjacency of a Graph, as set by Graph.setAdjacencyFormat: the hash maps of the nodes, with an int
+ * snapshot of them on demand (FLAT), or a store of int ids in place of them (see GraphStore).
+ * <p>
+ * @author Peng Lin penglin03@gmail.com
+ */
+public enum AdjacencyFormat {
+
+    /**
+     * Flat int arrays (CSR) of the neighbors and the edge labels: fastest, two ints per edge and direction.
+     */
+    FLAT,
+
+    /**
+     * Sorted neighbor lists, gap encoded as varints with the edge labels: a few bytes per edge and direction, at some
+     * CPU cost to decode, which is saved for the hubs by a small cache of decoded neighbor lists.
+     */
+    COMPRESSED,
+
+    /**
+     * The arrays of FLAT, off the Java heap, in memory-mapped temporary files (see Graph.setOffHeapDirectory): for the
+     * graphs whose adjacency does not fit in the heap, or should not be scanned by the GC. The storage is dropped by
+     * Graph.closeAdjacency(), and unmapped when the GC collects it.
+     */
+    OFF_HEAP
+}
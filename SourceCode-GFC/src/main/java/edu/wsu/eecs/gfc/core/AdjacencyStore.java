@@ -0,0 +1,74 @@
+package edu.wsu.eecs.gfc.core;
+
+import java.io.File;
+
+/**
+ * The storage of the int adjacency of a graph (see GraphSnapshot and GraphStore), with the edge labels, behind the
+ * read API of IntAdjacency and EdgeCursor. A store is built by its Builder, node by node, and is read-only until
+ * close(), which drops the storage (if any) off the heap, to be released by the GC without crashing a late reader.
+ * <p>
+ * @author Peng Lin penglin03@gmail.com
+ */
+interface AdjacencyStore extends IntAdjacency, AutoCloseable {
+
+    /**
+     * @return a cursor over all the edges, grouped by src.
+     */
+    EdgeCursor edgeCursor();
+
+    EdgeCursor outEdgeCursor(int v);
+
+    EdgeCursor inEdgeCursor(int v);
+
+    /**
+     * @return the label of the edge of outNeighbor(v, k).
+     */
+    int outLabel(int v, int k);
+
+    /**
+     * @return the label of the edge of inNeighbor(v, k).
+     */
+    int inLabel(int v, int k);
+
+    /**
+     * @return the (approximate) number of bytes held by the store.
+     */
+    long sizeInBytes();
+
+    @Override
+    default void close() {
+    }
+
+    /**
+     * @param dir the directory of the temporary files of OFF_HEAP, or null for the default one.
+     */
+    static Builder builder(AdjacencyFormat format, int numOfNodes, int numOfEdges, File dir) {
+        switch (format) {
+            case OFF_HEAP:
+                return new OffHeapAdjacency.Builder(numOfNodes, numOfEdges, dir);
+            case COMPRESSED:
+                return new CompressedAdjacency.Builder(numOfNodes, numOfEdges);
+            case FLAT:
+            default:
+                return new FlatAdjacency.Builder(numOfNodes, numOfEdges);
+        }
+    }
+
+    /**
+     * Build a store from the out-neighbors and the in-neighbors of the nodes 0, 1, ..., in this order.
+     */
+    interface Builder {
+
+        /**
+         * Append the out-neighbors (with the labels of the edges) of the next node.
+         */
+        void appendOut(int[] nbrs, int[] labels, int size);
+
+        /**
+         * Append the in-neighbors (with the labels of the edges) of the next node.
+         */
+        void appendIn(int[] nbrs, int[] labels, int size);
+
+        AdjacencyStore build();
+    }
+}
@@ -0,0 +1,71 @@
+package edu.wsu.eecs.gfc.core;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Write the evaluation outputs (e.g., ARFF files and curves) in the background, one file at a time, so that writing
+ * does not hold the evaluation up. close() waits for all the pending writes, and throws the first failure of the
+ * writes, if any, with the later failures suppressed by it.
+ * <p>
+ * @author Peng Lin penglin03@gmail.com
+ */
+public class AsyncWriter implements AutoCloseable {
+
+    /**
+     * A task that writes an output file.
+     */
+    public interface WriteTask {
+        void write() throws Exception;
+    }
+
+    private final ExecutorService executor;
+
+    private final AtomicReference<Exception> failure;
+
+    private AsyncWriter() {
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "gfc-writer");
+            t.setDaemon(true);
+            return t;
+        });
+        this.failure = new AtomicReference<>();
+    }
+
+    public static AsyncWriter createInit() {
+        return new AsyncWriter();
+    }
+
+    public void submit(WriteTask task) {
+        executor.submit(() -> {
+            try {
+                task.write();
+            } catch (Exception e) {
+                if (!failure.compareAndSet(null, e)) {
+                    failure.get().addSuppressed(e);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the pending writes", e);
+        }
+        Exception e = failure.get();
+        if (e instanceof IOException) {
+            throw (IOException) e;
+        }
+        if (e != null) {
+            throw new IOException("Failed to write an output file", e);
+        }
+    }
+}
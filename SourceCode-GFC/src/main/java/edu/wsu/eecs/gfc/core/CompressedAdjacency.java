@@ -0,0 +1,354 @@
+package edu.wsu.eecs.gfc.core;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * The adjacency as compressed neighbor lists. For each direction, the list of a node is a byte range of one array,
+ * given by an int offset per node: the number of the neighbors, and then, in the ascending order of the neighbors,
+ * the gap of every neighbor to the previous one (minus 1, from -1 for the first one) and the label of the edge, all
+ * as varints (7 bits per byte, the high bit set on all the bytes but the last).
+ * <p>
+ * The lists are decoded sequentially by forEachOutNeighbor/forEachInNeighbor and the cursors. The random access by
+ * outNeighbor/inNeighbor (and outLabel/inLabel) decodes the list up to the slot, unless the node is a hub (at least
+ * HUB_DEGREE neighbors), whose decoded list is kept in a small direct-mapped cache; the cached lists are immutable, so
+ * the cache is shared by the threads without locks.
+ * <p>
+ * @author Peng Lin penglin03@gmail.com
+ */
+final class CompressedAdjacency implements AdjacencyStore {
+
+    private static final int HUB_DEGREE = 64;
+
+    private static final int CACHE_SIZE = 256;
+
+    private final int[] outOffsets;
+
+    private final byte[] outData;
+
+    private final int[] inOffsets;
+
+    private final byte[] inData;
+
+    private final DecodedList[] cache = new DecodedList[CACHE_SIZE];
+
+    private CompressedAdjacency(Builder b) {
+        this.outOffsets = b.outOffsets;
+        this.outData = Arrays.copyOf(b.outData, b.outOffsets[b.outOffsets.length - 1]);
+        this.inOffsets = b.inOffsets;
+        this.inData = Arrays.copyOf(b.inData, b.inOffsets[b.inOffsets.length - 1]);
+    }
+
+    @Override
+    public int nodeBound() {
+        return outOffsets.length - 1;
+    }
+
+    @Override
+    public int outSize(int v) {
+        return value(readVarint(outData, outOffsets[v]));
+    }
+
+    @Override
+    public int outNeighbor(int v, int k) {
+        return neighbor(outOffsets, outData, true, v, k);
+    }
+
+    @Override
+    public int inSize(int v) {
+        return value(readVarint(inData, inOffsets[v]));
+    }
+
+    @Override
+    public int inNeighbor(int v, int k) {
+        return neighbor(inOffsets, inData, false, v, k);
+    }
+
+    @Override
+    public int outLabel(int v, int k) {
+        return label(outOffsets, outData, true, v, k);
+    }
+
+    @Override
+    public int inLabel(int v, int k) {
+        return label(inOffsets, inData, false, v, k);
+    }
+
+    @Override
+    public void forEachOutNeighbor(int v, IntConsumer action) {
+        forEachNeighbor(outData, outOffsets[v], action);
+    }
+
+    @Override
+    public void forEachInNeighbor(int v, IntConsumer action) {
+        forEachNeighbor(inData, inOffsets[v], action);
+    }
+
+    @Override
+    public EdgeCursor edgeCursor() {
+        return new Cursor(outOffsets, outData, true, 0, nodeBound());
+    }
+
+    @Override
+    public EdgeCursor outEdgeCursor(int v) {
+        return new Cursor(outOffsets, outData, true, v, v + 1);
+    }
+
+    @Override
+    public EdgeCursor inEdgeCursor(int v) {
+        return new Cursor(inOffsets, inData, false, v, v + 1);
+    }
+
+    @Override
+    public long sizeInBytes() {
+        return 4L * (outOffsets.length + inOffsets.length) + outData.length + inData.length;
+    }
+
+    private int neighbor(int[] offsets, byte[] data, boolean isOut, int v, int k) {
+        long r = readVarint(data, offsets[v]);
+        int size = value(r);
+        if (size >= HUB_DEGREE) {
+            return decoded(offsets, data, isOut, v, size).nbrs[k];
+        }
+        int pos = position(r);
+        int nbr = -1;
+        for (int i = 0; i <= k; i++) {
+            r = readVarint(data, pos);
+            nbr += value(r) + 1;
+            // Skip the label.
+            pos = position(readVarint(data, position(r)));
+        }
+        return nbr;
+    }
+
+    private int label(int[] offsets, byte[] data, boolean isOut, int v, int k) {
+        long r = readVarint(data, offsets[v]);
+        int size = value(r);
+        if (size >= HUB_DEGREE) {
+            return decoded(offsets, data, isOut, v, size).labels[k];
+        }
+        int pos = position(r);
+        for (int i = 0; i < k; i++) {
+            // Skip the gap and the label.
+            pos = position(readVarint(data, position(readVarint(data, pos))));
+        }
+        return value(readVarint(data, position(readVarint(data, pos))));
+    }
+
+    private DecodedList decoded(int[] offsets, byte[] data, boolean isOut, int v, int size) {
+        int key = 2 * v + (isOut ? 0 : 1);
+        int slot = (key * 0x9E3779B9) >>> (32 - Integer.numberOfTrailingZeros(CACHE_SIZE));
+        DecodedList list = cache[slot];
+        if (list != null && list.key == key) {
+            return list;
+        }
+        int[] nbrs = new int[size];
+        int[] labels = new int[size];
+        int pos = position(readVarint(data, offsets[v]));
+        int nbr = -1;
+        for (int i = 0; i < size; i++) {
+            long r = readVarint(data, pos);
+            nbr += value(r) + 1;
+            r = readVarint(data, position(r));
+            nbrs[i] = nbr;
+            labels[i] = value(r);
+            pos = position(r);
+        }
+        list = new DecodedList(key, nbrs, labels);
+        cache[slot] = list;
+        return list;
+    }
+
+    private static void forEachNeighbor(byte[] data, int pos, IntConsumer action) {
+        long r = readVarint(data, pos);
+        int size = value(r);
+        pos = position(r);
+        int nbr = -1;
+        for (int i = 0; i < size; i++) {
+            r = readVarint(data, pos);
+            nbr += value(r) + 1;
+            pos = position(readVarint(data, position(r)));
+            action.accept(nbr);
+        }
+    }
+
+    /**
+     * @return the varint at pos, and the position after it, packed in a long (the value in the high half).
+     */
+    private static long readVarint(byte[] data, int pos) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[pos++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return ((long) value << 32) | pos;
+    }
+
+    private static int value(long r) {
+        return (int) (r >>> 32);
+    }
+
+    private static int position(long r) {
+        return (int) r;
+    }
+
+    private static final class DecodedList {
+
+        private final int key;
+
+        private final int[] nbrs;
+
+        private final int[] labels;
+
+        private DecodedList(int key, int[] nbrs, int[] labels) {
+            this.key = key;
+            this.nbrs = nbrs;
+            this.labels = labels;
+        }
+    }
+
+    static final class Builder implements AdjacencyStore.Builder {
+
+        private final int[] outOffsets;
+
+        private byte[] outData;
+
+        private final int[] inOffsets;
+
+        private byte[] inData;
+
+        private int numOfOut = 0;
+
+        private int numOfIn = 0;
+
+        // The (neighbor, label) pairs of a list, to sort by the neighbors.
+        private long[] pairs = new long[16];
+
+        Builder(int numOfNodes, int numOfEdges) {
+            this.outOffsets = new int[numOfNodes + 1];
+            this.inOffsets = new int[numOfNodes + 1];
+            // About 3 bytes per edge in the end, with the sizes of the lists.
+            this.outData = new byte[Math.max(16, 3 * numOfEdges + numOfNodes)];
+            this.inData = new byte[Math.max(16, 3 * numOfEdges + numOfNodes)];
+        }
+
+        @Override
+        public void appendOut(int[] nbrs, int[] labels, int size) {
+            outData = append(outOffsets, numOfOut++, outData, nbrs, labels, size);
+        }
+
+        @Override
+        public void appendIn(int[] nbrs, int[] labels, int size) {
+            inData = append(inOffsets, numOfIn++, inData, nbrs, labels, size);
+        }
+
+        private byte[] append(int[] offsets, int v, byte[] data, int[] nbrs, int[] labels, int size) {
+            if (pairs.length < size) {
+                pairs = new long[Math.max(size, 2 * pairs.length)];
+            }
+            for (int i = 0; i < size; i++) {
+                pairs[i] = ((long) nbrs[i] << 32) | labels[i];
+            }
+            Arrays.sort(pairs, 0, size);
+
+            int pos = offsets[v];
+            // At most 5 bytes per varint.
+            if (data.length < pos + 5 * (2 * size + 1)) {
+                data = Arrays.copyOf(data, Math.max(pos + 5 * (2 * size + 1), 2 * data.length));
+            }
+            pos = writeVarint(data, pos, size);
+            int prev = -1;
+            for (int i = 0; i < size; i++) {
+                int nbr = (int) (pairs[i] >>> 32);
+                pos = writeVarint(data, pos, nbr - prev - 1);
+                pos = writeVarint(data, pos, (int) pairs[i]);
+                prev = nbr;
+            }
+            offsets[v + 1] = pos;
+            return data;
+        }
+
+        private static int writeVarint(byte[] data, int pos, int value) {
+            while ((value & ~0x7F) != 0) {
+                data[pos++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[pos++] = (byte) value;
+            return pos;
+        }
+
+        @Override
+        public AdjacencyStore build() {
+            return new CompressedAdjacency(this);
+        }
+    }
+
+    private static final class Cursor implements EdgeCursor {
+
+        private final int[] offsets;
+
+        private final byte[] data;
+
+        // The edges of the lists are out-edges (from the node to the list) or in-edges (from the list to the node).
+        private final boolean isOut;
+
+        private final int endNode;
+
+        private int v;
+
+        private int pos;
+
+        private int remaining = 0;
+
+        private int nbr;
+
+        private int label;
+
+        private Cursor(int[] offsets, byte[] data, boolean isOut, int fromNode, int endNode) {
+            this.offsets = offsets;
+            this.data = data;
+            this.isOut = isOut;
+            this.endNode = endNode;
+            this.v = fromNode - 1;
+        }
+
+        @Override
+        public boolean next() {
+            while (remaining == 0) {
+                if (++v >= endNode) {
+                    v = endNode;
+                    return false;
+                }
+                long r = readVarint(data, offsets[v]);
+                remaining = value(r);
+                pos = position(r);
+                nbr = -1;
+            }
+            long r = readVarint(data, pos);
+            nbr += value(r) + 1;
+            r = readVarint(data, position(r));
+            label = value(r);
+            pos = position(r);
+            remaining--;
+            return true;
+        }
+
+        @Override
+        public int src() {
+            return isOut ? v : nbr;
+        }
+
+        @Override
+        public int dst() {
+            return isOut ? nbr : v;
+        }
+
+        @Override
+        public int label() {
+            return label;
+        }
+    }
+}
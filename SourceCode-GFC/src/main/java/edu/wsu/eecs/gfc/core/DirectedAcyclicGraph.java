@@ -147,24 +147,31 @@ public class DirectedAcyclicGraph<VT, ET> {
      * @return null if the graph is not a DirectedAcyclicGraph; otherwise, return the sorted list of nodes.
      */
     public static <VT, ET> List<Node<VT>> topologicalSort(Graph<VT, ET> g) {
-        List<Node<VT>> order = new ArrayList<>();
-        Deque<Node<VT>> queue = new ArrayDeque<>();
-        Graph<VT, ET> gCopy = g.shallowCopy();
-        for (Node<VT> n : gCopy.nodeIter()) {
-            if (gCopy.inDegree(n) == 0) {
-                queue.add(n);
+        // Kahn's algorithm over the int ids of the graph (of the removed nodes too, which are skipped), with a counter
+        // of the unsorted parents of every node.
+        int n = g.adjacency().nodeBound();
+        int[] inDegrees = new int[n];
+        int[] queue = new int[n];
+        int[] tail = {0};
+        for (int v = 0; v < n; v++) {
+            if (g.nodeAt(v) == null) {
+                continue;
+            }
+            inDegrees[v] = g.inDegreeAt(v);
+            if (inDegrees[v] == 0) {
+                queue[tail[0]++] = v;
             }
         }
-        while (!queue.isEmpty()) {
-            Node<VT> n = queue.removeFirst();
-            order.add(n);
-            gCopy.removeNode(n);
-            for (Node<VT> m : g.nodesFrom(n)) {
-                if (gCopy.inDegree(m) == 0) {
-                    queue.add(m);
+        List<Node<VT>> order = new ArrayList<>();
+        for (int head = 0; head < tail[0]; head++) {
+            int v = queue[head];
+            order.add(g.nodeAt(v));
+            g.forEachOutNeighbor(v, w -> {
+                if (--inDegrees[w] == 0) {
+                    queue[tail[0]++] = w;
                 }
-            }
+            });
         }
-        return gCopy.numOfEdges() > 0 ? new ArrayList<>() : order;
+        return tail[0] < g.numOfNodes() ? new ArrayList<>() : order;
     }
 }
@@ -18,6 +18,9 @@ public class Edge<VT, ET> {
 
     private ET label;
 
+    // The cached id of the relation of this edge, or -1 if it is not known yet.
+    private int relationId = -1;
+
     private Edge(Node<VT> srcNode, Node<VT> dstNode, ET label) {
         this.srcNode = srcNode;
         this.dstNode = dstNode;
@@ -34,6 +37,15 @@ public class Edge<VT, ET> {
         return new Edge<>(srcNode, dstNode, null);
     }
 
+    /**
+     * @return an edge whose relation id is known, e.g., an edge read from the slot of an AdjacencyStore.
+     */
+    static <VT, ET> Edge<VT, ET> createRelationEdge(Node<VT> srcNode, Node<VT> dstNode, ET label, int relationId) {
+        Edge<VT, ET> e = new Edge<>(srcNode, dstNode, label);
+        e.relationId = relationId;
+        return e;
+    }
+
     public Node<VT> srcNode() {
         return srcNode;
     }
@@ -48,6 +60,20 @@ public class Edge<VT, ET> {
 
     public void setLabel(ET label) {
         this.label = label;
+        this.relationId = -1;
+    }
+
+    /**
+     * @return the id of the relation (srcLabel, dstLabel, label) of this edge in the RelationRegistry, looked up once
+     * and cached (until setLabel()): the labels of the end nodes are taken as fixed once the edge is in a graph.
+     */
+    public int relationId() {
+        int rid = relationId;
+        if (rid < 0) {
+            rid = RelationRegistry.idOf(srcLabel(), dstLabel(), label);
+            relationId = rid;
+        }
+        return rid;
     }
 
     public Object srcId() {
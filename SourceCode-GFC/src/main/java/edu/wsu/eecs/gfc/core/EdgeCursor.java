@@ -0,0 +1,29 @@
+package edu.wsu.eecs.gfc.core;
+
+/**
+ * A cursor over the edges of an AdjacencyStore, as (src, dst, label) ints, without any object per edge: the labels are
+ * those the store is built with (for a graph, the relation ids of the edges, see RelationRegistry).
+ * <p>
+ * The cursor starts before the first edge, and next() moves it to the next edge:
+ * <pre>
+ *     for (EdgeCursor c = store.edgeCursor(); c.next(); ) {
+ *         ... c.src(), c.dst(), c.label() ...
+ *     }
+ * </pre>
+ * A cursor is valid until the store is closed.
+ * <p>
+ * @author Peng Lin penglin03@gmail.com
+ */
+public interface EdgeCursor {
+
+    /**
+     * @return true if the cursor is moved to the next edge, or false if there are no more edges.
+     */
+    boolean next();
+
+    int src();
+
+    int dst();
+
+    int label();
+}
@@ -0,0 +1,203 @@
+package edu.wsu.eecs.gfc.core;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * The evaluation metrics of scored examples, computed without materializing Weka instances.
+ * <p>
+ * The examples are sorted once by their scores (descending), and one pass over them gives the confusion matrix at
+ * the threshold 0.5 (accuracy, precision, recall, F1 of the class TRUE), the ROC curve and its area (by trapezoids),
+ * and the precision-recall curve and its area (as the average precision). Examples of equal scores form one point of
+ * the curves. As Weka does, an undefined precision, recall or F1 is 0. The string of the metrics has the four columns of
+ * the other predictors (see FactChecker), and the areas are read from rocAuc and prAuc.
+ * <p>
+ * The cross-validation trains the in-house logistic regression on k - 1 folds and scores the held-out fold, for all the
+ * folds in parallel, and evaluates the pooled scores. The folds are stratified by the labels.
+ * <p>
+ * @author Peng Lin penglin03@gmail.com
+ */
+public class EvalMetrics {
+
+    private static final double THRESHOLD = 0.5;
+
+    public final double accuracy;
+
+    public final double precision;
+
+    public final double recall;
+
+    public final double f1;
+
+    public final double rocAuc;
+
+    public final double prAuc;
+
+    // The points of the curves, one per distinct score: threshold, tp, fp.
+    private final double[] thresholds;
+
+    private final int[] tps;
+
+    private final int[] fps;
+
+    private final int numOfPositives;
+
+    private final int numOfNegatives;
+
+    private EvalMetrics(double[] scores, BitSet labels, int n) {
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (i1, i2) -> Double.compare(scores[i2], scores[i1]));
+
+        int nPos = 0;
+        for (int i = labels.nextSetBit(0); i >= 0 && i < n; i = labels.nextSetBit(i + 1)) {
+            nPos++;
+        }
+        this.numOfPositives = nPos;
+        this.numOfNegatives = n - nPos;
+
+        double[] ts = new double[n];
+        int[] tp = new int[n];
+        int[] fp = new int[n];
+        int nPoints = 0;
+        int tpSum = 0;
+        int fpSum = 0;
+        int tpAtThreshold = 0;
+        int fpAtThreshold = 0;
+        double roc = 0;
+        double ap = 0;
+        for (int k = 0; k < n; ) {
+            double s = scores[order[k]];
+            // All the examples of the same score.
+            for (; k < n && scores[order[k]] == s; k++) {
+                if (labels.get(order[k])) {
+                    tpSum++;
+                } else {
+                    fpSum++;
+                }
+            }
+            int lastTp = nPoints > 0 ? tp[nPoints - 1] : 0;
+            int lastFp = nPoints > 0 ? fp[nPoints - 1] : 0;
+            if (numOfPositives > 0 && numOfNegatives > 0) {
+                roc += (double) (fpSum - lastFp) * (tpSum + lastTp) / 2;
+            }
+            if (numOfPositives > 0) {
+                ap += (double) (tpSum - lastTp) * tpSum / (tpSum + fpSum);
+            }
+            if (s >= THRESHOLD) {
+                tpAtThreshold = tpSum;
+                fpAtThreshold = fpSum;
+            }
+            ts[nPoints] = s;
+            tp[nPoints] = tpSum;
+            fp[nPoints] = fpSum;
+            nPoints++;
+        }
+        this.thresholds = Arrays.copyOf(ts, nPoints);
+        this.tps = Arrays.copyOf(tp, nPoints);
+        this.fps = Arrays.copyOf(fp, nPoints);
+
+        double tpT = tpAtThreshold;
+        double fpT = fpAtThreshold;
+        double fnT = numOfPositives - tpT;
+        double tnT = numOfNegatives - fpT;
+        this.accuracy = n > 0 ? (tpT + tnT) / n : 0;
+        this.precision = tpT + fpT > 0 ? tpT / (tpT + fpT) : 0;
+        this.recall = tpT + fnT > 0 ? tpT / (tpT + fnT) : 0;
+        this.f1 = precision + recall > 0 ? 2 * precision * recall / (precision + recall) : 0;
+        this.rocAuc = numOfPositives > 0 && numOfNegatives > 0 ? roc / ((double) numOfPositives * numOfNegatives) : 0;
+        this.prAuc = numOfPositives > 0 ? ap / numOfPositives : 0;
+    }
+
+    /**
+     * @param scores are the scores (e.g., the probabilities to be TRUE) of the examples.
+     * @param labels are the bitmap of the positive examples.
+     * @param n      is the number of examples.
+     */
+    public static EvalMetrics evaluate(double[] scores, BitSet labels, int n) {
+        return new EvalMetrics(scores, labels, n);
+    }
+
+    /**
+     * Cross-validate the in-house logistic regression on the rule hits of labeled examples, with the folds in parallel.
+     */
+    public static <VT, ET> EvalMetrics crossValidate(RuleHitMatrix<VT, ET> hits, int numOfFolds, long seed) {
+        int n = hits.numOfExamples();
+        int[] folds = stratifiedFolds(hits.labels(), n, numOfFolds, seed);
+        double[] scores = new double[n];
+        IntStream.range(0, numOfFolds).parallel().forEach(f -> {
+            int[] trainRows = IntStream.range(0, n).filter(i -> folds[i] != f).toArray();
+            int[] testRows = IntStream.range(0, n).filter(i -> folds[i] == f).toArray();
+            if (trainRows.length == 0 || testRows.length == 0) {
+                return;
+            }
+            RuleHitMatrix<VT, ET> train = hits.subMatrix(trainRows);
+            RuleHitMatrix<VT, ET> test = hits.subMatrix(testRows);
+            // On the thread of the fold, as the folds are already in parallel.
+            LogisticRegression model = LogisticRegression.createInit(1e-4, 200, null)
+                    .train(train.packedColumns(), train.numOfExamples(), train.labels());
+            double[] p = model.predict(test.packedColumns(), test.numOfExamples());
+            for (int k = 0; k < testRows.length; k++) {
+                scores[testRows[k]] = p[k];
+            }
+        });
+        return evaluate(scores, hits.labels(), n);
+    }
+
+    /**
+     * Assign the examples to folds, the positive and the negative ones separately, in a random order.
+     */
+    private static int[] stratifiedFolds(BitSet labels, int n, int numOfFolds, long seed) {
+        List<Integer> positives = new ArrayList<>();
+        List<Integer> negatives = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            (labels.get(i) ? positives : negatives).add(i);
+        }
+        Random random = new Random(seed);
+        Collections.shuffle(positives, random);
+        Collections.shuffle(negatives, random);
+        int[] folds = new int[n];
+        int k = 0;
+        for (int i : positives) {
+            folds[i] = k++ % numOfFolds;
+        }
+        for (int i : negatives) {
+            folds[i] = k++ % numOfFolds;
+        }
+        return folds;
+    }
+
+    public int numOfPoints() {
+        return thresholds.length;
+    }
+
+    /**
+     * Write the curves as CSV, one line per point: threshold, tp, fp, tpr, fpr, precision, recall.
+     */
+    public void writeCurve(String curveFile) throws IOException {
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(curveFile))) {
+            bw.write("threshold,tp,fp,tpr,fpr,precision,recall");
+            bw.newLine();
+            for (int k = 0; k < thresholds.length; k++) {
+                double tpr = numOfPositives > 0 ? (double) tps[k] / numOfPositives : 0;
+                double fpr = numOfNegatives > 0 ? (double) fps[k] / numOfNegatives : 0;
+                double prec = tps[k] + fps[k] > 0 ? (double) tps[k] / (tps[k] + fps[k]) : 0;
+                bw.write(thresholds[k] + "," + tps[k] + "," + fps[k] + "," + tpr + "," + fpr + "," + prec + "," + tpr);
+                bw.newLine();
+            }
+        }
+    }
+
+    /**
+     * @return accuracy, precision, recall and F1, separated by tabs, as predictByHits and the Weka backend give them.
+     */
+    @Override
+    public String toString() {
+        return accuracy + "\t" + precision + "\t" + recall + "\t" + f1;
+    }
+}
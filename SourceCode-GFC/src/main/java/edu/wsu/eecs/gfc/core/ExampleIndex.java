@@ -0,0 +1,89 @@
+package edu.wsu.eecs.gfc.core;
+
+import java.util.*;
+
+/**
+ * An index of the examples (edges) of a relation r(x, y), grouped by their end nodes.
+ * <p>
+ * For every distinct src (resp. dst) node, the index keeps the bitmap of the examples that start (resp. end) at
+ * the node. The examples covered by a rule P(x, y) => r(x, y) are then computed by projecting M(x) and M(y) onto
+ * the examples and intersecting the two bitmaps, instead of scanning all the examples for every rule.
+ * The same bitmap gives the support, the fraction of covered negative examples and the per-example coverage.
+ * <p>
+ * @author Peng Lin penglin03@gmail.com
+ */
+public class ExampleIndex<VT, ET> {
+
+    private final List<Edge<VT, ET>> examples;
+
+    private final Map<Node<VT>, BitSet> srcIndex;
+
+    private final Map<Node<VT>, BitSet> dstIndex;
+
+    private ExampleIndex(List<Edge<VT, ET>> examples) {
+        this.examples = examples;
+        this.srcIndex = new HashMap<>();
+        this.dstIndex = new HashMap<>();
+        for (int i = 0; i < examples.size(); i++) {
+            Edge<VT, ET> e = examples.get(i);
+            srcIndex.computeIfAbsent(e.srcNode(), v -> new BitSet()).set(i);
+            dstIndex.computeIfAbsent(e.dstNode(), v -> new BitSet()).set(i);
+        }
+    }
+
+    public static <VT, ET> ExampleIndex<VT, ET> createFromExamples(List<Edge<VT, ET>> examples) {
+        return new ExampleIndex<>(examples);
+    }
+
+    public int size() {
+        return examples.size();
+    }
+
+    public List<Edge<VT, ET>> examples() {
+        return examples;
+    }
+
+    /**
+     * The examples covered by a rule, i.e., the examples e with e.src in M(x) and e.dst in M(y).
+     *
+     * @param phi is the rule.
+     * @return a bitmap of the positions of the covered examples.
+     */
+    public BitSet cover(OGFCRule<VT, ET> phi) {
+        return cover(phi.matchSet().get(phi.x()), phi.matchSet().get(phi.y()));
+    }
+
+    public BitSet cover(Set<Node<VT>> xMatches, Set<Node<VT>> yMatches) {
+        BitSet bits = project(srcIndex, xMatches);
+        if (!bits.isEmpty()) {
+            bits.and(project(dstIndex, yMatches));
+        }
+        return bits;
+    }
+
+    /**
+     * The fraction of the examples covered by a rule.
+     */
+    public double coverRatio(OGFCRule<VT, ET> phi) {
+        return (double) cover(phi).cardinality() / (double) examples.size();
+    }
+
+    private BitSet project(Map<Node<VT>, BitSet> index, Set<Node<VT>> matches) {
+        BitSet bits = new BitSet(examples.size());
+        if (matches.size() < index.size()) {
+            for (Node<VT> v : matches) {
+                BitSet vBits = index.get(v);
+                if (vBits != null) {
+                    bits.or(vBits);
+                }
+            }
+        } else {
+            for (Map.Entry<Node<VT>, BitSet> entry : index.entrySet()) {
+                if (matches.contains(entry.getKey())) {
+                    bits.or(entry.getValue());
+                }
+            }
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,98 @@
+package edu.wsu.eecs.gfc.core;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A blocking client of a FactCheckServer, over one connection.
+ * <p>
+ * @author Peng Lin penglin03@gmail.com
+ */
+public class FactCheckClient implements Closeable {
+
+    private final Socket socket;
+
+    private final BufferedReader br;
+
+    private final BufferedWriter bw;
+
+    private FactCheckClient(Socket socket) throws IOException {
+        this.socket = socket;
+        this.br = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        this.bw = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+    }
+
+    public static FactCheckClient connect(String host, int port) throws IOException {
+        Socket socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        return new FactCheckClient(socket);
+    }
+
+    /**
+     * Check a candidate fact.
+     *
+     * @return the response line, "subject TAB edge label TAB object TAB score TAB hits".
+     */
+    public String check(String subject, String edgeLabel, String object) throws IOException {
+        return request(subject + "\t" + edgeLabel + "\t" + object);
+    }
+
+    /**
+     * Check a batch of candidate lines, pipelined over the connection.
+     *
+     * @return the response lines, in the order of the candidates.
+     */
+    public List<String> checkAll(List<String> candidateLines) throws IOException {
+        for (String line : candidateLines) {
+            bw.write(line);
+            bw.newLine();
+        }
+        bw.flush();
+        List<String> responses = new ArrayList<>(candidateLines.size());
+        for (int i = 0; i < candidateLines.size(); i++) {
+            responses.add(readResponse());
+        }
+        return responses;
+    }
+
+    /**
+     * @return the latency metrics of the server.
+     */
+    public String stats() throws IOException {
+        return request(FactCheckServer.STATS);
+    }
+
+    private String request(String line) throws IOException {
+        bw.write(line);
+        bw.newLine();
+        bw.flush();
+        return readResponse();
+    }
+
+    private String readResponse() throws IOException {
+        String response = br.readLine();
+        if (response == null) {
+            throw new IOException("Connection closed by the server");
+        }
+        return response;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            bw.write(FactCheckServer.QUIT);
+            bw.newLine();
+            bw.flush();
+        } finally {
+            socket.close();
+        }
+    }
+}
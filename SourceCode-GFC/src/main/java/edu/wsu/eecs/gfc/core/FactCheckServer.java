@@ -0,0 +1,325 @@
+package edu.wsu.eecs.gfc.core;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A long-running fact checking server, which keeps the rules resident (in a FactScorer) and answers check requests
+ * over a local socket.
+ * <p>
+ * The protocol is line based. A request is a candidate fact "subject TAB edge label TAB object", and its response is
+ * the line given by FactScorer for the candidate, "subject TAB edge label TAB object TAB score TAB hits".
+ * A connection can pipeline requests, and the responses are written in the order of the requests.
+ * The request "STATS" is answered by the latency metrics of the server, and "QUIT" closes the connection.
+ * A candidate that fails to be scored is answered with the score "ERROR".
+ * <p>
+ * The requests of all the connections are put in one bounded queue, and coalesced into micro-batches of at most
+ * maxBatchSize requests, which are scored by a pool of threads. When the queue is full, the connections block on
+ * reading their next request (backpressure), and at most two batches per thread are in flight.
+ * The latency of a request is measured from its arrival to its completion, over the last LATENCY_WINDOW requests.
+ * <p>
+ * When the server is stopped, the open connections are closed, the batches in flight are completed, and the requests
+ * still queued are answered with the score "ERROR", so that no connection is left waiting for a response.
+ * <p>
+ * @author Peng Lin penglin03@gmail.com
+ */
+public class FactCheckServer {
+
+    public static final String STATS = "STATS";
+
+    public static final String QUIT = "QUIT";
+
+    private static final int LATENCY_WINDOW = 100000;
+
+    private final FactScorer scorer;
+
+    private final int nThreads;
+
+    private final int maxBatchSize;
+
+    private final BlockingQueue<Request> requests;
+
+    private final Semaphore inFlight;
+
+    private final long[] latencies;
+
+    // The accepted connections that are not closed yet.
+    private final Set<Socket> sockets;
+
+    private long numOfRequests;
+
+    private long numOfBatches;
+
+    private ServerSocket serverSocket;
+
+    private ExecutorService workers;
+
+    private ExecutorService connections;
+
+    private Thread acceptor;
+
+    private Thread batcher;
+
+    private volatile boolean isRunning;
+
+    private static class Request {
+
+        private final String[] tokens;
+
+        private final long arrival;
+
+        private final CompletableFuture<String> response;
+
+        private Request(String[] tokens) {
+            this.tokens = tokens;
+            this.arrival = System.nanoTime();
+            this.response = new CompletableFuture<>();
+        }
+    }
+
+    private FactCheckServer(FactScorer scorer, int nThreads, int maxBatchSize, int queueCapacity) {
+        this.scorer = scorer;
+        this.nThreads = Math.max(1, nThreads);
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.requests = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.inFlight = new Semaphore(2 * this.nThreads);
+        this.latencies = new long[LATENCY_WINDOW];
+        this.sockets = ConcurrentHashMap.newKeySet();
+    }
+
+    public static FactCheckServer createInit(FactScorer scorer, int nThreads, int maxBatchSize, int queueCapacity) {
+        return new FactCheckServer(scorer, nThreads, maxBatchSize, queueCapacity);
+    }
+
+    /**
+     * Start to serve on the port of the loopback address (0 for any free port).
+     *
+     * @return the port the server listens on.
+     */
+    public int start(int port) throws IOException {
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        workers = Executors.newFixedThreadPool(nThreads);
+        connections = Executors.newCachedThreadPool();
+        isRunning = true;
+
+        batcher = new Thread(this::batchRequests, "gfc-batcher");
+        batcher.start();
+
+        acceptor = new Thread(() -> {
+            while (isRunning) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    sockets.add(socket);
+                    connections.submit(() -> serve(socket));
+                } catch (IOException e) {
+                    if (isRunning) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        }, "gfc-acceptor");
+        acceptor.start();
+
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Stop to accept connections and requests, close the open connections, answer the requests in flight or queued,
+     * and release the threads.
+     */
+    public void stop() throws IOException, InterruptedException {
+        isRunning = false;
+        serverSocket.close();
+        acceptor.join();
+        // Unblock the connections reading their next request.
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+        batcher.interrupt();
+        batcher.join();
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.MINUTES);
+
+        connections.shutdown();
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+        do {
+            // A connection blocked on the full queue enqueues its request once the queue is drained, so drain again.
+            List<Request> pending = new ArrayList<>();
+            requests.drainTo(pending);
+            fail(pending);
+        } while (!connections.awaitTermination(100, TimeUnit.MILLISECONDS) && System.nanoTime() < deadline);
+        connections.shutdownNow();
+    }
+
+    /**
+     * Block until the server is stopped.
+     */
+    public void await() throws InterruptedException {
+        acceptor.join();
+    }
+
+    /**
+     * @return the metrics line: the numbers of requests and batches, and the p50/p99/max latency in microseconds.
+     */
+    public synchronized String stats() {
+        int n = (int) Math.min(numOfRequests, LATENCY_WINDOW);
+        long[] window = Arrays.copyOf(latencies, n);
+        Arrays.sort(window);
+        return "requests=" + numOfRequests
+                + "\tbatches=" + numOfBatches
+                + "\tp50_us=" + (n > 0 ? window[n / 2] / 1000.0 : 0.0)
+                + "\tp99_us=" + (n > 0 ? window[(int) (n * 0.99)] / 1000.0 : 0.0)
+                + "\tmax_us=" + (n > 0 ? window[n - 1] / 1000.0 : 0.0);
+    }
+
+    private void serve(Socket socket) {
+        // The responses of the connection, in the order of its requests.
+        BlockingQueue<CompletableFuture<String>> responses = new LinkedBlockingQueue<>();
+        CompletableFuture<String> end = CompletableFuture.completedFuture(null);
+        Thread writer = new Thread(() -> {
+            try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+                while (true) {
+                    CompletableFuture<String> response = responses.take();
+                    if (response == end) {
+                        break;
+                    }
+                    bw.write(response.get());
+                    bw.newLine();
+                    if (responses.isEmpty()) {
+                        bw.flush();
+                    }
+                }
+            } catch (SocketException | InterruptedException e) {
+                // The connection is closed, or the server is stopped.
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, "gfc-writer");
+        writer.start();
+
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while (isRunning && (line = br.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (line.equals(QUIT)) {
+                    break;
+                }
+                if (line.equals(STATS)) {
+                    responses.put(CompletableFuture.completedFuture(stats()));
+                    continue;
+                }
+                Request request = new Request(line.split("\t"));
+                responses.put(request.response);
+                requests.put(request);
+            }
+            responses.put(end);
+            writer.join();
+        } catch (SocketException | InterruptedException e) {
+            // The connection is closed, or the server is stopped.
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            writer.interrupt();
+            sockets.remove(socket);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Coalesce the queued requests into micro-batches: take one request, and then all the queued ones up to the
+     * batch size, so that batches grow with the load without delaying a request under a light load.
+     */
+    private void batchRequests() {
+        List<Request> batch = null;
+        try {
+            while (isRunning) {
+                batch = new ArrayList<>(maxBatchSize);
+                batch.add(requests.take());
+                requests.drainTo(batch, maxBatchSize - 1);
+                inFlight.acquire();
+                List<Request> task = batch;
+                batch = null;
+                workers.submit(() -> {
+                    try {
+                        score(task);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        } catch (InterruptedException e) {
+            // The server is stopped: answer the batch that was taken but not submitted.
+            if (batch != null) {
+                fail(batch);
+            }
+        }
+    }
+
+    private void score(List<Request> batch) {
+        List<String[]> chunk = new ArrayList<>(batch.size());
+        for (Request request : batch) {
+            chunk.add(request.tokens);
+        }
+        List<String> lines;
+        try {
+            lines = scorer.scoreChunk(chunk);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            lines = new ArrayList<>(batch.size());
+            for (String[] tokens : chunk) {
+                lines.add(errorLine(tokens));
+            }
+        }
+        long now = System.nanoTime();
+        synchronized (this) {
+            for (Request request : batch) {
+                latencies[(int) (numOfRequests++ % LATENCY_WINDOW)] = now - request.arrival;
+            }
+            numOfBatches++;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).response.complete(lines.get(i));
+        }
+    }
+
+    /**
+     * Answer the requests with the score "ERROR", without scoring them.
+     */
+    private static void fail(Collection<Request> batch) {
+        for (Request request : batch) {
+            request.response.complete(errorLine(request.tokens));
+        }
+    }
+
+    private static String errorLine(String[] tokens) {
+        return String.join("\t", tokens) + "\tERROR\t-";
+    }
+}
@@ -6,7 +6,6 @@ import weka.classifiers.evaluation.ThresholdCurve;
 import weka.classifiers.functions.Logistic;
 import weka.core.Attribute;
 import weka.core.DenseInstance;
-import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.converters.ArffSaver;
 import weka.core.converters.CSVSaver;
@@ -14,6 +13,7 @@ import weka.core.converters.CSVSaver;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -26,41 +26,21 @@ import java.util.Random;
 public class FactChecker {
 
     public static <VT, ET> String predictByHits(List<OGFCRule<VT, ET>> patternList, Map<Boolean, List<Edge<VT, ET>>> dataTest) {
-        double tp = 0;
-        double fn = 0;
-        for (Edge<VT, ET> pos : dataTest.get(true)) {
-            boolean hit = false;
-            for (OGFCRule<VT, ET> p : patternList) {
-                if (p.matchSet().get(p.x()).contains(pos.srcNode())
-                        && p.matchSet().get(p.y()).contains(pos.dstNode())) {
-                    hit = true;
-                    break;
-                }
-            }
-            if (hit) {
-                tp++;
-            } else {
-                fn++;
-            }
-        }
+        return predictByHits(RuleHitMatrix.createFromData(patternList, dataTest));
+    }
 
-        double tn = 0;
-        double fp = 0;
-        for (Edge<VT, ET> neg : dataTest.get(false)) {
-            boolean hit = false;
-            for (OGFCRule<VT, ET> p : patternList) {
-                if (p.matchSet().get(p.x()).contains(neg.srcNode())
-                        && p.matchSet().get(p.y()).contains(neg.dstNode())) {
-                    hit = true;
-                    break;
-                }
-            }
-            if (!hit) {
-                tn++;
-            } else {
-                fp++;
-            }
-        }
+    /**
+     * Fact checking by the rule hits: an example is predicted true iff it is hit by at least one of the rules.
+     */
+    public static <VT, ET> String predictByHits(RuleHitMatrix<VT, ET> testHits) {
+        BitSet hits = testHits.anyHits();
+        BitSet posHits = (BitSet) hits.clone();
+        posHits.and(testHits.labels());
+
+        double tp = posHits.cardinality();
+        double fn = testHits.numOfPositives() - tp;
+        double fp = hits.cardinality() - tp;
+        double tn = testHits.numOfExamples() - testHits.numOfPositives() - fp;
 
         double accuracy = (tp + tn) / (tp + fn + tn + fp);
         double precision = tp / (tp + fp);
@@ -71,11 +51,110 @@ public class FactChecker {
         return outStr;
     }
 
+    public static <VT, ET> String predictByNativeLogisticRegression(List<OGFCRule<VT, ET>> patternList,
+                                                                    Map<Boolean, List<Edge<VT, ET>>> dataTrain,
+                                                                    Map<Boolean, List<Edge<VT, ET>>> dataTest) {
+        return predictByNativeLogisticRegression(
+                RuleHitMatrix.createFromData(patternList, dataTrain), RuleHitMatrix.createFromData(patternList, dataTest));
+    }
+
+    /**
+     * Fact checking by the in-house logistic regression (see LogisticRegression), with the rules as binary features.
+     *
+     * @return the metrics of the testing examples (see EvalMetrics), without any output or cross-validation.
+     */
+    public static <VT, ET> String predictByNativeLogisticRegression(RuleHitMatrix<VT, ET> trainHits,
+                                                                    RuleHitMatrix<VT, ET> testHits) {
+        return predictByNativeLogisticRegression(trainHits, testHits, null, null, null, null, 0);
+    }
+
+    /**
+     * Fact checking by the in-house logistic regression, with optional outputs and cross-validation.
+     *
+     * @param writer     writes the ROC curves of the testing examples (and of the cross-validation) in the background,
+     *                   or null for no output.
+     * @param numOfFolds is the number of folds to cross-validate on the training examples, in parallel, or 0 for none.
+     * @return the metrics of the testing examples (see EvalMetrics), followed by those of the cross-validation, if any.
+     */
+    public static <VT, ET> String predictByNativeLogisticRegression(RuleHitMatrix<VT, ET> trainHits,
+                                                                    RuleHitMatrix<VT, ET> testHits,
+                                                                    Relation<VT, ET> r, String outputPath, String tag,
+                                                                    AsyncWriter writer, int numOfFolds) {
+        if (trainHits.numOfExamples() < 1) {
+            return "WARNING: Skip training. Not enough training examples.";
+        }
+        if (testHits.numOfExamples() < 1) {
+            return "WARNING: Skip training. Not enough testing examples.";
+        }
+
+        EvalMetrics metrics = evaluateNativeLogisticRegression(trainHits, testHits);
+        String outStr = metrics.toString();
+
+        String rName = r == null ? null : r.srcLabel() + "_" + r.edgeLabel() + "_" + r.dstLabel();
+        if (writer != null) {
+            writer.submit(() -> metrics.writeCurve(new File(outputPath, rName + "_" + tag + "_RocTT.csv").getPath()));
+        }
+        if (numOfFolds > 1) {
+            EvalMetrics cvMetrics = EvalMetrics.crossValidate(trainHits, numOfFolds, 1);
+            outStr += "\t" + cvMetrics;
+            if (writer != null) {
+                writer.submit(() -> cvMetrics.writeCurve(new File(outputPath, rName + "_" + tag + "_RocCV.csv").getPath()));
+            }
+        }
+        return outStr;
+    }
+
+    /**
+     * Train the in-house logistic regression on the training examples, and evaluate it on the testing examples.
+     */
+    public static <VT, ET> EvalMetrics evaluateNativeLogisticRegression(RuleHitMatrix<VT, ET> trainHits,
+                                                                        RuleHitMatrix<VT, ET> testHits) {
+        LogisticRegression model = trainLogisticRegression(trainHits);
+        double[] prob = model.predict(testHits.packedColumns(), testHits.numOfExamples());
+        return EvalMetrics.evaluate(prob, testHits.labels(), testHits.numOfExamples());
+    }
+
+    /**
+     * Train the in-house logistic regression on the rule hits of the labeled examples.
+     */
+    public static <VT, ET> LogisticRegression trainLogisticRegression(RuleHitMatrix<VT, ET> trainHits) {
+        return LogisticRegression.createInit()
+                .train(trainHits.packedColumns(), trainHits.numOfExamples(), trainHits.labels());
+    }
+
     public static <VT, ET> String predictByLogisticRegression(List<OGFCRule<VT, ET>> patternList, Relation<VT, ET> r,
                                                               Map<Boolean, List<Edge<VT, ET>>> dataTrain,
                                                               Map<Boolean, List<Edge<VT, ET>>> dataTest,
                                                               String outputPath, String tag) throws Exception {
-        int dim = patternList.size();
+        return predictByLogisticRegression(RuleHitMatrix.createFromData(patternList, dataTrain),
+                RuleHitMatrix.createFromData(patternList, dataTest), r, outputPath, tag);
+    }
+
+    /**
+     * Fact checking by Weka's logistic regression, which also writes the ARFF files and the ROC curves,
+     * including those of a 10-fold cross-validation.
+     */
+    public static <VT, ET> String predictByLogisticRegression(RuleHitMatrix<VT, ET> trainHits,
+                                                              RuleHitMatrix<VT, ET> testHits,
+                                                              Relation<VT, ET> r,
+                                                              String outputPath, String tag) throws Exception {
+        try (AsyncWriter writer = AsyncWriter.createInit()) {
+            return predictByLogisticRegression(trainHits, testHits, r, outputPath, tag, writer, 10);
+        }
+    }
+
+    /**
+     * Fact checking by Weka's logistic regression, with optional outputs and cross-validation.
+     *
+     * @param writer     writes the ARFF files and the ROC curves in the background, or null for no output.
+     * @param numOfFolds is the number of folds to cross-validate on the training examples, or 0 for none.
+     */
+    public static <VT, ET> String predictByLogisticRegression(RuleHitMatrix<VT, ET> trainHits,
+                                                              RuleHitMatrix<VT, ET> testHits,
+                                                              Relation<VT, ET> r,
+                                                              String outputPath, String tag,
+                                                              AsyncWriter writer, int numOfFolds) throws Exception {
+        int dim = trainHits.numOfRules();
         ArrayList<Attribute> fvec = new ArrayList<>(dim + 1);
         for (int i = 0; i < dim; i++) {
             fvec.add(new Attribute("P" + i));
@@ -87,67 +166,8 @@ public class FactChecker {
         fvec.add(attrClass);
 
         String rName = r.srcLabel() + "_" + r.edgeLabel() + "_" + r.dstLabel();
-        Instances trainSet = new Instances(rName, fvec, 10);
-        Instances testSet = new Instances(rName, fvec, 10);
-        trainSet.setClassIndex(dim);
-        testSet.setClassIndex(dim);
-
-        for (Edge<VT, ET> posTrain : dataTrain.get(true)) {
-            Instance iExample = new DenseInstance(dim + 1);
-            for (int i = 0; i < patternList.size(); i++) {
-                OGFCRule<VT, ET> p = patternList.get(i);
-                if (p.matchSet().get(p.x()).contains(posTrain.srcNode())
-                        && p.matchSet().get(p.y()).contains(posTrain.dstNode())) {
-                    iExample.setValue(fvec.get(i), 1);
-                } else {
-                    iExample.setValue(fvec.get(i), 0);
-                }
-            }
-            iExample.setValue(fvec.get(dim), "TRUE");
-            trainSet.add(iExample);
-        }
-        for (Edge<VT, ET> negTrain : dataTrain.get(false)) {
-            Instance iExample = new DenseInstance(dim + 1);
-            for (int i = 0; i < patternList.size(); i++) {
-                OGFCRule<VT, ET> p = patternList.get(i);
-                if (p.matchSet().get(p.x()).contains(negTrain.srcNode())
-                        && p.matchSet().get(p.y()).contains(negTrain.dstNode())) {
-                    iExample.setValue(fvec.get(i), 1);
-                } else {
-                    iExample.setValue(fvec.get(i), 0);
-                }
-            }
-            iExample.setValue(fvec.get(dim), "FALSE");
-            trainSet.add(iExample);
-        }
-        for (Edge<VT, ET> posTest : dataTest.get(true)) {
-            Instance iExample = new DenseInstance(dim + 1);
-            for (int i = 0; i < patternList.size(); i++) {
-                OGFCRule<VT, ET> p = patternList.get(i);
-                if (p.matchSet().get(p.x()).contains(posTest.srcNode())
-                        && p.matchSet().get(p.y()).contains(posTest.dstNode())) {
-                    iExample.setValue(fvec.get(i), 1);
-                } else {
-                    iExample.setValue(fvec.get(i), 0);
-                }
-            }
-            iExample.setValue(fvec.get(dim), "TRUE");
-            testSet.add(iExample);
-        }
-        for (Edge<VT, ET> negTest : dataTest.get(false)) {
-            Instance iExample = new DenseInstance(dim + 1);
-            for (int i = 0; i < patternList.size(); i++) {
-                OGFCRule<VT, ET> p = patternList.get(i);
-                if (p.matchSet().get(p.x()).contains(negTest.srcNode())
-                        && p.matchSet().get(p.y()).contains(negTest.dstNode())) {
-                    iExample.setValue(fvec.get(i), 1);
-                } else {
-                    iExample.setValue(fvec.get(i), 0);
-                }
-            }
-            iExample.setValue(fvec.get(dim), "FALSE");
-            testSet.add(iExample);
-        }
+        Instances trainSet = toInstances(trainHits, rName, fvec);
+        Instances testSet = toInstances(testHits, rName, fvec);
 
         if (trainSet.size() < 1) {
             return "WARNING: Skip training. Not enough training examples.";
@@ -172,56 +192,50 @@ public class FactChecker {
 //                (eval.fMeasure(0))
 //        );
 
-        ArffSaver arffSaver;
-        arffSaver = new ArffSaver();
-        arffSaver.setInstances(trainSet);
-        try {
-            arffSaver.setFile(new File(outputPath, rName + "_" + tag + "_Train.arff"));
-            arffSaver.writeBatch();
-        } catch (IOException e) {
-            e.printStackTrace();
+        if (writer != null) {
+            writer.submit(() -> saveArff(trainSet, new File(outputPath, rName + "_" + tag + "_Train.arff")));
+            writer.submit(() -> saveArff(testSet, new File(outputPath, rName + "_" + tag + "_Test.arff")));
+            Instances ttCurve = new ThresholdCurve().getCurve(eval.predictions(), 0);
+            writer.submit(() -> saveCsv(ttCurve, new File(outputPath, rName + "_" + tag + "_RocTT.csv")));
         }
 
-        arffSaver = new ArffSaver();
-        arffSaver.setInstances(testSet);
-        try {
-            arffSaver.setFile(new File(outputPath, rName + "_" + tag + "_Test.arff"));
-            arffSaver.writeBatch();
-        } catch (IOException e) {
-            e.printStackTrace();
+        if (numOfFolds > 1) {
+            eval.crossValidateModel(model, trainSet, numOfFolds, new Random(1));
+            if (writer != null) {
+                Instances cvCurve = new ThresholdCurve().getCurve(eval.predictions(), 0);
+                writer.submit(() -> saveCsv(cvCurve, new File(outputPath, rName + "_" + tag + "_RocCV.csv")));
+            }
         }
 
+//        System.out.println(eval.toClassDetailsString());
+//        System.out.println(eval.toMatrixString());
+        return outStr;
+    }
 
-        ThresholdCurve tc = new ThresholdCurve();
-        int classIndex = 0;
-        Instances result = tc.getCurve(eval.predictions(), classIndex);
+    private static void saveArff(Instances dataSet, File file) throws IOException {
+        ArffSaver arffSaver = new ArffSaver();
+        arffSaver.setInstances(dataSet);
+        arffSaver.setFile(file);
+        arffSaver.writeBatch();
+    }
 
+    private static void saveCsv(Instances dataSet, File file) throws IOException {
         CSVSaver csvSaver = new CSVSaver();
-        csvSaver.setInstances(result);
-        try {
-            csvSaver.setFile(new File(outputPath, rName + "_" + tag + "_RocTT.csv"));
-            csvSaver.writeBatch();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-        eval.crossValidateModel(model, trainSet, 10, new Random(1));
-
-
-        tc = new ThresholdCurve();
-        result = tc.getCurve(eval.predictions(), 0);
+        csvSaver.setInstances(dataSet);
+        csvSaver.setFile(file);
+        csvSaver.writeBatch();
+    }
 
-        csvSaver = new CSVSaver();
-        csvSaver.setInstances(result);
-        try {
-            csvSaver.setFile(new File(outputPath, rName + "_" + tag + "_RocCV.csv"));
-            csvSaver.writeBatch();
-        } catch (IOException e) {
-            e.printStackTrace();
+    private static <VT, ET> Instances toInstances(RuleHitMatrix<VT, ET> hits, String name, ArrayList<Attribute> fvec) {
+        int dim = hits.numOfRules();
+        Instances dataSet = new Instances(name, fvec, hits.numOfExamples());
+        dataSet.setClassIndex(dim);
+        double[][] rows = hits.toDenseRows();
+        for (int i = 0; i < rows.length; i++) {
+            // The class values are indexed as TRUE = 0, FALSE = 1.
+            rows[i][dim] = hits.labels().get(i) ? 0 : 1;
+            dataSet.add(new DenseInstance(1.0, rows[i]));
         }
-
-//        System.out.println(eval.toClassDetailsString());
-//        System.out.println(eval.toMatrixString());
-        return outStr;
+        return dataSet;
     }
-}
\ No newline at end of file
+}
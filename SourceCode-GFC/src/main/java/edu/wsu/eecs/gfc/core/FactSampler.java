@@ -1,10 +1,24 @@
 package edu.wsu.eecs.gfc.core;
 
+import java.io.PrintStream;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Sample a set of positive and negative facts from the graph.
- * Note: the positive testing data (edges) will be removed from the graph.
+ * Note: the positive testing data (edges) will be removed from the graph, or held out by a hold-out view of it.
+ * <p>
+ * The positive facts of a relation r(x, y) are its edges, split at random into training and testing ones. The negative
+ * facts are drawn by rejection sampling: random pairs (vx, vy) of nodes labeled as x and y are drawn with replacement,
+ * and rejected if they are facts of r (looked up in the hashed edges of r) or already drawn. By the Partial Closed
+ * World Assumption (PCWA), used when some nodes labeled as x and as y are not in any fact of r, the pairs are also
+ * rejected unless neither vx has a fact of r nor vy is in one; otherwise the Closed World Assumption (CWA) is used.
+ * The draws stop at negPosRatio times the positive facts, or after a bounded number of attempts.
+ * <p>
+ * Each relation draws from its own generator, split from the seed in the order of the relations, so the samples are
+ * reproducible and do not depend on each other, and the relations are sampled in parallel.
  * <p>
  * @author Peng Lin penglin03@gmail.com
  */
@@ -15,18 +29,77 @@ public class FactSampler<VT, ET> {
     private Map<Boolean, List<Edge<VT, ET>>> dataTrain;
     private Map<Boolean, List<Edge<VT, ET>>> dataTest;
 
+    private final long seed;
+
+    private final double negPosRatio;
+
+    private final double trainFraction;
+
+    // The nodes of each label, as lists to draw from, shared by the relations.
+    private final Map<VT, List<Node<VT>>> labelNodes;
+
+    // Whether the positive testing facts are held out by a view instead of removed from the graph.
+    private final boolean isHoldOut;
+
+    private final PrintStream log;
+
     private static final Random DEFAULT_SEED = new Random(357);
     private static final double DEFAULT_PERCENTAGE_OF_TRAIN = 0.8;
     private static final double DEFAULT_NEG_POS_RATIO = 4;
 
+    // The maximum draws per negative fact to sample.
+    private static final int MAX_ATTEMPTS_PER_NEGATIVE = 50;
+
     public FactSampler(GraphDatabase<VT, ET> bigGraph, List<Relation<VT, ET>> relationList) {
+        this(bigGraph, relationList, DEFAULT_SEED);
+    }
+
+    /**
+     * @param random is the random generator of this sampler, so that samplers running concurrently
+     *               do not depend on the order of each other's draws.
+     */
+    public FactSampler(GraphDatabase<VT, ET> bigGraph, List<Relation<VT, ET>> relationList, Random random) {
+        this(bigGraph, relationList, random.nextLong(), DEFAULT_NEG_POS_RATIO, DEFAULT_PERCENTAGE_OF_TRAIN);
+    }
+
+    /**
+     * @param seed          is the seed of the generators of the relations.
+     * @param negPosRatio   is the number of negative facts to sample per positive fact.
+     * @param trainFraction is the fraction of the positive (and negative) facts for training.
+     */
+    public FactSampler(GraphDatabase<VT, ET> bigGraph, List<Relation<VT, ET>> relationList,
+                       long seed, double negPosRatio, double trainFraction) {
+        this(bigGraph, relationList, seed, negPosRatio, trainFraction, false, System.out);
+    }
+
+    private FactSampler(GraphDatabase<VT, ET> bigGraph, List<Relation<VT, ET>> relationList,
+                        long seed, double negPosRatio, double trainFraction, boolean isHoldOut, PrintStream log) {
         this.bigGraph = bigGraph;
+        this.isHoldOut = isHoldOut;
+        this.log = log;
         this.relationList = relationList;
+        this.seed = seed;
+        this.negPosRatio = negPosRatio;
+        this.trainFraction = trainFraction;
+        this.labelNodes = new ConcurrentHashMap<>();
         dataTrain = new HashMap<>();
         dataTest = new HashMap<>();
         extract();
     }
 
+    /**
+     * A sampler that holds the positive testing facts out by a hold-out view of the graph (see getBigGraph()), instead
+     * of removing them from it, so that many samplers can share one graph concurrently. Its progress goes to the log.
+     */
+    public static <VT, ET> FactSampler<VT, ET> createHoldOut(GraphDatabase<VT, ET> bigGraph, List<Relation<VT, ET>> relationList,
+                                                             Random random, PrintStream log) {
+        return new FactSampler<>(bigGraph, relationList, random.nextLong(), DEFAULT_NEG_POS_RATIO,
+                DEFAULT_PERCENTAGE_OF_TRAIN, true, log);
+    }
+
+    /**
+     * @return the graph without the positive testing facts, to mine the rules on.
+     */
     public GraphDatabase<VT, ET> getBigGraph() {
         return bigGraph;
     }
@@ -47,100 +120,113 @@ public class FactSampler<VT, ET> {
         return dataTrain;
     }
 
+    /**
+     * The sampled facts of a relation.
+     */
+    private static class Sample<VT, ET> {
+        private final List<Edge<VT, ET>> posTrain = new ArrayList<>();
+        private final List<Edge<VT, ET>> posTest = new ArrayList<>();
+        private final List<Edge<VT, ET>> negTrain = new ArrayList<>();
+        private final List<Edge<VT, ET>> negTest = new ArrayList<>();
+        private boolean isPCWA;
+    }
+
     private void extract() {
         dataTrain.put(true, new ArrayList<>());
         dataTrain.put(false, new ArrayList<>());
         dataTest.put(true, new ArrayList<>());
         dataTest.put(false, new ArrayList<>());
 
-        for (Relation<VT, ET> r : relationList) {
-            int nPos = bigGraph.getEdges(r).size();
-            int nNeg = (int) (nPos * DEFAULT_NEG_POS_RATIO);
+        SplittableRandom root = new SplittableRandom(seed);
+        List<SplittableRandom> randoms = new ArrayList<>(relationList.size());
+        for (int i = 0; i < relationList.size(); i++) {
+            randoms.add(root.split());
+        }
+        List<Sample<VT, ET>> samples = IntStream.range(0, relationList.size()).parallel()
+                .mapToObj(i -> sample(relationList.get(i), randoms.get(i)))
+                .collect(Collectors.toList());
+
+        for (Sample<VT, ET> sample : samples) {
+            log.println(sample.isPCWA ? "Sampling the examples by PCWA...." : "Sampling the examples by CWA....");
+            dataTrain.get(true).addAll(sample.posTrain);
+            dataTest.get(true).addAll(sample.posTest);
+            dataTrain.get(false).addAll(sample.negTrain);
+            dataTest.get(false).addAll(sample.negTest);
+        }
 
-            List<Edge<VT, ET>> posExamples = new ArrayList<>(bigGraph.getEdges(r));
-            Set<Integer> posTestIndex = new HashSet<>();
-            for (int i : DEFAULT_SEED.ints(0, posExamples.size()).distinct()
-                    .limit((int) (posExamples.size() * (1 - DEFAULT_PERCENTAGE_OF_TRAIN))).toArray()) {
-                posTestIndex.add(i);
-            }
+        if (isHoldOut) {
+            bigGraph = bigGraph.holdOut(dataTest.get(true));
+            return;
+        }
+        for (Edge<VT, ET> e : dataTest.get(true)) {
+            bigGraph.removeEdge(e);
+        }
+    }
 
-            for (int i = 0; i < posExamples.size(); i++) {
-                if (!posTestIndex.contains(i)) {
-                    dataTrain.get(true).add(posExamples.get(i));
-                } else {
-                    dataTest.get(true).add(posExamples.get(i));
-                }
-            }
+    private Sample<VT, ET> sample(Relation<VT, ET> r, SplittableRandom random) {
+        Sample<VT, ET> sample = new Sample<>();
+
+        // The positive facts: a random subset of them for testing, by a partial Fisher-Yates shuffle.
+        Set<Edge<VT, ET>> posEdges = bigGraph.getEdges(r);
+        List<Edge<VT, ET>> posExamples = new ArrayList<>(posEdges);
+        int nPos = posExamples.size();
+        int nPosTest = (int) (nPos * (1 - trainFraction));
+        int[] perm = new int[nPos];
+        for (int i = 0; i < nPos; i++) {
+            perm[i] = i;
+        }
+        boolean[] isTest = new boolean[nPos];
+        for (int i = 0; i < nPosTest; i++) {
+            int j = i + random.nextInt(nPos - i);
+            int t = perm[i];
+            perm[i] = perm[j];
+            perm[j] = t;
+            isTest[perm[i]] = true;
+        }
+        for (int i = 0; i < nPos; i++) {
+            (isTest[i] ? sample.posTest : sample.posTrain).add(posExamples.get(i));
+        }
 
-            List<Edge<VT, ET>> negExamples = new ArrayList<>(nNeg);
-            Set<Node<VT>> xSet = new HashSet<>(bigGraph.getNodes(r.srcLabel()));
-            Set<Node<VT>> ySet = new HashSet<>(bigGraph.getNodes(r.dstLabel()));
-            if (xSet.size() > bigGraph.getSrcNodes(r).size() && ySet.size() > bigGraph.getDstNodes(r).size()) {
-                // Partial Closed World Assumption (PCWA)
-                System.out.println("Sampling the examples by PCWA....");
-                xSet.removeAll(bigGraph.getSrcNodes(r));
-                ySet.removeAll(bigGraph.getDstNodes(r));
-                List<Node<VT>> xList = new ArrayList<>(xSet);
-                List<Node<VT>> yList = new ArrayList<>(ySet);
-                Collections.shuffle(xList, DEFAULT_SEED);
-                Collections.shuffle(yList, DEFAULT_SEED);
-                for (int i = 0; i < nNeg; i++) {
-                    Node<VT> vx = xList.get(i % xList.size());
-                    Node<VT> vy = yList.get(i % yList.size());
-                    negExamples.add(Edge.createUnlabeledEdge(vx, vy));
+        // The negative facts, by rejection sampling.
+        int nNeg = (int) (nPos * negPosRatio);
+        List<Node<VT>> xList = labelNodes.computeIfAbsent(r.srcLabel(), l -> new ArrayList<>(bigGraph.getNodes(l)));
+        List<Node<VT>> yList = labelNodes.computeIfAbsent(r.dstLabel(), l -> new ArrayList<>(bigGraph.getNodes(l)));
+        Set<Node<VT>> srcNodes = bigGraph.getSrcNodes(r);
+        Set<Node<VT>> dstNodes = bigGraph.getDstNodes(r);
+        sample.isPCWA = xList.size() > srcNodes.size() && yList.size() > dstNodes.size();
+
+        List<Edge<VT, ET>> negExamples = new ArrayList<>(nNeg);
+        if (!xList.isEmpty() && !yList.isEmpty()) {
+            Set<Edge<VT, ET>> drawn = new HashSet<>();
+            long maxAttempts = (long) MAX_ATTEMPTS_PER_NEGATIVE * nNeg;
+            for (long attempt = 0; attempt < maxAttempts && negExamples.size() < nNeg; attempt++) {
+                Node<VT> vx = xList.get(random.nextInt(xList.size()));
+                Node<VT> vy = yList.get(random.nextInt(yList.size()));
+                if (sample.isPCWA && (srcNodes.contains(vx) || dstNodes.contains(vy))) {
+                    continue;
                 }
-            } else {
-                // Closed World Assumption (CWA)
-                System.out.println("Sampling the examples by CWA....");
-                List<Node<VT>> xList = new ArrayList<>(xSet);
-                List<Node<VT>> yList = new ArrayList<>(ySet);
-                Collections.shuffle(xList, DEFAULT_SEED);
-                Collections.shuffle(yList, DEFAULT_SEED);
-                for (int i = 0; i < 2 * nNeg; i++) {
-                    if (negExamples.size() > nNeg) {
-                        break;
-                    }
-                    Node<VT> vx = xList.get(i % xList.size());
-                    for (int j = 0; j < 2 * nNeg; j++) {
-                        if (negExamples.size() > nNeg) {
-                            break;
-                        }
-                        Node<VT> vy = yList.get(i % yList.size());
-                        Edge<VT, ET> exy = bigGraph.getGraph().getEdge(vx, vy);
-                        if (exy == null || !exy.label().equals(r.edgeLabel())) {
-                            negExamples.add(Edge.createUnlabeledEdge(vx, vy));
-                        }
-                    }
+                if (posEdges.contains(Edge.createLabeledEdge(vx, vy, r.edgeLabel()))) {
+                    continue;
+                }
+                Edge<VT, ET> e = Edge.createUnlabeledEdge(vx, vy);
+                if (drawn.add(e)) {
+                    negExamples.add(e);
                 }
-            }
-
-            if (negExamples.size() > nNeg) {
-                negExamples = new ArrayList<>(negExamples.subList(0, nNeg));
-            }
-            int negCut = (int) (negExamples.size() * DEFAULT_PERCENTAGE_OF_TRAIN);
-
-            if (negExamples.size() != 0) {
-                dataTrain.get(false).addAll(new ArrayList<>(negExamples.subList(0, negCut)));
-                dataTest.get(false).addAll(new ArrayList<>(negExamples.subList(negCut + 1, negExamples.size())));
             }
         }
 
-        for (Relation<VT, ET> r : relationList) {
-            for (Edge<VT, ET> e : dataTest.get(true)) {
-                bigGraph.getGraph().removeEdge(e);
-                bigGraph.getEdges(r.edgeLabel()).remove(e);
-                bigGraph.getEdges(r).remove(e);
-            }
-        }
+        int negCut = (int) (negExamples.size() * trainFraction);
+        sample.negTrain.addAll(negExamples.subList(0, negCut));
+        sample.negTest.addAll(negExamples.subList(negCut, negExamples.size()));
+        return sample;
     }
 
     public void restore() {
-        for (Relation<VT, ET> r : relationList) {
-            for (Edge<VT, ET> e : dataTest.get(true)) {
-                bigGraph.getGraph().addEdge(e);
-                bigGraph.getEdges(r.edgeLabel()).add(e);
-                bigGraph.getEdges(r).add(e);
-            }
+        if (isHoldOut) {
+            return;
+        }
+        for (Edge<VT, ET> e : dataTest.get(true)) {
+            bigGraph.addEdge(e);
         }
     }
 }
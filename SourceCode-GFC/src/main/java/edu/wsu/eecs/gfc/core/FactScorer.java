@@ -0,0 +1,284 @@
+package edu.wsu.eecs.gfc.core;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Batch fact checking: score a file of candidate facts against the rules of their relations.
+ * <p>
+ * The candidates are streamed from a TSV file of (subject, edge label, object) lines. The subject and the object
+ * are resolved to the nodes of the data graph by their ids, and the relation of a candidate is given by the
+ * labels of the two nodes and the edge label. The candidates are scored in chunks by a bounded pool of threads,
+ * with only a bounded number of chunks in flight, and the results are written in the input order as
+ * (subject, edge label, object, score, hits), where hits are the indices of the rules of the relation that hit
+ * the candidate, or "-" if none.
+ * <p>
+ * The score is the probability given by the logistic regression model of the relation, if there is one,
+ * and otherwise the maximum confidence of the rules that hit the candidate (0 if none).
+ * A candidate whose nodes or relation are unknown is scored "NA".
+ * <p>
+ * A single candidate is checked by the inverted index of the rules of its relation (see RuleIndex),
+ * with hits listed in the descending order of confidence.
+ * <p>
+ * @author Peng Lin penglin03@gmail.com
+ */
+public class FactScorer {
+
+    private static final int DEFAULT_CHUNK_SIZE = 100000;
+
+    // The candidates of a relation in a chunk below which they are looked up in the rule index, not a hit matrix.
+    private static final int INDEX_THRESHOLD = 64;
+
+    private final Graph<String, String> graph;
+
+    private final Map<Relation<String, String>, List<OGFCRule<String, String>>> ruleSets;
+
+    private final Map<Relation<String, String>, LogisticRegression> models;
+
+    private final Map<Relation<String, String>, RuleIndex<String, String>> ruleIndexes;
+
+    private final int nThreads;
+
+    private final int chunkSize;
+
+    private FactScorer(Graph<String, String> graph, int nThreads, int chunkSize) {
+        this.graph = graph;
+        this.ruleSets = new HashMap<>();
+        this.models = new HashMap<>();
+        this.ruleIndexes = new HashMap<>();
+        this.nThreads = Math.max(1, nThreads);
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    public static FactScorer createInit(Graph<String, String> graph, int nThreads) {
+        return new FactScorer(graph, nThreads, DEFAULT_CHUNK_SIZE);
+    }
+
+    public static FactScorer createInit(Graph<String, String> graph, int nThreads, int chunkSize) {
+        return new FactScorer(graph, nThreads, chunkSize);
+    }
+
+    /**
+     * Add the rules of a relation, and optionally (if not null) a logistic regression model trained on their hits.
+     */
+    public FactScorer addRules(Relation<String, String> r, List<OGFCRule<String, String>> rules, LogisticRegression model) {
+        ruleSets.put(r, rules);
+        ruleIndexes.put(r, RuleIndex.createFromRules(rules));
+        if (model != null) {
+            models.put(r, model);
+        } else {
+            models.remove(r);
+        }
+        return this;
+    }
+
+    /**
+     * Add the rules and models of all the relations of a rule set, e.g., loaded from a rule set file.
+     */
+    public FactScorer addRuleSet(RuleSet ruleSet) {
+        for (Relation<String, String> r : ruleSet.relations()) {
+            addRules(r, ruleSet.getRules(r), ruleSet.getModel(r));
+        }
+        return this;
+    }
+
+    /**
+     * Score all the candidate facts of the input file, and write the results to the output file.
+     *
+     * @return the number of candidates scored.
+     */
+    public long scoreFile(String candidateFile, String outputFile) throws IOException, InterruptedException, ExecutionException {
+        ExecutorService pool = Executors.newFixedThreadPool(nThreads);
+        Deque<Future<List<String>>> inFlight = new ArrayDeque<>();
+        long nCandidates = 0;
+        try (BufferedReader br = new BufferedReader(new FileReader(candidateFile));
+             BufferedWriter bw = new BufferedWriter(new FileWriter(outputFile))) {
+            List<String[]> chunk = new ArrayList<>(chunkSize);
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                chunk.add(line.split("\t"));
+                nCandidates++;
+                if (chunk.size() == chunkSize) {
+                    List<String[]> task = chunk;
+                    inFlight.add(pool.submit(() -> scoreChunk(task)));
+                    chunk = new ArrayList<>(chunkSize);
+                    // Back pressure: do not read ahead more than two chunks per thread.
+                    if (inFlight.size() >= 2 * nThreads) {
+                        writeLines(bw, inFlight.removeFirst().get());
+                    }
+                }
+            }
+            if (!chunk.isEmpty()) {
+                List<String[]> task = chunk;
+                inFlight.add(pool.submit(() -> scoreChunk(task)));
+            }
+            while (!inFlight.isEmpty()) {
+                writeLines(bw, inFlight.removeFirst().get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return nCandidates;
+    }
+
+    /**
+     * Score a chunk of candidates, given as (subject, edge label, object).
+     *
+     * @return the output lines, in the order of the candidates.
+     */
+    public List<String> scoreChunk(List<String[]> chunk) {
+        String[] scores = new String[chunk.size()];
+        String[] hits = new String[chunk.size()];
+
+        // Group the resolved candidates by relation.
+        Map<Relation<String, String>, List<Integer>> positions = new LinkedHashMap<>();
+        Map<Relation<String, String>, List<Edge<String, String>>> examples = new HashMap<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            scores[i] = "NA";
+            hits[i] = "-";
+            String[] tokens = chunk.get(i);
+            if (tokens.length < 3) {
+                continue;
+            }
+            Node<String> src = graph.getNode(tokens[0]);
+            Node<String> dst = graph.getNode(tokens[2]);
+            if (src == null || dst == null) {
+                continue;
+            }
+            Relation<String, String> r = Relation.createKey(src.label(), dst.label(), tokens[1]);
+            if (!ruleSets.containsKey(r)) {
+                continue;
+            }
+            positions.computeIfAbsent(r, k -> new ArrayList<>()).add(i);
+            examples.computeIfAbsent(r, k -> new ArrayList<>()).add(Edge.createLabeledEdge(src, dst, tokens[1]));
+        }
+
+        for (Map.Entry<Relation<String, String>, List<Integer>> entry : positions.entrySet()) {
+            Relation<String, String> r = entry.getKey();
+            List<Integer> pos = entry.getValue();
+            List<OGFCRule<String, String>> rules = ruleSets.get(r);
+            if (pos.size() < INDEX_THRESHOLD) {
+                // Too few candidates to build a hit matrix for: look them up in the rule index one by one.
+                List<Edge<String, String>> rExamples = examples.get(r);
+                for (int k = 0; k < pos.size(); k++) {
+                    int[] hitRules = ruleIndexes.get(r).hits(rExamples.get(k));
+                    scores[pos.get(k)] = score(r, hitRules);
+                    Arrays.sort(hitRules);
+                    hits[pos.get(k)] = joinHits(hitRules);
+                }
+                continue;
+            }
+            RuleHitMatrix<String, String> hitMatrix = RuleHitMatrix.createFromExamples(rules, examples.get(r));
+
+            double[] rScores;
+            LogisticRegression model = models.get(r);
+            if (model != null) {
+                rScores = model.predict(hitMatrix.packedColumns(), pos.size());
+            } else {
+                rScores = new double[pos.size()];
+                for (int j = 0; j < rules.size(); j++) {
+                    BitSet col = hitMatrix.column(j);
+                    for (int k = col.nextSetBit(0); k >= 0; k = col.nextSetBit(k + 1)) {
+                        rScores[k] = Math.max(rScores[k], rules.get(j).conf);
+                    }
+                }
+            }
+
+            StringBuilder[] rHits = new StringBuilder[pos.size()];
+            for (int j = 0; j < rules.size(); j++) {
+                BitSet col = hitMatrix.column(j);
+                for (int k = col.nextSetBit(0); k >= 0; k = col.nextSetBit(k + 1)) {
+                    if (rHits[k] == null) {
+                        rHits[k] = new StringBuilder().append(j);
+                    } else {
+                        rHits[k].append(',').append(j);
+                    }
+                }
+            }
+
+            for (int k = 0; k < pos.size(); k++) {
+                scores[pos.get(k)] = String.valueOf(rScores[k]);
+                if (rHits[k] != null) {
+                    hits[pos.get(k)] = rHits[k].toString();
+                }
+            }
+        }
+
+        List<String> lines = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            String[] tokens = chunk.get(i);
+            lines.add(String.join("\t", tokens) + "\t" + scores[i] + "\t" + hits[i]);
+        }
+        return lines;
+    }
+
+    /**
+     * Score a single candidate (subject, edge label, object) by the inverted rule index of its relation.
+     *
+     * @return the output line, as scoreChunk gives, but with the hits in the descending order of confidence.
+     */
+    public String scoreFact(String[] tokens) {
+        String score = "NA";
+        String hits = "-";
+        Node<String> src = tokens.length < 3 ? null : graph.getNode(tokens[0]);
+        Node<String> dst = tokens.length < 3 ? null : graph.getNode(tokens[2]);
+        if (src != null && dst != null) {
+            Relation<String, String> r = Relation.createKey(src.label(), dst.label(), tokens[1]);
+            RuleIndex<String, String> index = ruleIndexes.get(r);
+            if (index != null) {
+                int[] hitRules = index.hits(src, dst);
+                score = score(r, hitRules);
+                hits = joinHits(hitRules);
+            }
+        }
+        return String.join("\t", tokens) + "\t" + score + "\t" + hits;
+    }
+
+    /**
+     * @param hitRules are the rules that hit a candidate of r, in the descending order of confidence.
+     */
+    private String score(Relation<String, String> r, int[] hitRules) {
+        LogisticRegression model = models.get(r);
+        if (model != null) {
+            return String.valueOf(model.predict(hitRules));
+        }
+        return String.valueOf(hitRules.length > 0 ? ruleSets.get(r).get(hitRules[0]).conf : 0.0);
+    }
+
+    private static String joinHits(int[] hitRules) {
+        if (hitRules.length == 0) {
+            return "-";
+        }
+        StringBuilder sb = new StringBuilder().append(hitRules[0]);
+        for (int k = 1; k < hitRules.length; k++) {
+            sb.append(',').append(hitRules[k]);
+        }
+        return sb.toString();
+    }
+
+    private static void writeLines(BufferedWriter bw, List<String> lines) throws IOException {
+        for (String line : lines) {
+            bw.write(line);
+            bw.newLine();
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package edu.wsu.eecs.gfc.core;
+
+import java.util.*;
+
+/**
+ * Generate many training/testing splits of the facts of the relations, for many evaluation rounds over one graph load.
+ * <p>
+ * The positive and the negative facts are sampled once (by FactSampler, without holding any fact out), and every split
+ * is a pair of bitmaps over them, marking the testing facts. The splits are generated lazily, one per iteration step,
+ * either as the k folds of a stratified k-fold partition, or as n random splits with their own generators split from
+ * the seed. The training and testing data of a split are views of the sampled facts through the bitmaps, so the
+ * fact lists are never copied.
+ * <p>
+ * A split holds its positive testing facts out of the graph by hideTestFacts(), as FactSampler does, and puts them back
+ * by restore(), so that the rules of the round are mined without them.
+ * <p>
+ * @author Peng Lin penglin03@gmail.com
+ */
+public class FactSplitter<VT, ET> {
+
+    private final GraphDatabase<VT, ET> bigGraph;
+
+    private final List<Relation<VT, ET>> relationList;
+
+    private final List<Edge<VT, ET>> positives;
+
+    private final List<Edge<VT, ET>> negatives;
+
+    private final long seed;
+
+    private FactSplitter(GraphDatabase<VT, ET> bigGraph, List<Relation<VT, ET>> relationList, long seed, double negPosRatio) {
+        this.bigGraph = bigGraph;
+        this.relationList = relationList;
+        this.seed = seed;
+        this.positives = new ArrayList<>();
+        this.negatives = new ArrayList<>();
+        for (Relation<VT, ET> r : relationList) {
+            List<Relation<VT, ET>> rList = new ArrayList<>();
+            rList.add(r);
+            // With all the facts for training, the sampler holds nothing out of the graph.
+            FactSampler<VT, ET> sampler = new FactSampler<>(bigGraph, rList, seed, negPosRatio, 1.0);
+            positives.addAll(sampler.getDataTrain().get(true));
+            negatives.addAll(sampler.getDataTrain().get(false));
+        }
+    }
+
+    public static <VT, ET> FactSplitter<VT, ET> createInit(GraphDatabase<VT, ET> bigGraph, List<Relation<VT, ET>> relationList,
+                                                           long seed, double negPosRatio) {
+        return new FactSplitter<>(bigGraph, relationList, seed, negPosRatio);
+    }
+
+    public List<Relation<VT, ET>> getRelationList() {
+        return relationList;
+    }
+
+    public int numOfPositives() {
+        return positives.size();
+    }
+
+    public int numOfNegatives() {
+        return negatives.size();
+    }
+
+    /**
+     * The k folds of a stratified partition: the i-th split tests on the i-th fold and trains on the others.
+     */
+    public Iterable<Split> kFolds(int k) {
+        return () -> new Iterator<Split>() {
+            private int[] posFolds;
+            private int[] negFolds;
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < k;
+            }
+
+            @Override
+            public Split next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (posFolds == null) {
+                    SplittableRandom random = new SplittableRandom(seed);
+                    posFolds = assignFolds(positives.size(), k, random);
+                    negFolds = assignFolds(negatives.size(), k, random);
+                }
+                BitSet posTest = new BitSet(positives.size());
+                BitSet negTest = new BitSet(negatives.size());
+                for (int j = 0; j < posFolds.length; j++) {
+                    if (posFolds[j] == i) {
+                        posTest.set(j);
+                    }
+                }
+                for (int j = 0; j < negFolds.length; j++) {
+                    if (negFolds[j] == i) {
+                        negTest.set(j);
+                    }
+                }
+                return new Split(i++, posTest, negTest);
+            }
+        };
+    }
+
+    /**
+     * n random splits, each holding out a random (1 - trainFraction) of the positive and of the negative facts.
+     */
+    public Iterable<Split> seededSplits(int n, double trainFraction) {
+        return () -> new Iterator<Split>() {
+            private final SplittableRandom root = new SplittableRandom(seed);
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < n;
+            }
+
+            @Override
+            public Split next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                SplittableRandom random = root.split();
+                BitSet posTest = randomSubset(positives.size(), (int) (positives.size() * (1 - trainFraction)), random);
+                BitSet negTest = randomSubset(negatives.size(), (int) (negatives.size() * (1 - trainFraction)), random);
+                return new Split(i++, posTest, negTest);
+            }
+        };
+    }
+
+    /**
+     * Assign n items to k folds of (nearly) equal sizes, in a random order.
+     */
+    private static int[] assignFolds(int n, int k, SplittableRandom random) {
+        int[] perm = permutation(n, n, random);
+        int[] folds = new int[n];
+        for (int j = 0; j < n; j++) {
+            folds[perm[j]] = j % k;
+        }
+        return folds;
+    }
+
+    private static BitSet randomSubset(int n, int m, SplittableRandom random) {
+        int[] perm = permutation(n, m, random);
+        BitSet subset = new BitSet(n);
+        for (int j = 0; j < m; j++) {
+            subset.set(perm[j]);
+        }
+        return subset;
+    }
+
+    /**
+     * @return a permutation of 0..n-1 whose first m positions are shuffled (by a partial Fisher-Yates shuffle).
+     */
+    private static int[] permutation(int n, int m, SplittableRandom random) {
+        int[] perm = new int[n];
+        for (int j = 0; j < n; j++) {
+            perm[j] = j;
+        }
+        for (int j = 0; j < m && j < n - 1; j++) {
+            int t = j + random.nextInt(n - j);
+            int p = perm[j];
+            perm[j] = perm[t];
+            perm[t] = p;
+        }
+        return perm;
+    }
+
+    /**
+     * A split of the facts, given by the bitmaps of the positive and the negative testing facts.
+     */
+    public class Split {
+
+        private final int index;
+
+        private final BitSet posTest;
+
+        private final BitSet negTest;
+
+        private Split(int index, BitSet posTest, BitSet negTest) {
+            this.index = index;
+            this.posTest = posTest;
+            this.negTest = negTest;
+        }
+
+        public int index() {
+            return index;
+        }
+
+        public BitSet posTestMask() {
+            return posTest;
+        }
+
+        public BitSet negTestMask() {
+            return negTest;
+        }
+
+        /**
+         * @return the training facts: get(true) are the positive ones, and get(false) the negative.
+         */
+        public Map<Boolean, List<Edge<VT, ET>>> dataTrain() {
+            return data(false);
+        }
+
+        /**
+         * @return the testing facts: get(true) are the positive ones, and get(false) the negative.
+         */
+        public Map<Boolean, List<Edge<VT, ET>>> dataTest() {
+            return data(true);
+        }
+
+        private Map<Boolean, List<Edge<VT, ET>>> data(boolean isTest) {
+            Map<Boolean, List<Edge<VT, ET>>> data = new HashMap<>();
+            data.put(true, new MaskedList<>(positives, posTest, isTest));
+            data.put(false, new MaskedList<>(negatives, negTest, isTest));
+            return data;
+        }
+
+        /**
+         * Remove the positive testing facts from the graph.
+         */
+        public void hideTestFacts() {
+            for (int j = posTest.nextSetBit(0); j >= 0; j = posTest.nextSetBit(j + 1)) {
+                bigGraph.removeEdge(positives.get(j));
+            }
+        }
+
+        /**
+         * Put the positive testing facts back to the graph.
+         */
+        public void restore() {
+            for (int j = posTest.nextSetBit(0); j >= 0; j = posTest.nextSetBit(j + 1)) {
+                bigGraph.addEdge(positives.get(j));
+            }
+        }
+    }
+
+    /**
+     * A read-only view of the items of a list whose positions are in (or not in) a bitmap.
+     */
+    private static class MaskedList<E> extends AbstractList<E> implements RandomAccess {
+
+        private final List<E> base;
+
+        private final int[] positions;
+
+        private MaskedList(List<E> base, BitSet mask, boolean isIn) {
+            this.base = base;
+            this.positions = new int[isIn ? mask.cardinality() : base.size() - mask.cardinality()];
+            int k = 0;
+            for (int j = 0; j < base.size(); j++) {
+                if (mask.get(j) == isIn) {
+                    positions[k++] = j;
+                }
+            }
+        }
+
+        @Override
+        public E get(int index) {
+            return base.get(positions[index]);
+        }
+
+        @Override
+        public int size() {
+            return positions.length;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package edu.wsu.eecs.gfc.core;
+
+import java.util.function.IntConsumer;
+
+/**
+ * The adjacency as flat int arrays: for each direction, the CSR offsets of the nodes, and the neighbors and the edge
+ * labels of the slots, in the order they are appended.
+ * <p>
+ * @author Peng Lin penglin03@gmail.com
+ */
+final class FlatAdjacency implements AdjacencyStore {
+
+    private final int[] outStart;
+
+    private final int[] outNbrs;
+
+    private final int[] outLabels;
+
+    private final int[] inStart;
+
+    private final int[] inNbrs;
+
+    private final int[] inLabels;
+
+    private FlatAdjacency(Builder b) {
+        this.outStart = b.outStart;
+        this.outNbrs = b.outNbrs;
+        this.outLabels = b.outLabels;
+        this.inStart = b.inStart;
+        this.inNbrs = b.inNbrs;
+        this.inLabels = b.inLabels;
+    }
+
+    @Override
+    public int nodeBound() {
+        return outStart.length - 1;
+    }
+
+    @Override
+    public int outSize(int v) {
+        return outStart[v + 1] - outStart[v];
+    }
+
+    @Override
+    public int outNeighbor(int v, int k) {
+        return outNbrs[outStart[v] + k];
+    }
+
+    @Override
+    public int inSize(int v) {
+        return inStart[v + 1] - inStart[v];
+    }
+
+    @Override
+    public int inNeighbor(int v, int k) {
+        return inNbrs[inStart[v] + k];
+    }
+
+    @Override
+    public int outLabel(int v, int k) {
+        return outLabels[outStart[v] + k];
+    }
+
+    @Override
+    public int inLabel(int v, int k) {
+        return inLabels[inStart[v] + k];
+    }
+
+    @Override
+    public void forEachOutNeighbor(int v, IntConsumer action) {
+        for (int k = outStart[v]; k < outStart[v + 1]; k++) {
+            action.accept(outNbrs[k]);
+        }
+    }
+
+    @Override
+    public void forEachInNeighbor(int v, IntConsumer action) {
+        for (int k = inStart[v]; k < inStart[v + 1]; k++) {
+            action.accept(inNbrs[k]);
+        }
+    }
+
+    @Override
+    public EdgeCursor edgeCursor() {
+        return new Cursor(outStart, outNbrs, outLabels, true, 0, nodeBound());
+    }
+
+    @Override
+    public EdgeCursor outEdgeCursor(int v) {
+        return new Cursor(outStart, outNbrs, outLabels, true, v, v + 1);
+    }
+
+    @Override
+    public EdgeCursor inEdgeCursor(int v) {
+        return new Cursor(inStart, inNbrs, inLabels, false, v, v + 1);
+    }
+
+    @Override
+    public long sizeInBytes() {
+        return 4L * (outStart.length + outNbrs.length + outLabels.length + inStart.length + inNbrs.length + inLabels.length);
+    }
+
+    static final class Builder implements AdjacencyStore.Builder {
+
+        private final int[] outStart;
+
+        private final int[] outNbrs;
+
+        private final int[] outLabels;
+
+        private final int[] inStart;
+
+        private final int[] inNbrs;
+
+        private final int[] inLabels;
+
+        private int numOfOut = 0;
+
+        private int numOfIn = 0;
+
+        Builder(int numOfNodes, int numOfEdges) {
+            this.outStart = new int[numOfNodes + 1];
+            this.outNbrs = new int[numOfEdges];
+            this.outLabels = new int[numOfEdges];
+            this.inStart = new int[numOfNodes + 1];
+            this.inNbrs = new int[numOfEdges];
+            this.inLabels = new int[numOfEdges];
+        }
+
+        @Override
+        public void appendOut(int[] nbrs, int[] labels, int size) {
+            System.arraycopy(nbrs, 0, outNbrs, outStart[numOfOut], size);
+            System.arraycopy(labels, 0, outLabels, outStart[numOfOut], size);
+            outStart[numOfOut + 1] = outStart[numOfOut] + size;
+            numOfOut++;
+        }
+
+        @Override
+        public void appendIn(int[] nbrs, int[] labels, int size) {
+            System.arraycopy(nbrs, 0, inNbrs, inStart[numOfIn], size);
+            System.arraycopy(labels, 0, inLabels, inStart[numOfIn], size);
+            inStart[numOfIn + 1] = inStart[numOfIn] + size;
+            numOfIn++;
+        }
+
+        @Override
+        public AdjacencyStore build() {
+            return new FlatAdjacency(this);
+        }
+    }
+
+    private static final class Cursor implements EdgeCursor {
+
+        private final int[] start;
+
+        private final int[] nbrs;
+
+        private final int[] labels;
+
+        // The edges of the slots are out-edges (from the node to the slot) or in-edges (from the slot to the node).
+        private final boolean isOut;
+
+        private final int endNode;
+
+        private int v;
+
+        private int k;
+
+        private Cursor(int[] start, int[] nbrs, int[] labels, boolean isOut, int fromNode, int endNode) {
+            this.start = start;
+            this.nbrs = nbrs;
+            this.labels = labels;
+            this.isOut = isOut;
+            this.endNode = endNode;
+            this.v = fromNode;
+            this.k = start[fromNode] - 1;
+        }
+
+        @Override
+        public boolean next() {
+            k++;
+            while (v < endNode && k >= start[v + 1]) {
+                v++;
+            }
+            return v < endNode;
+        }
+
+        @Override
+        public int src() {
+            return isOut ? v : nbrs[k];
+        }
+
+        @Override
+        public int dst() {
+            return isOut ? nbrs[k] : v;
+        }
+
+        @Override
+        public int label() {
+            return labels[k];
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package edu.wsu.eecs.gfc.core;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A frontier: a candidate edge to extend a pattern P with.
+ * <p>
+ * A frontier is identified by the pattern node ids of its two ends and the relation id of the new pattern edge.
+ * One of the two ends can be NEW_NODE, which means the frontier also adds a new pattern node
+ * (labeled by the relation) to P, i.e., an out-pattern frontier.
+ * Otherwise, the frontier connects two existing pattern nodes, i.e., an in-pattern frontier.
+ * <p>
+ * @author Peng Lin penglin03@gmail.com
+ */
+public class Frontier<VT, ET> {
+
+    public static final int NEW_NODE = -1;
+
+    private final int src;
+
+    private final int dst;
+
+    private final int rid;
+
+    private Frontier(int src, int dst, int rid) {
+        this.src = src;
+        this.dst = dst;
+        this.rid = rid;
+    }
+
+    @NotNull
+    public static <VT, ET> Frontier<VT, ET> createOutFrom(int src, Relation<VT, ET> r) {
+        return new Frontier<>(src, NEW_NODE, r.id());
+    }
+
+    @NotNull
+    public static <VT, ET> Frontier<VT, ET> createInTo(int dst, Relation<VT, ET> r) {
+        return new Frontier<>(NEW_NODE, dst, r.id());
+    }
+
+    @NotNull
+    public static <VT, ET> Frontier<VT, ET> createBetween(int src, int dst, Relation<VT, ET> r) {
+        return new Frontier<>(src, dst, r.id());
+    }
+
+    public int src() {
+        return src;
+    }
+
+    public int dst() {
+        return dst;
+    }
+
+    public int relationId() {
+        return rid;
+    }
+
+    public Relation<VT, ET> relation() {
+        return RelationRegistry.get(rid);
+    }
+
+    public boolean hasNewSrc() {
+        return src == NEW_NODE;
+    }
+
+    public boolean hasNewDst() {
+        return dst == NEW_NODE;
+    }
+
+    @Override
+    public String toString() {
+        return src + "\t" + dst + "\t" + relation();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        Frontier<?, ?> f = (Frontier<?, ?>) o;
+
+        return src == f.src && dst == f.dst && rid == f.rid;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = src;
+        result = 31 * result + dst;
+        result = 31 * result + rid;
+        return result;
+    }
+}
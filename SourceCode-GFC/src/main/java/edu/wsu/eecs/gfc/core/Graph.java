@@ -2,7 +2,9 @@ package edu.wsu.eecs.gfc.core;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.io.File;
 import java.util.*;
+import java.util.function.IntConsumer;
 
 /**
  * Graph - represent simple directed labeled graphs.
@@ -14,6 +16,10 @@ import java.util.*;
  * <p>
  * Note:
  * - Node IDs should be immutable, since they are used as keys of underlying hash maps of the graph.
+ * - The query methods return read-only views (or new collections). A graph is changed by one thread at a time, and
+ * may be read by many threads once it is published to them and no longer changed.
+ * - The adjacency is kept in hash maps of the nodes (FLAT), or in an AdjacencyStore of int ids in place of them
+ * (COMPRESSED or OFF_HEAP, see setAdjacencyFormat), whose edge objects are made when they are read.
  *
  * @author Peng lin penglin03@gmail.com
  */
@@ -23,15 +29,26 @@ public class Graph<VT, ET> {
 
     private int numOfEdges;
 
-    private Iterable<Node<VT>> nodeIter;
+    private final Iterable<Node<VT>> nodeIter;
 
-    private Iterable<Edge<VT, ET>> edgeIter;
+    private final Iterable<Edge<VT, ET>> edgeIter;
 
-    private Map<Object, Node<VT>> nodeIndex;
+    private final Map<Object, Node<VT>> nodeIndex;
 
-    private Map<Node<VT>, Map<Node<VT>, Edge<VT, ET>>> edgeIndex_o;
+    private final Map<Node<VT>, Map<Node<VT>, Edge<VT, ET>>> edgeIndex_o;
 
-    private Map<Node<VT>, Map<Node<VT>, Edge<VT, ET>>> edgeIndex_i;
+    private final Map<Node<VT>, Map<Node<VT>, Edge<VT, ET>>> edgeIndex_i;
+
+    // The adjacency in place of edgeIndex_o and edgeIndex_i (which are then empty) for COMPRESSED and OFF_HEAP, or
+    // null for FLAT.
+    private GraphStore<VT, ET> store = null;
+
+    // The int adjacency of FLAT, built on demand, and dropped on any change.
+    private volatile GraphSnapshot<VT, ET> snapshot;
+
+    private AdjacencyFormat adjacencyFormat = AdjacencyFormat.FLAT;
+
+    private File offHeapDir = null;
 
     private Graph() {
         numOfNodes = 0;
@@ -39,8 +56,8 @@ public class Graph<VT, ET> {
         nodeIndex = new HashMap<>();
         edgeIndex_o = new HashMap<>();
         edgeIndex_i = new HashMap<>();
-        nodeIter = () -> nodeIndex.values().stream().iterator();
-        edgeIter = () -> edgeIndex_o.values().stream().flatMap(e -> e.values().stream()).iterator();
+        nodeIter = Collections.unmodifiableCollection(nodeIndex.values());
+        edgeIter = () -> store != null ? store.edgeIterator() : new EdgeIterator();
     }
 
     @NotNull
@@ -65,7 +82,7 @@ public class Graph<VT, ET> {
     }
 
     public Collection<Node<VT>> getNodeCollection() {
-        return nodeIndex.values();
+        return Collections.unmodifiableCollection(nodeIndex.values());
     }
 
     public boolean hasNodeId(Object id) {
@@ -84,99 +101,98 @@ public class Graph<VT, ET> {
         if (!hasNode(v)) {
             throw new NoSuchElementException();
         }
-        return edgeIndex_o.get(v).size();
+        return store != null ? store.outDegree(v) : edgeIndex_o.get(v).size();
     }
 
     public int outDegree(Object id) {
         if (!hasNodeId(id)) {
             throw new NoSuchElementException();
         }
-        return edgeIndex_o.get(getNode(id)).size();
+        return outDegree(getNode(id));
     }
 
     public int inDegree(Node<VT> v) {
         if (!hasNode(v)) {
             throw new NoSuchElementException();
         }
-        return edgeIndex_i.get(v).size();
+        return store != null ? store.inDegree(v) : edgeIndex_i.get(v).size();
     }
 
     public int inDegree(Object id) {
         if (!hasNodeId(id)) {
             throw new NoSuchElementException();
         }
-        return edgeIndex_i.get(getNode(id)).size();
+        return inDegree(getNode(id));
     }
 
     public int degree(Node<VT> v) {
         if (!hasNode(v)) {
             throw new NoSuchElementException();
         }
-        return edgeIndex_o.get(v).size() + edgeIndex_i.get(v).size();
+        return outDegree(v) + inDegree(v);
     }
 
     public int degree(Object id) {
         if (!hasNodeId(id)) {
             throw new NoSuchElementException();
         }
-        Node<VT> v = getNode(id);
-        return edgeIndex_o.get(v).size() + edgeIndex_i.get(v).size();
+        return degree(getNode(id));
     }
 
     public Set<Node<VT>> nodesFrom(Node<VT> v) {
         if (!hasNode(v)) {
             throw new NoSuchElementException();
         }
-        return edgeIndex_o.get(v).keySet();
+        return store != null ? store.nodesFrom(v) : Collections.unmodifiableSet(edgeIndex_o.get(v).keySet());
     }
 
     public Set<Node<VT>> nodesFrom(Object id) {
         if (!hasNodeId(id)) {
             throw new NoSuchElementException();
         }
-        return edgeIndex_o.get(getNode(id)).keySet();
+        return nodesFrom(getNode(id));
     }
 
     public Set<Node<VT>> nodesTo(Node<VT> v) {
         if (!hasNode(v)) {
             throw new NoSuchElementException();
         }
-        return edgeIndex_i.get(v).keySet();
+        return store != null ? store.nodesTo(v) : Collections.unmodifiableSet(edgeIndex_i.get(v).keySet());
     }
 
     public Set<Node<VT>> nodesTo(Object id) {
         if (!hasNodeId(id)) {
             throw new NoSuchElementException();
         }
-        return edgeIndex_i.get(getNode(id)).keySet();
+        return nodesTo(getNode(id));
     }
 
     public Collection<Edge<VT, ET>> edgesFrom(Node<VT> v) {
         if (!hasNode(v)) {
             throw new NoSuchElementException();
         }
-        return edgeIndex_o.get(v).values();
+        return store != null ? store.edgesFrom(v) : Collections.unmodifiableCollection(edgeIndex_o.get(v).values());
     }
 
     public Collection<Edge<VT, ET>> edgesFrom(Object id) {
         if (!hasNodeId(id)) {
             throw new NoSuchElementException();
         }
-        return edgeIndex_o.get(getNode(id)).values();
+        return edgesFrom(getNode(id));
     }
 
     public Collection<Edge<VT, ET>> edgesTo(Node<VT> v) {
         if (!hasNode(v)) {
             throw new NoSuchElementException();
         }
-        return edgeIndex_i.get(v).values();
+        return store != null ? store.edgesTo(v) : Collections.unmodifiableCollection(edgeIndex_i.get(v).values());
     }
 
     public Collection<Edge<VT, ET>> edgesTo(Object id) {
         if (!hasNodeId(id)) {
             throw new NoSuchElementException();
         }
-        return edgeIndex_i.get(getNode(id)).values();
+        return edgesTo(getNode(id));
     }
 
     public Node<VT> createNode(Object id, VT label) {
@@ -185,8 +201,7 @@ public class Graph<VT, ET> {
         }
         Node<VT> v = Node.createLabeledNode(id, label);
         nodeIndex.put(id, v);
-        edgeIndex_o.put(v, new HashMap<>());
-        edgeIndex_i.put(v, new HashMap<>());
+        indexNode(v);
         numOfNodes++;
         return v;
     }
@@ -196,8 +211,7 @@ public class Graph<VT, ET> {
             return false;
         }
         nodeIndex.put(v.id(), v);
-        edgeIndex_o.put(v, new HashMap<>());
-        edgeIndex_i.put(v, new HashMap<>());
+        indexNode(v);
         numOfNodes++;
         return true;
     }
@@ -206,16 +220,22 @@ public class Graph<VT, ET> {
         if (!hasNode(v)) {
             return false;
         }
-        int degree = degree(v);
-        for (Node<VT> w : nodesFrom(v)) {
-            edgeIndex_i.get(w).remove(v);
-        }
-        for (Node<VT> w : nodesTo(v)) {
-            edgeIndex_o.get(w).remove(v);
+        // A self loop is both an out-edge and an in-edge of the node, but one edge of the graph.
+        int degree = degree(v) - (hasEdge(v, v) ? 1 : 0);
+        if (store != null) {
+            store.removeNode(v);
+        } else {
+            for (Node<VT> w : nodesFrom(v)) {
+                edgeIndex_i.get(w).remove(v);
+            }
+            for (Node<VT> w : nodesTo(v)) {
+                edgeIndex_o.get(w).remove(v);
+            }
+            edgeIndex_o.remove(v);
+            edgeIndex_i.remove(v);
         }
-        edgeIndex_o.remove(v);
-        edgeIndex_i.remove(v);
         nodeIndex.remove(v.id());
+        dropSnapshot();
         numOfNodes--;
         numOfEdges -= degree;
         return true;
@@ -225,20 +245,7 @@ public class Graph<VT, ET> {
         if (!hasNodeId(id)) {
             return false;
         }
-        Node<VT> v = getNode(id);
-        int degree = degree(v);
-        for (Node<VT> w : nodesFrom(v)) {
-            edgeIndex_i.get(w).remove(v);
-        }
-        for (Node<VT> w : nodesTo(v)) {
-            edgeIndex_o.get(w).remove(v);
-        }
-        edgeIndex_o.remove(v);
-        edgeIndex_i.remove(v);
-        nodeIndex.remove(v.id());
-        numOfNodes--;
-        numOfEdges -= degree;
-        return true;
+        return removeNode(getNode(id));
     }
 
     public Edge<VT, ET> getEdge(Node<VT> src, Node<VT> dst) {
@@ -248,7 +255,7 @@ public class Graph<VT, ET> {
         if (!hasNode(dst)) {
             throw new NoSuchElementException();
         }
-        return edgeIndex_o.get(src).get(dst);
+        return store != null ? store.getEdge(src, dst) : edgeIndex_o.get(src).get(dst);
     }
 
     public Edge<VT, ET> getEdge(Object srcId, Object dstId) {
@@ -258,23 +265,27 @@ public class Graph<VT, ET> {
         if (!hasNodeId(dstId)) {
             throw new NoSuchElementException();
         }
-        return edgeIndex_o.get(getNode(srcId)).get(getNode(dstId));
+        return getEdge(getNode(srcId), getNode(dstId));
     }
 
     public boolean hasEdge(Node<VT> src, Node<VT> dst) {
         if (!hasNode(src) || !hasNode(dst)) {
             return false;
         }
-        return edgeIndex_o.get(src).containsKey(dst);
+        return store != null ? store.getEdge(src, dst) != null : edgeIndex_o.get(src).containsKey(dst);
     }
 
     public boolean hasEdge(Object srcId, Object dstId) {
         if (!hasNodeId(srcId) || !hasNodeId(dstId)) {
             return false;
         }
-        return edgeIndex_o.get(getNode(srcId)).containsKey(getNode(dstId));
+        return hasEdge(getNode(srcId), getNode(dstId));
     }
 
+    /**
+     * @return true if the edge is in the graph: the very edge object for FLAT, or an equal edge for COMPRESSED and
+     * OFF_HEAP, whose edge objects are made when they are read.
+     */
     public boolean hasEdge(Edge<VT, ET> e) {
         if (e == null) {
             return false;
@@ -285,6 +296,9 @@ public class Graph<VT, ET> {
         if (!hasNode(e.dstNode())) {
             return false;
         }
+        if (store != null) {
+            return e.equals(store.getEdge(e.srcNode(), e.dstNode()));
+        }
         return e == edgeIndex_o.get(e.srcNode()).get(e.dstNode());
     }
 
@@ -295,15 +309,13 @@ public class Graph<VT, ET> {
         if (!hasNodeId(dstId)) {
             return null;
         }
-        if (edgeIndex_o.get(getNode(srcId)).get(getNode(dstId)) != null) {
-            return null;
-        }
         Node<VT> src = getNode(srcId);
         Node<VT> dst = getNode(dstId);
+        if (hasEdge(src, dst)) {
+            return null;
+        }
         Edge<VT, ET> e = Edge.createLabeledEdge(src, dst, label);
-        edgeIndex_o.get(src).put(dst, e);
-        edgeIndex_i.get(dst).put(src, e);
-        numOfEdges++;
+        indexEdge(e);
         return e;
     }
 
@@ -317,12 +329,10 @@ public class Graph<VT, ET> {
         if (!hasNode(e.dstNode())) {
             return false;
         }
-        if (edgeIndex_o.get(e.srcNode()).get(e.dstNode()) != null) {
+        if (hasEdge(e.srcNode(), e.dstNode())) {
             return false;
         }
-        edgeIndex_o.get(e.srcNode()).put(e.dstNode(), e);
-        edgeIndex_i.get(e.dstNode()).put(e.srcNode(), e);
-        numOfEdges++;
+        indexEdge(e);
         return true;
     }
 
@@ -330,11 +340,7 @@ public class Graph<VT, ET> {
         if (!hasEdge(src, dst)) {
             return null;
         }
-        Edge<VT, ET> e = getEdge(src, dst);
-        edgeIndex_o.get(src).remove(dst);
-        edgeIndex_i.get(dst).remove(src);
-        numOfEdges--;
-        return e;
+        return unindexEdge(src, dst);
     }
 
     public Edge<VT, ET> removeEdge(Object srcId, Object dstId) {
@@ -344,23 +350,51 @@ public class Graph<VT, ET> {
         if (!hasNodeId(dstId)) {
             throw new NoSuchElementException();
         }
-        Edge<VT, ET> e = edgeIndex_o.get(getNode(srcId)).get(getNode(dstId));
-        edgeIndex_o.get(e.srcNode()).remove(e.dstNode());
-        edgeIndex_i.get(e.dstNode()).remove(e.srcNode());
-        numOfEdges--;
-        return e;
+        return removeEdge(getNode(srcId), getNode(dstId));
     }
 
     public boolean removeEdge(Edge<VT, ET> e) {
         if (!hasEdge(e)) {
             return false;
         }
-        edgeIndex_o.get(e.srcNode()).remove(e.dstNode());
-        edgeIndex_i.get(e.dstNode()).remove(e.srcNode());
-        numOfEdges--;
+        unindexEdge(e.srcNode(), e.dstNode());
         return true;
     }
 
+    private void indexNode(Node<VT> v) {
+        if (store != null) {
+            store.addNode(v);
+        } else {
+            edgeIndex_o.put(v, new HashMap<>());
+            edgeIndex_i.put(v, new HashMap<>());
+            dropSnapshot();
+        }
+    }
+
+    private void indexEdge(Edge<VT, ET> e) {
+        if (store != null) {
+            store.addEdge(e);
+        } else {
+            edgeIndex_o.get(e.srcNode()).put(e.dstNode(), e);
+            edgeIndex_i.get(e.dstNode()).put(e.srcNode(), e);
+            dropSnapshot();
+        }
+        numOfEdges++;
+    }
+
+    private Edge<VT, ET> unindexEdge(Node<VT> src, Node<VT> dst) {
+        Edge<VT, ET> e;
+        if (store != null) {
+            e = store.removeEdge(src, dst);
+        } else {
+            e = edgeIndex_o.get(src).remove(dst);
+            edgeIndex_i.get(dst).remove(src);
+            dropSnapshot();
+        }
+        numOfEdges--;
+        return e;
+    }
+
     /**
      * Shallow copy this graph to a new graph. Note that there is no copy of each node or edge object, and it is
      * only to re-index the nodes and edges in the new graph.
@@ -379,6 +413,10 @@ public class Graph<VT, ET> {
     }
 
     public void clear() {
+        dropSnapshot();
+        if (store != null) {
+            store = new GraphStore<>(adjacencyFormat, offHeapDir, Collections.emptyList(), 0, Collections.emptyList(), 0);
+        }
         this.numOfNodes = 0;
         this.numOfEdges = 0;
         this.nodeIndex.clear();
@@ -409,39 +447,186 @@ public class Graph<VT, ET> {
     }
 
     public Set<Node<VT>> oneHopNeighbors(Node<VT> center) {
-        Set<Node<VT>> nbor = new HashSet<>(nodesFrom(center));
-        nbor.addAll(nodesTo(center));
-        return nbor;
+        Set<Node<VT>> nodesFrom = nodesFrom(center);
+        Set<Node<VT>> nodesTo = nodesTo(center);
+        if (nodesTo.isEmpty()) {
+            return nodesFrom;
+        }
+        if (nodesFrom.isEmpty()) {
+            return nodesTo;
+        }
+        Set<Node<VT>> nbor = new HashSet<>(2 * (nodesFrom.size() + nodesTo.size()));
+        nbor.addAll(nodesFrom);
+        nbor.addAll(nodesTo);
+        return Collections.unmodifiableSet(nbor);
     }
 
+    /**
+     * @return the nodes at i hops (undirected) from the center, for i = 0..radius, by a BFS over the int adjacency.
+     */
     public Map<Integer, Set<Node<VT>>> multipleHopNeighbors(Node<VT> center, int radius) {
-        Map<Integer, Set<Node<VT>>> nborMap = new HashMap<>();
-        for (int i = 0; i <= radius; i++) {
-            nborMap.put(i, new HashSet<>());
-        }
-        nborMap.get(0).add(center);
-
-        Deque<Node<VT>> queue = new ArrayDeque<>();
-        Set<Node<VT>> visitedNodes = new HashSet<>();
-        queue.addLast(center);
-        visitedNodes.add(center);
-        for (int i = 1; i <= radius; i++) {
-            if (queue.isEmpty()) {
-                break;
+        return hopNeighbors(center, radius, MultiSourceBFS.Direction.BOTH, 0);
+    }
+
+    /**
+     * @return the nodes at i hops from the center by the direction, for i = minHops..radius.
+     */
+    private Map<Integer, Set<Node<VT>>> hopNeighbors(Node<VT> center, int radius, MultiSourceBFS.Direction direction, int minHops) {
+        IndexedAdjacency<VT> s = indexed();
+        int c = s.indexOf(center);
+        if (c < 0) {
+            throw new NoSuchElementException();
+        }
+        MultiSourceBFS bfs = s.acquireBfs();
+        try {
+            bfs.run(new int[]{c}, radius, direction);
+
+            Map<Integer, Set<Node<VT>>> nborMap = new HashMap<>();
+            for (int i = minHops; i <= radius; i++) {
+                int size = i < bfs.numOfLayers() ? bfs.layerSize(i) : 0;
+                Set<Node<VT>> layer = new HashSet<>(2 * size);
+                for (int k = 0; k < size; k++) {
+                    layer.add(s.nodeAt(bfs.layerNode(i, k)));
+                }
+                nborMap.put(i, layer);
+            }
+            return nborMap;
+        } finally {
+            s.releaseBfs(bfs);
+        }
+    }
+
+    /**
+     * @return the adjacency of the graph over dense int node ids (see indexOf and nodeAt): for FLAT, a snapshot valid
+     * until the graph changes; for COMPRESSED and OFF_HEAP, the store of the graph, whose ids are kept by the changes.
+     */
+    public IntAdjacency adjacency() {
+        return store != null ? store : snapshot().store();
+    }
+
+    /**
+     * Set the storage of the adjacency, e.g., COMPRESSED to trade some CPU for a much smaller graph: the hash maps of
+     * the nodes are converted to a store of int ids in place of them (or back, for FLAT), so set it on an empty graph
+     * to load a big graph straight into the store. The ids of a store follow the order the nodes are added.
+     */
+    public synchronized void setAdjacencyFormat(AdjacencyFormat format) {
+        if (format == adjacencyFormat) {
+            return;
+        }
+        dropSnapshot();
+        if (format == AdjacencyFormat.FLAT) {
+            for (Node<VT> v : nodeIter) {
+                edgeIndex_o.put(v, new HashMap<>());
+                edgeIndex_i.put(v, new HashMap<>());
+            }
+            for (Iterator<Edge<VT, ET>> iter = store.edgeIterator(); iter.hasNext(); ) {
+                Edge<VT, ET> e = iter.next();
+                edgeIndex_o.get(e.srcNode()).put(e.dstNode(), e);
+                edgeIndex_i.get(e.dstNode()).put(e.srcNode(), e);
             }
-            int queueSize = queue.size();
-            for (int j = 0; j < queueSize; j++) {
-                Node<VT> v = queue.removeFirst();
-                for (Node<VT> w : oneHopNeighbors(v)) {
-                    if (!visitedNodes.contains(w)) {
-                        visitedNodes.add(w);
-                        queue.addLast(w);
-                        nborMap.get(i).add(w);
-                    }
+            this.store = null;
+        } else {
+            this.store = new GraphStore<>(format, offHeapDir, nodeIter, numOfNodes, edgeIter, numOfEdges);
+            edgeIndex_o.clear();
+            edgeIndex_i.clear();
+        }
+        this.adjacencyFormat = format;
+    }
+
+    public AdjacencyFormat getAdjacencyFormat() {
+        return adjacencyFormat;
+    }
+
+    /**
+     * Set the directory of the temporary files of the OFF_HEAP adjacency (by default, java.io.tmpdir), before
+     * setAdjacencyFormat.
+     */
+    public synchronized void setOffHeapDirectory(File dir) {
+        this.offHeapDir = dir;
+    }
+
+    /**
+     * @return the directory of the temporary files of the OFF_HEAP adjacency, or null for java.io.tmpdir.
+     */
+    public File getOffHeapDirectory() {
+        return offHeapDir;
+    }
+
+    /**
+     * Release the adjacency now: for FLAT, the snapshot, which the next call rebuilds; for COMPRESSED and OFF_HEAP, the
+     * store (see AdjacencyStore.close), after which the graph must no longer be read (an OFF_HEAP store throws an
+     * IllegalStateException).
+     */
+    public synchronized void closeAdjacency() {
+        dropSnapshot();
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    private void dropSnapshot() {
+        snapshot = null;
+    }
+
+    /**
+     * @return the int id of the node in adjacency(), or -1 if it is not in the graph.
+     */
+    public int indexOf(Node<VT> v) {
+        return indexed().indexOf(v);
+    }
+
+    /**
+     * @return the node of the int id, or null if it is removed (for COMPRESSED and OFF_HEAP only).
+     */
+    public Node<VT> nodeAt(int v) {
+        return indexed().nodeAt(v);
+    }
+
+    public int inDegreeAt(int v) {
+        if (store != null) {
+            Node<VT> node = store.nodeAt(v);
+            return node == null ? 0 : store.inDegree(node);
+        }
+        return snapshot().inSize(v);
+    }
+
+    /**
+     * Apply the action to the int id of every out-neighbor of the node of int id v, without any object per neighbor.
+     */
+    public void forEachOutNeighbor(int v, IntConsumer action) {
+        indexed().forEachOutNeighbor(v, action);
+    }
+
+    /**
+     * Apply the action to the int id of every in-neighbor of the node of int id v, without any object per neighbor.
+     */
+    public void forEachInNeighbor(int v, IntConsumer action) {
+        indexed().forEachInNeighbor(v, action);
+    }
+
+    /**
+     * @return the store of COMPRESSED and OFF_HEAP, or null for FLAT.
+     */
+    GraphStore<VT, ET> store() {
+        return store;
+    }
+
+    private IndexedAdjacency<VT> indexed() {
+        return store != null ? store : snapshot();
+    }
+
+    private GraphSnapshot<VT, ET> snapshot() {
+        GraphSnapshot<VT, ET> s = snapshot;
+        if (s == null) {
+            synchronized (this) {
+                s = snapshot;
+                if (s == null) {
+                    s = new GraphSnapshot<>(nodeIter, nodeIndex.size(), edgeIndex_o, edgeIndex_i);
+                    snapshot = s;
                 }
             }
         }
-        return nborMap;
+        return s;
     }
 
     // TODO: to delete.
@@ -449,31 +634,7 @@ public class Graph<VT, ET> {
         if (radius <= 0) {
             throw new RuntimeException("d should be at least 1.");
         }
-        Map<Integer, Set<Node<VT>>> nodeMap = new HashMap<>();
-        for (int i = 1; i <= radius; i++) {
-            nodeMap.put(i, new HashSet<>());
-        }
-        Deque<Node<VT>> queue = new ArrayDeque<>();
-        Set<Node<VT>> visitedNodes = new HashSet<>();
-        queue.addLast(center);
-        visitedNodes.add(center);
-        for (int i = 1; i <= radius; i++) {
-            if (queue.isEmpty()) {
-                break;
-            }
-            int toDequeue = queue.size();
-            for (int j = 0; j < toDequeue; j++) {
-                Node<VT> n = queue.removeFirst();
-                for (Node<VT> m : nodesFrom(n)) {
-                    if (!visitedNodes.contains(m)) {
-                        visitedNodes.add(m);
-                        queue.addLast(m);
-                        nodeMap.get(i).add(m);
-                    }
-                }
-            }
-        }
-        return nodeMap;
+        return hopNeighbors(center, radius, MultiSourceBFS.Direction.OUT, 1);
     }
 
     // TODO: to delete.
@@ -486,35 +647,40 @@ public class Graph<VT, ET> {
         if (radius <= 0) {
             throw new RuntimeException("d should be at least 1.");
         }
-        Map<Integer, Set<Node<VT>>> neighborMap = new HashMap<>();
-        for (int i = 1; i <= radius; i++) {
-            neighborMap.put(i, new HashSet<>());
-        }
-        Deque<Node<VT>> queue = new ArrayDeque<>();
-        Set<Node<VT>> visitedNodes = new HashSet<>();
-        queue.addLast(center);
-        visitedNodes.add(center);
-        for (int i = 1; i <= radius; i++) {
-            if (queue.isEmpty()) {
-                break;
-            }
-            int toDequeue = queue.size();
-            for (int j = 0; j < toDequeue; j++) {
-                Node<VT> n = queue.removeFirst();
-                for (Node<VT> m : nodesTo(n)) {
-                    if (!visitedNodes.contains(m)) {
-                        visitedNodes.add(m);
-                        queue.addLast(m);
-                        neighborMap.get(i).add(m);
-                    }
-                }
-            }
-        }
-        return neighborMap;
+        return hopNeighbors(center, radius, MultiSourceBFS.Direction.IN, 1);
     }
 
     // TODO: to delete.
     public Map<Integer, Set<Node<VT>>> nodesTo(Object centerId, int radius) {
         return nodesTo(getNode(centerId), radius);
     }
+
+    /**
+     * The edges, by the out-edges of the nodes, without a stream pipeline per iteration.
+     */
+    private class EdgeIterator implements Iterator<Edge<VT, ET>> {
+
+        private final Iterator<Map<Node<VT>, Edge<VT, ET>>> outIter = edgeIndex_o.values().iterator();
+
+        private Iterator<Edge<VT, ET>> edgeIter = Collections.emptyIterator();
+
+        @Override
+        public boolean hasNext() {
+            while (!edgeIter.hasNext()) {
+                if (!outIter.hasNext()) {
+                    return false;
+                }
+                edgeIter = outIter.next().values().iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public Edge<VT, ET> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return edgeIter.next();
+        }
+    }
 }
@@ -1,63 +1,124 @@
 package edu.wsu.eecs.gfc.core;
 
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.IntConsumer;
 
 /**
  * A very simple in-memory graph database.
  * <p>
  * Well, it is not a real database, but grasps the concepts of database.
  * It has frequent used indices that make sure fast access of the graph.
+ * <p>
+ * The edges of the relations (and of the edge labels) are indexed by a columnar store of int ids, partitioned by the
+ * relations (see RelationColumns), which serves the edges, the src and dst nodes and the neighbors of a relation as
+ * Set views, without any object per edge. The adjacency of the nodes (nodesFrom(), edgesFrom(), getEdge(), ...) is
+ * the one of the graph.
+ * <p>
+ * The indices are built by the constructor into final fields, so a database is safely published to the threads that
+ * read it, and all the query methods return read-only views (or sizes). A database is changed only by removeEdge(),
+ * addEdge() and buildSimLabelsMap(), one writer at a time. The similar labels are replaced as a whole, so they can be
+ * rebuilt while the database is read, but the edges should not be removed or added while it is read, e.g., the
+ * testing facts are removed before the rules are mined by many threads, and added back after.
+ * <p>
+ * Instead of removing them, the testing facts can be held out by a hold-out view (see holdOut()), which shares the
+ * indices of the database and excludes the held-out edges from the edges of the relations and from the adjacency
+ * (nodesFrom(), edgesFrom(), getEdge(), ...), so that many tasks can hold out their own facts of one database at once.
  *
  * @author Peng Lin penglin03@gmail.com
  */
-public class GraphDatabase<VT, ET> {
+public class GraphDatabase<VT, ET> implements AutoCloseable {
 
     private final Graph<VT, ET> graph;
 
-    private Map<VT, Set<Node<VT>>> indexOfNodeLabels;
+    private final Map<VT, Set<Node<VT>>> indexOfNodeLabels;
+
+    private final RelationColumns<VT, ET> relationColumns;
+
+    // The views of the edges of the edge labels, and of the relations, in the relation columns.
+    private final Map<ET, Set<Edge<VT, ET>>> indexOfEdgeLabels;
 
-    private Map<ET, Set<Edge<VT, ET>>> indexOfEdgeLabels;
+    private final Map<Relation<VT, ET>, Set<Edge<VT, ET>>> indexOfRelations_e;
 
-    private Map<Relation<VT, ET>, Set<Edge<VT, ET>>> indexOfRelations_e;
+    private final Map<VT, Set<Relation<VT, ET>>> indexOfsrcLabels;
 
-    private Map<Relation<VT, ET>, Map<Node<VT>, Set<Node<VT>>>> relationSrcDsts;
+    private final Map<VT, Set<Relation<VT, ET>>> indexOfdstLabels;
 
-    private Map<Relation<VT, ET>, Map<Node<VT>, Set<Node<VT>>>> relationDstSrcs;
+    private final Map<VT, Map<Integer, Set<VT>>> ontoIndex;
 
-    private Map<VT, Set<Relation<VT, ET>>> indexOfsrcLabels;
+    // Replaced as a whole by buildSimLabelsMap().
+    private volatile Map<VT, Set<VT>> labelSimLabels;
 
-    private Map<VT, Set<Relation<VT, ET>>> indexOfdstLabels;
+    // The held-out edges of a hold-out view (empty for a database), their numbers by relation id, and their nodes.
+    private final Set<Edge<VT, ET>> excluded;
 
-    private Map<VT, Map<Integer, Set<VT>>> ontoIndex;
+    private final Map<Integer, Integer> numOfExcluded;
 
-    private Map<VT, Set<VT>> labelSimLabels;
+    private final Set<Node<VT>> excludedNodes;
+
+    private final boolean isHoldOut;
+
+    // The int adjacency of the graph without the held-out edges (of a hold-out view), made for the current adjacency
+    // of the graph on demand.
+    private volatile HeldOutAdjacency heldOutAdjacency;
 
     public GraphDatabase(Graph<VT, ET> graph) {
-        this.graph = graph;
-        this.indexOfNodeLabels = null;
-        this.labelSimLabels = null;
-        this.indexOfEdgeLabels = null;
-        this.indexOfRelations_e = null;
-        this.relationSrcDsts = null;
-        this.relationDstSrcs = null;
-        this.indexOfsrcLabels = null;
-        this.indexOfdstLabels = null;
+        this(graph, null);
     }
 
     public GraphDatabase(Graph<VT, ET> graph, Map<VT, Map<Integer, Set<VT>>> ontoIndex) {
         this.graph = graph;
-        this.indexOfNodeLabels = null;
-        this.labelSimLabels = null;
-        this.indexOfEdgeLabels = null;
-        this.indexOfRelations_e = null;
-        this.relationSrcDsts = null;
-        this.relationDstSrcs = null;
-        this.indexOfsrcLabels = null;
-        this.indexOfdstLabels = null;
         this.ontoIndex = ontoIndex;
+        this.labelSimLabels = Collections.emptyMap();
+        this.indexOfNodeLabels = indexNodeLabels(graph);
+        this.relationColumns = new RelationColumns<>(graph);
+        this.indexOfRelations_e = indexRelationsByEdges(relationColumns);
+        this.indexOfEdgeLabels = indexEdgeLabels(relationColumns, indexOfRelations_e.keySet());
+        this.indexOfsrcLabels = buildLabelRelationsMap(indexOfRelations_e.keySet(), true);
+        this.indexOfdstLabels = buildLabelRelationsMap(indexOfRelations_e.keySet(), false);
+        this.excluded = Collections.emptySet();
+        this.numOfExcluded = Collections.emptyMap();
+        this.excludedNodes = Collections.emptySet();
+        this.isHoldOut = false;
+    }
+
+    private GraphDatabase(GraphDatabase<VT, ET> base, Collection<Edge<VT, ET>> heldOut) {
+        this.graph = base.graph;
+        this.ontoIndex = base.ontoIndex;
+        this.labelSimLabels = base.labelSimLabels;
+        this.indexOfNodeLabels = base.indexOfNodeLabels;
+        this.relationColumns = base.relationColumns;
+        this.indexOfRelations_e = base.indexOfRelations_e;
+        this.indexOfEdgeLabels = base.indexOfEdgeLabels;
+        this.indexOfsrcLabels = base.indexOfsrcLabels;
+        this.indexOfdstLabels = base.indexOfdstLabels;
+        this.excluded = new HashSet<>();
+        this.numOfExcluded = new HashMap<>();
+        this.excludedNodes = new HashSet<>();
+        this.isHoldOut = true;
+        for (Collection<Edge<VT, ET>> edges : Arrays.asList(base.excluded, heldOut)) {
+            for (Edge<VT, ET> e : edges) {
+                Set<Edge<VT, ET>> rEdges = indexOfRelations_e.get(RelationRegistry.<VT, ET>get(e.relationId()));
+                if (rEdges != null && rEdges.contains(e) && excluded.add(e)) {
+                    numOfExcluded.merge(e.relationId(), 1, Integer::sum);
+                    excludedNodes.add(e.srcNode());
+                    excludedNodes.add(e.dstNode());
+                }
+            }
+        }
     }
 
     public static <VT, ET> GraphDatabase<VT, ET> init(Graph<VT, ET> graph) {
@@ -66,212 +127,419 @@ public class GraphDatabase<VT, ET> {
 
     // TODO : remove
     public static <VT, ET> GraphDatabase<VT, ET> buildFromGraph(Graph<VT, ET> graph) {
-        return new GraphDatabase<>(graph).buildAllIndices();
+        return new GraphDatabase<>(graph);
     }
 
     // TODO : remove
     public static <VT, ET> GraphDatabase<VT, ET> buildFromGraph(Graph<VT, ET> graph, Map<VT, Map<Integer, Set<VT>>> ontoIndex) {
-        return new GraphDatabase<>(graph, ontoIndex).buildAllIndices();
+        return new GraphDatabase<>(graph, ontoIndex);
     }
 
-    private GraphDatabase<VT, ET> indexNodeLabels() {
-        indexOfNodeLabels = new HashMap<>();
+    private static <VT, ET> Map<VT, Set<Node<VT>>> indexNodeLabels(Graph<VT, ET> graph) {
+        Map<VT, Set<Node<VT>>> index = new HashMap<>();
         for (Node<VT> v : graph.nodeIter()) {
-            indexOfNodeLabels.putIfAbsent(v.label(), new HashSet<>());
-            indexOfNodeLabels.get(v.label()).add(v);
+            index.computeIfAbsent(v.label(), l -> new HashSet<>()).add(v);
         }
-        return this;
+        index.replaceAll((l, nodes) -> Collections.unmodifiableSet(nodes));
+        return index;
     }
 
-    public GraphDatabase<VT, ET> buildSimLabelsMap(int hops) {
-        labelSimLabels = new HashMap<>();
-        for (VT nodeLabel : ontoIndex.keySet()) {
-            labelSimLabels.put(nodeLabel, new HashSet<>());
-        }
+    /**
+     * Build the similar labels of every label of the ontology, within the hops. The readers see the labels of either
+     * the previous hops or the new ones.
+     */
+    public synchronized GraphDatabase<VT, ET> buildSimLabelsMap(int hops) {
+        Map<VT, Set<VT>> simLabels = new HashMap<>();
         for (VT nodeLabel : ontoIndex.keySet()) {
+            Set<VT> labels = new HashSet<>();
             for (int i = 0; i <= hops; i++) {
-                labelSimLabels.get(nodeLabel).addAll(ontoIndex.get(nodeLabel).get(i));
+                labels.addAll(ontoIndex.get(nodeLabel).get(i));
             }
+            simLabels.put(nodeLabel, Collections.unmodifiableSet(labels));
         }
-
+        labelSimLabels = simLabels;
         return this;
     }
 
-    private GraphDatabase<VT, ET> indexEdgeLabels() {
-        indexOfEdgeLabels = new HashMap<>();
-        for (Edge<VT, ET> e : graph.edgeIter()) {
-            indexOfEdgeLabels.putIfAbsent(e.label(), new HashSet<>());
-            indexOfEdgeLabels.get(e.label()).add(e);
+    private static <VT, ET> Map<ET, Set<Edge<VT, ET>>> indexEdgeLabels(RelationColumns<VT, ET> relationColumns,
+                                                                       Set<Relation<VT, ET>> relations) {
+        Map<ET, List<Integer>> labelRelations = new HashMap<>();
+        for (Relation<VT, ET> r : relations) {
+            labelRelations.computeIfAbsent(r.edgeLabel(), l -> new ArrayList<>()).add(r.id());
         }
-        return this;
+        Map<ET, Set<Edge<VT, ET>>> index = new HashMap<>();
+        for (Map.Entry<ET, List<Integer>> entry : labelRelations.entrySet()) {
+            index.put(entry.getKey(), relationColumns.edges(entry.getValue()));
+        }
+        return index;
     }
 
-    private GraphDatabase<VT, ET> indexRelationsByEdges() {
-        indexOfRelations_e = new HashMap<>();
-        for (Edge<VT, ET> e : graph.edgeIter()) {
-            Relation<VT, ET> r = Relation.fromEdge(e);
-            indexOfRelations_e.putIfAbsent(r, new HashSet<>());
-            indexOfRelations_e.get(r).add(e);
+    private static <VT, ET> Map<Relation<VT, ET>, Set<Edge<VT, ET>>> indexRelationsByEdges(RelationColumns<VT, ET> relationColumns) {
+        Map<Relation<VT, ET>, Set<Edge<VT, ET>>> index = new HashMap<>();
+        for (int rid = 0; rid < RelationRegistry.size(); rid++) {
+            if (relationColumns.numOfIndexedEdges(rid) > 0) {
+                index.put(RelationRegistry.get(rid), relationColumns.edges(rid));
+            }
         }
-        return this;
+        return index;
     }
 
-    private GraphDatabase<VT, ET> buildRelationNodesMap() {
-        if (indexOfRelations_e == null) {
-            indexRelationsByEdges();
+    /**
+     * @return the relations of every src label (or dst label, if not isSrc); every label of the relations is a key.
+     */
+    private static <VT, ET> Map<VT, Set<Relation<VT, ET>>> buildLabelRelationsMap(Set<Relation<VT, ET>> relations, boolean isSrc) {
+        Map<VT, Set<Relation<VT, ET>>> index = new HashMap<>();
+        for (Relation<VT, ET> r : relations) {
+            index.putIfAbsent(r.srcLabel(), new HashSet<>());
+            index.putIfAbsent(r.dstLabel(), new HashSet<>());
+            index.get(isSrc ? r.srcLabel() : r.dstLabel()).add(r);
         }
+        index.replaceAll((l, rs) -> Collections.unmodifiableSet(rs));
+        return index;
+    }
 
-        relationSrcDsts = new HashMap<>();
-        relationDstSrcs = new HashMap<>();
-        for (Relation<VT, ET> r : indexOfRelations_e.keySet()) {
-            relationSrcDsts.putIfAbsent(r, new HashMap<>());
-            relationDstSrcs.putIfAbsent(r, new HashMap<>());
-            for (Edge<VT, ET> e : indexOfRelations_e.get(r)) {
-                relationSrcDsts.get(r).putIfAbsent(e.srcNode(), new HashSet<>());
-                relationDstSrcs.get(r).putIfAbsent(e.dstNode(), new HashSet<>());
-                relationSrcDsts.get(r).get(e.srcNode()).add(e.dstNode());
-                relationDstSrcs.get(r).get(e.dstNode()).add(e.srcNode());
-            }
-        }
+    /**
+     * A hold-out view of this database without the edges: the view and the database share the indices, so the database
+     * must not change while the view is read. The view is read-only, and starts with the similar labels of this one.
+     */
+    public GraphDatabase<VT, ET> holdOut(Collection<Edge<VT, ET>> edges) {
+        return new GraphDatabase<>(this, edges);
+    }
 
-        return this;
+    public boolean isHoldOut() {
+        return isHoldOut;
     }
 
-    private GraphDatabase<VT, ET> buildSrcLabelRelationsMap() {
-        if (indexOfRelations_e == null) {
-            indexRelationsByEdges();
+    /**
+     * Release the int adjacency of the graph now (see Graph.closeAdjacency). A hold-out view shares the graph of its
+     * database, so closing the view does nothing.
+     */
+    @Override
+    public synchronized void close() {
+        if (!isHoldOut) {
+            graph.closeAdjacency();
         }
+    }
 
-        indexOfsrcLabels = new HashMap<>();
-        for (Relation<VT, ET> r : indexOfRelations_e.keySet()) {
-            indexOfsrcLabels.putIfAbsent(r.srcLabel(), new HashSet<>());
-            indexOfsrcLabels.putIfAbsent(r.dstLabel(), new HashSet<>());
-            indexOfsrcLabels.get(r.srcLabel()).add(r);
+    /**
+     * Remove an edge from the graph, and from the edges of its relation and edge label.
+     *
+     * @return true if the edge was in the graph.
+     */
+    public synchronized boolean removeEdge(Edge<VT, ET> e) {
+        if (isHoldOut) {
+            throw new UnsupportedOperationException("A hold-out view is read-only.");
         }
-        return this;
+        if (!graph.removeEdge(e)) {
+            return false;
+        }
+        if (indexOfRelations_e.containsKey(RelationRegistry.<VT, ET>get(e.relationId()))) {
+            relationColumns.remove(e);
+        }
+        return true;
     }
 
-    private GraphDatabase<VT, ET> buildDstLabelRelationsMap() {
-        if (indexOfRelations_e == null) {
-            indexRelationsByEdges();
+    /**
+     * Add an edge to the graph, and to the edges of its relation and edge label, if the relation is indexed.
+     *
+     * @return true if the edge was not in the graph.
+     */
+    public synchronized boolean addEdge(Edge<VT, ET> e) {
+        if (isHoldOut) {
+            throw new UnsupportedOperationException("A hold-out view is read-only.");
         }
-
-        indexOfdstLabels = new HashMap<>();
-        for (Relation<VT, ET> r : indexOfRelations_e.keySet()) {
-            indexOfdstLabels.putIfAbsent(r.srcLabel(), new HashSet<>());
-            indexOfdstLabels.putIfAbsent(r.dstLabel(), new HashSet<>());
-            indexOfdstLabels.get(r.dstLabel()).add(r);
+        if (!graph.addEdge(e)) {
+            return false;
         }
-        return this;
+        if (indexOfRelations_e.containsKey(RelationRegistry.<VT, ET>get(e.relationId()))) {
+            relationColumns.add(e);
+        }
+        return true;
     }
 
-    private GraphDatabase<VT, ET> buildAllIndices() {
-        return this.indexNodeLabels()
-                .indexEdgeLabels()
-                .indexRelationsByEdges()
-                .buildRelationNodesMap()
-                .buildSrcLabelRelationsMap()
-                .buildDstLabelRelationsMap();
+    /**
+     * Project the database to the part that the rules of r with at most maxSize edges can match around the examples.
+     * <p>
+     * The relations of the projection are those reachable from the labels of r (and their similar labels) by at most
+     * maxSize relations, and its nodes are those within maxSize hops of the nodes of the examples by the edges of these
+     * relations. The projection has the nodes and edges of this database, the same ontology and similar labels, and
+     * its own indices, so that the rules of r can be mined over a much smaller graph. Note that the match sets of the
+     * rules are then of the projection, so are the confidences and the hits of the facts (the facts to be checked by
+     * the rules should also be in the examples).
+     */
+    public GraphDatabase<VT, ET> project(Relation<VT, ET> r, Collection<Edge<VT, ET>> examples, int maxSize) {
+        BitSet relations = new BitSet(RelationRegistry.size());
+        Set<VT> visitedLabels = new HashSet<>();
+        Set<VT> labels = new HashSet<>();
+        labels.add(r.srcLabel());
+        labels.add(r.dstLabel());
+        for (int i = 0; i < maxSize && !labels.isEmpty(); i++) {
+            Set<VT> nextLabels = new HashSet<>();
+            for (VT l : labels) {
+                if (!visitedLabels.add(l)) {
+                    continue;
+                }
+                Set<VT> simLabels = new HashSet<>(getSimLabels(l));
+                simLabels.add(l);
+                for (VT lSim : simLabels) {
+                    for (Relation<VT, ET> rOut : getOutRelations(lSim)) {
+                        relations.set(rOut.id());
+                        nextLabels.add(rOut.dstLabel());
+                    }
+                    for (Relation<VT, ET> rIn : getInRelations(lSim)) {
+                        relations.set(rIn.id());
+                        nextLabels.add(rIn.srcLabel());
+                    }
+                }
+            }
+            nextLabels.removeAll(visitedLabels);
+            labels = nextLabels;
+        }
+
+        Graph<VT, ET> sub = Graph.createEmptyGraph();
+        List<Node<VT>> frontier = new ArrayList<>();
+        for (Edge<VT, ET> e : examples) {
+            for (Node<VT> v : Arrays.asList(e.srcNode(), e.dstNode())) {
+                if (graph.hasNode(v) && sub.addNode(v)) {
+                    frontier.add(v);
+                }
+            }
+        }
+        for (int i = 0; i < maxSize && !frontier.isEmpty(); i++) {
+            List<Node<VT>> nextFrontier = new ArrayList<>();
+            for (Node<VT> v : frontier) {
+                for (Edge<VT, ET> e : edgesFrom(v)) {
+                    if (relations.get(e.relationId()) && sub.addNode(e.dstNode())) {
+                        nextFrontier.add(e.dstNode());
+                    }
+                }
+                for (Edge<VT, ET> e : edgesTo(v)) {
+                    if (relations.get(e.relationId()) && sub.addNode(e.srcNode())) {
+                        nextFrontier.add(e.srcNode());
+                    }
+                }
+            }
+            frontier = nextFrontier;
+        }
+        for (Node<VT> v : sub.nodeIter()) {
+            for (Edge<VT, ET> e : edgesFrom(v)) {
+                if (relations.get(e.relationId()) && sub.hasNode(e.dstNode())) {
+                    sub.addEdge(e);
+                }
+            }
+        }
+
+        sub.setOffHeapDirectory(graph.getOffHeapDirectory());
+        sub.setAdjacencyFormat(graph.getAdjacencyFormat());
+        GraphDatabase<VT, ET> projection = new GraphDatabase<>(sub, ontoIndex);
+        projection.labelSimLabels = labelSimLabels;
+        return projection;
     }
 
+    /**
+     * @return the graph of the database, which has the held-out edges of a hold-out view.
+     */
     public Graph<VT, ET> getGraph() {
         return graph;
     }
 
+    public boolean hasNode(Node<VT> v) {
+        return graph.hasNode(v);
+    }
+
+    public Edge<VT, ET> getEdge(Node<VT> src, Node<VT> dst) {
+        Edge<VT, ET> e = graph.getEdge(src, dst);
+        return e == null || excluded.isEmpty() || !excluded.contains(e) ? e : null;
+    }
+
+    public Set<Node<VT>> nodesFrom(Node<VT> v) {
+        if (!excludedNodes.contains(v)) {
+            return graph.nodesFrom(v);
+        }
+        Set<Node<VT>> nodes = new HashSet<>();
+        for (Edge<VT, ET> e : edgesFrom(v)) {
+            nodes.add(e.dstNode());
+        }
+        return Collections.unmodifiableSet(nodes);
+    }
+
+    public Set<Node<VT>> nodesTo(Node<VT> v) {
+        if (!excludedNodes.contains(v)) {
+            return graph.nodesTo(v);
+        }
+        Set<Node<VT>> nodes = new HashSet<>();
+        for (Edge<VT, ET> e : edgesTo(v)) {
+            nodes.add(e.srcNode());
+        }
+        return Collections.unmodifiableSet(nodes);
+    }
+
+    public Collection<Edge<VT, ET>> edgesFrom(Node<VT> v) {
+        return excludedNodes.contains(v) ? withoutExcluded(graph.edgesFrom(v)) : graph.edgesFrom(v);
+    }
+
+    public Collection<Edge<VT, ET>> edgesTo(Node<VT> v) {
+        return excludedNodes.contains(v) ? withoutExcluded(graph.edgesTo(v)) : graph.edgesTo(v);
+    }
+
+    /**
+     * @return the nodes at i hops (undirected) from the center, for i = 0..radius, by a BFS over the int adjacency of
+     * the graph, without the held-out edges.
+     */
+    public Map<Integer, Set<Node<VT>>> multipleHopNeighbors(Node<VT> center, int radius) {
+        if (excluded.isEmpty()) {
+            return graph.multipleHopNeighbors(center, radius);
+        }
+        HeldOutAdjacency adj = heldOutAdjacency();
+        int c = graph.indexOf(center);
+        if (c < 0) {
+            throw new NoSuchElementException();
+        }
+        MultiSourceBFS bfs = adj.idleBfs.poll();
+        if (bfs == null) {
+            bfs = MultiSourceBFS.createInit(adj);
+        }
+        try {
+            bfs.run(new int[]{c}, radius, MultiSourceBFS.Direction.BOTH);
+
+            Map<Integer, Set<Node<VT>>> nborMap = new HashMap<>();
+            for (int i = 0; i <= radius; i++) {
+                int size = i < bfs.numOfLayers() ? bfs.layerSize(i) : 0;
+                Set<Node<VT>> layer = new HashSet<>(2 * size);
+                for (int k = 0; k < size; k++) {
+                    layer.add(graph.nodeAt(bfs.layerNode(i, k)));
+                }
+                nborMap.put(i, layer);
+            }
+            return nborMap;
+        } finally {
+            adj.idleBfs.add(bfs);
+        }
+    }
+
+    /**
+     * @return the int adjacency of the graph (see Graph.adjacency), without the held-out edges, over the int ids of
+     * indexOf(), valid until the database changes.
+     */
+    public IntAdjacency adjacency() {
+        return excluded.isEmpty() ? graph.adjacency() : heldOutAdjacency();
+    }
+
+    /**
+     * @return the int id of the node in adjacency(), or -1 if it is not in the graph.
+     */
+    public int indexOf(Node<VT> v) {
+        return graph.indexOf(v);
+    }
+
+    private HeldOutAdjacency heldOutAdjacency() {
+        IntAdjacency base = graph.adjacency();
+        HeldOutAdjacency adj = heldOutAdjacency;
+        if (adj == null || adj.base != base) {
+            adj = new HeldOutAdjacency(base);
+            heldOutAdjacency = adj;
+        }
+        return adj;
+    }
+
+    private Collection<Edge<VT, ET>> withoutExcluded(Collection<Edge<VT, ET>> edges) {
+        List<Edge<VT, ET>> kept = new ArrayList<>(edges.size());
+        for (Edge<VT, ET> e : edges) {
+            if (!excluded.contains(e)) {
+                kept.add(e);
+            }
+        }
+        return Collections.unmodifiableList(kept);
+    }
+
     public Set<VT> nodeLabels() {
-        return indexOfNodeLabels.keySet();
+        return Collections.unmodifiableSet(indexOfNodeLabels.keySet());
     }
 
     public Set<Node<VT>> getNodes(VT label) {
-        if (!indexOfNodeLabels.containsKey(label)) {
-            return new HashSet<>();
-        } else {
-            return indexOfNodeLabels.get(label);
-        }
+        return indexOfNodeLabels.getOrDefault(label, Collections.emptySet());
+    }
+
+    public int numOfNodes(VT label) {
+        return getNodes(label).size();
     }
 
     public Set<VT> getSimLabels(VT label) {
-        if (!labelSimLabels.containsKey(label)) {
-            return new HashSet<>();
-        } else {
-            return labelSimLabels.get(label);
-        }
+        return labelSimLabels.getOrDefault(label, Collections.emptySet());
     }
 
     public Set<ET> edgeLabels() {
-        return indexOfEdgeLabels.keySet();
+        return Collections.unmodifiableSet(indexOfEdgeLabels.keySet());
     }
 
     public Set<Relation<VT, ET>> relationSet() {
-        return indexOfRelations_e.keySet();
+        return Collections.unmodifiableSet(indexOfRelations_e.keySet());
     }
 
     public Set<Edge<VT, ET>> getEdges(ET edgeLabel) {
-        if (!indexOfEdgeLabels.containsKey(edgeLabel)) {
-            return new HashSet<>();
-        } else {
-            return indexOfEdgeLabels.get(edgeLabel);
+        Set<Edge<VT, ET>> edges = indexOfEdgeLabels.getOrDefault(edgeLabel, Collections.emptySet());
+        if (excluded.isEmpty()) {
+            return edges;
         }
+        int numOfHeldOut = 0;
+        for (Edge<VT, ET> e : excluded) {
+            if (edgeLabel.equals(e.label())) {
+                numOfHeldOut++;
+            }
+        }
+        return numOfHeldOut == 0 ? edges : new HeldOutEdgeSet(edges, edges.size() - numOfHeldOut);
     }
 
     public Set<Edge<VT, ET>> getEdges(Relation<VT, ET> r) {
-        if (!indexOfRelations_e.containsKey(r)) {
-            return new HashSet<>();
-        } else {
-            return indexOfRelations_e.get(r);
-        }
+        Set<Edge<VT, ET>> edges = indexOfRelations_e.getOrDefault(r, Collections.emptySet());
+        Integer numOfHeldOut = numOfExcluded.get(r.id());
+        return numOfHeldOut == null ? edges : new HeldOutEdgeSet(edges, edges.size() - numOfHeldOut);
     }
 
+    public int numOfEdges(Relation<VT, ET> r) {
+        return getEdges(r).size();
+    }
+
+    /**
+     * @return the src nodes of the relation, as indexed: the edges removed (or held out) since are not reflected.
+     */
     public Set<Node<VT>> getSrcNodes(Relation<VT, ET> r) {
-        if (!relationSrcDsts.containsKey(r)) {
-            return new HashSet<>();
+        if (!indexOfRelations_e.containsKey(r)) {
+            return Collections.emptySet();
         } else {
-            return relationSrcDsts.get(r).keySet();
+            return relationColumns.srcNodes(r.id());
         }
     }
 
+    /**
+     * @return the dst nodes of the relation, as indexed.
+     */
     public Set<Node<VT>> getDstNodes(Relation<VT, ET> r) {
-        if (!relationDstSrcs.containsKey(r)) {
-            return new HashSet<>();
+        if (!indexOfRelations_e.containsKey(r)) {
+            return Collections.emptySet();
         } else {
-            return relationDstSrcs.get(r).keySet();
+            return relationColumns.dstNodes(r.id());
         }
     }
 
     public Set<Node<VT>> outNeighbors(Node<VT> v, Relation<VT, ET> r) {
-        if (!relationSrcDsts.get(r).containsKey(v)) {
-            return new HashSet<>();
-        } else {
-            return relationSrcDsts.get(r).get(v);
-        }
+        return relationColumns.outNeighbors(v, r.id());
     }
 
     public Set<Node<VT>> inNeighbors(Node<VT> v, Relation<VT, ET> r) {
-        if (!relationDstSrcs.get(r).containsKey(v)) {
-            return new HashSet<>();
-        } else {
-            return relationDstSrcs.get(r).get(v);
-        }
+        return relationColumns.inNeighbors(v, r.id());
     }
 
     public Set<Relation<VT, ET>> getOutRelations(VT srcLabel) {
-        if (!indexOfsrcLabels.containsKey(srcLabel)) {
-            return new HashSet<>();
-        } else {
-            return indexOfsrcLabels.get(srcLabel);
-        }
+        return indexOfsrcLabels.getOrDefault(srcLabel, Collections.emptySet());
     }
 
     public Set<Relation<VT, ET>> getInRelations(VT dstLabel) {
-        if (!indexOfdstLabels.containsKey(dstLabel)) {
-            return new HashSet<>();
-        } else {
-            return indexOfdstLabels.get(dstLabel);
-        }
+        return indexOfdstLabels.getOrDefault(dstLabel, Collections.emptySet());
     }
 
     public Map<VT, Map<Integer, Set<VT>>> getOntoIndex() {
-        return ontoIndex;
+        return ontoIndex == null ? null : Collections.unmodifiableMap(ontoIndex);
     }
 
     public String toSizeString() {
@@ -282,4 +550,151 @@ public class GraphDatabase<VT, ET> {
                 "# |T| = " + relationSet().size();
     }
 
-}
\ No newline at end of file
+    /**
+     * The edges of a relation (or an edge label) without the held-out ones.
+     */
+    private class HeldOutEdgeSet extends AbstractSet<Edge<VT, ET>> {
+
+        private final Set<Edge<VT, ET>> edges;
+
+        private final int size;
+
+        private HeldOutEdgeSet(Set<Edge<VT, ET>> edges, int size) {
+            this.edges = edges;
+            this.size = size;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return edges.contains(o) && !excluded.contains(o);
+        }
+
+        @Override
+        public Iterator<Edge<VT, ET>> iterator() {
+            Iterator<Edge<VT, ET>> iter = edges.iterator();
+            return new Iterator<Edge<VT, ET>>() {
+                private Edge<VT, ET> next = advance();
+
+                private Edge<VT, ET> advance() {
+                    while (iter.hasNext()) {
+                        Edge<VT, ET> e = iter.next();
+                        if (!excluded.contains(e)) {
+                            return e;
+                        }
+                    }
+                    return null;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return next != null;
+                }
+
+                @Override
+                public Edge<VT, ET> next() {
+                    if (next == null) {
+                        throw new NoSuchElementException();
+                    }
+                    Edge<VT, ET> e = next;
+                    next = advance();
+                    return e;
+                }
+            };
+        }
+    }
+
+    /**
+     * The int adjacency of the graph without the held-out edges, whose slots are skipped (see IntAdjacency), with the
+     * idle BFS engines over it, lent per call.
+     */
+    private class HeldOutAdjacency implements IntAdjacency {
+
+        private final IntAdjacency base;
+
+        // The held-out edges as (src id, dst id) pairs, and their src and dst ids.
+        private final Set<Long> pairs = new HashSet<>();
+
+        private final BitSet srcs = new BitSet();
+
+        private final BitSet dsts = new BitSet();
+
+        private final Queue<MultiSourceBFS> idleBfs = new ConcurrentLinkedQueue<>();
+
+        private HeldOutAdjacency(IntAdjacency base) {
+            this.base = base;
+            for (Edge<VT, ET> e : excluded) {
+                int s = graph.indexOf(e.srcNode());
+                int d = graph.indexOf(e.dstNode());
+                pairs.add(pair(s, d));
+                srcs.set(s);
+                dsts.set(d);
+            }
+        }
+
+        private long pair(int s, int d) {
+            return ((long) s << 32) | d;
+        }
+
+        private boolean isHeldOut(int s, int d) {
+            return srcs.get(s) && dsts.get(d) && pairs.contains(pair(s, d));
+        }
+
+        @Override
+        public int nodeBound() {
+            return base.nodeBound();
+        }
+
+        @Override
+        public int outSize(int v) {
+            return base.outSize(v);
+        }
+
+        @Override
+        public int outNeighbor(int v, int k) {
+            int w = base.outNeighbor(v, k);
+            return w >= 0 && isHeldOut(v, w) ? -1 : w;
+        }
+
+        @Override
+        public int inSize(int v) {
+            return base.inSize(v);
+        }
+
+        @Override
+        public int inNeighbor(int v, int k) {
+            int w = base.inNeighbor(v, k);
+            return w >= 0 && isHeldOut(w, v) ? -1 : w;
+        }
+
+        @Override
+        public void forEachOutNeighbor(int v, IntConsumer action) {
+            if (!srcs.get(v)) {
+                base.forEachOutNeighbor(v, action);
+                return;
+            }
+            base.forEachOutNeighbor(v, w -> {
+                if (!isHeldOut(v, w)) {
+                    action.accept(w);
+                }
+            });
+        }
+
+        @Override
+        public void forEachInNeighbor(int v, IntConsumer action) {
+            if (!dsts.get(v)) {
+                base.forEachInNeighbor(v, action);
+                return;
+            }
+            base.forEachInNeighbor(v, w -> {
+                if (!isHeldOut(w, v)) {
+                    action.accept(w);
+                }
+            });
+        }
+    }
+}
@@ -9,113 +9,47 @@ import java.util.*;
 /**
  * Sampling graphs into different sizes for different impact factors.
  * <p>
+ * The graph is loaded once into a compact form (see SampleGraph), where the sizes of the relations and the degrees of
+ * the nodes are maintained as the edges are removed, so every size tier is derived from the previous one in a single
+ * pass, and saved as it is reached, without rebuilding the graph or its indexes.
+ * <p>
  * @author Peng Lin penglin03@gmail.com
  */
 public class GraphSampler {
 
     public static final String SEP = File.separator;
 
-    public static void sampleByEdges(String inputDir, String outputDir, int maxTripleFreq, int minTripleFreq, int skip) throws IOException {
-        File dir = new File(outputDir);
-        if (!dir.exists()) {
-            dir.mkdirs();
-        }
+    private static final double[] SIZE_ARR = {1.0, 0.8, 0.6, 0.4, 0.2};
 
-        Graph<String, String> graph = IO.loadStringGraph(inputDir + SEP + "gfc_str_nodes.tsv", inputDir + SEP + "gfc_str_edges.tsv");
-        GraphDatabase<String, String> dataGraph = GraphDatabase.buildFromGraph(graph);
-        System.out.println("OriginalSize:\n" + dataGraph.toSizeString());
+    private static final int NUM_OF_TIERS = 5;
 
-        // Remove the edges out of range.
-        for (Relation<String, String> r : dataGraph.relationSet()) {
-            int nr = dataGraph.getEdges(r).size();
-            if (nr < minTripleFreq || nr > maxTripleFreq) {
-                for (Edge<String, String> e : dataGraph.getEdges(r)) {
-                    graph.removeEdge(e);
-                }
-            }
-        }
-        dataGraph = GraphDatabase.buildFromGraph(graph);
-        System.out.println("SampledSize:\n" + dataGraph.toSizeString());
+    private static final int NUM_OF_DEFAULT_RELATIONS = 10;
 
+    /**
+     * Tiers t5..t1 keep 100%, 80%, ..., 20% of the edges, by removing the nodes of the highest degrees first.
+     */
+    public static void sampleByEdges(String inputDir, String outputDir, int maxTripleFreq, int minTripleFreq, int skip) throws IOException {
+        SampleGraph graph = load(inputDir, outputDir);
+        removeRelationsOutOfRange(graph, maxTripleFreq, minTripleFreq);
+        sampleRelations(graph, skip);
 
-        System.out.println("Sampling relations every skip = " + skip);
-        List<Relation<String, String>> relationList = new ArrayList<>(dataGraph.relationSet());
-        GraphDatabase<String, String> finalDataGraph = dataGraph;
-        relationList.sort(Comparator.comparingInt(r -> finalDataGraph.getEdges(r).size()));
-        for (int k = 0; k < relationList.size(); k = k + skip) {
-            for (int j = k + 1; j < k + skip && j < relationList.size(); j++) {
-                Relation<String, String> r = relationList.get(j);
-                for (Edge<String, String> e : dataGraph.getEdges(r)) {
-                    graph.removeEdge(e);
-                }
-            }
-        }
-        dataGraph = GraphDatabase.buildFromGraph(graph);
-        System.out.println("SampledSize:\n" + dataGraph.toSizeString());
-
-        List<Node<String>> nodeList = new ArrayList<>(graph.getNodeCollection());
-        nodeList.sort(Comparator.comparingInt(n -> -1 * graph.degree(n)));
-
+        int[] nodeList = graph.nodesByDegree();
         int fullSize = graph.numOfEdges();
-        double[] sizeArr = {1.0, 0.8, 0.6, 0.4, 0.2};
 
         List<Relation<String, String>> commonRelations = new ArrayList<>();
 
         int index = 0;
-        for (Node<String> v : nodeList) {
-            if (graph.numOfEdges() <= (int) (fullSize * sizeArr[index])) {
+        for (int v : nodeList) {
+            if (graph.numOfEdges() <= (int) (fullSize * SIZE_ARR[index])) {
                 System.out.println("Processing Graph_" + index);
-                for (Node<String> node : new HashSet<>(graph.getNodeCollection())) {
-                    if (graph.degree(node) == 0) {
-                        graph.removeNode(node);
-                    }
-                }
-                dataGraph = GraphDatabase.buildFromGraph(graph);
-                relationList = new ArrayList<>(dataGraph.relationSet());
-                GraphDatabase<String, String> tmpDataGraph = dataGraph;
-                relationList.sort(Comparator.comparingInt(r -> tmpDataGraph.getEdges(r).size()));
-
-                System.out.println("Graph_" + index + ":\n" + dataGraph.toSizeString());
-
-                BufferedWriter bw;
-
-                File iOutputDir = new File(outputDir + SEP, "t" + Integer.toString(5 - index));
-                if (!iOutputDir.exists()) {
-                    iOutputDir.mkdirs();
-                }
-
-                System.out.println("Saving " + index + "_relations.tsv...");
-                bw = new BufferedWriter(new FileWriter(outputDir + SEP + "t" + Integer.toString(5 - index) + SEP + "gfc_all_relations.tsv"));
-                for (Relation<String, String> r : relationList) {
-                    bw.write(r.toString() + "\t" + dataGraph.getEdges(r).size());
-                    bw.newLine();
-                }
-                bw.close();
-
-                if (index == 0) {
-                    commonRelations = new ArrayList<>(relationList);
-                } else {
-                    commonRelations.retainAll(relationList);
-                }
-
-                System.out.println("Saving " + index + "_nodes.tsv....");
-                bw = new BufferedWriter(new FileWriter(outputDir + SEP + "t" + Integer.toString(5 - index) + SEP + "gfc_str_nodes.tsv"));
-                for (Node<String> n : graph.nodeIter()) {
-                    bw.write(n.toString());
-                    bw.newLine();
-                }
-                bw.close();
-
-                System.out.println("Saving " + index + "_edges.tsv....");
-                bw = new BufferedWriter(new FileWriter(outputDir + SEP + "t" + Integer.toString(5 - index) + SEP + "gfc_str_edges.tsv"));
-                for (Edge<String, String> e : graph.edgeIter()) {
-                    bw.write(e.srcId() + "\t" + e.dstId() + "\t" + e.label());
-                    bw.newLine();
-                }
-                bw.close();
+                graph.removeIsolatedNodes();
+                List<Relation<String, String>> relationList = graph.relationsByCount();
+                System.out.println("Graph_" + index + ":\n" + graph.toSizeString());
+                saveTier(graph, outputDir, NUM_OF_TIERS - index, relationList);
+                retainCommonRelations(commonRelations, relationList, index == 0);
 
                 index++;
-                if (index >= sizeArr.length) {
+                if (index >= SIZE_ARR.length) {
                     break;
                 }
             }
@@ -123,771 +57,369 @@ public class GraphSampler {
             graph.removeNode(v);
         }
 
-        System.out.println("Saving common_relations.tsv....");
-        BufferedWriter bw = new BufferedWriter(new FileWriter(outputDir + SEP + "common_relations.tsv"));
-        for (Relation<String, String> r : commonRelations) {
-            bw.write(r.toString());
-            bw.newLine();
-        }
-        bw.close();
-
-        System.out.println("Saving default input relations....");
-        for (int gIndex = 0; gIndex < 5; gIndex++) {
-            bw = new BufferedWriter(new FileWriter(outputDir + SEP + "t" + Integer.toString(5 - gIndex) + SEP + "gfc_input_relations.tsv"));
-            for (int k = 0; k < 10 && k < commonRelations.size(); k++) {
-                bw.write(commonRelations.get(k).toString());
-                bw.newLine();
-            }
-            bw.close();
-        }
+        saveCommonRelations(outputDir, commonRelations);
+        saveInputRelations(outputDir, NUM_OF_TIERS, defaultRelations(commonRelations));
     }
 
+    /**
+     * Tier t(i - 1) removes 1/i of the edges of every relation of tier t(i).
+     */
     public static void sampleByEdges2(String inputDir, String outputDir, int maxTripleFreq, int minTripleFreq, int skip) throws IOException {
-        File dir = new File(outputDir);
-        if (!dir.exists()) {
-            dir.mkdirs();
-        }
-
-        Graph<String, String> graph = IO.loadStringGraph(inputDir + SEP + "gfc_str_nodes.tsv", inputDir + SEP + "gfc_str_edges.tsv");
-        GraphDatabase<String, String> dataGraph = GraphDatabase.buildFromGraph(graph);
-        System.out.println("OriginalSize:\n" + dataGraph.toSizeString());
-
-        // Remove the edges out of range.
-        for (Relation<String, String> r : dataGraph.relationSet()) {
-            int nr = dataGraph.getEdges(r).size();
-            if (nr < minTripleFreq || nr > maxTripleFreq) {
-                for (Edge<String, String> e : dataGraph.getEdges(r)) {
-                    graph.removeEdge(e);
-                }
-            }
-        }
-        dataGraph = GraphDatabase.buildFromGraph(graph);
-        System.out.println("SampledSize:\n" + dataGraph.toSizeString());
-
-
-        System.out.println("Sampling relations every skip = " + skip);
-        List<Relation<String, String>> relationList = new ArrayList<>(dataGraph.relationSet());
-        GraphDatabase<String, String> finalDataGraph = dataGraph;
-        relationList.sort(Comparator.comparingInt(r -> finalDataGraph.getEdges(r).size()));
-        for (int k = 0; k < relationList.size(); k = k + skip) {
-            for (int j = k + 1; j < k + skip && j < relationList.size(); j++) {
-                Relation<String, String> r = relationList.get(j);
-                for (Edge<String, String> e : dataGraph.getEdges(r)) {
-                    graph.removeEdge(e);
-                }
-            }
-        }
-        dataGraph = GraphDatabase.buildFromGraph(graph);
-        System.out.println("SampledSize:\n" + dataGraph.toSizeString());
+        SampleGraph graph = load(inputDir, outputDir);
+        removeRelationsOutOfRange(graph, maxTripleFreq, minTripleFreq);
+        sampleRelations(graph, skip);
 
         List<Relation<String, String>> commonRelations = new ArrayList<>();
 
-
-        for (int index = 5; index >= 1; index--) {
+        for (int index = NUM_OF_TIERS; index >= 1; index--) {
             System.out.println("Saving graph: " + index);
-            relationList = new ArrayList<>(dataGraph.relationSet());
-            GraphDatabase<String, String> tmpDataGraph = dataGraph;
-            relationList.sort(Comparator.comparingInt(r -> tmpDataGraph.getEdges(r).size()));
-
-            System.out.println("Graph_" + index + ":\n" + dataGraph.toSizeString());
-            File iOutputDir = new File(outputDir + SEP, "t" + index);
-            if (!iOutputDir.exists()) {
-                iOutputDir.mkdirs();
-            }
-
-            BufferedWriter bw;
-
-            System.out.println("Saving " + index + "_relations.tsv...");
-            bw = new BufferedWriter(new FileWriter(outputDir + SEP + "t" + index + SEP + "gfc_all_relations.tsv"));
-            for (Relation<String, String> r : relationList) {
-                bw.write(r.toString() + "\t" + dataGraph.getEdges(r).size());
-                bw.newLine();
-            }
-            bw.close();
-
-            if (index == 5) {
-                commonRelations = new ArrayList<>(relationList);
-            } else {
-                commonRelations.retainAll(relationList);
-            }
-
-            System.out.println("Saving " + index + "_nodes.tsv....");
-            bw = new BufferedWriter(new FileWriter(outputDir + SEP + "t" + index + SEP + "gfc_str_nodes.tsv"));
-            for (Node<String> n : graph.nodeIter()) {
-                bw.write(n.toString());
-                bw.newLine();
-            }
-            bw.close();
-
-            System.out.println("Saving " + index + "_edges.tsv....");
-            bw = new BufferedWriter(new FileWriter(outputDir + SEP + "t" + index + SEP + "gfc_str_edges.tsv"));
-            for (Edge<String, String> e : graph.edgeIter()) {
-                bw.write(e.srcId() + "\t" + e.dstId() + "\t" + e.label());
-                bw.newLine();
-            }
-            bw.close();
+            List<Relation<String, String>> relationList = graph.relationsByCount();
+            System.out.println("Graph_" + index + ":\n" + graph.toSizeString());
+            saveTier(graph, outputDir, index, relationList);
+            retainCommonRelations(commonRelations, relationList, index == NUM_OF_TIERS);
 
             if (index == 1) {
                 break;
-            } else {
-                for (Relation<String, String> r : dataGraph.relationSet()) {
-                    int n = dataGraph.getEdges(r).size() / index;
-                    int cnt = 0;
-                    for (Edge<String, String> e : dataGraph.getEdges(r)) {
-                        if (cnt >= n) {
-                            break;
-                        } else {
-                            graph.removeEdge(e);
-                            cnt++;
-                        }
-                    }
-                }
-                for (Node<String> n : new HashSet<>(graph.getNodeCollection())) {
-                    if (graph.degree(n) == 0) {
-                        graph.removeNode(n);
+            }
+            for (int r = 0; r < graph.numOfRelationIds(); r++) {
+                int n = graph.relationCount(r) / index;
+                int cnt = 0;
+                for (int k = 0; k < graph.relationSize(r) && cnt < n; k++) {
+                    if (graph.removeEdge(graph.relationEdge(r, k))) {
+                        cnt++;
                     }
                 }
-                dataGraph = GraphDatabase.buildFromGraph(graph);
             }
+            graph.removeIsolatedNodes();
         }
 
-        System.out.println("Saving common_relations.tsv....");
-        BufferedWriter bw = new BufferedWriter(new FileWriter(outputDir + SEP + "common_relations.tsv"));
-        for (Relation<String, String> r : commonRelations) {
-            bw.write(r.toString());
-            bw.newLine();
-        }
-        bw.close();
-
-        System.out.println("Saving default input relations....");
-        for (int gIndex = 0; gIndex < 5; gIndex++) {
-            bw = new BufferedWriter(new FileWriter(outputDir + SEP + "t" + Integer.toString(5 - gIndex) + SEP + "gfc_input_relations.tsv"));
-            for (int k = 0; k < 10 && k < commonRelations.size(); k++) {
-                bw.write(commonRelations.get(k).toString());
-                bw.newLine();
-            }
-            bw.close();
-        }
+        saveCommonRelations(outputDir, commonRelations);
+        saveInputRelations(outputDir, NUM_OF_TIERS, defaultRelations(commonRelations));
     }
 
+    /**
+     * Tier t(i + 1) adds the (i + 5k)-th relations (by sizes, k < step) to tier t(i).
+     */
     public static void sampleByRelations(String inputDir, String outputDir, int maxTripleFreq, int minTripleFreq, int step) throws IOException {
-        File dir = new File(outputDir);
-        if (!dir.exists()) {
-            dir.mkdirs();
-        }
-
-        Graph<String, String> graph = IO.loadStringGraph(inputDir + SEP + "gfc_str_nodes.tsv", inputDir + SEP + "gfc_str_edges.tsv");
-        GraphDatabase<String, String> dataGraph = GraphDatabase.buildFromGraph(graph);
-        System.out.println("OriginalSize:\n" + dataGraph.toSizeString());
-
-        // Remove the edges out of range.
-        for (Relation<String, String> r : dataGraph.relationSet()) {
-            int nr = dataGraph.getEdges(r).size();
-            if (nr < minTripleFreq || nr > maxTripleFreq) {
-                for (Edge<String, String> e : dataGraph.getEdges(r)) {
-                    graph.removeEdge(e);
-                }
-            }
-        }
-
-        dataGraph = GraphDatabase.buildFromGraph(graph);
-        System.out.println("SampledSize:\n" + dataGraph.toSizeString());
+        SampleGraph graph = load(inputDir, outputDir);
+        removeRelationsOutOfRange(graph, maxTripleFreq, minTripleFreq);
 
-        List<Relation<String, String>> totalRelationList = new ArrayList<>(dataGraph.relationSet());
-        GraphDatabase<String, String> tmpDataGraph1 = dataGraph;
-        totalRelationList.sort(Comparator.comparingInt(r -> tmpDataGraph1.getEdges(r).size()));
+        List<Relation<String, String>> totalRelationList = graph.relationsByCount();
 
-        Graph<String, String> outGraph = Graph.createEmptyGraph();
+        SampleGraph outGraph = graph.emptyView();
         List<Relation<String, String>> commonRelations = new ArrayList<>();
 
-        for (int gIndex = 0; gIndex < 5; gIndex++) {
-            for (int rIndex = gIndex; rIndex < 5 * step && rIndex < totalRelationList.size(); rIndex = rIndex + 5) {
-                Relation<String, String> r = totalRelationList.get(rIndex);
-                for (Edge<String, String> e : dataGraph.getEdges(r)) {
-                    outGraph.addNode(e.srcNode());
-                    outGraph.addNode(e.dstNode());
-                    outGraph.addEdge(e);
+        for (int gIndex = 0; gIndex < NUM_OF_TIERS; gIndex++) {
+            for (int rIndex = gIndex; rIndex < NUM_OF_TIERS * step && rIndex < totalRelationList.size(); rIndex = rIndex + NUM_OF_TIERS) {
+                int r = graph.relationId(totalRelationList.get(rIndex));
+                for (int k = 0; k < graph.relationSize(r); k++) {
+                    int e = graph.relationEdge(r, k);
+                    if (graph.hasEdge(e)) {
+                        outGraph.addEdge(e);
+                    }
                 }
             }
 
-            BufferedWriter bw;
-
-            GraphDatabase<String, String> outDataGraph = GraphDatabase.buildFromGraph(outGraph);
             System.out.println("Saving " + gIndex + "_relations.tsv...");
-            List<Relation<String, String>> relationList = new ArrayList<>(outDataGraph.relationSet());
-            relationList.sort(Comparator.comparingInt(r -> outDataGraph.getEdges(r).size()));
-
-            if (gIndex == 0) {
-                commonRelations = new ArrayList<>(relationList);
-            } else {
-                commonRelations.retainAll(relationList);
-            }
-
-            System.out.println("Graph_" + gIndex + ":\n" + outDataGraph.toSizeString());
-
-            File iOutputDir = new File(outputDir + SEP, "t" + Integer.toString(gIndex + 1));
-            if (!iOutputDir.exists()) {
-                iOutputDir.mkdirs();
-            }
-
-            bw = new BufferedWriter(new FileWriter(outputDir + SEP + "t" + Integer.toString(gIndex + 1) + SEP + "gfc_all_relations.tsv"));
-            for (Relation<String, String> r : relationList) {
-                bw.write(r.toString() + "\t" + outDataGraph.getEdges(r).size());
-                bw.newLine();
-            }
-            bw.close();
-
-            System.out.println("Saving " + gIndex + "/gfc_str_nodes.tsv....");
-            bw = new BufferedWriter(new FileWriter(outputDir + SEP + "t" + Integer.toString(gIndex + 1) + SEP + "gfc_str_nodes.tsv"));
-            for (Node<String> n : outGraph.nodeIter()) {
-                bw.write(n.toString());
-                bw.newLine();
-            }
-            bw.close();
-
-            System.out.println("Saving " + gIndex + "/gfc_str_edges.tsv....");
-            bw = new BufferedWriter(new FileWriter(outputDir + SEP + "t" + Integer.toString(gIndex + 1) + SEP + "gfc_str_edges.tsv"));
-            for (Edge<String, String> e : outGraph.edgeIter()) {
-                bw.write(e.srcId() + "\t" + e.dstId() + "\t" + e.label());
-                bw.newLine();
-            }
-            bw.close();
+            List<Relation<String, String>> relationList = outGraph.relationsByCount();
+            retainCommonRelations(commonRelations, relationList, gIndex == 0);
+            System.out.println("Graph_" + gIndex + ":\n" + outGraph.toSizeString());
+            saveTier(outGraph, outputDir, gIndex + 1, relationList);
         }
 
-        System.out.println("Saving common_relations.tsv....");
-        BufferedWriter bw = new BufferedWriter(new FileWriter(outputDir + SEP + "common_relations.tsv"));
-        for (Relation<String, String> r : commonRelations) {
-            bw.write(r.toString());
-            bw.newLine();
-        }
-        bw.close();
-
-        System.out.println("Saving default input relations....");
-        for (int gIndex = 0; gIndex < 5; gIndex++) {
-            bw = new BufferedWriter(new FileWriter(outputDir + SEP + "t" + Integer.toString(gIndex + 1) + SEP + "gfc_input_relations.tsv"));
-            for (int k = 0; k < 10 && k < commonRelations.size(); k++) {
-                bw.write(commonRelations.get(k).toString());
-                bw.newLine();
-            }
-            bw.close();
-        }
+        saveCommonRelations(outputDir, commonRelations);
+        saveInputRelations(outputDir, NUM_OF_TIERS, defaultRelations(commonRelations));
     }
 
+    /**
+     * Tier t(i - 1) removes up to 1/(i + offset) of the degree of every node of tier t(i), from the nodes of the highest
+     * degrees, where an edge is removed only if both of its nodes have not yet lost their shares.
+     */
     public static void sampleByDegree(String inputDir, String outputDir, int maxTripleFreq, int minTripleFreq, int skip, int offset) throws IOException {
-        File dir = new File(outputDir);
-        if (!dir.exists()) {
-            dir.mkdirs();
-        }
-
-        Graph<String, String> graph = IO.loadStringGraph(inputDir + SEP + "gfc_str_nodes.tsv", inputDir + SEP + "gfc_str_edges.tsv");
-        GraphDatabase<String, String> dataGraph = GraphDatabase.buildFromGraph(graph);
-        System.out.println("OriginalSize:\n" + dataGraph.toSizeString());
-
-        // Remove the edges out of range.
-        for (Relation<String, String> r : dataGraph.relationSet()) {
-            int nr = dataGraph.getEdges(r).size();
-            if (nr < minTripleFreq || nr > maxTripleFreq) {
-                for (Edge<String, String> e : dataGraph.getEdges(r)) {
-                    graph.removeEdge(e);
-                }
-            }
-        }
-        dataGraph = GraphDatabase.buildFromGraph(graph);
-        System.out.println("SampledSize:\n" + dataGraph.toSizeString());
-
-
-        // Sample relations every skip.
-        System.out.println("Sampling relations every skip = " + skip);
-        List<Relation<String, String>> relationList = new ArrayList<>(dataGraph.relationSet());
-        GraphDatabase<String, String> finalDataGraph = dataGraph;
-        relationList.sort(Comparator.comparingInt(r -> finalDataGraph.getEdges(r).size()));
-        for (int k = 0; k < relationList.size(); k = k + skip) {
-            for (int j = k + 1; j < k + skip && j < relationList.size(); j++) {
-                Relation<String, String> r = relationList.get(j);
-                for (Edge<String, String> e : dataGraph.getEdges(r)) {
-                    graph.removeEdge(e);
-                }
-            }
-        }
-        // Remove 0-degree nodes.
-        for (Node<String> n : new ArrayList<>(graph.getNodeCollection())) {
-            if (graph.degree(n) == 0) {
-                graph.removeNode(n);
-            }
-        }
-        dataGraph = GraphDatabase.buildFromGraph(graph);
-        System.out.println("SampledSize:\n" + dataGraph.toSizeString());
+        SampleGraph graph = load(inputDir, outputDir);
+        removeRelationsOutOfRange(graph, maxTripleFreq, minTripleFreq);
+        sampleRelations(graph, skip);
+        graph.removeIsolatedNodes();
+        System.out.println("SampledSize:\n" + graph.toSizeString());
 
         List<Relation<String, String>> commonRelations = new ArrayList<>();
 
         int theNumberOfNodes = graph.numOfNodes();
 
-        for (int index = 5; index >= 1; index--) {
+        for (int index = NUM_OF_TIERS; index >= 1; index--) {
             System.out.println("Saving graph: " + index);
-            relationList = new ArrayList<>(dataGraph.relationSet());
-            GraphDatabase<String, String> tmpDataGraph = dataGraph;
-            relationList.sort(Comparator.comparingInt(r -> tmpDataGraph.getEdges(r).size()));
-
-            System.out.println("Graph_" + index + ":\n" + dataGraph.toSizeString());
-
+            List<Relation<String, String>> relationList = graph.relationsByCount();
+            System.out.println("Graph_" + index + ":\n" + graph.toSizeString());
             System.out.println("Average Degree = " + (2 * graph.numOfEdges() / (double) theNumberOfNodes));
-
-            File iOutputDir = new File(outputDir + SEP, "t" + index);
-            if (!iOutputDir.exists()) {
-                iOutputDir.mkdirs();
-            }
-
-            BufferedWriter bw;
-
-            System.out.println("Saving " + index + "_relations.tsv...");
-            bw = new BufferedWriter(new FileWriter(outputDir + SEP + "t" + index + SEP + "gfc_all_relations.tsv"));
-            for (Relation<String, String> r : relationList) {
-                bw.write(r.toString() + "\t" + dataGraph.getEdges(r).size());
-                bw.newLine();
-            }
-            bw.close();
-
-            if (index == 5) {
-                commonRelations = new ArrayList<>(relationList);
-            } else {
-                commonRelations.retainAll(relationList);
-            }
-
-            System.out.println("Saving " + index + "_nodes.tsv....");
-            bw = new BufferedWriter(new FileWriter(outputDir + SEP + "t" + index + SEP + "gfc_str_nodes.tsv"));
-            for (Node<String> n : graph.nodeIter()) {
-                bw.write(n.toString());
-                bw.newLine();
-            }
-            bw.close();
-
-            System.out.println("Saving " + index + "_edges.tsv....");
-            bw = new BufferedWriter(new FileWriter(outputDir + SEP + "t" + index + SEP + "gfc_str_edges.tsv"));
-            for (Edge<String, String> e : graph.edgeIter()) {
-                bw.write(e.srcId() + "\t" + e.dstId() + "\t" + e.label());
-                bw.newLine();
-            }
-            bw.close();
+            saveTier(graph, outputDir, index, relationList);
+            retainCommonRelations(commonRelations, relationList, index == NUM_OF_TIERS);
 
             if (index == 1) {
                 break;
-            } else {
-                List<Node<String>> nodeList = new ArrayList<>(graph.getNodeCollection());
-                nodeList.sort(Comparator.comparingInt(n -> -1 * graph.degree(n)));
-
-                Map<Node<String>, Integer> degreeMap = new LinkedHashMap<>();
-                for (Node<String> n : nodeList) {
-                    degreeMap.put(n, graph.degree(n) / (index + offset));
-                }
-
-                for (Node<String> n : degreeMap.keySet()) {
-                    for (Edge<String, String> eOut : new ArrayList<>(graph.edgesFrom(n))) {
-                        int counter = degreeMap.get(n);
-                        if (counter == 0) {
-                            break;
-                        } else {
-                            int tmpCounter = degreeMap.get(eOut.dstNode());
-                            if (tmpCounter > 0) {
-                                degreeMap.put(eOut.dstNode(), tmpCounter - 1);
-                                degreeMap.put(n, counter - 1);
-                                graph.removeEdge(eOut);
-                            }
-                        }
-                    }
-                    for (Edge<String, String> eIn : new ArrayList<>(graph.edgesTo(n))) {
-                        int counter = degreeMap.get(n);
-                        if (counter == 0) {
-                            break;
-                        } else {
-                            int tmpCounter = degreeMap.get(eIn.srcNode());
-                            if (tmpCounter > 0) {
-                                degreeMap.put(eIn.srcNode(), tmpCounter - 1);
-                                degreeMap.put(n, counter - 1);
-                                graph.removeEdge(eIn);
-                            }
-                        }
-                    }
-                }
-
-                // Just cleanup isolated nodes for convenience. The actual number of nodes includes the isolated nodes.
-                // Thus, the |V| is the |V| of graph t5.
-                for (Node<String> n : new ArrayList<>(graph.getNodeCollection())) {
-                    if (graph.degree(n) == 0) {
-                        graph.removeNode(n);
-                    }
-                }
-
-                dataGraph = GraphDatabase.buildFromGraph(graph);
             }
+            removeByDegree(graph, index + offset, null);
+            // Just cleanup isolated nodes for convenience. The actual number of nodes includes the isolated nodes.
+            // Thus, the |V| is the |V| of graph t5.
+            graph.removeIsolatedNodes();
         }
 
-        System.out.println("Saving common_relations.tsv....");
-        BufferedWriter bw = new BufferedWriter(new FileWriter(outputDir + SEP + "common_relations.tsv"));
-        for (Relation<String, String> r : commonRelations) {
-            bw.write(r.toString());
-            bw.newLine();
-        }
-        bw.close();
-
-        System.out.println("Saving default input relations....");
-        for (int gIndex = 0; gIndex < 5; gIndex++) {
-            bw = new BufferedWriter(new FileWriter(outputDir + SEP + "t" + Integer.toString(5 - gIndex) + SEP + "gfc_input_relations.tsv"));
-            for (int k = 0; k < 10 && k < commonRelations.size(); k++) {
-                bw.write(commonRelations.get(k).toString());
-                bw.newLine();
-            }
-            bw.close();
-        }
+        saveCommonRelations(outputDir, commonRelations);
+        saveInputRelations(outputDir, NUM_OF_TIERS, defaultRelations(commonRelations));
     }
 
+    /**
+     * As sampleByDegree, with 1/(2 + offset) of the degrees, and the edges between a node of the input relations and
+     * another node are only removed from the former.
+     */
     public static void sampleByDegreeDiv2(String inputDir, String outputDir, int maxTripleFreq, int minTripleFreq, int skip, int offset) throws IOException {
-        File dir = new File(outputDir);
-        if (!dir.exists()) {
-            dir.mkdirs();
-        }
-
-        Graph<String, String> graph = IO.loadStringGraph(inputDir + SEP + "gfc_str_nodes.tsv", inputDir + SEP + "gfc_str_edges.tsv");
-        GraphDatabase<String, String> dataGraph = GraphDatabase.buildFromGraph(graph);
-        System.out.println("OriginalSize:\n" + dataGraph.toSizeString());
-
+        SampleGraph graph = load(inputDir, outputDir);
         List<Relation<String, String>> inputRelations = IO.loadRelationList(inputDir + SEP + "gfc_input_relations.tsv");
-
-        // Remove the edges out of range.
-        for (Relation<String, String> r : dataGraph.relationSet()) {
-            int nr = dataGraph.getEdges(r).size();
-            if (nr < minTripleFreq || nr > maxTripleFreq) {
-                for (Edge<String, String> e : dataGraph.getEdges(r)) {
-                    graph.removeEdge(e);
-                }
-            }
-        }
-        dataGraph = GraphDatabase.buildFromGraph(graph);
-        System.out.println("SampledSize:\n" + dataGraph.toSizeString());
-
-
-        // Sample relations every skip.
-        System.out.println("Sampling relations every skip = " + skip);
-        List<Relation<String, String>> relationList = new ArrayList<>(dataGraph.relationSet());
-        GraphDatabase<String, String> finalDataGraph = dataGraph;
-        relationList.sort(Comparator.comparingInt(r -> finalDataGraph.getEdges(r).size()));
-        for (int k = 0; k < relationList.size(); k = k + skip) {
-            for (int j = k + 1; j < k + skip && j < relationList.size(); j++) {
-                Relation<String, String> r = relationList.get(j);
-                for (Edge<String, String> e : dataGraph.getEdges(r)) {
-                    graph.removeEdge(e);
-                }
-            }
-        }
-        // Remove 0-degree nodes.
-        for (Node<String> n : new ArrayList<>(graph.getNodeCollection())) {
-            if (graph.degree(n) == 0) {
-                graph.removeNode(n);
-            }
-        }
-        dataGraph = GraphDatabase.buildFromGraph(graph);
-        System.out.println("SampledSize:\n" + dataGraph.toSizeString());
+        removeRelationsOutOfRange(graph, maxTripleFreq, minTripleFreq);
+        sampleRelations(graph, skip);
+        graph.removeIsolatedNodes();
+        System.out.println("SampledSize:\n" + graph.toSizeString());
 
         List<Relation<String, String>> commonRelations = new ArrayList<>();
 
-        for (int k = inputRelations.size() - 1; k >= 0; k--) {
-            Relation<String, String> r = inputRelations.get(k);
-            if (!dataGraph.relationSet().contains(r)) {
-                System.out.println("Relation: " + r.toString() + "is out of range....");
-                inputRelations.remove(r);
-            }
-        }
+        retainRelationsInRange(graph, inputRelations);
 
-        Set<Node<String>> xySet = new HashSet<>();
+        boolean[] xySet = new boolean[graph.nodeBound()];
         for (Relation<String, String> r : inputRelations) {
-            xySet.addAll(dataGraph.getSrcNodes(r));
-            xySet.addAll(dataGraph.getDstNodes(r));
+            int rIndex = graph.relationId(r);
+            for (int k = 0; k < graph.relationSize(rIndex); k++) {
+                int e = graph.relationEdge(rIndex, k);
+                if (graph.hasEdge(e)) {
+                    xySet[graph.srcOf(e)] = true;
+                    xySet[graph.dstOf(e)] = true;
+                }
+            }
         }
 
         int theNumberOfNodes = graph.numOfNodes();
 
-        for (int index = 5; index >= 1; index--) {
+        for (int index = NUM_OF_TIERS; index >= 1; index--) {
             System.out.println("Saving graph: " + index);
-            relationList = new ArrayList<>(dataGraph.relationSet());
-            GraphDatabase<String, String> tmpDataGraph = dataGraph;
-            relationList.sort(Comparator.comparingInt(r -> tmpDataGraph.getEdges(r).size()));
-
-            System.out.println("Graph_" + index + ":\n" + dataGraph.toSizeString());
-
+            List<Relation<String, String>> relationList = graph.relationsByCount();
+            System.out.println("Graph_" + index + ":\n" + graph.toSizeString());
             System.out.println("Average Degree = " + (2 * graph.numOfEdges() / (double) theNumberOfNodes));
+            saveTier(graph, outputDir, index, relationList);
+            retainCommonRelations(commonRelations, relationList, index == NUM_OF_TIERS);
 
-            File iOutputDir = new File(outputDir + SEP, "t" + index);
-            if (!iOutputDir.exists()) {
-                iOutputDir.mkdirs();
+            if (index == 1) {
+                break;
             }
+            removeByDegree(graph, 2 + offset, xySet);
+            // Just cleanup isolated nodes for convenience. The actual number of nodes includes the isolated nodes.
+            // Thus, the |V| is the |V| of graph t5.
+            graph.removeIsolatedNodes();
+        }
 
-            BufferedWriter bw;
-
-            System.out.println("Saving " + index + "_relations.tsv...");
-            bw = new BufferedWriter(new FileWriter(outputDir + SEP + "t" + index + SEP + "gfc_all_relations.tsv"));
-            for (Relation<String, String> r : relationList) {
-                bw.write(r.toString() + "\t" + dataGraph.getEdges(r).size());
-                bw.newLine();
-            }
-            bw.close();
+        saveCommonRelations(outputDir, commonRelations);
+        saveInputRelations(outputDir, NUM_OF_TIERS, inputRelations);
+    }
 
-            if (index == 5) {
-                commonRelations = new ArrayList<>(relationList);
-            } else {
-                commonRelations.retainAll(relationList);
-            }
+    /**
+     * Tiers t1..t3 are the 1..3-hop neighborhoods of the facts of the input relations.
+     */
+    public static void sampleByRadius(String inputDir, String outputDir, int maxTripleFreq, int minTripleFreq, int skip) throws IOException {
+        SampleGraph graph = load(inputDir, outputDir);
+        List<Relation<String, String>> inputRelations = IO.loadRelationList(inputDir + SEP + "gfc_input_relations.tsv");
+        removeRelationsOutOfRange(graph, maxTripleFreq, minTripleFreq);
+        sampleRelations(graph, skip);
 
-            System.out.println("Saving " + index + "_nodes.tsv....");
-            bw = new BufferedWriter(new FileWriter(outputDir + SEP + "t" + index + SEP + "gfc_str_nodes.tsv"));
-            for (Node<String> n : graph.nodeIter()) {
-                bw.write(n.toString());
-                bw.newLine();
-            }
-            bw.close();
+        List<Relation<String, String>> commonRelations = new ArrayList<>();
 
-            System.out.println("Saving " + index + "_edges.tsv....");
-            bw = new BufferedWriter(new FileWriter(outputDir + SEP + "t" + index + SEP + "gfc_str_edges.tsv"));
-            for (Edge<String, String> e : graph.edgeIter()) {
-                bw.write(e.srcId() + "\t" + e.dstId() + "\t" + e.label());
-                bw.newLine();
-            }
-            bw.close();
+        retainRelationsInRange(graph, inputRelations);
 
-            if (index == 1) {
-                break;
-            } else {
-                List<Node<String>> nodeList = new ArrayList<>(graph.getNodeCollection());
-
-                nodeList.sort(Comparator.comparingInt(n -> -1 * graph.degree(n)));
-//                nodeList.sort(Comparator.comparingInt(n -> +1 * graph.degree(n)));
-
-                Map<Node<String>, Integer> degreeMap = new LinkedHashMap<>();
-                for (Node<String> n : nodeList) {
-//                    if (!xySet.contains(n)) {
-                    degreeMap.put(n, graph.degree(n) / (2 + offset));
-//                    } else {
-//                        degreeMap.put(n, 0);
-//                    }
+        SampleGraph outGraph = graph.emptyView();
+        for (Relation<String, String> r : inputRelations) {
+            int rIndex = graph.relationId(r);
+            for (int k = 0; k < graph.relationSize(rIndex); k++) {
+                int e = graph.relationEdge(rIndex, k);
+                if (graph.hasEdge(e)) {
+                    outGraph.addEdge(e);
                 }
+            }
+        }
+        int numOfSources = 0;
+        int[] sources = new int[outGraph.numOfNodes()];
+        for (int v = 0; v < outGraph.nodeBound(); v++) {
+            if (outGraph.hasNode(v)) {
+                sources[numOfSources++] = v;
+            }
+        }
 
-                for (Node<String> n : degreeMap.keySet()) {
-                    for (Edge<String, String> eOut : new ArrayList<>(graph.edgesFrom(n))) {
-                        int counter = degreeMap.get(n);
-                        if (counter == 0) {
-                            break;
-                        } else {
-                            int tmpCounter = degreeMap.get(eOut.dstNode());
-                            if (!xySet.contains(eOut.dstNode())) {
-                                degreeMap.put(eOut.dstNode(), tmpCounter - 1);
-                                degreeMap.put(n, counter - 1);
-                                graph.removeEdge(eOut);
-                            } else if (xySet.contains(n)) {
-                                degreeMap.put(eOut.dstNode(), tmpCounter - 1);
-                                degreeMap.put(n, counter - 1);
-                                graph.removeEdge(eOut);
-                            }
-                        }
-                    }
-                    for (Edge<String, String> eIn : new ArrayList<>(graph.edgesTo(n))) {
-                        int counter = degreeMap.get(n);
-                        if (counter == 0) {
-                            break;
-                        } else {
-                            int tmpCounter = degreeMap.get(eIn.srcNode());
-                            if (!xySet.contains(eIn.srcNode())) {
-                                degreeMap.put(eIn.srcNode(), tmpCounter - 1);
-                                degreeMap.put(n, counter - 1);
-                                graph.removeEdge(eIn);
-                            } else if (xySet.contains(n)) {
-                                degreeMap.put(eIn.srcNode(), tmpCounter - 1);
-                                degreeMap.put(n, counter - 1);
-                                graph.removeEdge(eIn);
-                            }
-                        }
+        int maxRadius = 3;
+        // The layers of the BFS from the nodes of the input relations are the border nodes of the radii.
+        MultiSourceBFS bfs = MultiSourceBFS.createInit(graph);
+        bfs.run(sources, maxRadius, MultiSourceBFS.Direction.BOTH);
+        for (int radius = 1; radius <= maxRadius; radius++) {
+            System.out.println("radius = " + radius);
+            // Enlarge the outGraph by 1-hop
+            int layer = radius - 1;
+            for (int i = 0; layer < bfs.numOfLayers() && i < bfs.layerSize(layer); i++) {
+                int n = bfs.layerNode(layer, i);
+                for (int k = 0; k < graph.outSize(n); k++) {
+                    int e = graph.outEdge(n, k);
+                    if (graph.hasEdge(e)) {
+                        outGraph.addEdge(e);
                     }
                 }
-
-                // Just cleanup isolated nodes for convenience. The actual number of nodes includes the isolated nodes.
-                // Thus, the |V| is the |V| of graph t5.
-                for (Node<String> n : new ArrayList<>(graph.getNodeCollection())) {
-                    if (graph.degree(n) == 0) {
-                        graph.removeNode(n);
+                for (int k = 0; k < graph.inSize(n); k++) {
+                    int e = graph.inEdge(n, k);
+                    if (graph.hasEdge(e)) {
+                        outGraph.addEdge(e);
                     }
                 }
-
-                dataGraph = GraphDatabase.buildFromGraph(graph);
             }
-        }
 
-        System.out.println("Saving common_relations.tsv....");
-        BufferedWriter bw = new BufferedWriter(new FileWriter(outputDir + SEP + "common_relations.tsv"));
-        for (Relation<String, String> r : commonRelations) {
-            bw.write(r.toString());
-            bw.newLine();
+            System.out.println("Saving graph: " + radius);
+            List<Relation<String, String>> relationList = new ArrayList<>(inputRelations);
+            relationList.sort(Comparator.comparingInt(outGraph::relationCount));
+            System.out.println("Graph_" + radius + ":\n# |V| = " + outGraph.numOfNodes() + ", |E| = " + outGraph.numOfEdges());
+            saveTier(outGraph, outputDir, radius, relationList);
+            retainCommonRelations(commonRelations, relationList, radius == 1);
         }
-        bw.close();
 
-        System.out.println("Saving default input relations....");
-        for (int gIndex = 0; gIndex < 5; gIndex++) {
-            bw = new BufferedWriter(new FileWriter(outputDir + SEP + "t" + Integer.toString(5 - gIndex) + SEP + "gfc_input_relations.tsv"));
-            for (Relation<String, String> r : inputRelations) {
-                bw.write(r.toString());
-                bw.newLine();
-            }
-            bw.close();
-        }
+        saveCommonRelations(outputDir, commonRelations);
+        saveInputRelations(outputDir, maxRadius, inputRelations);
     }
 
-    public static void sampleByRadius(String inputDir, String outputDir, int maxTripleFreq, int minTripleFreq, int skip) throws IOException {
+    private static SampleGraph load(String inputDir, String outputDir) throws IOException {
         File dir = new File(outputDir);
         if (!dir.exists()) {
             dir.mkdirs();
         }
+        SampleGraph graph = SampleGraph.load(inputDir + SEP + "gfc_str_nodes.tsv", inputDir + SEP + "gfc_str_edges.tsv");
+        System.out.println("OriginalSize:\n" + graph.toSizeString());
+        return graph;
+    }
 
-        Graph<String, String> graph = IO.loadStringGraph(inputDir + SEP + "gfc_str_nodes.tsv", inputDir + SEP + "gfc_str_edges.tsv");
-        GraphDatabase<String, String> dataGraph = GraphDatabase.buildFromGraph(graph);
-        System.out.println("OriginalSize:\n" + dataGraph.toSizeString());
-
-        List<Relation<String, String>> inputRelations = IO.loadRelationList(inputDir + SEP + "gfc_input_relations.tsv");
-
-        // Remove the edges out of range.
-        for (Relation<String, String> r : dataGraph.relationSet()) {
-            int nr = dataGraph.getEdges(r).size();
+    /**
+     * Remove the edges of the relations whose sizes are out of range.
+     */
+    private static void removeRelationsOutOfRange(SampleGraph graph, int maxTripleFreq, int minTripleFreq) {
+        for (int r = 0; r < graph.numOfRelationIds(); r++) {
+            int nr = graph.relationCount(r);
             if (nr < minTripleFreq || nr > maxTripleFreq) {
-                for (Edge<String, String> e : dataGraph.getEdges(r)) {
-                    graph.removeEdge(e);
-                }
+                removeRelation(graph, r);
             }
         }
-        dataGraph = GraphDatabase.buildFromGraph(graph);
-        System.out.println("SampledSize:\n" + dataGraph.toSizeString());
+        System.out.println("SampledSize:\n" + graph.toSizeString());
+    }
 
+    /**
+     * Keep one of every skip relations, by their sizes.
+     */
+    private static void sampleRelations(SampleGraph graph, int skip) {
         System.out.println("Sampling relations every skip = " + skip);
-        List<Relation<String, String>> relationList = new ArrayList<>(dataGraph.relationSet());
-        GraphDatabase<String, String> finalDataGraph = dataGraph;
-        relationList.sort(Comparator.comparingInt(r -> finalDataGraph.getEdges(r).size()));
+        List<Relation<String, String>> relationList = graph.relationsByCount();
         for (int k = 0; k < relationList.size(); k = k + skip) {
             for (int j = k + 1; j < k + skip && j < relationList.size(); j++) {
-                Relation<String, String> r = relationList.get(j);
-                for (Edge<String, String> e : dataGraph.getEdges(r)) {
-                    graph.removeEdge(e);
-                }
+                removeRelation(graph, graph.relationId(relationList.get(j)));
             }
         }
-        dataGraph = GraphDatabase.buildFromGraph(graph);
-        System.out.println("SampledSize:\n" + dataGraph.toSizeString());
+        System.out.println("SampledSize:\n" + graph.toSizeString());
+    }
 
-        List<Relation<String, String>> commonRelations = new ArrayList<>();
+    private static void removeRelation(SampleGraph graph, int r) {
+        for (int k = 0; k < graph.relationSize(r); k++) {
+            graph.removeEdge(graph.relationEdge(r, k));
+        }
+    }
 
+    /**
+     * Remove the input relations without edges left.
+     */
+    private static void retainRelationsInRange(SampleGraph graph, List<Relation<String, String>> inputRelations) {
         for (int k = inputRelations.size() - 1; k >= 0; k--) {
             Relation<String, String> r = inputRelations.get(k);
-            if (!dataGraph.relationSet().contains(r)) {
+            if (graph.relationCount(r) == 0) {
                 System.out.println("Relation: " + r.toString() + "is out of range....");
-                inputRelations.remove(r);
-            }
-        }
-
-        Graph<String, String> outGraph = Graph.createEmptyGraph();
-        for (Relation<String, String> r : inputRelations) {
-            for (Node<String> vx : dataGraph.getSrcNodes(r)) {
-                outGraph.addNode(vx);
-            }
-            for (Node<String> vy : dataGraph.getDstNodes(r)) {
-                outGraph.addNode(vy);
-            }
-            for (Edge<String, String> e : dataGraph.getEdges(r)) {
-                outGraph.addEdge(e);
+                inputRelations.remove(k);
             }
         }
-        Set<Node<String>> newBorderNodes = new HashSet<>(outGraph.getNodeCollection());
+    }
 
-        for (int radius = 1; radius <= 3; radius++) {
-            System.out.println("radius = " + radius);
-            Set<Node<String>> borderNodes = new HashSet<>(newBorderNodes);
-            newBorderNodes.clear();
-            // Enlarge the outGraph by 1-hop
-            for (Node<String> n : borderNodes) {
-                for (Edge<String, String> eOut : graph.edgesFrom(n)) {
-                    Node<String> dst = eOut.dstNode();
-                    if (!outGraph.hasNode(dst)) {
-                        newBorderNodes.add(dst);
-                        outGraph.addNode(dst);
-                    }
-                    outGraph.addEdge(eOut);
-                }
-                for (Edge<String, String> eIn : graph.edgesTo(n)) {
-                    Node<String> src = eIn.srcNode();
-                    if (!outGraph.hasNode(src)) {
-                        newBorderNodes.add(src);
-                        outGraph.addNode(src);
-                    }
-                    outGraph.addEdge(eIn);
+    /**
+     * Visit the nodes by their degrees (descending), each removing its out-edges and then its in-edges, up to its share
+     * degree / div of the edges. Without xySet, an edge is only removed if the other node has its share left.
+     * With xySet, an edge is removed unless only the other node is in xySet, and the shares may go negative, in which
+     * case the node keeps removing its edges.
+     */
+    private static void removeByDegree(SampleGraph graph, int div, boolean[] xySet) {
+        int[] nodeList = graph.nodesByDegree();
+        int[] counters = new int[graph.nodeBound()];
+        for (int n : nodeList) {
+            counters[n] = graph.degree(n) / div;
+        }
+
+        for (int n : nodeList) {
+            for (int k = 0; k < graph.outSize(n) && counters[n] != 0; k++) {
+                int e = graph.outEdge(n, k);
+                if (graph.hasEdge(e)) {
+                    removeByCounters(graph, counters, e, n, graph.dstOf(e), xySet);
                 }
             }
-
-            GraphDatabase outGraphData = GraphDatabase.buildFromGraph(outGraph);
-
-            // Dump the graph file
-            System.out.println("Saving graph: " + radius);
-            relationList = new ArrayList<>(inputRelations);
-            GraphDatabase<String, String> tmpDataGraph = outGraphData;
-            relationList.sort(Comparator.comparingInt(r -> tmpDataGraph.getEdges(r).size()));
-
-            System.out.println("Graph_" + radius + ":\n" + outGraph.toSizeString());
-            File iOutputDir = new File(outputDir + SEP, "t" + radius);
-            if (!iOutputDir.exists()) {
-                iOutputDir.mkdirs();
+            for (int k = 0; k < graph.inSize(n) && counters[n] != 0; k++) {
+                int e = graph.inEdge(n, k);
+                if (graph.hasEdge(e)) {
+                    removeByCounters(graph, counters, e, n, graph.srcOf(e), xySet);
+                }
             }
+        }
+    }
 
-            BufferedWriter bw;
-
+    private static void removeByCounters(SampleGraph graph, int[] counters, int e, int n, int w, boolean[] xySet) {
+        int counter = counters[n];
+        int tmpCounter = counters[w];
+        boolean isRemoved = xySet == null ? tmpCounter > 0 : !xySet[w] || xySet[n];
+        if (isRemoved) {
+            // For a self-loop, both are the same counter, which loses one only.
+            counters[w] = tmpCounter - 1;
+            counters[n] = counter - 1;
+            graph.removeEdge(e);
+        }
+    }
 
-            System.out.println("Saving " + radius + "_relations.tsv...");
-            bw = new BufferedWriter(new FileWriter(outputDir + SEP + "t" + radius + SEP + "gfc_all_relations.tsv"));
-            for (Relation<String, String> r : relationList) {
-                bw.write(r.toString() + "\t" + outGraphData.getEdges(r).size());
-                bw.newLine();
-            }
-            bw.close();
+    static void retainCommonRelations(List<Relation<String, String>> commonRelations,
+                                              List<Relation<String, String>> relationList, boolean isFirst) {
+        if (isFirst) {
+            commonRelations.clear();
+            commonRelations.addAll(relationList);
+        } else {
+            commonRelations.retainAll(new HashSet<>(relationList));
+        }
+    }
 
-            if (radius == 1) {
-                commonRelations = new ArrayList<>(relationList);
-            } else {
-                commonRelations.retainAll(relationList);
-            }
+    static List<Relation<String, String>> defaultRelations(List<Relation<String, String>> commonRelations) {
+        return commonRelations.subList(0, Math.min(NUM_OF_DEFAULT_RELATIONS, commonRelations.size()));
+    }
 
-            System.out.println("Saving " + radius + "_nodes.tsv....");
-            bw = new BufferedWriter(new FileWriter(outputDir + SEP + "t" + radius + SEP + "gfc_str_nodes.tsv"));
-            for (Node<String> n : outGraph.nodeIter()) {
-                bw.write(n.toString());
-                bw.newLine();
-            }
-            bw.close();
+    private static void saveTier(SampleGraph graph, String outputDir, int tier, List<Relation<String, String>> relationList) throws IOException {
+        System.out.println("Saving t" + tier + "....");
+        graph.save(new File(outputDir + SEP, "t" + tier), relationList);
+    }
 
-            System.out.println("Saving " + radius + "_edges.tsv....");
-            bw = new BufferedWriter(new FileWriter(outputDir + SEP + "t" + radius + SEP + "gfc_str_edges.tsv"));
-            for (Edge<String, String> e : outGraph.edgeIter()) {
-                bw.write(e.srcId() + "\t" + e.dstId() + "\t" + e.label());
+    static void saveCommonRelations(String outputDir, List<Relation<String, String>> commonRelations) throws IOException {
+        System.out.println("Saving common_relations.tsv....");
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(outputDir + SEP + "common_relations.tsv"))) {
+            for (Relation<String, String> r : commonRelations) {
+                bw.write(r.toString());
                 bw.newLine();
             }
-            bw.close();
-        }
-
-        System.out.println("Saving common_relations.tsv....");
-        BufferedWriter bw = new BufferedWriter(new FileWriter(outputDir + SEP + "common_relations.tsv"));
-        for (Relation<String, String> r : commonRelations) {
-            bw.write(r.toString());
-            bw.newLine();
         }
-        bw.close();
+    }
 
+    static void saveInputRelations(String outputDir, int numOfTiers, List<Relation<String, String>> relations) throws IOException {
         System.out.println("Saving default input relations....");
-        for (int radius = 1; radius <= 3; radius++) {
-            bw = new BufferedWriter(new FileWriter(outputDir + SEP + "t" + Integer.toString(radius) + SEP + "gfc_input_relations.tsv"));
-            for (int k = 0; k < inputRelations.size(); k++) {
-                bw.write(inputRelations.get(k).toString());
-                bw.newLine();
+        for (int tier = 1; tier <= numOfTiers; tier++) {
+            try (BufferedWriter bw = new BufferedWriter(new FileWriter(outputDir + SEP + "t" + tier + SEP + "gfc_input_relations.tsv"))) {
+                for (Relation<String, String> r : relations) {
+                    bw.write(r.toString());
+                    bw.newLine();
+                }
             }
-            bw.close();
         }
     }
 }
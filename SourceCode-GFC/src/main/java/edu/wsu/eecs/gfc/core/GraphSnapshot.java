@@ -0,0 +1,133 @@
+package edu.wsu.eecs.gfc.core;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.IntConsumer;
+
+/**
+ * A read-only snapshot of the hash maps of a FLAT Graph, over dense int node ids, in a FlatAdjacency, where the label
+ * of an edge is its relation id (see RelationRegistry). It is built by the graph on demand, and dropped by the graph
+ * on any change.
+ * <p>
+ * @author Peng Lin penglin03@gmail.com
+ */
+final class GraphSnapshot<VT, ET> implements IndexedAdjacency<VT> {
+
+    private final Node<VT>[] nodes;
+
+    private final Map<Node<VT>, Integer> ids;
+
+    private final AdjacencyStore store;
+
+    // The idle BFS engines over the store: a call takes one (the engines are not thread-safe) and gives it back, so
+    // no thread keeps an engine, nor the store, after its call, and the engines are dropped with the snapshot.
+    private final Queue<MultiSourceBFS> idleBfs = new ConcurrentLinkedQueue<>();
+
+    // The neighbors and the labels of one list, to append to the store.
+    private int[] nbrBuf = new int[16];
+
+    private int[] labelBuf = new int[16];
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    GraphSnapshot(Iterable<Node<VT>> nodeIter, int numOfNodes,
+                  Map<Node<VT>, Map<Node<VT>, Edge<VT, ET>>> edgeIndex_o,
+                  Map<Node<VT>, Map<Node<VT>, Edge<VT, ET>>> edgeIndex_i) {
+        this.nodes = new Node[numOfNodes];
+        this.ids = new HashMap<>(2 * numOfNodes);
+        int n = 0;
+        int numOfEdges = 0;
+        for (Node<VT> v : nodeIter) {
+            nodes[n] = v;
+            ids.put(v, n);
+            n++;
+            numOfEdges += edgeIndex_o.get(v).size();
+        }
+        AdjacencyStore.Builder builder = AdjacencyStore.builder(AdjacencyFormat.FLAT, n, numOfEdges, null);
+        for (int v = 0; v < n; v++) {
+            int size = fill(edgeIndex_o.get(nodes[v]));
+            builder.appendOut(nbrBuf, labelBuf, size);
+            size = fill(edgeIndex_i.get(nodes[v]));
+            builder.appendIn(nbrBuf, labelBuf, size);
+        }
+        this.store = builder.build();
+        this.nbrBuf = null;
+        this.labelBuf = null;
+    }
+
+    private int fill(Map<Node<VT>, Edge<VT, ET>> nbrs) {
+        if (nbrBuf.length < nbrs.size()) {
+            nbrBuf = new int[Math.max(nbrs.size(), 2 * nbrBuf.length)];
+            labelBuf = new int[nbrBuf.length];
+        }
+        int k = 0;
+        for (Map.Entry<Node<VT>, Edge<VT, ET>> entry : nbrs.entrySet()) {
+            nbrBuf[k] = ids.get(entry.getKey());
+            labelBuf[k] = entry.getValue().relationId();
+            k++;
+        }
+        return k;
+    }
+
+    @Override
+    public int indexOf(Node<VT> v) {
+        Integer id = ids.get(v);
+        return id == null ? -1 : id;
+    }
+
+    @Override
+    public Node<VT> nodeAt(int v) {
+        return nodes[v];
+    }
+
+    AdjacencyStore store() {
+        return store;
+    }
+
+    @Override
+    public MultiSourceBFS acquireBfs() {
+        MultiSourceBFS bfs = idleBfs.poll();
+        return bfs != null ? bfs : MultiSourceBFS.createInit(store);
+    }
+
+    @Override
+    public void releaseBfs(MultiSourceBFS bfs) {
+        idleBfs.offer(bfs);
+    }
+
+    @Override
+    public int nodeBound() {
+        return nodes.length;
+    }
+
+    @Override
+    public int outSize(int v) {
+        return store.outSize(v);
+    }
+
+    @Override
+    public int outNeighbor(int v, int k) {
+        return store.outNeighbor(v, k);
+    }
+
+    @Override
+    public int inSize(int v) {
+        return store.inSize(v);
+    }
+
+    @Override
+    public int inNeighbor(int v, int k) {
+        return store.inNeighbor(v, k);
+    }
+
+    @Override
+    public void forEachOutNeighbor(int v, IntConsumer action) {
+        store.forEachOutNeighbor(v, action);
+    }
+
+    @Override
+    public void forEachInNeighbor(int v, IntConsumer action) {
+        store.forEachInNeighbor(v, action);
+    }
+}
@@ -0,0 +1,741 @@
+package edu.wsu.eecs.gfc.core;
+
+import java.io.File;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.IntConsumer;
+
+/**
+ * The adjacency of a Graph in an AdjacencyStore (COMPRESSED or OFF_HEAP, see Graph.setAdjacencyFormat), in place of
+ * the hash maps of the graph: the nodes have dense int ids, in the order they are added, and the edges are the slots
+ * of the store, labeled by their relation ids (see RelationRegistry), so that an edge object is made when it is read.
+ * <p>
+ * The store is built from all the edges at once, and the changes after are kept aside: a removed edge of the store is
+ * a tombstone over its out and in slots, and an added edge is in the hash maps of the added edges by its src and dst,
+ * until they are more than a quarter of the store (and than MIN_REBUILD), when the store is rebuilt with them, over
+ * the same ids. The int adjacency (see IntAdjacency) is the one of the store, with the removed slots skipped, and the
+ * added edges of a node after its slots.
+ * <p>
+ * Like the hash maps, a GraphStore is changed by one thread at a time, and may be read by many threads once it is no
+ * longer changed. The store replaced by a rebuild is not closed, but left to the GC, since an adjacency or a cursor
+ * got before may still read it.
+ * <p>
+ * @author Peng Lin penglin03@gmail.com
+ */
+final class GraphStore<VT, ET> implements IndexedAdjacency<VT> {
+
+    private static final int MIN_REBUILD = 1 << 16;
+
+    private final AdjacencyFormat format;
+
+    private final File dir;
+
+    // The nodes by id, null for a removed node.
+    private Node<VT>[] nodes;
+
+    private int numOfIds = 0;
+
+    private final Map<Node<VT>, Integer> ids = new HashMap<>();
+
+    private AdjacencyStore store;
+
+    // The first slots of the nodes of the store (plus the end), by direction, which the tombstones are indexed by.
+    private int[] outStart;
+
+    private int[] inStart;
+
+    private BitSet removedOut;
+
+    private BitSet removedIn;
+
+    private final Map<Node<VT>, Map<Node<VT>, Edge<VT, ET>>> addedOut = new HashMap<>();
+
+    private final Map<Node<VT>, Map<Node<VT>, Edge<VT, ET>>> addedIn = new HashMap<>();
+
+    private int numOfAdded = 0;
+
+    // The ids of the added neighbors of the nodes, by direction, made when read, and dropped on a change of the node.
+    private final Map<Node<VT>, int[]> addedOutIds = new ConcurrentHashMap<>();
+
+    private final Map<Node<VT>, int[]> addedInIds = new ConcurrentHashMap<>();
+
+    // The idle BFS engines over the adjacency (see GraphSnapshot), dropped on any change.
+    private final Queue<MultiSourceBFS> idleBfs = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Build a store of the nodes (with the ids in their order) and the edges.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    GraphStore(AdjacencyFormat format, File dir, Iterable<Node<VT>> nodeIter, int numOfNodes,
+               Iterable<Edge<VT, ET>> edgeIter, int numOfEdges) {
+        this.format = format;
+        this.dir = dir;
+        this.nodes = new Node[Math.max(16, numOfNodes)];
+        for (Node<VT> v : nodeIter) {
+            addNode(v);
+        }
+        int[] src = new int[numOfEdges];
+        int[] dst = new int[numOfEdges];
+        int[] rel = new int[numOfEdges];
+        int m = 0;
+        for (Edge<VT, ET> e : edgeIter) {
+            src[m] = ids.get(e.srcNode());
+            dst[m] = ids.get(e.dstNode());
+            rel[m] = e.relationId();
+            m++;
+        }
+        build(src, dst, rel, m);
+    }
+
+    /**
+     * Build the store of the edges (src[i], dst[i]) with the labels rel[i], for i < m, over the ids of the nodes.
+     */
+    private void build(int[] src, int[] dst, int[] rel, int m) {
+        int n = numOfIds;
+        AdjacencyStore.Builder builder = AdjacencyStore.builder(format, n, m, dir);
+        this.outStart = appendLists(builder, true, src, dst, rel, m, n);
+        this.inStart = appendLists(builder, false, dst, src, rel, m, n);
+        this.store = builder.build();
+        this.removedOut = new BitSet();
+        this.removedIn = new BitSet();
+    }
+
+    /**
+     * Append the lists of the nodes (the others of the edges of every key node, ascending) to the builder.
+     *
+     * @return the first slots of the lists, plus the end.
+     */
+    private static int[] appendLists(AdjacencyStore.Builder builder, boolean isOut,
+                                     int[] keys, int[] others, int[] rel, int m, int n) {
+        // By (key, other), by two stable counting sorts.
+        int[] order = countingSort(countingSort(null, others, m, n), keys, m, n);
+        int[] start = new int[n + 1];
+        for (int i = 0; i < m; i++) {
+            start[keys[i] + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            start[v + 1] += start[v];
+        }
+        int[] nbrBuf = new int[16];
+        int[] labelBuf = new int[16];
+        for (int v = 0; v < n; v++) {
+            int size = start[v + 1] - start[v];
+            if (nbrBuf.length < size) {
+                nbrBuf = new int[Math.max(size, 2 * nbrBuf.length)];
+                labelBuf = new int[nbrBuf.length];
+            }
+            for (int k = 0; k < size; k++) {
+                int i = order[start[v] + k];
+                nbrBuf[k] = others[i];
+                labelBuf[k] = rel[i];
+            }
+            if (isOut) {
+                builder.appendOut(nbrBuf, labelBuf, size);
+            } else {
+                builder.appendIn(nbrBuf, labelBuf, size);
+            }
+        }
+        return start;
+    }
+
+    /**
+     * @return the order (or 0..m-1, if null) stably sorted by the keys (in [0, bound)) of its items.
+     */
+    private static int[] countingSort(int[] order, int[] keys, int m, int bound) {
+        int[] start = new int[bound + 1];
+        for (int i = 0; i < m; i++) {
+            start[keys[i] + 1]++;
+        }
+        for (int b = 0; b < bound; b++) {
+            start[b + 1] += start[b];
+        }
+        int[] sorted = new int[m];
+        for (int j = 0; j < m; j++) {
+            int i = order == null ? j : order[j];
+            sorted[start[keys[i]]++] = i;
+        }
+        return sorted;
+    }
+
+    /**
+     * Rebuild the store with the added edges, and without the removed ones.
+     */
+    private void rebuild() {
+        int m = 0;
+        for (EdgeCursor c = edgeCursor(); c.next(); ) {
+            m++;
+        }
+        int[] src = new int[m];
+        int[] dst = new int[m];
+        int[] rel = new int[m];
+        int i = 0;
+        for (EdgeCursor c = edgeCursor(); c.next(); i++) {
+            src[i] = c.src();
+            dst[i] = c.dst();
+            rel[i] = c.label();
+        }
+        addedOut.clear();
+        addedIn.clear();
+        addedOutIds.clear();
+        addedInIds.clear();
+        numOfAdded = 0;
+        build(src, dst, rel, m);
+    }
+
+    @Override
+    public int indexOf(Node<VT> v) {
+        Integer id = ids.get(v);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @return the node of the id, or null if it is removed.
+     */
+    @Override
+    public Node<VT> nodeAt(int v) {
+        return nodes[v];
+    }
+
+    @Override
+    public MultiSourceBFS acquireBfs() {
+        MultiSourceBFS bfs = idleBfs.poll();
+        return bfs != null ? bfs : MultiSourceBFS.createInit(this);
+    }
+
+    @Override
+    public void releaseBfs(MultiSourceBFS bfs) {
+        idleBfs.offer(bfs);
+    }
+
+    void addNode(Node<VT> v) {
+        idleBfs.clear();
+        if (numOfIds == nodes.length) {
+            nodes = Arrays.copyOf(nodes, 2 * nodes.length);
+        }
+        nodes[numOfIds] = v;
+        ids.put(v, numOfIds);
+        numOfIds++;
+    }
+
+    /**
+     * Remove the node, with its edges.
+     */
+    void removeNode(Node<VT> v) {
+        int id = ids.get(v);
+        for (Node<VT> w : new ArrayList<>(nodesFrom(v))) {
+            removeEdge(v, w);
+        }
+        for (Node<VT> w : new ArrayList<>(nodesTo(v))) {
+            removeEdge(w, v);
+        }
+        nodes[id] = null;
+        ids.remove(v);
+    }
+
+    private boolean isStored(int v) {
+        return v < store.nodeBound();
+    }
+
+    /**
+     * @return the slot of w in the (sorted) out-neighbors of v in the store, or -1.
+     */
+    private int outSlot(int v, int w) {
+        if (!isStored(v) || !isStored(w)) {
+            return -1;
+        }
+        int lo = 0;
+        int hi = store.outSize(v) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int x = store.outNeighbor(v, mid);
+            if (x < w) {
+                lo = mid + 1;
+            } else if (x > w) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int inSlot(int v, int w) {
+        int lo = 0;
+        int hi = store.inSize(v) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int x = store.inNeighbor(v, mid);
+            if (x < w) {
+                lo = mid + 1;
+            } else if (x > w) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private Edge<VT, ET> edge(int s, int d, int rid) {
+        return Edge.createRelationEdge(nodes[s], nodes[d], RelationRegistry.<VT, ET>get(rid).edgeLabel(), rid);
+    }
+
+    Edge<VT, ET> getEdge(Node<VT> src, Node<VT> dst) {
+        int s = ids.get(src);
+        int d = ids.get(dst);
+        int k = outSlot(s, d);
+        if (k >= 0 && !removedOut.get(outStart[s] + k)) {
+            return edge(s, d, store.outLabel(s, k));
+        }
+        Map<Node<VT>, Edge<VT, ET>> added = addedOut.get(src);
+        return added == null ? null : added.get(dst);
+    }
+
+    /**
+     * Add an edge between two nodes without an edge.
+     */
+    void addEdge(Edge<VT, ET> e) {
+        idleBfs.clear();
+        int s = ids.get(e.srcNode());
+        int d = ids.get(e.dstNode());
+        int k = outSlot(s, d);
+        if (k >= 0 && store.outLabel(s, k) == e.relationId()) {
+            // The edge was removed from the store.
+            removedOut.clear(outStart[s] + k);
+            removedIn.clear(inStart[d] + inSlot(d, s));
+            return;
+        }
+        addedOut.computeIfAbsent(e.srcNode(), v -> new HashMap<>()).put(e.dstNode(), e);
+        addedIn.computeIfAbsent(e.dstNode(), v -> new HashMap<>()).put(e.srcNode(), e);
+        addedOutIds.remove(e.srcNode());
+        addedInIds.remove(e.dstNode());
+        numOfAdded++;
+        if (numOfAdded > MIN_REBUILD && numOfAdded > outStart[outStart.length - 1] / 4) {
+            rebuild();
+        }
+    }
+
+    /**
+     * @return the removed edge from src to dst, or null if there is none.
+     */
+    Edge<VT, ET> removeEdge(Node<VT> src, Node<VT> dst) {
+        idleBfs.clear();
+        int s = ids.get(src);
+        int d = ids.get(dst);
+        int k = outSlot(s, d);
+        if (k >= 0 && !removedOut.get(outStart[s] + k)) {
+            removedOut.set(outStart[s] + k);
+            removedIn.set(inStart[d] + inSlot(d, s));
+            return edge(s, d, store.outLabel(s, k));
+        }
+        Map<Node<VT>, Edge<VT, ET>> added = addedOut.get(src);
+        Edge<VT, ET> e = added == null ? null : added.remove(dst);
+        if (e == null) {
+            return null;
+        }
+        if (added.isEmpty()) {
+            addedOut.remove(src);
+        }
+        Map<Node<VT>, Edge<VT, ET>> addedTo = addedIn.get(dst);
+        addedTo.remove(src);
+        if (addedTo.isEmpty()) {
+            addedIn.remove(dst);
+        }
+        addedOutIds.remove(src);
+        addedInIds.remove(dst);
+        numOfAdded--;
+        return e;
+    }
+
+    private int numOfRemoved(BitSet removed, int from, int to) {
+        int count = 0;
+        for (int i = removed.nextSetBit(from); i >= 0 && i < to; i = removed.nextSetBit(i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    private static <K, V> int sizeOf(Map<K, Map<K, V>> added, K v) {
+        Map<K, V> nbrs = added.get(v);
+        return nbrs == null ? 0 : nbrs.size();
+    }
+
+    int outDegree(Node<VT> v) {
+        int id = ids.get(v);
+        int degree = sizeOf(addedOut, v);
+        if (isStored(id)) {
+            degree += store.outSize(id) - numOfRemoved(removedOut, outStart[id], outStart[id + 1]);
+        }
+        return degree;
+    }
+
+    int inDegree(Node<VT> v) {
+        int id = ids.get(v);
+        int degree = sizeOf(addedIn, v);
+        if (isStored(id)) {
+            degree += store.inSize(id) - numOfRemoved(removedIn, inStart[id], inStart[id + 1]);
+        }
+        return degree;
+    }
+
+    Collection<Edge<VT, ET>> edgesFrom(Node<VT> v) {
+        return new AdjacentEdges(v, true);
+    }
+
+    Collection<Edge<VT, ET>> edgesTo(Node<VT> v) {
+        return new AdjacentEdges(v, false);
+    }
+
+    Set<Node<VT>> nodesFrom(Node<VT> v) {
+        return new AdjacentNodes(v, true);
+    }
+
+    Set<Node<VT>> nodesTo(Node<VT> v) {
+        return new AdjacentNodes(v, false);
+    }
+
+    /**
+     * @return the edges, grouped by src, as objects made on demand.
+     */
+    Iterator<Edge<VT, ET>> edgeIterator() {
+        EdgeCursor c = edgeCursor();
+        return new Iterator<Edge<VT, ET>>() {
+            private boolean hasNext = c.next();
+
+            @Override
+            public boolean hasNext() {
+                return hasNext;
+            }
+
+            @Override
+            public Edge<VT, ET> next() {
+                if (!hasNext) {
+                    throw new NoSuchElementException();
+                }
+                Edge<VT, ET> e = edge(c.src(), c.dst(), c.label());
+                hasNext = c.next();
+                return e;
+            }
+        };
+    }
+
+    /**
+     * @return a cursor over the edges (those of the store, grouped by src, and then the added ones), as (src, dst,
+     * relation id) ints.
+     */
+    EdgeCursor edgeCursor() {
+        return new EdgeCursor() {
+            private final EdgeCursor c = store.edgeCursor();
+
+            // The slot of c, which counts the slots of the store in the order of the out-lists.
+            private int slot = -1;
+
+            private Iterator<Map<Node<VT>, Edge<VT, ET>>> addedIter = null;
+
+            private Iterator<Edge<VT, ET>> edgeIter = Collections.emptyIterator();
+
+            private int src;
+
+            private int dst;
+
+            private int label;
+
+            @Override
+            public boolean next() {
+                if (addedIter == null) {
+                    while (c.next()) {
+                        slot++;
+                        if (!removedOut.get(slot)) {
+                            src = c.src();
+                            dst = c.dst();
+                            label = c.label();
+                            return true;
+                        }
+                    }
+                    addedIter = addedOut.values().iterator();
+                }
+                while (!edgeIter.hasNext()) {
+                    if (!addedIter.hasNext()) {
+                        return false;
+                    }
+                    edgeIter = addedIter.next().values().iterator();
+                }
+                Edge<VT, ET> e = edgeIter.next();
+                src = ids.get(e.srcNode());
+                dst = ids.get(e.dstNode());
+                label = e.relationId();
+                return true;
+            }
+
+            @Override
+            public int src() {
+                return src;
+            }
+
+            @Override
+            public int dst() {
+                return dst;
+            }
+
+            @Override
+            public int label() {
+                return label;
+            }
+        };
+    }
+
+    /**
+     * Release the store (see AdjacencyStore.close): the graph must not be read afterwards.
+     */
+    void close() {
+        store.close();
+    }
+
+    @Override
+    public int nodeBound() {
+        return numOfIds;
+    }
+
+    @Override
+    public int outSize(int v) {
+        return (isStored(v) ? store.outSize(v) : 0) + sizeOf(addedOut, nodes[v]);
+    }
+
+    @Override
+    public int outNeighbor(int v, int k) {
+        int size = isStored(v) ? store.outSize(v) : 0;
+        if (k < size) {
+            return removedOut.get(outStart[v] + k) ? -1 : store.outNeighbor(v, k);
+        }
+        return addedIds(addedOut, addedOutIds, nodes[v])[k - size];
+    }
+
+    @Override
+    public int inSize(int v) {
+        return (isStored(v) ? store.inSize(v) : 0) + sizeOf(addedIn, nodes[v]);
+    }
+
+    @Override
+    public int inNeighbor(int v, int k) {
+        int size = isStored(v) ? store.inSize(v) : 0;
+        if (k < size) {
+            return removedIn.get(inStart[v] + k) ? -1 : store.inNeighbor(v, k);
+        }
+        return addedIds(addedIn, addedInIds, nodes[v])[k - size];
+    }
+
+    private int[] addedIds(Map<Node<VT>, Map<Node<VT>, Edge<VT, ET>>> added, Map<Node<VT>, int[]> addedIds,
+                           Node<VT> v) {
+        return addedIds.computeIfAbsent(v, x -> {
+            int[] nbrs = new int[added.get(x).size()];
+            int k = 0;
+            for (Node<VT> w : added.get(x).keySet()) {
+                nbrs[k++] = ids.get(w);
+            }
+            return nbrs;
+        });
+    }
+
+    @Override
+    public void forEachOutNeighbor(int v, IntConsumer action) {
+        if (isStored(v)) {
+            forEachNeighbor(v, true, action);
+        }
+        forEachAddedNeighbor(addedOut.get(nodes[v]), action);
+    }
+
+    @Override
+    public void forEachInNeighbor(int v, IntConsumer action) {
+        if (isStored(v)) {
+            forEachNeighbor(v, false, action);
+        }
+        forEachAddedNeighbor(addedIn.get(nodes[v]), action);
+    }
+
+    private void forEachNeighbor(int v, boolean isOut, IntConsumer action) {
+        int from = isOut ? outStart[v] : inStart[v];
+        int to = isOut ? outStart[v + 1] : inStart[v + 1];
+        BitSet removed = isOut ? removedOut : removedIn;
+        int firstRemoved = removed.nextSetBit(from);
+        if (firstRemoved < 0 || firstRemoved >= to) {
+            if (isOut) {
+                store.forEachOutNeighbor(v, action);
+            } else {
+                store.forEachInNeighbor(v, action);
+            }
+            return;
+        }
+        for (EdgeCursor c = isOut ? store.outEdgeCursor(v) : store.inEdgeCursor(v); c.next(); from++) {
+            if (!removed.get(from)) {
+                action.accept(isOut ? c.dst() : c.src());
+            }
+        }
+    }
+
+    private void forEachAddedNeighbor(Map<Node<VT>, Edge<VT, ET>> added, IntConsumer action) {
+        if (added != null) {
+            for (Node<VT> w : added.keySet()) {
+                action.accept(ids.get(w));
+            }
+        }
+    }
+
+    /**
+     * The alive slots of a node in the store, and then its added edges: as edges, or as the nodes at the other end.
+     */
+    private abstract class AdjacentIterator<T> implements Iterator<T> {
+
+        private final boolean isOut;
+
+        private final EdgeCursor cursor;
+
+        private final BitSet removed;
+
+        private int slot;
+
+        private final Iterator<Edge<VT, ET>> addedIter;
+
+        private boolean isAtSlot;
+
+        private AdjacentIterator(Node<VT> v, boolean isOut) {
+            this.isOut = isOut;
+            int id = ids.get(v);
+            if (isStored(id)) {
+                this.cursor = isOut ? store.outEdgeCursor(id) : store.inEdgeCursor(id);
+                this.removed = isOut ? removedOut : removedIn;
+                this.slot = (isOut ? outStart[id] : inStart[id]) - 1;
+            } else {
+                this.cursor = null;
+                this.removed = null;
+            }
+            Map<Node<VT>, Edge<VT, ET>> added = (isOut ? addedOut : addedIn).get(v);
+            this.addedIter = added == null ? Collections.emptyIterator() : added.values().iterator();
+            this.isAtSlot = advance();
+        }
+
+        private boolean advance() {
+            if (cursor == null) {
+                return false;
+            }
+            while (cursor.next()) {
+                slot++;
+                if (!removed.get(slot)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        abstract T fromSlot(int src, int dst, int rid);
+
+        abstract T fromAdded(Edge<VT, ET> e);
+
+        @Override
+        public boolean hasNext() {
+            return isAtSlot || addedIter.hasNext();
+        }
+
+        @Override
+        public T next() {
+            if (isAtSlot) {
+                T t = fromSlot(cursor.src(), cursor.dst(), cursor.label());
+                isAtSlot = advance();
+                return t;
+            }
+            return fromAdded(addedIter.next());
+        }
+    }
+
+    /**
+     * The out-edges (or in-edges, if not isOut) of a node, as a read-only view.
+     */
+    private class AdjacentEdges extends AbstractCollection<Edge<VT, ET>> {
+
+        private final Node<VT> v;
+
+        private final boolean isOut;
+
+        private AdjacentEdges(Node<VT> v, boolean isOut) {
+            this.v = v;
+            this.isOut = isOut;
+        }
+
+        @Override
+        public int size() {
+            return isOut ? outDegree(v) : inDegree(v);
+        }
+
+        @Override
+        public Iterator<Edge<VT, ET>> iterator() {
+            return new AdjacentIterator<Edge<VT, ET>>(v, isOut) {
+                @Override
+                Edge<VT, ET> fromSlot(int src, int dst, int rid) {
+                    return edge(src, dst, rid);
+                }
+
+                @Override
+                Edge<VT, ET> fromAdded(Edge<VT, ET> e) {
+                    return e;
+                }
+            };
+        }
+    }
+
+    /**
+     * The out-neighbors (or in-neighbors, if not isOut) of a node, as a read-only Set view.
+     */
+    private class AdjacentNodes extends AbstractSet<Node<VT>> {
+
+        private final Node<VT> v;
+
+        private final boolean isOut;
+
+        private AdjacentNodes(Node<VT> v, boolean isOut) {
+            this.v = v;
+            this.isOut = isOut;
+        }
+
+        @Override
+        public int size() {
+            return isOut ? outDegree(v) : inDegree(v);
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Node) || !ids.containsKey(o)) {
+                return false;
+            }
+            @SuppressWarnings("unchecked")
+            Node<VT> w = (Node<VT>) o;
+            return (isOut ? getEdge(v, w) : getEdge(w, v)) != null;
+        }
+
+        @Override
+        public Iterator<Node<VT>> iterator() {
+            return new AdjacentIterator<Node<VT>>(v, isOut) {
+                @Override
+                Node<VT> fromSlot(int src, int dst, int rid) {
+                    return nodes[isOut ? dst : src];
+                }
+
+                @Override
+                Node<VT> fromAdded(Edge<VT, ET> e) {
+                    return isOut ? e.dstNode() : e.srcNode();
+                }
+            };
+        }
+    }
+}
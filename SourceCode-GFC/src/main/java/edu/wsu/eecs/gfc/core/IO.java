@@ -203,7 +203,16 @@ public class IO {
     }
 
     public static Graph<String, String> loadStringGraph(String inputDir) throws IOException {
+        return loadStringGraph(inputDir, AdjacencyFormat.FLAT);
+    }
+
+    /**
+     * Load the data graph straight into the adjacency format (see Graph.setAdjacencyFormat), without the hash maps of
+     * a FLAT graph in between.
+     */
+    public static Graph<String, String> loadStringGraph(String inputDir, AdjacencyFormat format) throws IOException {
         Graph<String, String> graph = Graph.createEmptyGraph();
+        graph.setAdjacencyFormat(format);
         BufferedReader br;
         String line;
         br = new BufferedReader(new FileReader(new File(inputDir, "gfc_str_nodes.tsv")));
@@ -228,6 +237,52 @@ public class IO {
         return graph;
     }
 
+    /**
+     * Load only the nodes of the data graph, which is enough to check facts by loaded rule sets (see RuleSet).
+     */
+    public static Graph<String, String> loadStringNodes(String inputDir) throws IOException {
+        Graph<String, String> graph = Graph.createEmptyGraph();
+        BufferedReader br;
+        String line;
+        br = new BufferedReader(new FileReader(new File(inputDir, "gfc_str_nodes.tsv")));
+        while ((line = br.readLine()) != null) {
+            String[] tokens = line.split("\t");
+            String id = tokens[0].intern();
+            String label = tokens[1].intern();
+            graph.createNode(id, label);
+        }
+        br.close();
+
+        return graph;
+    }
+
+    /**
+     * Sample at most n candidate facts of a candidate file uniformly by reservoir sampling, in one pass and with
+     * only the sample in memory. All of them are returned, in the file order, if there are at most n.
+     */
+    public static List<String[]> sampleCandidates(String candidateFile, int n, Random random) throws IOException {
+        List<String[]> sample = new ArrayList<>();
+        long nSeen = 0;
+        try (BufferedReader br = new BufferedReader(new FileReader(candidateFile))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                nSeen++;
+                if (sample.size() < n) {
+                    sample.add(line.split("\t"));
+                } else {
+                    long k = (long) (random.nextDouble() * nSeen);
+                    if (k < n) {
+                        sample.set((int) k, line.split("\t"));
+                    }
+                }
+            }
+        }
+        return sample;
+    }
+
     public static Map<String, Set<String>> loadOntology(String inputDir) throws IOException {
         Map<String, Set<String>> subclassMap = new HashMap<>();
 
@@ -0,0 +1,24 @@
+package edu.wsu.eecs.gfc.core;
+
+/**
+ * The int adjacency of a Graph (a GraphSnapshot of FLAT, or the GraphStore of COMPRESSED and OFF_HEAP), with the nodes
+ * of the int ids, and idle BFS engines over it, lent per call.
+ * <p>
+ * @author Peng Lin penglin03@gmail.com
+ */
+interface IndexedAdjacency<VT> extends IntAdjacency {
+
+    /**
+     * @return the id of the node, or -1 if it is not in the graph.
+     */
+    int indexOf(Node<VT> v);
+
+    Node<VT> nodeAt(int v);
+
+    /**
+     * @return an idle BFS engine over the adjacency, to be given back by releaseBfs() after the call.
+     */
+    MultiSourceBFS acquireBfs();
+
+    void releaseBfs(MultiSourceBFS bfs);
+}
@@ -0,0 +1,45 @@
+package edu.wsu.eecs.gfc.core;
+
+import java.util.function.IntConsumer;
+
+/**
+ * The adjacency of a graph over dense int node ids 0..nodeBound()-1, read by cursors, without any object per node or
+ * per edge, e.g., for MultiSourceBFS.
+ * <p>
+ * The out-neighbors (resp. in-neighbors) of v are outNeighbor(v, k) (resp. inNeighbor(v, k)) for k < outSize(v)
+ * (resp. inSize(v)), where a negative neighbor is a slot without an edge (e.g., an edge removed), to be skipped.
+ * forEachOutNeighbor/forEachInNeighbor visit the neighbors (skipping such slots) in one pass, which is cheaper than the
+ * random access for the compressed adjacency.
+ * <p>
+ * @author Peng Lin penglin03@gmail.com
+ */
+public interface IntAdjacency {
+
+    int nodeBound();
+
+    int outSize(int v);
+
+    int outNeighbor(int v, int k);
+
+    int inSize(int v);
+
+    int inNeighbor(int v, int k);
+
+    default void forEachOutNeighbor(int v, IntConsumer action) {
+        for (int k = 0; k < outSize(v); k++) {
+            int w = outNeighbor(v, k);
+            if (w >= 0) {
+                action.accept(w);
+            }
+        }
+    }
+
+    default void forEachInNeighbor(int v, IntConsumer action) {
+        for (int k = 0; k < inSize(v); k++) {
+            int w = inNeighbor(v, k);
+            if (w >= 0) {
+                action.accept(w);
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package edu.wsu.eecs.gfc.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A fixed-length int array off the Java heap, in memory-mapped segments of a temporary file, so that its data is
+ * neither limited by the heap size nor scanned by the GC; the OS pages it in and out as needed.
+ * <p>
+ * The file is deleted as soon as it is mapped (or at exit, where a mapped file cannot be deleted), so nothing is left
+ * on the disk after a crash. close() does not unmap the segments at once, since a thread may still be reading them
+ * (and reading an unmapped buffer crashes the JVM), but drops them, so that they are unmapped by the cleaner of the
+ * mapped buffers when the GC collects them, and the array throws an IllegalStateException when used after close().
+ * <p>
+ * An IntSegment is not thread-safe for writing, but it is for reading once written.
+ * <p>
+ * @author Peng Lin penglin03@gmail.com
+ */
+final class IntSegment {
+
+    // 2^28 ints (1 GB) per mapped buffer, within the int size limit of a buffer.
+    private static final int CHUNK_BITS = 28;
+
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+    private final int length;
+
+    // The int views of the mapped buffers (which keep them mapped), or null once closed.
+    private volatile IntBuffer[] chunks;
+
+    private IntSegment(int length, IntBuffer[] chunks) {
+        this.length = length;
+        this.chunks = chunks;
+    }
+
+    /**
+     * @return a new array of the length, filled with 0, in a temporary file of the directory (or the default one if
+     * the directory is null).
+     */
+    static IntSegment allocate(int length, File dir) {
+        int numOfChunks = (int) (((long) length + CHUNK_MASK) >>> CHUNK_BITS);
+        IntBuffer[] chunks = new IntBuffer[numOfChunks];
+        try {
+            File file = File.createTempFile("gfc-", ".seg", dir);
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                 FileChannel channel = raf.getChannel()) {
+                for (int c = 0; c < numOfChunks; c++) {
+                    long from = (long) c << CHUNK_BITS;
+                    long size = Math.min(length - from, CHUNK_MASK + 1L);
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 4 * from, 4 * size);
+                    chunks[c] = buffer.order(ByteOrder.nativeOrder()).asIntBuffer();
+                }
+            } finally {
+                if (!file.delete()) {
+                    file.deleteOnExit();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new IntSegment(length, chunks);
+    }
+
+    int get(int i) {
+        return chunks()[i >>> CHUNK_BITS].get(i & CHUNK_MASK);
+    }
+
+    void set(int i, int value) {
+        chunks()[i >>> CHUNK_BITS].put(i & CHUNK_MASK, value);
+    }
+
+    private IntBuffer[] chunks() {
+        IntBuffer[] c = chunks;
+        if (c == null) {
+            throw new IllegalStateException("The segment is closed.");
+        }
+        return c;
+    }
+
+    int length() {
+        return length;
+    }
+
+    long sizeInBytes() {
+        return 4L * length;
+    }
+
+    /**
+     * Drop the segments, which are unmapped when the GC collects them; closing a closed array does nothing.
+     */
+    void close() {
+        chunks = null;
+    }
+}
@@ -0,0 +1,213 @@
+package edu.wsu.eecs.gfc.core;
+
+import java.util.*;
+
+/**
+ * Verify rules P(x, y) => r(x, y) for a single node pair (vx, vy) in the local neighborhood of the pair,
+ * instead of looking the pair up in the global match sets of the rules, which only cover the nodes that were
+ * candidates at mining time. This checks the facts about newly ingested nodes, without recomputing the match sets.
+ * <p>
+ * Every node of P is within k hops (undirected) from x or y, where k is the radius of P from {x, y}, so all the
+ * matches that matter are in the ego network of the k-hop neighbors of vx and vy. In the ego network, the candidate
+ * matches of a pattern node are the nodes with labels similar to it (as G gives them at its current hops), x only
+ * matches vx and y only vy, and the other pattern nodes similar to x (resp. y) do not match vx (resp. vy),
+ * as in mining. The candidates are then refined by dual simulation over the pattern edges, as in mining, and the
+ * rule holds for (vx, vy) iff vx and vy survive.
+ * <p>
+ * The k-hop neighbors of the recently checked nodes are kept in an LRU cache, as BFS layers, so that a cached node
+ * serves any radius up to the one it was extracted with.
+ * <p>
+ * @author Peng Lin penglin03@gmail.com
+ */
+public class LocalRuleVerifier<VT, ET> {
+
+    private static final int DEFAULT_CACHE_SIZE = 10000;
+
+    private final GraphDatabase<VT, ET> G;
+
+    private final Map<Node<VT>, List<Set<Node<VT>>>> egoCache;
+
+    private long numOfCacheHits;
+
+    private long numOfCacheMisses;
+
+    private LocalRuleVerifier(GraphDatabase<VT, ET> G, int cacheSize) {
+        this.G = G;
+        int capacity = Math.max(1, cacheSize);
+        this.egoCache = new LinkedHashMap<Node<VT>, List<Set<Node<VT>>>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Node<VT>, List<Set<Node<VT>>>> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public static <VT, ET> LocalRuleVerifier<VT, ET> createInit(GraphDatabase<VT, ET> G) {
+        return new LocalRuleVerifier<>(G, DEFAULT_CACHE_SIZE);
+    }
+
+    public static <VT, ET> LocalRuleVerifier<VT, ET> createInit(GraphDatabase<VT, ET> G, int cacheSize) {
+        return new LocalRuleVerifier<>(G, cacheSize);
+    }
+
+    /**
+     * @return the rules that hold for the pair (vx, vy), in the order of the input rules.
+     */
+    public List<OGFCRule<VT, ET>> check(List<OGFCRule<VT, ET>> rules, Node<VT> vx, Node<VT> vy) {
+        // The ego networks of the pair, grouped by labels, shared by the rules of the same radius.
+        Map<Integer, Map<VT, List<Node<VT>>>> egoByRadius = new HashMap<>();
+        List<OGFCRule<VT, ET>> hitRules = new ArrayList<>();
+        for (OGFCRule<VT, ET> phi : rules) {
+            if (verify(phi, vx, vy, egoByRadius)) {
+                hitRules.add(phi);
+            }
+        }
+        return hitRules;
+    }
+
+    /**
+     * @return true iff the pattern P of the rule has a match (by dual simulation) with x at vx and y at vy.
+     */
+    public boolean verify(OGFCRule<VT, ET> phi, Node<VT> vx, Node<VT> vy) {
+        return verify(phi, vx, vy, new HashMap<>());
+    }
+
+    private boolean verify(OGFCRule<VT, ET> phi, Node<VT> vx, Node<VT> vy,
+                           Map<Integer, Map<VT, List<Node<VT>>>> egoByRadius) {
+        Graph<VT, ET> P = phi.P();
+        Node<VT> x = phi.x();
+        Node<VT> y = phi.y();
+        if (!OGFCRule.simLabel(x.label(), vx.label(), G) || !OGFCRule.simLabel(y.label(), vy.label(), G)) {
+            return false;
+        }
+        if (P.numOfEdges() == 0) {
+            return true;
+        }
+
+        Map<VT, List<Node<VT>>> ego = egoByRadius.computeIfAbsent(radius(phi), k -> {
+            Set<Node<VT>> nodes = egoNetwork(vx, k);
+            nodes.addAll(egoNetwork(vy, k));
+            Map<VT, List<Node<VT>>> byLabel = new HashMap<>();
+            for (Node<VT> v : nodes) {
+                byLabel.computeIfAbsent(v.label(), l -> new ArrayList<>()).add(v);
+            }
+            return byLabel;
+        });
+
+        // The candidates, filtered by labels.
+        Map<Node<VT>, Set<Node<VT>>> sim = new HashMap<>();
+        for (Node<VT> u : P.nodeIter()) {
+            Set<Node<VT>> uSim = new HashSet<>();
+            if (u.equals(x)) {
+                uSim.add(vx);
+            } else if (u.equals(y)) {
+                uSim.add(vy);
+            } else {
+                for (VT l : G.getSimLabels(u.label())) {
+                    List<Node<VT>> lNodes = ego.get(l);
+                    if (lNodes != null) {
+                        uSim.addAll(lNodes);
+                    }
+                }
+                if (OGFCRule.simLabel(x.label(), u.label(), G)) {
+                    uSim.remove(vx);
+                }
+                if (OGFCRule.simLabel(y.label(), u.label(), G)) {
+                    uSim.remove(vy);
+                }
+                if (uSim.isEmpty()) {
+                    return false;
+                }
+            }
+            sim.put(u, uSim);
+        }
+
+        // Dual simulation: a match of u must have an out (resp. in) neighbor matching every child (resp. parent) of u.
+        boolean isChanged = true;
+        while (isChanged) {
+            isChanged = false;
+            for (Edge<VT, ET> e : P.edgeIter()) {
+                Set<Node<VT>> srcSim = sim.get(e.srcNode());
+                Set<Node<VT>> dstSim = sim.get(e.dstNode());
+                isChanged |= srcSim.removeIf(v -> Collections.disjoint(dstSim, G.nodesFrom(v)));
+                isChanged |= dstSim.removeIf(v -> Collections.disjoint(srcSim, G.nodesTo(v)));
+                if (srcSim.isEmpty() || dstSim.isEmpty()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the radius k of the pattern from {x, y}: the maximum (undirected) hops from x or y to a pattern node.
+     */
+    public static <VT, ET> int radius(OGFCRule<VT, ET> phi) {
+        Graph<VT, ET> P = phi.P();
+        Map<Node<VT>, Integer> hops = new HashMap<>();
+        Deque<Node<VT>> queue = new ArrayDeque<>();
+        hops.put(phi.x(), 0);
+        hops.put(phi.y(), 0);
+        queue.addLast(phi.x());
+        queue.addLast(phi.y());
+        int k = 0;
+        while (!queue.isEmpty()) {
+            Node<VT> u = queue.removeFirst();
+            int h = hops.get(u);
+            k = Math.max(k, h);
+            for (Node<VT> w : P.oneHopNeighbors(u)) {
+                if (!hops.containsKey(w)) {
+                    hops.put(w, h + 1);
+                    queue.addLast(w);
+                }
+            }
+        }
+        return k;
+    }
+
+    /**
+     * @return the nodes within k hops (undirected) from the center, from the cache if possible.
+     */
+    public Set<Node<VT>> egoNetwork(Node<VT> center, int k) {
+        List<Set<Node<VT>>> layers;
+        synchronized (egoCache) {
+            layers = egoCache.get(center);
+            if (layers != null && layers.size() > k) {
+                numOfCacheHits++;
+            } else {
+                numOfCacheMisses++;
+                layers = null;
+            }
+        }
+        if (layers == null) {
+            Map<Integer, Set<Node<VT>>> nborMap = G.multipleHopNeighbors(center, k);
+            layers = new ArrayList<>(k + 1);
+            for (int i = 0; i <= k; i++) {
+                layers.add(nborMap.get(i));
+            }
+            synchronized (egoCache) {
+                egoCache.put(center, layers);
+            }
+        }
+        Set<Node<VT>> ego = new HashSet<>();
+        for (int i = 0; i <= k; i++) {
+            ego.addAll(layers.get(i));
+        }
+        return ego;
+    }
+
+    /**
+     * The cache must be cleared after the data graph changes.
+     */
+    public void clearCache() {
+        synchronized (egoCache) {
+            egoCache.clear();
+        }
+    }
+
+    public String cacheStats() {
+        synchronized (egoCache) {
+            return "cached=" + egoCache.size() + ", hits=" + numOfCacheHits + ", misses=" + numOfCacheMisses;
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package edu.wsu.eecs.gfc.core;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * L2-regularized logistic regression over binary features, trained by L-BFGS.
+ * <p>
+ * The features are a packed bit matrix in column-major order: column j is the bitmap of the examples that have
+ * the feature j (e.g., the examples hit by the rule j), packed into longs as BitSet.toLongArray() does.
+ * It minimizes (1/n) * sum_i log(1 + exp(-y_i * (b + w * x_i))) + (lambda / 2) * |w|^2,
+ * and the loss and the gradient are computed over primitive arrays by multiple threads of a shared pool (the common
+ * pool by default, or none to run on the calling thread): the margins by blocks of examples, and the gradient by columns.
+ * <p>
+ * @author Peng Lin penglin03@gmail.com
+ */
+public class LogisticRegression {
+
+    private static final double DEFAULT_LAMBDA = 1E-4;
+
+    private static final int DEFAULT_MAX_ITERATIONS = 200;
+
+    private static final int DEFAULT_HISTORY_SIZE = 10;
+
+    private static final double DEFAULT_TOLERANCE = 1E-6;
+
+    // The number of examples of a block, which is a multiple of 64 so that blocks do not share words.
+    private static final int BLOCK_SIZE = 64 * 64;
+
+    private final double lambda;
+
+    private final int maxIterations;
+
+    // The pool to train in, or null to train on the calling thread.
+    private final ForkJoinPool pool;
+
+    private double[] weights;
+
+    private double bias;
+
+    private LogisticRegression(double lambda, int maxIterations, ForkJoinPool pool) {
+        this.lambda = lambda;
+        this.maxIterations = maxIterations;
+        this.pool = pool;
+    }
+
+    public static LogisticRegression createInit() {
+        return new LogisticRegression(DEFAULT_LAMBDA, DEFAULT_MAX_ITERATIONS, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param pool is the shared pool to train in, or null to train on the calling thread.
+     */
+    public static LogisticRegression createInit(double lambda, int maxIterations, ForkJoinPool pool) {
+        return new LogisticRegression(lambda, maxIterations, pool);
+    }
+
+    /**
+     * @return a trained model with the given parameters, e.g., loaded from a rule set file.
+     */
+    public static LogisticRegression createFromWeights(double[] weights, double bias) {
+        LogisticRegression model = new LogisticRegression(DEFAULT_LAMBDA, DEFAULT_MAX_ITERATIONS, null);
+        model.weights = weights;
+        model.bias = bias;
+        return model;
+    }
+
+    public double[] weights() {
+        return weights;
+    }
+
+    public double bias() {
+        return bias;
+    }
+
+    /**
+     * Train the model.
+     *
+     * @param columns       is the packed bit matrix of features in column-major order.
+     * @param numOfExamples is the number of examples (rows).
+     * @param labels        is the bitmap of the positive examples.
+     * @return this model.
+     */
+    public LogisticRegression train(long[][] columns, int numOfExamples, BitSet labels) {
+        int dim = columns.length;
+        double[] y = new double[numOfExamples];
+        for (int i = 0; i < numOfExamples; i++) {
+            y[i] = labels.get(i) ? 1 : -1;
+        }
+
+        // The parameters are w[0..dim-1] followed by the bias.
+        double[] x = new double[dim + 1];
+        double[] g = new double[dim + 1];
+        double[] z = new double[numOfExamples];
+        double[] r = new double[numOfExamples];
+        double f = evaluate(columns, y, x, z, r, g);
+
+        double[][] sHist = new double[DEFAULT_HISTORY_SIZE][];
+        double[][] yHist = new double[DEFAULT_HISTORY_SIZE][];
+        double[] rhoHist = new double[DEFAULT_HISTORY_SIZE];
+        double[] alpha = new double[DEFAULT_HISTORY_SIZE];
+        int nHist = 0;
+
+        double[] xNew = new double[dim + 1];
+        double[] gNew = new double[dim + 1];
+        for (int iter = 0; iter < maxIterations; iter++) {
+            if (norm(g) <= DEFAULT_TOLERANCE * Math.max(1, norm(x))) {
+                break;
+            }
+
+            // The two-loop recursion for the search direction d = -H * g.
+            double[] d = new double[dim + 1];
+            for (int k = 0; k <= dim; k++) {
+                d[k] = -g[k];
+            }
+            for (int h = nHist - 1; h >= 0; h--) {
+                alpha[h] = rhoHist[h] * dot(sHist[h], d);
+                axpy(-alpha[h], yHist[h], d);
+            }
+            if (nHist > 0) {
+                double gamma = dot(sHist[nHist - 1], yHist[nHist - 1]) / dot(yHist[nHist - 1], yHist[nHist - 1]);
+                for (int k = 0; k <= dim; k++) {
+                    d[k] = d[k] * gamma;
+                }
+            }
+            for (int h = 0; h < nHist; h++) {
+                double beta = rhoHist[h] * dot(yHist[h], d);
+                axpy(alpha[h] - beta, sHist[h], d);
+            }
+            double dg = dot(d, g);
+            if (dg >= 0) {
+                // Not a descent direction: restart from the steepest descent.
+                for (int k = 0; k <= dim; k++) {
+                    d[k] = -g[k];
+                }
+                dg = dot(d, g);
+                nHist = 0;
+            }
+
+            // Backtracking line search with the Armijo condition.
+            double step = 1;
+            double fNew;
+            while (true) {
+                for (int k = 0; k <= dim; k++) {
+                    xNew[k] = x[k] + step * d[k];
+                }
+                fNew = evaluate(columns, y, xNew, z, r, gNew);
+                if (fNew <= f + 1E-4 * step * dg || step < 1E-10) {
+                    break;
+                }
+                step = step / 2;
+            }
+
+            double[] s = new double[dim + 1];
+            double[] yk = new double[dim + 1];
+            for (int k = 0; k <= dim; k++) {
+                s[k] = xNew[k] - x[k];
+                yk[k] = gNew[k] - g[k];
+            }
+            double sy = dot(s, yk);
+            if (sy > 1E-12) {
+                if (nHist == DEFAULT_HISTORY_SIZE) {
+                    System.arraycopy(sHist, 1, sHist, 0, nHist - 1);
+                    System.arraycopy(yHist, 1, yHist, 0, nHist - 1);
+                    System.arraycopy(rhoHist, 1, rhoHist, 0, nHist - 1);
+                    nHist--;
+                }
+                sHist[nHist] = s;
+                yHist[nHist] = yk;
+                rhoHist[nHist] = 1 / sy;
+                nHist++;
+            }
+
+            double fOld = f;
+            System.arraycopy(xNew, 0, x, 0, dim + 1);
+            System.arraycopy(gNew, 0, g, 0, dim + 1);
+            f = fNew;
+            if (Math.abs(fOld - f) <= DEFAULT_TOLERANCE * Math.max(1, Math.abs(f))) {
+                break;
+            }
+        }
+
+        weights = Arrays.copyOf(x, dim);
+        bias = x[dim];
+        return this;
+    }
+
+    /**
+     * @return the probabilities of the examples to be positive.
+     */
+    public double[] predict(long[][] columns, int numOfExamples) {
+        double[] z = new double[numOfExamples];
+        double[] x = Arrays.copyOf(weights, weights.length + 1);
+        x[weights.length] = bias;
+        computeMargins(columns, x, z);
+        double[] p = new double[numOfExamples];
+        for (int i = 0; i < numOfExamples; i++) {
+            p[i] = 1 / (1 + Math.exp(-z[i]));
+        }
+        return p;
+    }
+
+    /**
+     * @param hitRules are the indices of the rules that hit a single example.
+     * @return the probability of the example to be positive.
+     */
+    public double predict(int[] hitRules) {
+        int[] sorted = hitRules.clone();
+        // The same order of summation as the batch prediction, for the same result.
+        Arrays.sort(sorted);
+        double z = bias;
+        for (int j : sorted) {
+            z += weights[j];
+        }
+        return 1 / (1 + Math.exp(-z));
+    }
+
+    /**
+     * Compute the objective at x, together with its gradient g.
+     * z and r are the buffers of the margins and residuals of the examples.
+     */
+    private double evaluate(long[][] columns, double[] y, double[] x, double[] z, double[] r, double[] g) {
+        int n = y.length;
+        int dim = columns.length;
+        computeMargins(columns, x, z);
+
+        // The loss and the residuals d(loss_i)/d(z_i), by blocks of examples.
+        int nBlocks = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        double[] blockLoss = new double[nBlocks];
+        forEach(nBlocks, b -> {
+            double loss = 0;
+            for (int i = b * BLOCK_SIZE; i < n && i < (b + 1) * BLOCK_SIZE; i++) {
+                double m = y[i] * z[i];
+                // log(1 + exp(-m)), computed stably.
+                loss += m > 0 ? Math.log1p(Math.exp(-m)) : -m + Math.log1p(Math.exp(m));
+                r[i] = -y[i] / (1 + Math.exp(m));
+            }
+            blockLoss[b] = loss;
+        });
+        double loss = 0;
+        for (double l : blockLoss) {
+            loss += l;
+        }
+
+        // The gradient, by columns.
+        forEach(dim, j -> {
+            long[] col = columns[j];
+            double sum = 0;
+            for (int w = 0; w < col.length; w++) {
+                long word = col[w];
+                while (word != 0) {
+                    int i = (w << 6) + Long.numberOfTrailingZeros(word);
+                    sum += r[i];
+                    word &= word - 1;
+                }
+            }
+            g[j] = sum / n + lambda * x[j];
+        });
+        double sumR = 0;
+        for (int i = 0; i < n; i++) {
+            sumR += r[i];
+        }
+        g[dim] = sumR / n;
+
+        double reg = 0;
+        for (int j = 0; j < dim; j++) {
+            reg += x[j] * x[j];
+        }
+        return loss / n + lambda / 2 * reg;
+    }
+
+    /**
+     * z = b + X * w, by blocks of examples, so that no two threads write to the same example.
+     */
+    private void computeMargins(long[][] columns, double[] x, double[] z) {
+        int n = z.length;
+        int dim = columns.length;
+        int nBlocks = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int wordsPerBlock = BLOCK_SIZE >> 6;
+        forEach(nBlocks, b -> {
+            Arrays.fill(z, b * BLOCK_SIZE, Math.min(n, (b + 1) * BLOCK_SIZE), x[dim]);
+            for (int j = 0; j < dim; j++) {
+                double wj = x[j];
+                if (wj == 0) {
+                    continue;
+                }
+                long[] col = columns[j];
+                for (int w = b * wordsPerBlock; w < col.length && w < (b + 1) * wordsPerBlock; w++) {
+                    long word = col[w];
+                    while (word != 0) {
+                        z[(w << 6) + Long.numberOfTrailingZeros(word)] += wj;
+                        word &= word - 1;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Run the body for 0..n-1, in parallel in the pool, or on the calling thread without a pool.
+     */
+    private void forEach(int n, IntConsumer body) {
+        if (pool == null) {
+            for (int i = 0; i < n; i++) {
+                body.accept(i);
+            }
+            return;
+        }
+        try {
+            pool.submit(() -> IntStream.range(0, n).parallel().forEach(body)).get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static double dot(double[] a, double[] b) {
+        double sum = 0;
+        for (int k = 0; k < a.length; k++) {
+            sum += a[k] * b[k];
+        }
+        return sum;
+    }
+
+    private static double norm(double[] a) {
+        return Math.sqrt(dot(a, a));
+    }
+
+    private static void axpy(double a, double[] x, double[] y) {
+        for (int k = 0; k < x.length; k++) {
+            y[k] += a * x[k];
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package edu.wsu.eecs.gfc.core;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntConsumer;
+
+/**
+ * A reusable BFS engine over the dense int node ids of an IntAdjacency, from multiple sources, up to a radius.
+ * <p>
+ * The visited nodes are marked in a bitmap, and kept in an int array in BFS order, where the nodes of the same hops
+ * (the layers) are contiguous, so a layer is a range of the array. A run only clears the bits of the nodes visited by
+ * the previous run, so a run costs the size of the visited neighborhood, not the size of the graph.
+ * <p>
+ * With direction optimizing, a layer is expanded either top-down (from the frontier to the unvisited neighbors) or
+ * bottom-up (from every unvisited node to any neighbor in the frontier, stopping at the first), by the edges of the
+ * frontier against the edges left unexplored, as in the direction-optimizing BFS of Beamer et al.; bottom-up pays off
+ * for the large frontiers around hubs.
+ * <p>
+ * An engine is not thread-safe: use one engine per thread.
+ * <p>
+ * @author Peng Lin penglin03@gmail.com
+ */
+public class MultiSourceBFS {
+
+    /**
+     * The edges followed: from the nodes to their out-neighbors, in-neighbors, or both (undirected).
+     */
+    public enum Direction {
+        OUT, IN, BOTH
+    }
+
+    // Switch to bottom-up if the frontier has more than 1/ALPHA of the unexplored edges.
+    private static final int ALPHA = 14;
+
+    // Switch back to top-down if the frontier has less than 1/BETA of the nodes.
+    private static final int BETA = 24;
+
+    private final IntAdjacency g;
+
+    private final boolean isDirectionOptimizing;
+
+    private final BitSet visited;
+
+    private final BitSet frontier;
+
+    private int[] order;
+
+    private int numOfVisited;
+
+    private int[] layerStarts;
+
+    private int numOfLayers;
+
+    // Visit a neighbor in the top-down expansion, created once per engine, not once per node.
+    private final IntConsumer visitor;
+
+    // The number of the edge slots of the graph, by the direction, once needed.
+    private final long[] numOfSlots = {-1, -1, -1};
+
+    private MultiSourceBFS(IntAdjacency g, boolean isDirectionOptimizing) {
+        this.g = g;
+        this.isDirectionOptimizing = isDirectionOptimizing;
+        this.visited = new BitSet(g.nodeBound());
+        this.frontier = new BitSet();
+        this.order = new int[16];
+        this.layerStarts = new int[4];
+        this.visitor = w -> {
+            if (!visited.get(w)) {
+                visit(w);
+            }
+        };
+    }
+
+    public static MultiSourceBFS createInit(IntAdjacency g) {
+        return new MultiSourceBFS(g, true);
+    }
+
+    public static MultiSourceBFS createInit(IntAdjacency g, boolean isDirectionOptimizing) {
+        return new MultiSourceBFS(g, isDirectionOptimizing);
+    }
+
+    /**
+     * Visit the nodes within radius hops from the sources.
+     *
+     * @return the number of the nodes visited, including the sources.
+     */
+    public int run(int[] sources, int radius, Direction direction) {
+        for (int k = 0; k < numOfVisited; k++) {
+            visited.clear(order[k]);
+        }
+        numOfVisited = 0;
+        numOfLayers = 0;
+
+        long numOfExplored = 0;
+
+        startLayer();
+        for (int v : sources) {
+            if (!visited.get(v)) {
+                visit(v);
+                numOfExplored += sizeOf(v, direction);
+            }
+        }
+
+        boolean isBottomUp = false;
+        for (int h = 1; h <= radius; h++) {
+            int from = layerStarts[numOfLayers - 1];
+            int to = numOfVisited;
+            if (from == to) {
+                break;
+            }
+            if (isDirectionOptimizing) {
+                long numOfFrontierSlots = 0;
+                for (int k = from; k < to; k++) {
+                    numOfFrontierSlots += sizeOf(order[k], direction);
+                }
+                if (!isBottomUp && numOfFrontierSlots > (numOfSlots(direction) - numOfExplored) / ALPHA) {
+                    isBottomUp = true;
+                } else if (isBottomUp && (to - from) < g.nodeBound() / BETA) {
+                    isBottomUp = false;
+                }
+            }
+
+            startLayer();
+            if (isBottomUp) {
+                expandBottomUp(from, to, direction);
+            } else {
+                expandTopDown(from, to, direction);
+            }
+            for (int k = to; k < numOfVisited; k++) {
+                numOfExplored += sizeOf(order[k], direction);
+            }
+        }
+        // No empty layer at the end.
+        if (layerStarts[numOfLayers - 1] == numOfVisited && numOfLayers > 1) {
+            numOfLayers--;
+        }
+        return numOfVisited;
+    }
+
+    private void expandTopDown(int from, int to, Direction direction) {
+        for (int k = from; k < to; k++) {
+            int v = order[k];
+            if (direction != Direction.IN) {
+                g.forEachOutNeighbor(v, visitor);
+            }
+            if (direction != Direction.OUT) {
+                g.forEachInNeighbor(v, visitor);
+            }
+        }
+    }
+
+    private void expandBottomUp(int from, int to, Direction direction) {
+        for (int k = from; k < to; k++) {
+            frontier.set(order[k]);
+        }
+        for (int w = visited.nextClearBit(0); w < g.nodeBound(); w = visited.nextClearBit(w + 1)) {
+            // The parents of w by the direction: its in-neighbors for OUT, its out-neighbors for IN.
+            if (direction != Direction.IN && hasInNeighborIn(w) || direction != Direction.OUT && hasOutNeighborIn(w)) {
+                visit(w);
+            }
+        }
+        for (int k = from; k < to; k++) {
+            frontier.clear(order[k]);
+        }
+    }
+
+    private boolean hasInNeighborIn(int w) {
+        for (int i = 0; i < g.inSize(w); i++) {
+            int v = g.inNeighbor(w, i);
+            if (v >= 0 && frontier.get(v)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasOutNeighborIn(int w) {
+        for (int i = 0; i < g.outSize(w); i++) {
+            int v = g.outNeighbor(w, i);
+            if (v >= 0 && frontier.get(v)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long numOfSlots(Direction direction) {
+        if (numOfSlots[direction.ordinal()] < 0) {
+            long n = 0;
+            for (int v = 0; v < g.nodeBound(); v++) {
+                n += sizeOf(v, direction);
+            }
+            numOfSlots[direction.ordinal()] = n;
+        }
+        return numOfSlots[direction.ordinal()];
+    }
+
+    private int sizeOf(int v, Direction direction) {
+        return (direction != Direction.IN ? g.outSize(v) : 0) + (direction != Direction.OUT ? g.inSize(v) : 0);
+    }
+
+    private void startLayer() {
+        if (numOfLayers == layerStarts.length) {
+            layerStarts = Arrays.copyOf(layerStarts, 2 * numOfLayers);
+        }
+        layerStarts[numOfLayers++] = numOfVisited;
+    }
+
+    private void visit(int v) {
+        visited.set(v);
+        if (numOfVisited == order.length) {
+            order = Arrays.copyOf(order, 2 * numOfVisited);
+        }
+        order[numOfVisited++] = v;
+    }
+
+    /**
+     * @return the number of the layers of the last run: the sources are layer 0, and layer i is i hops away.
+     */
+    public int numOfLayers() {
+        return numOfLayers;
+    }
+
+    public int layerSize(int i) {
+        int end = i + 1 < numOfLayers ? layerStarts[i + 1] : numOfVisited;
+        return end - layerStarts[i];
+    }
+
+    public int layerNode(int i, int k) {
+        return order[layerStarts[i] + k];
+    }
+
+    public int numOfVisited() {
+        return numOfVisited;
+    }
+
+    /**
+     * @return the k-th node visited by the last run, in BFS order.
+     */
+    public int visitedNode(int k) {
+        return order[k];
+    }
+
+    public boolean isVisited(int v) {
+        return visited.get(v);
+    }
+}
@@ -34,11 +34,19 @@ public class OGFCRule<VT, ET> {
 
     public double pCov = -1;
 
+    // The out-pattern frontiers of each pattern node u, which only depend on M(u).
+    private Map<Node<VT>, List<Frontier<VT, ET>>> outFrontierCache;
+
+    // The relations of the data edges from M(u) to M(uu), which only depend on M(u) and M(uu).
+    private Map<Node<VT>, Map<Node<VT>, Set<Relation<VT, ET>>>> inRelationCache;
+
     private OGFCRule(Graph<VT, ET> P, GraphDatabase<VT, ET> G, Map<Node<VT>, Set<Node<VT>>> matchSet, Edge<VT, ET> exy) {
         this.P = P;
         this.G = G;
         this.matchSet = matchSet;
         this.exy = exy;
+        this.outFrontierCache = new HashMap<>();
+        this.inRelationCache = new HashMap<>();
     }
 
     public Graph<VT, ET> P() {
@@ -66,14 +74,18 @@ public class OGFCRule<VT, ET> {
     }
 
     private void removeUnmatchedPairs() {
+        // Over the int adjacency of G: the matches of the other end of a pattern edge are a bitmap of their ids, and a
+        // match v of u is checked by the ids of its neighbors, without a Set view per v.
+        IntAdjacency adj = G.adjacency();
         boolean isChanged = true;
         while (isChanged) {
             isChanged = false;
             for (Node<VT> u : matchSet.keySet()) {
                 for (Edge<VT, ET> eu : P.edgesFrom(u)) {
+                    BitSet dstIds = idsOf(matchSet.get(eu.dstNode()));
                     Set<Node<VT>> removeSet = new HashSet<>();
                     for (Node<VT> v : matchSet.get(u)) {
-                        if (Collections.disjoint(matchSet.get(eu.dstNode()), G.getGraph().nodesFrom(v))) {
+                        if (!hasNeighborIn(adj, G.indexOf(v), dstIds, true)) {
                             isChanged = true;
                             removeSet.add(v);
                         }
@@ -88,9 +100,10 @@ public class OGFCRule<VT, ET> {
                 }
 
                 for (Edge<VT, ET> euu : P.edgesTo(u)) {
+                    BitSet srcIds = idsOf(matchSet.get(euu.srcNode()));
                     Set<Node<VT>> removeSet = new HashSet<>();
                     for (Node<VT> v : matchSet.get(u)) {
-                        if (Collections.disjoint(matchSet.get(euu.srcNode()), G.getGraph().nodesTo(v))) {
+                        if (!hasNeighborIn(adj, G.indexOf(v), srcIds, false)) {
                             isChanged = true;
                             removeSet.add(v);
                         }
@@ -107,6 +120,34 @@ public class OGFCRule<VT, ET> {
         }
     }
 
+    private BitSet idsOf(Set<Node<VT>> nodes) {
+        BitSet ids = new BitSet();
+        for (Node<VT> v : nodes) {
+            int id = G.indexOf(v);
+            if (id >= 0) {
+                ids.set(id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * @return true if v has an out-neighbor (or an in-neighbor, if not isOut) in the ids.
+     */
+    private static boolean hasNeighborIn(IntAdjacency adj, int v, BitSet ids, boolean isOut) {
+        if (v < 0) {
+            return false;
+        }
+        int size = isOut ? adj.outSize(v) : adj.inSize(v);
+        for (int k = 0; k < size; k++) {
+            int w = isOut ? adj.outNeighbor(v, k) : adj.inNeighbor(v, k);
+            if (w >= 0 && ids.get(w)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public static <VT, ET> boolean simLabel(VT l1, VT l2, GraphDatabase<VT, ET> bigGraph) {
         return bigGraph.getSimLabels(l1).contains(l2);
     }
@@ -146,26 +187,27 @@ public class OGFCRule<VT, ET> {
      * First shallow copy the OGFCRule and then extend it by a new pattern edge f.
      *
      * @param phi is the original OGFC rule to extend.
-     * @param f   is the "frontier" edge to extend the rule P.
+     * @param f   is the frontier to extend the rule P.
      * @return a new rule that extends the original edge by a new edge.
      */
     @NotNull
-    public static <VT, ET> OGFCRule<VT, ET> extendEdge(OGFCRule<VT, ET> phi, Edge<VT, ET> f) {
-        if ((!phi.P.hasNodeId(f.srcId())) && (!phi.P.hasNodeId(f.dstId()))) {
+    public static <VT, ET> OGFCRule<VT, ET> extendEdge(OGFCRule<VT, ET> phi, Frontier<VT, ET> f) {
+        if (f.hasNewSrc() && f.hasNewDst()) {
+            throw new RuntimeException("Invalid frontier edge.");
+        }
+        if ((!f.hasNewSrc() && !phi.P.hasNodeId(f.src())) || (!f.hasNewDst() && !phi.P.hasNodeId(f.dst()))) {
             throw new RuntimeException("Invalid frontier edge.");
         }
-        Relation<VT, ET> r = Relation.fromEdge(f);
+        Relation<VT, ET> r = f.relation();
         Graph<VT, ET> Q = phi.P.shallowCopy();
         int id = phi.P.numOfNodes();
         Map<Node<VT>, Set<Node<VT>>> matchSet = new HashMap<>();
         for (Node<VT> u : phi.matchSet.keySet()) {
             matchSet.put(u, new HashSet<>(phi.matchSet.get(u)));
         }
-        if (f.srcId() == null && f.dstId() == null) {
-            throw new RuntimeException("Invalid frontier edge.");
-        } else if (f.srcId() == null) {
-            Node<VT> u = Q.getNode(f.dstId());
-            Node<VT> v = Node.createLabeledNode(id, f.srcLabel());
+        if (f.hasNewSrc()) {
+            Node<VT> u = Q.getNode(f.dst());
+            Node<VT> v = Node.createLabeledNode(id, r.srcLabel());
             matchSet.put(v, new HashSet<>());
             for (VT lv : phi.G.getSimLabels(v.label())) {
                 matchSet.get(v).addAll(phi.G.getNodes(lv));
@@ -176,11 +218,11 @@ public class OGFCRule<VT, ET> {
                 }
             }
             Q.addNode(v);
-            Edge<VT, ET> e = Edge.createLabeledEdge(v, u, f.label());
+            Edge<VT, ET> e = Edge.createLabeledEdge(v, u, r.edgeLabel());
             Q.addEdge(e);
-        } else if (f.dstId() == null) {
-            Node<VT> u = Q.getNode(f.srcId());
-            Node<VT> v = Node.createLabeledNode(id, f.dstLabel());
+        } else if (f.hasNewDst()) {
+            Node<VT> u = Q.getNode(f.src());
+            Node<VT> v = Node.createLabeledNode(id, r.dstLabel());
             matchSet.put(v, new HashSet<>());
             for (VT lv : phi.G.getSimLabels(v.label())) {
                 matchSet.get(v).addAll(phi.G.getNodes(lv));
@@ -191,17 +233,17 @@ public class OGFCRule<VT, ET> {
                 }
             }
             Q.addNode(v);
-            Edge<VT, ET> e = Edge.createLabeledEdge(u, v, f.label());
+            Edge<VT, ET> e = Edge.createLabeledEdge(u, v, r.edgeLabel());
             Q.addEdge(e);
         } else {
-            Q.createEdge(f.srcId(), f.dstId(), f.label());
-            Node<VT> s = Q.getNode(f.srcId());
-            Node<VT> t = Q.getNode(f.dstId());
+            Q.createEdge(f.src(), f.dst(), r.edgeLabel());
+            Node<VT> s = Q.getNode(f.src());
+            Node<VT> t = Q.getNode(f.dst());
             Set<Node<VT>> sSet = new HashSet<>();
             Set<Node<VT>> tSet = new HashSet<>();
             for (Node<VT> v : matchSet.get(s)) {
                 for (Node<VT> w : matchSet.get(t)) {
-                    Edge<VT, ET> e = phi.G.getGraph().getEdge(v, w);
+                    Edge<VT, ET> e = phi.G.getEdge(v, w);
                     if (e != null) {
                         sSet.add(e.srcNode());
                         tSet.add(e.dstNode());
@@ -214,51 +256,116 @@ public class OGFCRule<VT, ET> {
 
         OGFCRule<VT, ET> phi2 = new OGFCRule<>(Q, phi.G, matchSet, phi.exy);
         phi2.removeUnmatchedPairs();
+        phi2.inheritFrontiers(phi);
         return phi2;
     }
 
-    public Set<Edge<VT, ET>> searchExtensionEdges() {
-        Set<Edge<VT, ET>> fs = new HashSet<>();
+    /**
+     * Restrict a rule to the similar labels that G currently has, e.g., after G narrows its ontology hops.
+     * The matches of every pattern node other than x and y must have labels similar to the pattern node,
+     * and then the unmatched pairs are removed again.
+     * This only approximates the match sets of the same pattern mined at the narrower hop: when the pattern was
+     * extended, the matches of the pattern nodes with similar labels were subtracted from each other, and the
+     * frontiers of relations similar to r(x, y) were excluded, both by the similar labels of the wider hop, which
+     * subtract and exclude more. So the restricted match sets can miss some matches of the narrower hop.
+     *
+     * @param phi is the rule found with the wider similar labels.
+     * @return the restricted rule, or null if the pattern no longer has any match.
+     */
+    public static <VT, ET> OGFCRule<VT, ET> restrictToSimLabels(OGFCRule<VT, ET> phi) {
+        Map<Node<VT>, Set<Node<VT>>> matchSet = new HashMap<>();
+        for (Node<VT> u : phi.matchSet.keySet()) {
+            Set<Node<VT>> uMatches = new HashSet<>();
+            if (u == phi.x() || u == phi.y()) {
+                uMatches.addAll(phi.matchSet.get(u));
+            } else {
+                Set<VT> simLabels = phi.G.getSimLabels(u.label());
+                for (Node<VT> v : phi.matchSet.get(u)) {
+                    if (simLabels.contains(v.label())) {
+                        uMatches.add(v);
+                    }
+                }
+            }
+            if (uMatches.isEmpty()) {
+                return null;
+            }
+            matchSet.put(u, uMatches);
+        }
+        OGFCRule<VT, ET> phi2 = new OGFCRule<>(phi.P, phi.G, matchSet, phi.exy);
+        phi2.removeUnmatchedPairs();
+        if (phi2.matchSet.get(phi2.x()).isEmpty()) {
+            return null;
+        }
+        return phi2;
+    }
+
+    /**
+     * Create a rule loaded from a rule set file (see RuleSet), which only keeps the matches of x and y.
+     * The rule is not bound to a data graph: it can be used to check facts, but not be extended.
+     */
+    static <VT, ET> OGFCRule<VT, ET> createLoaded(Graph<VT, ET> P, Edge<VT, ET> exy,
+                                                 Set<Node<VT>> xMatches, Set<Node<VT>> yMatches) {
+        Map<Node<VT>, Set<Node<VT>>> matchSet = new HashMap<>();
+        matchSet.put(exy.srcNode(), xMatches);
+        matchSet.put(exy.dstNode(), yMatches);
+        return new OGFCRule<>(P, null, matchSet, exy);
+    }
+
+    /**
+     * Reuse the cached frontiers of the parent rule for the pattern nodes whose match sets did not change.
+     * Match sets only shrink by extension, so an unchanged size means an unchanged match set.
+     */
+    private void inheritFrontiers(OGFCRule<VT, ET> parent) {
+        for (Node<VT> u : parent.outFrontierCache.keySet()) {
+            if (isMatchSetUnchanged(u, parent)) {
+                outFrontierCache.put(u, parent.outFrontierCache.get(u));
+            }
+        }
+        for (Node<VT> u : parent.inRelationCache.keySet()) {
+            if (!isMatchSetUnchanged(u, parent)) {
+                continue;
+            }
+            for (Map.Entry<Node<VT>, Set<Relation<VT, ET>>> entry : parent.inRelationCache.get(u).entrySet()) {
+                if (isMatchSetUnchanged(entry.getKey(), parent)) {
+                    inRelationCache.computeIfAbsent(u, k -> new HashMap<>()).put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+
+    private boolean isMatchSetUnchanged(Node<VT> u, OGFCRule<VT, ET> parent) {
+        return matchSet.containsKey(u) && matchSet.get(u).size() == parent.matchSet.get(u).size();
+    }
+
+    public Set<Frontier<VT, ET>> searchExtensionEdges() {
+        // Linked, so the frontiers come out in the order they are generated: colliding hash codes would otherwise order
+        // them by their identity hash codes, which differ from run to run.
+        Set<Frontier<VT, ET>> fs = new LinkedHashSet<>();
         Relation<VT, ET> rxy = Relation.fromEdge(exy);
 
         // Generate out-pattern frontiers.
         for (Node<VT> u : matchSet.keySet()) {
-            for (VT uSim : G.getSimLabels(u.label())) {
-                for (Relation<VT, ET> r : G.getOutRelations(uSim)) {
-                    if (!simRelation(r, rxy, G) && !Collections.disjoint(G.getSrcNodes(r), matchSet.get(u))) {
-                        Edge<VT, ET> f = Edge.createLabeledEdge(Node.createLabeledNode(u.id(), r.srcLabel()),
-                                Node.createLabeledNode(null, r.dstLabel()), r.edgeLabel());
-                        fs.add(f);
-                    }
-                }
-                for (Relation<VT, ET> r : G.getInRelations(uSim)) {
-                    if (!simRelation(r, rxy, G) && !Collections.disjoint(G.getDstNodes(r), matchSet.get(u))) {
-                        Edge<VT, ET> f = Edge.createLabeledEdge(Node.createLabeledNode(null, r.srcLabel()),
-                                Node.createLabeledNode(u.id(), r.dstLabel()), r.edgeLabel());
-                        fs.add(f);
-                    }
-                }
+            List<Frontier<VT, ET>> uFrontiers = outFrontierCache.get(u);
+            if (uFrontiers == null) {
+                uFrontiers = searchOutPatternFrontiers(u, rxy);
+                outFrontierCache.put(u, uFrontiers);
             }
+            fs.addAll(uFrontiers);
         }
 
         // Generate in-pattern frontiers.
+        Map<Node<VT>, Set<VT>> matchLabels = new HashMap<>();
         for (Node<VT> u : matchSet.keySet()) {
             for (Node<VT> uu : matchSet.keySet()) {
                 if (uu != u && !P.hasEdge(u, uu) && !(u == x() && uu == y())) {
-                    Set<Relation<VT, ET>> relationSet = new HashSet<>();
-                    for (Node<VT> v : matchSet.get(u)) {
-                        for (Node<VT> vv : matchSet.get(uu)) {
-                            if (G.getGraph().hasEdge(v, vv)) {
-                                Relation<VT, ET> r = Relation.fromEdge(G.getGraph().getEdge(v, vv));
-                                if (!simRelation(r, rxy, G) && !relationSet.contains(r)) {
-                                    relationSet.add(r);
-                                    Edge<VT, ET> f = Edge.createLabeledEdge(Node.createLabeledNode(u.id(), r.srcLabel()),
-                                            Node.createLabeledNode(uu.id(), r.dstLabel()), r.edgeLabel());
-                                    fs.add(f);
-
-                                }
-                            }
-                        }
+                    Map<Node<VT>, Set<Relation<VT, ET>>> uRelations = inRelationCache.computeIfAbsent(u, k -> new HashMap<>());
+                    Set<Relation<VT, ET>> relationSet = uRelations.get(uu);
+                    if (relationSet == null) {
+                        relationSet = searchInPatternRelations(u, uu, rxy, matchLabels);
+                        uRelations.put(uu, relationSet);
+                    }
+                    for (Relation<VT, ET> r : relationSet) {
+                        fs.add(Frontier.createBetween((int) u.id(), (int) uu.id(), r));
                     }
                 }
             }
@@ -266,4 +373,102 @@ public class OGFCRule<VT, ET> {
 
         return fs;
     }
+
+    private List<Frontier<VT, ET>> searchOutPatternFrontiers(Node<VT> u, Relation<VT, ET> rxy) {
+        List<Frontier<VT, ET>> uFrontiers = new ArrayList<>();
+        for (VT uSim : G.getSimLabels(u.label())) {
+            for (Relation<VT, ET> r : G.getOutRelations(uSim)) {
+                if (!simRelation(r, rxy, G) && !Collections.disjoint(G.getSrcNodes(r), matchSet.get(u))) {
+                    uFrontiers.add(Frontier.createOutFrom((int) u.id(), r));
+                }
+            }
+            for (Relation<VT, ET> r : G.getInRelations(uSim)) {
+                if (!simRelation(r, rxy, G) && !Collections.disjoint(G.getDstNodes(r), matchSet.get(u))) {
+                    uFrontiers.add(Frontier.createInTo((int) u.id(), r));
+                }
+            }
+        }
+        return uFrontiers;
+    }
+
+    private Set<Relation<VT, ET>> searchInPatternRelations(Node<VT> u, Node<VT> uu, Relation<VT, ET> rxy,
+                                                           Map<Node<VT>, Set<VT>> matchLabels) {
+        // The relations that can possibly connect M(u) to M(uu).
+        Set<Relation<VT, ET>> candidates = new HashSet<>();
+        for (VT lu : getMatchLabels(u, matchLabels)) {
+            for (Relation<VT, ET> r : G.getOutRelations(lu)) {
+                if (getMatchLabels(uu, matchLabels).contains(r.dstLabel()) && !simRelation(r, rxy, G)) {
+                    candidates.add(r);
+                }
+            }
+        }
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+        return joinRelations(matchSet.get(u), matchSet.get(uu), candidates);
+    }
+
+    private Set<VT> getMatchLabels(Node<VT> u, Map<Node<VT>, Set<VT>> matchLabels) {
+        Set<VT> labels = matchLabels.get(u);
+        if (labels == null) {
+            labels = new HashSet<>();
+            for (Node<VT> v : matchSet.get(u)) {
+                labels.add(v.label());
+            }
+            matchLabels.put(u, labels);
+        }
+        return labels;
+    }
+
+    /**
+     * Find the relations of the data edges from srcMatches to dstMatches by a join:
+     * iterate the adjacency of the smaller match set and probe the other one.
+     * The join stops as soon as all the candidate relations are found.
+     *
+     * @param srcMatches is the match set of the src pattern node.
+     * @param dstMatches is the match set of the dst pattern node.
+     * @param candidates is the relations of interest, and all the others are ignored.
+     * @return the candidate relations that connect srcMatches to dstMatches.
+     */
+    private Set<Relation<VT, ET>> joinRelations(Set<Node<VT>> srcMatches, Set<Node<VT>> dstMatches,
+                                                Set<Relation<VT, ET>> candidates) {
+        Set<Relation<VT, ET>> relationSet = new HashSet<>();
+        boolean isForward = srcMatches.size() <= dstMatches.size();
+        Set<Node<VT>> outer = isForward ? srcMatches : dstMatches;
+        Set<Node<VT>> inner = isForward ? dstMatches : srcMatches;
+        for (Node<VT> v : outer) {
+            if (!G.hasNode(v)) {
+                continue;
+            }
+            Collection<Edge<VT, ET>> adj = isForward ? G.edgesFrom(v) : G.edgesTo(v);
+            if (adj.size() <= inner.size()) {
+                for (Edge<VT, ET> e : adj) {
+                    if (inner.contains(isForward ? e.dstNode() : e.srcNode())) {
+                        Relation<VT, ET> r = Relation.fromEdge(e);
+                        if (candidates.contains(r)) {
+                            relationSet.add(r);
+                        }
+                    }
+                }
+            } else {
+                // A hub node: probing the smaller side is cheaper than scanning its adjacency.
+                for (Node<VT> w : inner) {
+                    if (!G.hasNode(w)) {
+                        continue;
+                    }
+                    Edge<VT, ET> e = isForward ? G.getEdge(v, w) : G.getEdge(w, v);
+                    if (e != null) {
+                        Relation<VT, ET> r = Relation.fromEdge(e);
+                        if (candidates.contains(r)) {
+                            relationSet.add(r);
+                        }
+                    }
+                }
+            }
+            if (relationSet.size() == candidates.size()) {
+                break;
+            }
+        }
+        return relationSet;
+    }
 }
@@ -0,0 +1,227 @@
+package edu.wsu.eecs.gfc.core;
+
+import java.io.File;
+import java.util.function.IntConsumer;
+
+/**
+ * The adjacency as the CSR arrays of FlatAdjacency, off the Java heap in IntSegments, so that the adjacency of a
+ * graph larger than the heap is neither limited by the heap nor scanned by the GC. The store holds its segments until
+ * close(), which the graph calls by closeAdjacency(), and after which the store throws an IllegalStateException when
+ * read (see IntSegment); a store replaced by a rebuild of a GraphStore is left to the GC.
+ * <p>
+ * @author Peng Lin penglin03@gmail.com
+ */
+final class OffHeapAdjacency implements AdjacencyStore {
+
+    private final IntSegment outStart;
+
+    private final IntSegment outNbrs;
+
+    private final IntSegment outLabels;
+
+    private final IntSegment inStart;
+
+    private final IntSegment inNbrs;
+
+    private final IntSegment inLabels;
+
+    private OffHeapAdjacency(Builder b) {
+        this.outStart = b.outStart;
+        this.outNbrs = b.outNbrs;
+        this.outLabels = b.outLabels;
+        this.inStart = b.inStart;
+        this.inNbrs = b.inNbrs;
+        this.inLabels = b.inLabels;
+    }
+
+    @Override
+    public int nodeBound() {
+        return outStart.length() - 1;
+    }
+
+    @Override
+    public int outSize(int v) {
+        return outStart.get(v + 1) - outStart.get(v);
+    }
+
+    @Override
+    public int outNeighbor(int v, int k) {
+        return outNbrs.get(outStart.get(v) + k);
+    }
+
+    @Override
+    public int inSize(int v) {
+        return inStart.get(v + 1) - inStart.get(v);
+    }
+
+    @Override
+    public int inNeighbor(int v, int k) {
+        return inNbrs.get(inStart.get(v) + k);
+    }
+
+    @Override
+    public int outLabel(int v, int k) {
+        return outLabels.get(outStart.get(v) + k);
+    }
+
+    @Override
+    public int inLabel(int v, int k) {
+        return inLabels.get(inStart.get(v) + k);
+    }
+
+    @Override
+    public void forEachOutNeighbor(int v, IntConsumer action) {
+        for (int k = outStart.get(v), end = outStart.get(v + 1); k < end; k++) {
+            action.accept(outNbrs.get(k));
+        }
+    }
+
+    @Override
+    public void forEachInNeighbor(int v, IntConsumer action) {
+        for (int k = inStart.get(v), end = inStart.get(v + 1); k < end; k++) {
+            action.accept(inNbrs.get(k));
+        }
+    }
+
+    @Override
+    public EdgeCursor edgeCursor() {
+        return new Cursor(outStart, outNbrs, outLabels, true, 0, nodeBound());
+    }
+
+    @Override
+    public EdgeCursor outEdgeCursor(int v) {
+        return new Cursor(outStart, outNbrs, outLabels, true, v, v + 1);
+    }
+
+    @Override
+    public EdgeCursor inEdgeCursor(int v) {
+        return new Cursor(inStart, inNbrs, inLabels, false, v, v + 1);
+    }
+
+    @Override
+    public long sizeInBytes() {
+        return outStart.sizeInBytes() + outNbrs.sizeInBytes() + outLabels.sizeInBytes()
+                + inStart.sizeInBytes() + inNbrs.sizeInBytes() + inLabels.sizeInBytes();
+    }
+
+    @Override
+    public void close() {
+        outStart.close();
+        outNbrs.close();
+        outLabels.close();
+        inStart.close();
+        inNbrs.close();
+        inLabels.close();
+    }
+
+    static final class Builder implements AdjacencyStore.Builder {
+
+        private final IntSegment outStart;
+
+        private final IntSegment outNbrs;
+
+        private final IntSegment outLabels;
+
+        private final IntSegment inStart;
+
+        private final IntSegment inNbrs;
+
+        private final IntSegment inLabels;
+
+        private int numOfOut = 0;
+
+        private int numOfIn = 0;
+
+        Builder(int numOfNodes, int numOfEdges, File dir) {
+            this.outStart = IntSegment.allocate(numOfNodes + 1, dir);
+            this.outNbrs = IntSegment.allocate(numOfEdges, dir);
+            this.outLabels = IntSegment.allocate(numOfEdges, dir);
+            this.inStart = IntSegment.allocate(numOfNodes + 1, dir);
+            this.inNbrs = IntSegment.allocate(numOfEdges, dir);
+            this.inLabels = IntSegment.allocate(numOfEdges, dir);
+        }
+
+        @Override
+        public void appendOut(int[] nbrs, int[] labels, int size) {
+            numOfOut = append(outStart, outNbrs, outLabels, numOfOut, nbrs, labels, size);
+        }
+
+        @Override
+        public void appendIn(int[] nbrs, int[] labels, int size) {
+            numOfIn = append(inStart, inNbrs, inLabels, numOfIn, nbrs, labels, size);
+        }
+
+        private static int append(IntSegment start, IntSegment nbrSeg, IntSegment labelSeg, int v,
+                                  int[] nbrs, int[] labels, int size) {
+            int k = start.get(v);
+            for (int i = 0; i < size; i++) {
+                nbrSeg.set(k + i, nbrs[i]);
+                labelSeg.set(k + i, labels[i]);
+            }
+            start.set(v + 1, k + size);
+            return v + 1;
+        }
+
+        @Override
+        public AdjacencyStore build() {
+            return new OffHeapAdjacency(this);
+        }
+    }
+
+    private static final class Cursor implements EdgeCursor {
+
+        private final IntSegment start;
+
+        private final IntSegment nbrs;
+
+        private final IntSegment labels;
+
+        // The edges of the slots are out-edges (from the node to the slot) or in-edges (from the slot to the node).
+        private final boolean isOut;
+
+        private final int endNode;
+
+        private int v;
+
+        private int k;
+
+        // The end of the slots of v.
+        private int end;
+
+        private Cursor(IntSegment start, IntSegment nbrs, IntSegment labels, boolean isOut, int fromNode, int endNode) {
+            this.start = start;
+            this.nbrs = nbrs;
+            this.labels = labels;
+            this.isOut = isOut;
+            this.endNode = endNode;
+            this.v = fromNode;
+            this.k = start.get(fromNode) - 1;
+            this.end = fromNode < endNode ? start.get(fromNode + 1) : k + 1;
+        }
+
+        @Override
+        public boolean next() {
+            k++;
+            while (v < endNode && k >= end) {
+                v++;
+                end = v < endNode ? start.get(v + 1) : end;
+            }
+            return v < endNode;
+        }
+
+        @Override
+        public int src() {
+            return isOut ? v : nbrs.get(k);
+        }
+
+        @Override
+        public int dst() {
+            return isOut ? nbrs.get(k) : v;
+        }
+
+        @Override
+        public int label() {
+            return labels.get(k);
+        }
+    }
+}
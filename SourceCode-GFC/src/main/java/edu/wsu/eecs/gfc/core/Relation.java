@@ -6,6 +6,8 @@ import org.jetbrains.annotations.NotNull;
  * Relation: a relation in a graph is a triple of labels: (srcLabel, dstLabel, edgeLabel)
  * Given two nodes v_x and v_y with labels x and y, respectively, a relation r(x, y) identifies a
  * relationship between the two nodes.
+ * <p>
+ * Relations are interned in the RelationRegistry, and each relation has a dense int id.
  *
  * @author Peng Lin penglin03@gmail.com
  */
@@ -17,20 +19,44 @@ public class Relation<VT, ET> {
 
     private final ET edgeLabel;
 
-    private Relation(VT srcLabel, VT dstLabel, ET edgeLabel) {
+    private final int id;
+
+    private final int hash;
+
+    private Relation(VT srcLabel, VT dstLabel, ET edgeLabel, int id) {
         this.srcLabel = srcLabel;
         this.dstLabel = dstLabel;
         this.edgeLabel = edgeLabel;
+        this.id = id;
+        int result = srcLabel != null ? srcLabel.hashCode() : 0;
+        result = 31 * result + (dstLabel != null ? dstLabel.hashCode() : 0);
+        result = 31 * result + (edgeLabel != null ? edgeLabel.hashCode() : 0);
+        this.hash = result;
     }
 
     @NotNull
     public static <VT, ET> Relation<VT, ET> createRelation(VT srcLabel, VT dstLabel, ET edgeLabel) {
-        return new Relation<>(srcLabel, dstLabel, edgeLabel);
+        return RelationRegistry.intern(srcLabel, dstLabel, edgeLabel);
     }
 
     @NotNull
     public static <VT, ET> Relation<VT, ET> fromEdge(Edge<VT, ET> e) {
-        return new Relation<>(e.srcLabel(), e.dstLabel(), e.label());
+        return RelationRegistry.get(e.relationId());
+    }
+
+    /**
+     * A lookup key of the registry, which is not assigned an id.
+     */
+    static <VT, ET> Relation<VT, ET> createKey(VT srcLabel, VT dstLabel, ET edgeLabel) {
+        return new Relation<>(srcLabel, dstLabel, edgeLabel, -1);
+    }
+
+    Relation<VT, ET> withId(int id) {
+        return new Relation<>(srcLabel, dstLabel, edgeLabel, id);
+    }
+
+    public int id() {
+        return id;
     }
 
     public VT srcLabel() {
@@ -59,10 +85,7 @@ public class Relation<VT, ET> {
 
     @Override
     public int hashCode() {
-        int result = srcLabel != null ? srcLabel.hashCode() : 0;
-        result = 31 * result + (dstLabel != null ? dstLabel.hashCode() : 0);
-        result = 31 * result + (edgeLabel != null ? edgeLabel.hashCode() : 0);
-        return result;
+        return hash;
     }
 
     @Override
@@ -0,0 +1,547 @@
+package edu.wsu.eecs.gfc.core;
+
+import java.util.*;
+
+/**
+ * The columnar store of the edges of a GraphDatabase, partitioned by the relations.
+ * <p>
+ * The edges are sorted by (relation id, src, dst), over dense int ids of the nodes, into the int columns src and dst
+ * (with the edge objects of a FLAT graph alongside; those of a GraphStore are made when read, over its ids), so the
+ * edges of a relation are a range of the columns, and the dsts
+ * of a src are a sorted range of it (the forward CSR, by the distinct srcs of the relation). The backward CSR is an
+ * order of the positions by (relation id, dst, src), by the distinct dsts of the relation. All of them are built by
+ * stable counting sorts over all the edges, in O(|V| + |E| + |R|).
+ * <p>
+ * The edges of a relation are served as a read-only Set view (see edges(rid)), without any object per edge. An edge
+ * removed by remove() is marked in a bitmap of tombstones, and is alive again when added back by add(); an edge not
+ * indexed (added after the build) is kept in a small set of added edges of its relation. The views of the src nodes,
+ * the dst nodes and the neighbors of a relation are of the relation as indexed: like the maps they replace, they are
+ * not changed by the removals of edges.
+ * <p>
+ * @author Peng Lin penglin03@gmail.com
+ */
+final class RelationColumns<VT, ET> {
+
+    // The ids of the nodes: those of the store of the graph, or else of nodes and nodeIds (which are null otherwise).
+    private final GraphStore<VT, ET> store;
+
+    private final Node<VT>[] nodes;
+
+    private final Map<Node<VT>, Integer> nodeIds;
+
+    private final int[] src;
+
+    private final int[] dst;
+
+    // The edges by position, or null with a store.
+    private final Edge<VT, ET>[] edges;
+
+    // The range of the positions of the edges of the relation id r: relStart[r] .. relStart[r + 1] - 1.
+    private final int[] relStart;
+
+    // The distinct srcs of all the relations, with the starts of their dsts; relation r has srcKeys[srcFrom[r]..srcFrom[r + 1] - 1].
+    private final int[] srcKeys;
+
+    private final int[] srcStart;
+
+    private final int[] srcFrom;
+
+    // The positions by (relation id, dst, src), and the distinct dsts of all the relations, likewise.
+    private final int[] bwdOrder;
+
+    private final int[] dstKeys;
+
+    private final int[] dstStart;
+
+    private final int[] dstFrom;
+
+    private final BitSet removed;
+
+    private final int[] numOfRemoved;
+
+    private final Map<Integer, Set<Edge<VT, ET>>> added = new HashMap<>();
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    RelationColumns(Graph<VT, ET> graph) {
+        this.store = graph.store();
+        int m = graph.numOfEdges();
+        int[] rawSrc = new int[m];
+        int[] rawDst = new int[m];
+        int[] rawRel = new int[m];
+        Edge<VT, ET>[] rawEdges = null;
+        int numOfNodes;
+        int k = 0;
+        if (store != null) {
+            this.nodes = null;
+            this.nodeIds = null;
+            numOfNodes = store.nodeBound();
+            for (EdgeCursor c = store.edgeCursor(); c.next(); k++) {
+                rawSrc[k] = c.src();
+                rawDst[k] = c.dst();
+                rawRel[k] = c.label();
+            }
+        } else {
+            int n = graph.numOfNodes();
+            this.nodes = new Node[n];
+            this.nodeIds = new HashMap<>(2 * n);
+            numOfNodes = 0;
+            for (Node<VT> v : graph.nodeIter()) {
+                nodes[numOfNodes] = v;
+                nodeIds.put(v, numOfNodes);
+                numOfNodes++;
+            }
+            rawEdges = new Edge[m];
+            for (Edge<VT, ET> e : graph.edgeIter()) {
+                rawSrc[k] = nodeIds.get(e.srcNode());
+                rawDst[k] = nodeIds.get(e.dstNode());
+                rawRel[k] = e.relationId();
+                rawEdges[k] = e;
+                k++;
+            }
+        }
+        int numOfRelations = RelationRegistry.size();
+
+        // Forward: by (relation, src, dst), by LSD counting sorts from the least significant key.
+        int[] order = identity(m);
+        order = countingSort(order, rawDst, numOfNodes);
+        order = countingSort(order, rawSrc, numOfNodes);
+        order = countingSort(order, rawRel, numOfRelations);
+        this.src = new int[m];
+        this.dst = new int[m];
+        this.edges = rawEdges == null ? null : new Edge[m];
+        int[] rel = new int[m];
+        for (int i = 0; i < m; i++) {
+            src[i] = rawSrc[order[i]];
+            dst[i] = rawDst[order[i]];
+            if (edges != null) {
+                edges[i] = rawEdges[order[i]];
+            }
+            rel[i] = rawRel[order[i]];
+        }
+        this.relStart = new int[numOfRelations + 1];
+        for (int i = 0; i < m; i++) {
+            relStart[rel[i] + 1]++;
+        }
+        for (int r = 0; r < numOfRelations; r++) {
+            relStart[r + 1] += relStart[r];
+        }
+
+        // Backward: by (relation, dst, src), from the forward order.
+        int[] bwd = countingSort(identity(m), dst, numOfNodes);
+        this.bwdOrder = countingSort(bwd, rel, numOfRelations);
+
+        int[][] fwdKeys = groupKeys(identity(m), src, rel, numOfRelations);
+        this.srcKeys = fwdKeys[0];
+        this.srcStart = fwdKeys[1];
+        this.srcFrom = fwdKeys[2];
+        int[][] bwdKeys = groupKeys(bwdOrder, dst, rel, numOfRelations);
+        this.dstKeys = bwdKeys[0];
+        this.dstStart = bwdKeys[1];
+        this.dstFrom = bwdKeys[2];
+
+        this.removed = new BitSet(m);
+        this.numOfRemoved = new int[numOfRelations];
+    }
+
+    private static int[] identity(int m) {
+        int[] order = new int[m];
+        for (int i = 0; i < m; i++) {
+            order[i] = i;
+        }
+        return order;
+    }
+
+    /**
+     * @return the order stably sorted by the keys (in [0, bound)) of its items.
+     */
+    private static int[] countingSort(int[] order, int[] keys, int bound) {
+        int[] start = new int[bound + 1];
+        for (int i : order) {
+            start[keys[i] + 1]++;
+        }
+        for (int b = 0; b < bound; b++) {
+            start[b + 1] += start[b];
+        }
+        int[] sorted = new int[order.length];
+        for (int i : order) {
+            sorted[start[keys[i]]++] = i;
+        }
+        return sorted;
+    }
+
+    /**
+     * Group the positions (in the order, which is sorted by the relations and the keys) by the (relation, key) pairs.
+     *
+     * @return the keys of the groups, the starts of the groups in the order (plus the end), and the first group of
+     * every relation (plus the end).
+     */
+    private static int[][] groupKeys(int[] order, int[] keys, int[] rel, int numOfRelations) {
+        int numOfGroups = 0;
+        for (int i = 0; i < order.length; i++) {
+            if (i == 0 || rel[order[i]] != rel[order[i - 1]] || keys[order[i]] != keys[order[i - 1]]) {
+                numOfGroups++;
+            }
+        }
+        int[] groupKeys = new int[numOfGroups];
+        int[] groupStart = new int[numOfGroups + 1];
+        int[] relFrom = new int[numOfRelations + 1];
+        int g = 0;
+        for (int i = 0; i < order.length; i++) {
+            if (i == 0 || rel[order[i]] != rel[order[i - 1]] || keys[order[i]] != keys[order[i - 1]]) {
+                groupKeys[g] = keys[order[i]];
+                groupStart[g] = i;
+                relFrom[rel[order[i]] + 1]++;
+                g++;
+            }
+        }
+        groupStart[numOfGroups] = order.length;
+        for (int r = 0; r < numOfRelations; r++) {
+            relFrom[r + 1] += relFrom[r];
+        }
+        return new int[][]{groupKeys, groupStart, relFrom};
+    }
+
+    /**
+     * @return the id of the node, or null if it has none.
+     */
+    private Integer idOf(Object v) {
+        if (store == null) {
+            return nodeIds.get(v);
+        }
+        if (!(v instanceof Node)) {
+            return null;
+        }
+        @SuppressWarnings("unchecked")
+        int id = store.indexOf((Node<VT>) v);
+        return id < 0 ? null : id;
+    }
+
+    private Node<VT> nodeAt(int id) {
+        return store != null ? store.nodeAt(id) : nodes[id];
+    }
+
+    private Edge<VT, ET> edgeAt(int pos, int rid) {
+        if (edges != null) {
+            return edges[pos];
+        }
+        return Edge.createRelationEdge(nodeAt(src[pos]), nodeAt(dst[pos]), RelationRegistry.<VT, ET>get(rid).edgeLabel(), rid);
+    }
+
+    private boolean isIndexed(int rid) {
+        return rid >= 0 && rid < numOfRemoved.length;
+    }
+
+    /**
+     * @return the number of the indexed edges of the relation (including the removed ones).
+     */
+    int numOfIndexedEdges(int rid) {
+        return isIndexed(rid) ? relStart[rid + 1] - relStart[rid] : 0;
+    }
+
+    /**
+     * @return the position of the edge (src, dst) in the relation, or -1 if it is not indexed.
+     */
+    private int find(int rid, Node<VT> srcNode, Node<VT> dstNode) {
+        if (!isIndexed(rid)) {
+            return -1;
+        }
+        Integer s = idOf(srcNode);
+        Integer d = idOf(dstNode);
+        if (s == null || d == null) {
+            return -1;
+        }
+        int g = Arrays.binarySearch(srcKeys, srcFrom[rid], srcFrom[rid + 1], s);
+        if (g < 0) {
+            return -1;
+        }
+        int pos = Arrays.binarySearch(dst, srcStart[g], srcStart[g + 1], d);
+        return pos < 0 ? -1 : pos;
+    }
+
+    private int positionOf(Object o) {
+        if (!(o instanceof Edge)) {
+            return -1;
+        }
+        @SuppressWarnings("unchecked")
+        Edge<VT, ET> e = (Edge<VT, ET>) o;
+        int pos = find(e.relationId(), e.srcNode(), e.dstNode());
+        // Without the edge objects, the one at the position is equal: its label is the edge label of the relation.
+        return pos >= 0 && (edges == null || edges[pos].equals(e)) ? pos : -1;
+    }
+
+    /**
+     * Remove an edge of an indexed relation from its edges.
+     *
+     * @return true if the edge was one of them.
+     */
+    boolean remove(Edge<VT, ET> e) {
+        int pos = positionOf(e);
+        if (pos >= 0) {
+            if (removed.get(pos)) {
+                return false;
+            }
+            removed.set(pos);
+            numOfRemoved[e.relationId()]++;
+            return true;
+        }
+        Set<Edge<VT, ET>> more = added.get(e.relationId());
+        return more != null && more.remove(e);
+    }
+
+    /**
+     * Add an edge of an indexed relation to its edges.
+     *
+     * @return true if the edge was not one of them.
+     */
+    boolean add(Edge<VT, ET> e) {
+        int pos = positionOf(e);
+        if (pos >= 0) {
+            if (!removed.get(pos)) {
+                return false;
+            }
+            removed.clear(pos);
+            numOfRemoved[e.relationId()]--;
+            return true;
+        }
+        return added.computeIfAbsent(e.relationId(), r -> new HashSet<>()).add(e);
+    }
+
+    /**
+     * @return the edges of the relation id, as a read-only Set view of the columns.
+     */
+    Set<Edge<VT, ET>> edges(int rid) {
+        return new EdgeSet(rid);
+    }
+
+    /**
+     * @return the edges of the relation ids (of an edge label), as the union of their edge views.
+     */
+    Set<Edge<VT, ET>> edges(List<Integer> rids) {
+        return new UnionEdgeSet(rids);
+    }
+
+    Set<Node<VT>> srcNodes(int rid) {
+        return isIndexed(rid) ? new NodeSet(srcKeys, null, srcFrom[rid], srcFrom[rid + 1]) : Collections.emptySet();
+    }
+
+    Set<Node<VT>> dstNodes(int rid) {
+        return isIndexed(rid) ? new NodeSet(dstKeys, null, dstFrom[rid], dstFrom[rid + 1]) : Collections.emptySet();
+    }
+
+    Set<Node<VT>> outNeighbors(Node<VT> v, int rid) {
+        Integer id = idOf(v);
+        if (id == null || !isIndexed(rid)) {
+            return Collections.emptySet();
+        }
+        int g = Arrays.binarySearch(srcKeys, srcFrom[rid], srcFrom[rid + 1], id);
+        if (g < 0) {
+            return Collections.emptySet();
+        }
+        return new NodeSet(dst, null, srcStart[g], srcStart[g + 1]);
+    }
+
+    Set<Node<VT>> inNeighbors(Node<VT> v, int rid) {
+        Integer id = idOf(v);
+        if (id == null || !isIndexed(rid)) {
+            return Collections.emptySet();
+        }
+        int g = Arrays.binarySearch(dstKeys, dstFrom[rid], dstFrom[rid + 1], id);
+        if (g < 0) {
+            return Collections.emptySet();
+        }
+        // The srcs of the dst, in the ascending order, through the backward order.
+        return new NodeSet(src, bwdOrder, dstStart[g], dstStart[g + 1]);
+    }
+
+    /**
+     * The edges of a relation: the alive indexed ones, followed by the added ones.
+     */
+    private class EdgeSet extends AbstractSet<Edge<VT, ET>> {
+
+        private final int rid;
+
+        private EdgeSet(int rid) {
+            this.rid = rid;
+        }
+
+        @Override
+        public int size() {
+            int size = isIndexed(rid) ? numOfIndexedEdges(rid) - numOfRemoved[rid] : 0;
+            Set<Edge<VT, ET>> more = added.get(rid);
+            return more == null ? size : size + more.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Edge) || ((Edge<?, ?>) o).relationId() != rid) {
+                return false;
+            }
+            int pos = positionOf(o);
+            if (pos >= 0) {
+                return !removed.get(pos);
+            }
+            Set<Edge<VT, ET>> more = added.get(rid);
+            return more != null && more.contains(o);
+        }
+
+        @Override
+        public Iterator<Edge<VT, ET>> iterator() {
+            return new Iterator<Edge<VT, ET>>() {
+                private final int to = isIndexed(rid) ? relStart[rid + 1] : 0;
+                private int pos = isIndexed(rid) ? removed.nextClearBit(relStart[rid]) : 0;
+                private Iterator<Edge<VT, ET>> moreIter = null;
+
+                @Override
+                public boolean hasNext() {
+                    if (pos < to) {
+                        return true;
+                    }
+                    if (moreIter == null) {
+                        Set<Edge<VT, ET>> more = added.get(rid);
+                        moreIter = more == null ? Collections.emptyIterator() : more.iterator();
+                    }
+                    return moreIter.hasNext();
+                }
+
+                @Override
+                public Edge<VT, ET> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    if (pos < to) {
+                        Edge<VT, ET> e = edgeAt(pos, rid);
+                        pos = removed.nextClearBit(pos + 1);
+                        return e;
+                    }
+                    return moreIter.next();
+                }
+            };
+        }
+    }
+
+    /**
+     * The union of the edges of some relations, as a read-only Set view.
+     */
+    private class UnionEdgeSet extends AbstractSet<Edge<VT, ET>> {
+
+        private final List<Integer> rids;
+
+        private UnionEdgeSet(List<Integer> rids) {
+            this.rids = rids;
+        }
+
+        @Override
+        public int size() {
+            int size = 0;
+            for (int rid : rids) {
+                size += edges(rid).size();
+            }
+            return size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Edge && rids.contains(((Edge<?, ?>) o).relationId())
+                    && edges(((Edge<?, ?>) o).relationId()).contains(o);
+        }
+
+        @Override
+        public Iterator<Edge<VT, ET>> iterator() {
+            return new Iterator<Edge<VT, ET>>() {
+                private int i = 0;
+                private Iterator<Edge<VT, ET>> iter = Collections.emptyIterator();
+
+                @Override
+                public boolean hasNext() {
+                    while (!iter.hasNext()) {
+                        if (i == rids.size()) {
+                            return false;
+                        }
+                        iter = edges(rids.get(i++)).iterator();
+                    }
+                    return true;
+                }
+
+                @Override
+                public Edge<VT, ET> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return iter.next();
+                }
+            };
+        }
+    }
+
+    /**
+     * The nodes of a range of node ids, ascending, as a read-only Set view: ids[i], or ids[order[i]] with an order.
+     */
+    private class NodeSet extends AbstractSet<Node<VT>> {
+
+        private final int[] ids;
+
+        private final int[] order;
+
+        private final int from;
+
+        private final int to;
+
+        private NodeSet(int[] ids, int[] order, int from, int to) {
+            this.ids = ids;
+            this.order = order;
+            this.from = from;
+            this.to = to;
+        }
+
+        private int idAt(int i) {
+            return order == null ? ids[i] : ids[order[i]];
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            Integer id = idOf(o);
+            if (id == null) {
+                return false;
+            }
+            int lo = from;
+            int hi = to - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int x = idAt(mid);
+                if (x < id) {
+                    lo = mid + 1;
+                } else if (x > id) {
+                    hi = mid - 1;
+                } else {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Iterator<Node<VT>> iterator() {
+            return new Iterator<Node<VT>>() {
+                private int i = from;
+
+                @Override
+                public boolean hasNext() {
+                    return i < to;
+                }
+
+                @Override
+                public Node<VT> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return nodeAt(idAt(i++));
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package edu.wsu.eecs.gfc.core;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The registry of relations: every relation (srcLabel, dstLabel, edgeLabel) is interned here once,
+ * and is assigned a dense int id in [0, size()).
+ * <p>
+ * Relation ids are stable for the whole JVM, so that they can be cached by edges and used to index int arrays
+ * (e.g., the order of relations in the miner) no matter which graph the relation comes from.
+ * <p>
+ * @author Peng Lin penglin03@gmail.com
+ */
+public class RelationRegistry {
+
+    private static final Map<Relation<?, ?>, Relation<?, ?>> internTable = new ConcurrentHashMap<>();
+
+    private static volatile Relation<?, ?>[] relations = new Relation<?, ?>[64];
+
+    private static volatile int size = 0;
+
+    private RelationRegistry() {
+    }
+
+    /**
+     * @return the interned relation of the triple, which is registered if it is seen for the first time.
+     */
+    @SuppressWarnings("unchecked")
+    public static <VT, ET> Relation<VT, ET> intern(VT srcLabel, VT dstLabel, ET edgeLabel) {
+        Relation<VT, ET> key = Relation.createKey(srcLabel, dstLabel, edgeLabel);
+        Relation<?, ?> r = internTable.get(key);
+        if (r == null) {
+            r = register(key);
+        }
+        return (Relation<VT, ET>) r;
+    }
+
+    private static synchronized Relation<?, ?> register(Relation<?, ?> key) {
+        Relation<?, ?> r = internTable.get(key);
+        if (r != null) {
+            return r;
+        }
+        int id = size;
+        r = key.withId(id);
+        Relation<?, ?>[] table = relations;
+        if (id >= table.length) {
+            table = Arrays.copyOf(table, table.length * 2);
+        }
+        table[id] = r;
+        relations = table;
+        size = id + 1;
+        internTable.put(r, r);
+        return r;
+    }
+
+    public static int idOf(Object srcLabel, Object dstLabel, Object edgeLabel) {
+        return intern(srcLabel, dstLabel, edgeLabel).id();
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <VT, ET> Relation<VT, ET> get(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("Unknown relation id: " + id);
+        }
+        return (Relation<VT, ET>) relations[id];
+    }
+
+    /**
+     * @return the number of registered relations, i.e., an upper bound of the relation ids.
+     */
+    public static int size() {
+        return size;
+    }
+}
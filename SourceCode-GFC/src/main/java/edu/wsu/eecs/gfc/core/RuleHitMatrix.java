@@ -0,0 +1,159 @@
+package edu.wsu.eecs.gfc.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * The rule hits of a set of examples: a binary matrix of |examples| rows and |rules| columns, where
+ * (i, j) is set iff the example i is hit by the rule j, i.e., e.src in M(x) and e.dst in M(y) of the rule.
+ * <p>
+ * The matrix is stored column-major, one bitmap per rule, and is built once per (rule list, example set),
+ * in parallel across the rules, by projecting the match sets onto an ExampleIndex of the examples.
+ * It is the shared input of all the fact checking predictors.
+ * For labeled examples, the positive examples come first, followed by the negative examples.
+ * <p>
+ * @author Peng Lin penglin03@gmail.com
+ */
+public class RuleHitMatrix<VT, ET> {
+
+    private final List<Edge<VT, ET>> examples;
+
+    private final BitSet labels;
+
+    private final BitSet[] columns;
+
+    private RuleHitMatrix(List<Edge<VT, ET>> examples, BitSet labels, BitSet[] columns) {
+        this.examples = examples;
+        this.labels = labels;
+        this.columns = columns;
+    }
+
+    /**
+     * Build the rule hits of unlabeled examples.
+     */
+    public static <VT, ET> RuleHitMatrix<VT, ET> createFromExamples(List<OGFCRule<VT, ET>> patternList,
+                                                                    List<Edge<VT, ET>> examples) {
+        return create(patternList, examples, new BitSet());
+    }
+
+    /**
+     * Build the rule hits of labeled examples: data.get(true) are the positive ones, and data.get(false) the negative.
+     */
+    public static <VT, ET> RuleHitMatrix<VT, ET> createFromData(List<OGFCRule<VT, ET>> patternList,
+                                                                Map<Boolean, List<Edge<VT, ET>>> data) {
+        List<Edge<VT, ET>> examples = new ArrayList<>(data.get(true));
+        examples.addAll(data.get(false));
+        BitSet labels = new BitSet(examples.size());
+        labels.set(0, data.get(true).size());
+        return create(patternList, examples, labels);
+    }
+
+    private static <VT, ET> RuleHitMatrix<VT, ET> create(List<OGFCRule<VT, ET>> patternList,
+                                                         List<Edge<VT, ET>> examples, BitSet labels) {
+        ExampleIndex<VT, ET> index = ExampleIndex.createFromExamples(examples);
+        BitSet[] columns = new BitSet[patternList.size()];
+        IntStream.range(0, columns.length).parallel().forEach(j -> columns[j] = index.cover(patternList.get(j)));
+        return new RuleHitMatrix<>(examples, labels, columns);
+    }
+
+    /**
+     * @param rows are the increasing positions of the examples to keep.
+     * @return the rule hits of the kept examples only, e.g., the training folds of a cross-validation.
+     */
+    public RuleHitMatrix<VT, ET> subMatrix(int[] rows) {
+        List<Edge<VT, ET>> subExamples = new ArrayList<>(rows.length);
+        BitSet subLabels = new BitSet(rows.length);
+        int[] newRow = new int[examples.size()];
+        Arrays.fill(newRow, -1);
+        for (int k = 0; k < rows.length; k++) {
+            subExamples.add(examples.get(rows[k]));
+            if (labels.get(rows[k])) {
+                subLabels.set(k);
+            }
+            newRow[rows[k]] = k;
+        }
+        BitSet[] subColumns = new BitSet[columns.length];
+        for (int j = 0; j < columns.length; j++) {
+            subColumns[j] = new BitSet(rows.length);
+            for (int i = columns[j].nextSetBit(0); i >= 0; i = columns[j].nextSetBit(i + 1)) {
+                if (newRow[i] >= 0) {
+                    subColumns[j].set(newRow[i]);
+                }
+            }
+        }
+        return new RuleHitMatrix<>(subExamples, subLabels, subColumns);
+    }
+
+    public int numOfExamples() {
+        return examples.size();
+    }
+
+    public int numOfRules() {
+        return columns.length;
+    }
+
+    public List<Edge<VT, ET>> examples() {
+        return examples;
+    }
+
+    /**
+     * @return the bitmap of the positive examples.
+     */
+    public BitSet labels() {
+        return labels;
+    }
+
+    public int numOfPositives() {
+        return labels.cardinality();
+    }
+
+    public boolean isHit(int example, int rule) {
+        return columns[rule].get(example);
+    }
+
+    /**
+     * @return the bitmap of the examples hit by the rule.
+     */
+    public BitSet column(int rule) {
+        return columns[rule];
+    }
+
+    /**
+     * @return the examples hit by at least one of the rules.
+     */
+    public BitSet anyHits() {
+        BitSet hits = new BitSet(examples.size());
+        for (BitSet col : columns) {
+            hits.or(col);
+        }
+        return hits;
+    }
+
+    /**
+     * @return the matrix as packed words, one long[] per rule, as BitSet.toLongArray() does.
+     */
+    public long[][] packedColumns() {
+        long[][] packed = new long[columns.length][];
+        for (int j = 0; j < columns.length; j++) {
+            packed[j] = columns[j].toLongArray();
+        }
+        return packed;
+    }
+
+    /**
+     * @return the matrix as dense rows of 0/1 values, with one extra (zero) slot at the end of each row.
+     */
+    public double[][] toDenseRows() {
+        double[][] rows = new double[examples.size()][columns.length + 1];
+        for (int j = 0; j < columns.length; j++) {
+            for (int i = columns[j].nextSetBit(0); i >= 0; i = columns[j].nextSetBit(i + 1)) {
+                rows[i][j] = 1;
+            }
+        }
+        return rows;
+    }
+}
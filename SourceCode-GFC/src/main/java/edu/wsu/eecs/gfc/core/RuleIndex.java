@@ -0,0 +1,128 @@
+package edu.wsu.eecs.gfc.core;
+
+import java.util.*;
+
+/**
+ * An inverted index of the rules P(x, y) => r(x, y) of a relation, grouped by their matched nodes.
+ * <p>
+ * For every node in M(x) (resp. M(y)) of some rule, the index keeps the posting list of the rules whose M(x)
+ * (resp. M(y)) contains the node. A fact r(v, vv) is hit by a rule iff v in M(x) and vv in M(y), so the rules that
+ * hit the fact are the intersection of the two posting lists of v and vv, instead of probing the match sets of all
+ * the rules. The rules are ranked by confidence (descending), and the posting lists are sorted arrays of ranks,
+ * so the intersection is a linear merge that yields the hit rules in the order of confidence.
+ * <p>
+ * @author Peng Lin penglin03@gmail.com
+ */
+public class RuleIndex<VT, ET> {
+
+    private static final int[] EMPTY = new int[0];
+
+    private final List<OGFCRule<VT, ET>> rules;
+
+    // The rule index (in the input rule list) of each rank.
+    private final int[] rankToRule;
+
+    private final Map<Node<VT>, int[]> xPostings;
+
+    private final Map<Node<VT>, int[]> yPostings;
+
+    private RuleIndex(List<OGFCRule<VT, ET>> rules) {
+        this.rules = rules;
+
+        Integer[] order = new Integer[rules.size()];
+        for (int j = 0; j < order.length; j++) {
+            order[j] = j;
+        }
+        // Stable, so rules of the same confidence keep their input order.
+        Arrays.sort(order, (j1, j2) -> Double.compare(rules.get(j2).conf, rules.get(j1).conf));
+        this.rankToRule = new int[order.length];
+        for (int k = 0; k < order.length; k++) {
+            rankToRule[k] = order[k];
+        }
+
+        Map<Node<VT>, List<Integer>> xLists = new HashMap<>();
+        Map<Node<VT>, List<Integer>> yLists = new HashMap<>();
+        for (int k = 0; k < rankToRule.length; k++) {
+            OGFCRule<VT, ET> phi = rules.get(rankToRule[k]);
+            for (Node<VT> v : phi.matchSet().get(phi.x())) {
+                xLists.computeIfAbsent(v, u -> new ArrayList<>()).add(k);
+            }
+            for (Node<VT> v : phi.matchSet().get(phi.y())) {
+                yLists.computeIfAbsent(v, u -> new ArrayList<>()).add(k);
+            }
+        }
+        this.xPostings = toPostings(xLists);
+        this.yPostings = toPostings(yLists);
+    }
+
+    public static <VT, ET> RuleIndex<VT, ET> createFromRules(List<OGFCRule<VT, ET>> rules) {
+        return new RuleIndex<>(rules);
+    }
+
+    public int size() {
+        return rules.size();
+    }
+
+    public List<OGFCRule<VT, ET>> rules() {
+        return rules;
+    }
+
+    /**
+     * The rules that hit a fact r(src, dst), i.e., the rules with src in M(x) and dst in M(y).
+     *
+     * @return the indices of the hit rules in the input rule list, in the descending order of confidence.
+     */
+    public int[] hits(Node<VT> src, Node<VT> dst) {
+        int[] xList = xPostings.getOrDefault(src, EMPTY);
+        int[] yList = yPostings.getOrDefault(dst, EMPTY);
+        int[] hits = new int[Math.min(xList.length, yList.length)];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        while (i < xList.length && j < yList.length) {
+            if (xList[i] < yList[j]) {
+                i++;
+            } else if (xList[i] > yList[j]) {
+                j++;
+            } else {
+                hits[n++] = rankToRule[xList[i]];
+                i++;
+                j++;
+            }
+        }
+        return n == hits.length ? hits : Arrays.copyOf(hits, n);
+    }
+
+    public int[] hits(Edge<VT, ET> e) {
+        return hits(e.srcNode(), e.dstNode());
+    }
+
+    /**
+     * @return the rules that hit a fact r(src, dst), in the descending order of confidence.
+     */
+    public List<OGFCRule<VT, ET>> check(Node<VT> src, Node<VT> dst) {
+        int[] hits = hits(src, dst);
+        List<OGFCRule<VT, ET>> hitRules = new ArrayList<>(hits.length);
+        for (int j : hits) {
+            hitRules.add(rules.get(j));
+        }
+        return hitRules;
+    }
+
+    public List<OGFCRule<VT, ET>> check(Edge<VT, ET> e) {
+        return check(e.srcNode(), e.dstNode());
+    }
+
+    private static <VT> Map<Node<VT>, int[]> toPostings(Map<Node<VT>, List<Integer>> lists) {
+        Map<Node<VT>, int[]> postings = new HashMap<>(lists.size() * 4 / 3 + 1);
+        for (Map.Entry<Node<VT>, List<Integer>> entry : lists.entrySet()) {
+            List<Integer> list = entry.getValue();
+            int[] posting = new int[list.size()];
+            for (int k = 0; k < posting.length; k++) {
+                posting[k] = list.get(k);
+            }
+            postings.put(entry.getKey(), posting);
+        }
+        return postings;
+    }
+}
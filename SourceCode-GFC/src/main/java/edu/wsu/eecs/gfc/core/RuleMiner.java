@@ -1,5 +1,6 @@
 package edu.wsu.eecs.gfc.core;
 
+import java.io.PrintStream;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -20,7 +21,11 @@ public class RuleMiner<VT, ET> {
 
     private int topK;
 
-    private Map<Relation<VT, ET>, Integer> rOrder;
+    // The rank of each relation (by relation id) in the ascending order of frequency.
+    private int[] rOrder;
+
+    // Where the progress of the mining is printed.
+    private final PrintStream log;
 
     private static final int DEFAULT_TOP_K_OF_PATTERNS = 50;
 
@@ -34,11 +39,11 @@ public class RuleMiner<VT, ET> {
 
         private OGFCRule<VT, ET> phi;
 
-        private Edge<VT, ET> f;
+        private Frontier<VT, ET> f;
 
-        private Set<Edge<VT, ET>> fSet;
+        private Set<Frontier<VT, ET>> fSet;
 
-        private List<Edge<VT, ET>> fList;
+        private List<Frontier<VT, ET>> fList;
 
         private int fOrder;
 
@@ -46,14 +51,14 @@ public class RuleMiner<VT, ET> {
 
         private boolean isMaximal;
 
-        public State(OGFCRule<VT, ET> phi, Edge<VT, ET> f) {
+        public State(OGFCRule<VT, ET> phi, Frontier<VT, ET> f) {
             this.phi = phi;
             this.f = f;
         }
 
         public State(OGFCRule<VT, ET> phi,
-                     Set<Edge<VT, ET>> fSet,
-                     List<Edge<VT, ET>> fList,
+                     Set<Frontier<VT, ET>> fSet,
+                     List<Frontier<VT, ET>> fList,
                      int fOrder,
                      double supp,
                      boolean isMaximal) {
@@ -66,8 +71,10 @@ public class RuleMiner<VT, ET> {
         }
     }
 
-    private RuleMiner(GraphDatabase<VT, ET> G, double minSupp, double minConf, int maxSize, Map<Relation<VT, ET>, Integer> rOrder, int topK) {
+    private RuleMiner(GraphDatabase<VT, ET> G, double minSupp, double minConf, int maxSize, int[] rOrder, int topK,
+                      PrintStream log) {
         this.G = G;
+        this.log = log;
         this.minSupp = minSupp;
         this.minConf = minConf;
         this.maxSize = maxSize;
@@ -76,28 +83,34 @@ public class RuleMiner<VT, ET> {
     }
 
     public static <VT, ET> RuleMiner<VT, ET> createInit(GraphDatabase<VT, ET> G, double minSupp, double minConf, int maxSize, int topK) {
-        Map<Relation<VT, ET>, Integer> rOrder = new HashMap<>();
+        return createInit(G, minSupp, minConf, maxSize, topK, System.out);
+    }
+
+    /**
+     * @param log is where the progress of the mining is printed, e.g., the log of a task mining concurrently.
+     */
+    public static <VT, ET> RuleMiner<VT, ET> createInit(GraphDatabase<VT, ET> G, double minSupp, double minConf, int maxSize, int topK,
+                                                        PrintStream log) {
         List<Relation<VT, ET>> rList = new ArrayList<>(G.relationSet());
         rList.sort((r1, r2) -> {
-            int freq1 = G.getEdges(r1).size();
-            int freq2 = G.getEdges(r2).size();
+            int freq1 = G.numOfEdges(r1);
+            int freq2 = G.numOfEdges(r2);
             return freq1 - freq2;
         });
+        int[] rOrder = new int[RelationRegistry.size()];
+        Arrays.fill(rOrder, Integer.MAX_VALUE);
         for (int i = 0; i < rList.size(); i++) {
-            rOrder.put(rList.get(i), i);
+            rOrder[rList.get(i).id()] = i;
         }
-        return new RuleMiner<>(G, minSupp, minConf, maxSize, rOrder, topK);
+        return new RuleMiner<>(G, minSupp, minConf, maxSize, rOrder, topK, log);
     }
 
-    private double getSupp(OGFCRule<VT, ET> phi, List<Edge<VT, ET>> examples) {
-        int nr = 0;
-        for (Edge<VT, ET> e : examples) {
-            if (phi.matchSet().get(phi.x()).contains(e.srcNode())
-                    && phi.matchSet().get(phi.y()).contains(e.dstNode())) {
-                nr++;
-            }
-        }
-        return ((double) nr / (double) examples.size());
+    private double getSupp(OGFCRule<VT, ET> phi, ExampleIndex<VT, ET> examples) {
+        return examples.coverRatio(phi);
+    }
+
+    private double getSupp(BitSet cover, ExampleIndex<VT, ET> examples) {
+        return ((double) cover.cardinality() / (double) examples.size());
     }
 
     private double getConf(OGFCRule<VT, ET> phi, int numOfExamples) {
@@ -132,18 +145,21 @@ public class RuleMiner<VT, ET> {
             List<Edge<VT, ET>> negativeExamples
     ) {
         if (!G.relationSet().contains(r)) {
-            System.out.println("Relation is not found. r = " + r);
+            log.println("Relation is not found. r = " + r);
             return new ArrayList<>();
         }
 
+        ExampleIndex<VT, ET> posIndex = ExampleIndex.createFromExamples(positiveExamples);
+        ExampleIndex<VT, ET> negIndex = ExampleIndex.createFromExamples(negativeExamples);
+
         List<OGFCRule<VT, ET>> phiList = new ArrayList<>();
         OGFCRule<VT, ET> root = OGFCRule.createInit(G, r, positiveExamples);
 
-        Set<Edge<VT, ET>> rootFSet = root.searchExtensionEdges();
-        List<Edge<VT, ET>> rootFList = new ArrayList<>(rootFSet);
-        rootFList.sort(Comparator.comparingInt(e -> rOrder.get(Relation.fromEdge(e))));
+        Set<Frontier<VT, ET>> rootFSet = root.searchExtensionEdges();
+        List<Frontier<VT, ET>> rootFList = new ArrayList<>(rootFSet);
+        rootFList.sort(Comparator.comparingInt(e -> rOrder[e.relationId()]));
 
-        System.out.println("|F| = " + rootFList.size());
+        log.println("|F| = " + rootFList.size());
 
         State<VT, ET> rootState = new State<>(root, rootFSet, rootFList, Integer.MAX_VALUE, 1.0, true);
         List<State<VT, ET>> stack = new ArrayList<>(maxSize);
@@ -167,16 +183,14 @@ public class RuleMiner<VT, ET> {
                 }
             } else {
                 State<VT, ET> curState = stack.get(stack.size() - 1);
-                Edge<VT, ET> f = curState.fList.remove(curState.fList.size() - 1);
-                Relation<VT, ET> rf = Relation.fromEdge(f);
-
-                int fOrder = rOrder.get(rf);
+                Frontier<VT, ET> f = curState.fList.remove(curState.fList.size() - 1);
+                int fOrder = rOrder[f.relationId()];
                 if (isPatternRepeated(stack, f, fOrder)) {
                     continue;
                 }
 
                 OGFCRule<VT, ET> phi2 = OGFCRule.extendEdge(curState.phi, f);
-                phi2.supp = getSupp(phi2, positiveExamples);
+                phi2.supp = getSupp(phi2, posIndex);
                 if (phi2.supp < minSupp) {
                     continue;
                 }
@@ -186,9 +200,9 @@ public class RuleMiner<VT, ET> {
                 if (stack.size() == maxSize - 1) {
                     stack.add(new State<>(phi2, new HashSet<>(), new ArrayList<>(), fOrder, phi2.supp, true));
                 } else {
-                    Set<Edge<VT, ET>> fSet = phi2.searchExtensionEdges();
-                    List<Edge<VT, ET>> fList = new ArrayList<>(fSet);
-                    fList.sort(Comparator.comparingInt(e -> rOrder.get(Relation.fromEdge(e))));
+                    Set<Frontier<VT, ET>> fSet = phi2.searchExtensionEdges();
+                    List<Frontier<VT, ET>> fList = new ArrayList<>(fSet);
+                    fList.sort(Comparator.comparingInt(e -> rOrder[e.relationId()]));
                     stack.add(new State<>(phi2, fSet, fList, fOrder, phi2.supp, true));
                 }
             }
@@ -197,7 +211,7 @@ public class RuleMiner<VT, ET> {
         for (OGFCRule<VT, ET> phi : phiList) {
             phi.conf = getConf(phi, positiveExamples.size());
             double fp = phi.supp;
-            double fn = getSupp(phi, negativeExamples);
+            double fn = getSupp(phi, negIndex);
             phi.gTest = getGTest(fp, fn, positiveExamples.size());
             phi.pCov = getPCov(phi.gTest, phi.supp);
         }
@@ -207,7 +221,7 @@ public class RuleMiner<VT, ET> {
         return new ArrayList<>(phiList);
     }
 
-    private boolean isPatternRepeated(List<State<VT, ET>> stack, Edge<VT, ET> f, int fOrder) {
+    private boolean isPatternRepeated(List<State<VT, ET>> stack, Frontier<VT, ET> f, int fOrder) {
         if (stack.size() <= 1) {
             return false;
         }
@@ -225,27 +239,30 @@ public class RuleMiner<VT, ET> {
             List<Edge<VT, ET>> negativeExamples
     ) {
         if (!G.relationSet().contains(r)) {
-            System.out.println("Relation is not found. r = " + r);
+            log.println("Relation is not found. r = " + r);
             return new ArrayList<>();
         }
 
+        ExampleIndex<VT, ET> posIndex = ExampleIndex.createFromExamples(positiveExamples);
+        ExampleIndex<VT, ET> negIndex = ExampleIndex.createFromExamples(negativeExamples);
+
         Deque<State<VT, ET>> stream = new ArrayDeque<>();
 
         double maxPCov = -1;
 
         OGFCRule<VT, ET> phi0 = OGFCRule.createInit(G, r, positiveExamples);
 
-        List<Edge<VT, ET>> fList0 = new ArrayList<>(phi0.searchExtensionEdges());
-        System.out.println("|F| = " + fList0.size());
+        List<Frontier<VT, ET>> fList0 = new ArrayList<>(phi0.searchExtensionEdges());
+        log.println("|F| = " + fList0.size());
 
-        fList0.sort(Comparator.comparingInt(e -> rOrder.get(Relation.fromEdge(e))));
+        fList0.sort(Comparator.comparingInt(e -> rOrder[e.relationId()]));
 
-        System.out.println("Computing maxpcov value....");
-        for (Edge<VT, ET> f0 : fList0) {
+        log.println("Computing maxpcov value....");
+        for (Frontier<VT, ET> f0 : fList0) {
 
             OGFCRule<VT, ET> phi1 = OGFCRule.extendEdge(phi0, f0);
 
-            phi1.supp = getSupp(phi1, positiveExamples);
+            phi1.supp = getSupp(phi1, posIndex);
             if (phi1.supp < minSupp) {
                 continue;
             }
@@ -256,7 +273,7 @@ public class RuleMiner<VT, ET> {
             }
 
             double fp1 = phi1.supp;
-            double fn1 = getSupp(phi1, negativeExamples);
+            double fn1 = getSupp(phi1, negIndex);
 
             phi1.gTest = getGTest(fp1, fn1, positiveExamples.size());
 
@@ -266,24 +283,25 @@ public class RuleMiner<VT, ET> {
                 maxPCov = phi1.pCov;
             }
 
-            List<Edge<VT, ET>> fList = new ArrayList<>();
-            for (Edge<VT, ET> f1 : phi1.searchExtensionEdges()) {
-                if (rOrder.get(Relation.fromEdge(f1)) > rOrder.get(Relation.fromEdge(f0))) {
+            List<Frontier<VT, ET>> fList = new ArrayList<>();
+            for (Frontier<VT, ET> f1 : phi1.searchExtensionEdges()) {
+                if (rOrder[f1.relationId()] > rOrder[f0.relationId()]) {
                     continue;
                 }
                 fList.add(f1);
             }
-            fList.sort(Comparator.comparingInt(e -> rOrder.get(Relation.fromEdge(e))));
-            for (Edge<VT, ET> f : fList) {
+            fList.sort(Comparator.comparingInt(e -> rOrder[e.relationId()]));
+            for (Frontier<VT, ET> f : fList) {
                 stream.add(new State<>(phi1, f));
             }
         }
 
         if (stream.isEmpty()) {
-            System.out.println("[OGFC_stream]: No size-1 pattern. Try to lower the support/confidence thresholds.");
+            log.println("[OGFC_stream]: No size-1 pattern. Try to lower the support/confidence thresholds.");
             return new ArrayList<>();
         }
 
+        Map<OGFCRule<VT, ET>, BitSet> sieveCovers = new HashMap<>();
         Map<Integer, Set<OGFCRule<VT, ET>>> sieveSets = new HashMap<>();
         Map<Integer, Double> sieveVals = new HashMap<>();
         Map<Integer, Double> sieveCovs = new HashMap<>();
@@ -291,8 +309,9 @@ public class RuleMiner<VT, ET> {
         int startIdx = (int) ((Math.log(maxPCov) / Math.log(1 + DEFAULT_EPSILON)) + 1);
         int endIdx = (int) (Math.log(maxPCov * topK) / Math.log(1 + DEFAULT_EPSILON));
 
+        // Linked, so the rules of a sieve are returned in the order they were added.
         for (int i = startIdx; i <= endIdx; i++) {
-            sieveSets.put(i, new HashSet<>());
+            sieveSets.put(i, new LinkedHashSet<>());
             sieveVals.put(i, Math.pow(1 + DEFAULT_EPSILON, i));
             sieveCovs.put(i, 0.0);
         }
@@ -313,7 +332,8 @@ public class RuleMiner<VT, ET> {
 
             OGFCRule<VT, ET> phi = OGFCRule.extendEdge(state.phi, state.f);
 
-            phi.supp = getSupp(phi, positiveExamples);
+            BitSet cover = posIndex.cover(phi);
+            phi.supp = getSupp(cover, posIndex);
             if (phi.supp < minSupp) {
                 continue;
             }
@@ -324,7 +344,7 @@ public class RuleMiner<VT, ET> {
             }
 
             double fp = phi.supp;
-            double fn = getSupp(phi, negativeExamples);
+            double fn = getSupp(phi, negIndex);
             phi.gTest = getGTest(fp, fn, positiveExamples.size());
             phi.pCov = getPCov(phi.gTest, phi.supp);
             boolean isSieved = false;
@@ -339,7 +359,7 @@ public class RuleMiner<VT, ET> {
 
                 double sBound = (sVal_i / 2 - sCov_i) / (topK - sieveSet_i.size());
 
-                double mg = getMarginalGain(phi, sieveSet_i, positiveExamples);
+                double mg = getMarginalGain(phi, sieveSet_i, sieveCovers, positiveExamples.size());
                 if (mg < sBound) {
                     continue;
                 }
@@ -353,21 +373,22 @@ public class RuleMiner<VT, ET> {
             if (!isSieved) {
                 continue;
             }
+            sieveCovers.put(phi, cover);
 
             // Identify if the pattern reaches the lattice boundary.
             // If not, find the frontiers for that pattern to extend.
             if (phi.P().numOfEdges() >= maxSize) {
                 continue;
             }
-            List<Edge<VT, ET>> fList = new ArrayList<>();
-            for (Edge<VT, ET> f : phi.searchExtensionEdges()) {
+            List<Frontier<VT, ET>> fList = new ArrayList<>();
+            for (Frontier<VT, ET> f : phi.searchExtensionEdges()) {
                 if (isPatternRepeated(f, state)) {
                     continue;
                 }
                 fList.add(f);
             }
-            fList.sort(Comparator.comparingInt(e -> rOrder.get(Relation.fromEdge(e))));
-            for (Edge<VT, ET> f : fList) {
+            fList.sort(Comparator.comparingInt(e -> rOrder[e.relationId()]));
+            for (Frontier<VT, ET> f : fList) {
                 stream.add(new State<>(phi, f));
             }
         }
@@ -382,13 +403,67 @@ public class RuleMiner<VT, ET> {
         }
 
         if (sieveSets.get(bestSieve).isEmpty()) {
-            System.out.println("[OGFC_stream]: No rules were found. Try to lower the support/confidence thresholds.");
+            log.println("[OGFC_stream]: No rules were found. Try to lower the support/confidence thresholds.");
         }
 
         return new ArrayList<>(sieveSets.get(bestSieve));
     }
 
-    private double getMarginalGain(OGFCRule<VT, ET> phi, Set<OGFCRule<VT, ET>> sPSet, List<Edge<VT, ET>> positiveExamples) {
+    /**
+     * The OGFC_stream mining algorithm for all the ontology hops 0, 1, ..., maxHops at once.
+     * <p>
+     * The similar label sets only grow with the hops. Thus, the rules are mined once at the widest hop, and the
+     * rules of each narrower hop are derived from those of the next wider hop by restricting their match sets to
+     * the narrower similar labels, instead of mining from scratch (see OGFCRule.restrictToSimLabels()).
+     * The derived rules are re-evaluated and filtered by the support and confidence thresholds.
+     * Note that this is an approximation of mining each hop: a narrower hop only keeps the rules found at the wider
+     * hop (that still match), and their match sets can miss some matches of the narrower hop.
+     * <p>
+     * The similar labels of G are left at hop 0.
+     *
+     * @return the rules of each hop.
+     */
+    public Map<Integer, List<OGFCRule<VT, ET>>> OGFC_stream_multiHop(
+            Relation<VT, ET> r,
+            List<Edge<VT, ET>> positiveExamples,
+            List<Edge<VT, ET>> negativeExamples,
+            int maxHops
+    ) {
+        Map<Integer, List<OGFCRule<VT, ET>>> hopRules = new HashMap<>();
+        G.buildSimLabelsMap(maxHops);
+        hopRules.put(maxHops, OGFC_stream(r, positiveExamples, negativeExamples));
+
+        ExampleIndex<VT, ET> posIndex = ExampleIndex.createFromExamples(positiveExamples);
+        ExampleIndex<VT, ET> negIndex = ExampleIndex.createFromExamples(negativeExamples);
+        for (int i = maxHops - 1; i >= 0; i--) {
+            G.buildSimLabelsMap(i);
+            List<OGFCRule<VT, ET>> phiList = new ArrayList<>();
+            for (OGFCRule<VT, ET> phiWide : hopRules.get(i + 1)) {
+                OGFCRule<VT, ET> phi = OGFCRule.restrictToSimLabels(phiWide);
+                if (phi == null) {
+                    continue;
+                }
+                phi.supp = getSupp(phi, posIndex);
+                if (phi.supp < minSupp) {
+                    continue;
+                }
+                phi.conf = getConf(phi, positiveExamples.size());
+                if (phi.conf < minConf) {
+                    continue;
+                }
+                double fp = phi.supp;
+                double fn = getSupp(phi, negIndex);
+                phi.gTest = getGTest(fp, fn, positiveExamples.size());
+                phi.pCov = getPCov(phi.gTest, phi.supp);
+                phiList.add(phi);
+            }
+            hopRules.put(i, phiList);
+        }
+        return hopRules;
+    }
+
+    private double getMarginalGain(OGFCRule<VT, ET> phi, Set<OGFCRule<VT, ET>> sPSet,
+                                   Map<OGFCRule<VT, ET>, BitSet> covers, int numOfExamples) {
 //        double sig = 2.0 / (1 + Math.exp(-phi.gTest)) - 1;
 //        double minSect = positiveExamples.size();
 //        for (OGFCRule<VT, ET> p : sPSet) {
@@ -413,30 +488,31 @@ public class RuleMiner<VT, ET> {
         }
         sig = Math.sqrt(sig + phi.gTest) - Math.sqrt(sig);
 
-        double div = 0;
-        for (Edge<VT, ET> t : positiveExamples) {
-            double Tt = 0;
-            for (OGFCRule<VT, ET> phi2 : sPSet) {
-                if (phi2.matchSet().get(phi2.x()).contains(t.srcNode())
-                        && phi2.matchSet().get(phi2.y()).contains(t.dstNode())) {
-                    Tt = Tt + phi2.supp;
-                }
+        // Tt is the sum of the supports of the sieved rules that cover the example t.
+        double[] T = new double[numOfExamples];
+        for (OGFCRule<VT, ET> phi2 : sPSet) {
+            BitSet cover = covers.get(phi2);
+            for (int t = cover.nextSetBit(0); t >= 0; t = cover.nextSetBit(t + 1)) {
+                T[t] = T[t] + phi2.supp;
             }
+        }
+        double div = 0;
+        for (double Tt : T) {
             div = div + Math.sqrt(Tt);
         }
-        div = div / positiveExamples.size();
+        div = div / numOfExamples;
         return sig + div;
     }
 
-    private boolean isPatternRepeated(Edge<VT, ET> f, State<VT, ET> st) {
-        if (st.f.srcId() != null && ((int) st.f.srcId() == (st.phi.P().numOfNodes() - 1))) {
+    private boolean isPatternRepeated(Frontier<VT, ET> f, State<VT, ET> st) {
+        if (!st.f.hasNewSrc() && st.f.src() == st.phi.P().numOfNodes() - 1) {
             return false;
         }
-        if (st.f.dstId() != null && ((int) st.f.dstId() == (st.phi.P().numOfNodes() - 1))) {
+        if (!st.f.hasNewDst() && st.f.dst() == st.phi.P().numOfNodes() - 1) {
             return false;
         }
-        double fOrder = rOrder.get(Relation.fromEdge(f));
-        double fsOrder = rOrder.get(Relation.fromEdge(st.f));
+        double fOrder = rOrder[f.relationId()];
+        double fsOrder = rOrder[st.f.relationId()];
         return fOrder > fsOrder;
     }
 }
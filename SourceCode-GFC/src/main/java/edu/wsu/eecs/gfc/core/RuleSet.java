@@ -0,0 +1,389 @@
+package edu.wsu.eecs.gfc.core;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A set of mined rules, grouped by their relations r(x, y), with an optional logistic regression model per relation,
+ * which can be saved to and loaded from a compact binary file. Mining is then an offline job, and fact checking a
+ * separate process that loads the rules instead of mining them again.
+ * <p>
+ * The file stores, for each rule, its pattern P (nodes, edges and the edge x -> y), its statistics
+ * (supp, conf, gTest, pCov), and the match sets M(x) and M(y). The match sets are stored over a dictionary of the
+ * matched data nodes, as the sorted dictionary positions in fixed-width ints.
+ * The file is loaded by memory mapping, and the mapping is kept: the loaded rules only keep M(x) and M(y), which is
+ * all that checking needs, as read-only views of their positions in the mapped file, probed by a binary search and
+ * iterated in place, so the match sets are never copied to the heap.
+ * <p>
+ * Layout (big-endian, "varint" is an unsigned LEB128 int, "string" is a varint length and UTF-8 bytes):
+ * <pre>
+ * int MAGIC, int VERSION
+ * varint |dictionary|, (string id, string label) of each data node
+ * varint |relations|, for each relation:
+ *     string srcLabel, string dstLabel, string edgeLabel
+ *     byte hasModel, [varint dim, double[dim] weights, double bias]
+ *     varint |rules|, for each rule:
+ *         double supp, conf, gTest, pCov
+ *         varint |V(P)|, (varint id, string label) of each pattern node
+ *         varint |E(P)|, (varint srcId, varint dstId, string label) of each pattern edge
+ *         varint xId, varint yId, string label of the edge x -> y
+ *         match set M(x), match set M(y): varint count, int[count] sorted dictionary positions
+ * </pre>
+ * Node ids are written by toString(), so the data graph is expected to have string node ids, as IO loads them.
+ * <p>
+ * @author Peng Lin penglin03@gmail.com
+ */
+public class RuleSet {
+
+    private static final int MAGIC = 0x47464352;
+
+    // 2: the match sets as fixed-width positions (1 had varint deltas, which could only be probed by a linear scan).
+    private static final int VERSION = 2;
+
+    private final Map<Relation<String, String>, List<OGFCRule<String, String>>> rules;
+
+    private final Map<Relation<String, String>, LogisticRegression> models;
+
+    private RuleSet() {
+        this.rules = new LinkedHashMap<>();
+        this.models = new HashMap<>();
+    }
+
+    public static RuleSet createEmpty() {
+        return new RuleSet();
+    }
+
+    /**
+     * Add the rules of a relation, and optionally (if not null) a logistic regression model trained on their hits.
+     */
+    public RuleSet add(Relation<String, String> r, List<OGFCRule<String, String>> ruleList, LogisticRegression model) {
+        rules.put(r, ruleList);
+        if (model != null) {
+            models.put(r, model);
+        } else {
+            models.remove(r);
+        }
+        return this;
+    }
+
+    public Set<Relation<String, String>> relations() {
+        return rules.keySet();
+    }
+
+    public List<OGFCRule<String, String>> getRules(Relation<String, String> r) {
+        return rules.get(r);
+    }
+
+    /**
+     * @return the model of the relation, or null if there is none.
+     */
+    public LogisticRegression getModel(Relation<String, String> r) {
+        return models.get(r);
+    }
+
+    public int numOfRules() {
+        int n = 0;
+        for (List<OGFCRule<String, String>> ruleList : rules.values()) {
+            n += ruleList.size();
+        }
+        return n;
+    }
+
+    public void save(String ruleFile) throws IOException {
+        // The dictionary of the matched data nodes, in the order they are first seen.
+        Map<Node<String>, Integer> dictionary = new LinkedHashMap<>();
+        for (List<OGFCRule<String, String>> ruleList : rules.values()) {
+            for (OGFCRule<String, String> phi : ruleList) {
+                for (Node<String> v : phi.matchSet().get(phi.x())) {
+                    dictionary.putIfAbsent(v, dictionary.size());
+                }
+                for (Node<String> v : phi.matchSet().get(phi.y())) {
+                    dictionary.putIfAbsent(v, dictionary.size());
+                }
+            }
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(ruleFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            writeVarInt(out, dictionary.size());
+            for (Node<String> v : dictionary.keySet()) {
+                writeString(out, v.id().toString());
+                writeString(out, v.label());
+            }
+
+            writeVarInt(out, rules.size());
+            for (Map.Entry<Relation<String, String>, List<OGFCRule<String, String>>> entry : rules.entrySet()) {
+                Relation<String, String> r = entry.getKey();
+                writeString(out, r.srcLabel());
+                writeString(out, r.dstLabel());
+                writeString(out, r.edgeLabel());
+
+                LogisticRegression model = models.get(r);
+                out.writeByte(model != null ? 1 : 0);
+                if (model != null) {
+                    writeVarInt(out, model.weights().length);
+                    for (double w : model.weights()) {
+                        out.writeDouble(w);
+                    }
+                    out.writeDouble(model.bias());
+                }
+
+                writeVarInt(out, entry.getValue().size());
+                for (OGFCRule<String, String> phi : entry.getValue()) {
+                    out.writeDouble(phi.supp);
+                    out.writeDouble(phi.conf);
+                    out.writeDouble(phi.gTest);
+                    out.writeDouble(phi.pCov);
+
+                    writeVarInt(out, phi.P().numOfNodes());
+                    for (Node<String> u : phi.P().nodeIter()) {
+                        writeVarInt(out, (int) u.id());
+                        writeString(out, u.label());
+                    }
+                    writeVarInt(out, phi.P().numOfEdges());
+                    for (Edge<String, String> e : phi.P().edgeIter()) {
+                        writeVarInt(out, (int) e.srcId());
+                        writeVarInt(out, (int) e.dstId());
+                        writeString(out, e.label());
+                    }
+                    writeVarInt(out, (int) phi.x().id());
+                    writeVarInt(out, (int) phi.y().id());
+                    writeString(out, phi.exy().label());
+
+                    writeMatchSet(out, phi.matchSet().get(phi.x()), dictionary);
+                    writeMatchSet(out, phi.matchSet().get(phi.y()), dictionary);
+                }
+            }
+        }
+    }
+
+    /**
+     * Load a rule set file by memory mapping it. The match sets of the rules are views of the mapped file.
+     * The nodes of the match sets are equal to the nodes of the same ids and labels in the data graph.
+     */
+    public static RuleSet load(String ruleFile) throws IOException {
+        RuleSet ruleSet = new RuleSet();
+        try (FileChannel channel = FileChannel.open(Paths.get(ruleFile), StandardOpenOption.READ)) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != MAGIC) {
+                throw new IOException("Not a rule set file: " + ruleFile);
+            }
+            int version = in.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported rule set version " + version + ": " + ruleFile);
+            }
+
+            List<Node<String>> dictionary = new ArrayList<>();
+            Map<Node<String>, Integer> positions = new HashMap<>();
+            int nNodes = readVarInt(in);
+            for (int i = 0; i < nNodes; i++) {
+                String id = readString(in).intern();
+                String label = readString(in).intern();
+                Node<String> v = Node.createLabeledNode(id, label);
+                positions.put(v, dictionary.size());
+                dictionary.add(v);
+            }
+
+            int nRelations = readVarInt(in);
+            for (int i = 0; i < nRelations; i++) {
+                Relation<String, String> r = Relation.createRelation(readString(in), readString(in), readString(in));
+
+                LogisticRegression model = null;
+                if (in.get() != 0) {
+                    double[] weights = new double[readVarInt(in)];
+                    for (int k = 0; k < weights.length; k++) {
+                        weights[k] = in.getDouble();
+                    }
+                    model = LogisticRegression.createFromWeights(weights, in.getDouble());
+                }
+
+                int nRules = readVarInt(in);
+                List<OGFCRule<String, String>> ruleList = new ArrayList<>(nRules);
+                for (int j = 0; j < nRules; j++) {
+                    double supp = in.getDouble();
+                    double conf = in.getDouble();
+                    double gTest = in.getDouble();
+                    double pCov = in.getDouble();
+
+                    Graph<String, String> P = Graph.createEmptyGraph();
+                    int nPatternNodes = readVarInt(in);
+                    for (int k = 0; k < nPatternNodes; k++) {
+                        P.createNode(readVarInt(in), readString(in));
+                    }
+                    int nPatternEdges = readVarInt(in);
+                    for (int k = 0; k < nPatternEdges; k++) {
+                        P.createEdge(readVarInt(in), readVarInt(in), readString(in));
+                    }
+                    Node<String> x = P.getNode(readVarInt(in));
+                    Node<String> y = P.getNode(readVarInt(in));
+                    Edge<String, String> exy = Edge.createLabeledEdge(x, y, readString(in));
+
+                    OGFCRule<String, String> phi = OGFCRule.createLoaded(P, exy,
+                            readMatchSet(in, dictionary, positions), readMatchSet(in, dictionary, positions));
+                    phi.supp = supp;
+                    phi.conf = conf;
+                    phi.gTest = gTest;
+                    phi.pCov = pCov;
+                    ruleList.add(phi);
+                }
+                ruleSet.add(r, ruleList, model);
+            }
+        }
+        return ruleSet;
+    }
+
+    private static void writeMatchSet(DataOutputStream out, Set<Node<String>> matches,
+                                      Map<Node<String>, Integer> dictionary) throws IOException {
+        int[] positions = new int[matches.size()];
+        int n = 0;
+        for (Node<String> v : matches) {
+            positions[n++] = dictionary.get(v);
+        }
+        Arrays.sort(positions);
+        writeVarInt(out, n);
+        for (int p : positions) {
+            out.writeInt(p);
+        }
+    }
+
+    /**
+     * @return the view of the match set at the position of the buffer, which is moved past the match set.
+     */
+    private static Set<Node<String>> readMatchSet(ByteBuffer in, List<Node<String>> dictionary,
+                                                  Map<Node<String>, Integer> positions) {
+        int n = readVarInt(in);
+        Set<Node<String>> matches = new MappedMatchSet(in, in.position(), n, dictionary, positions);
+        in.position(in.position() + 4 * n);
+        return matches;
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(ByteBuffer in) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A match set of a loaded rule, as a read-only Set view of its sorted dictionary positions in the mapped file, which
+     * are binary searched by contains() in O(log |M|). It is read by absolute positions, so it can be read by many
+     * threads.
+     */
+    private static class MappedMatchSet extends AbstractSet<Node<String>> {
+
+        private final ByteBuffer in;
+
+        private final int start;
+
+        private final int size;
+
+        private final List<Node<String>> dictionary;
+
+        private final Map<Node<String>, Integer> positions;
+
+        private MappedMatchSet(ByteBuffer in, int start, int size, List<Node<String>> dictionary,
+                               Map<Node<String>, Integer> positions) {
+            this.in = in;
+            this.start = start;
+            this.size = size;
+            this.dictionary = dictionary;
+            this.positions = positions;
+        }
+
+        private int positionAt(int i) {
+            return in.getInt(start + 4 * i);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            Integer target = positions.get(o);
+            if (target == null) {
+                return false;
+            }
+            int lo = 0;
+            int hi = size - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int p = positionAt(mid);
+                if (p < target) {
+                    lo = mid + 1;
+                } else if (p > target) {
+                    hi = mid - 1;
+                } else {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Iterator<Node<String>> iterator() {
+            return new Iterator<Node<String>>() {
+                private int i = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return i < size;
+                }
+
+                @Override
+                public Node<String> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return dictionary.get(positionAt(i++));
+                }
+            };
+        }
+    }
+}
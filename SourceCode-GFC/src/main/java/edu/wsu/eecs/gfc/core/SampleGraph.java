@@ -0,0 +1,513 @@
+package edu.wsu.eecs.gfc.core;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * The compact form of a string graph for GraphSampler: the graph is loaded once, and the samples are taken by
+ * switching nodes and edges off (or on), without rebuilding any index.
+ * <p>
+ * The nodes and the edges are dense ints, in the order of the input files. The edges are kept in three CSR arrays:
+ * by source node, by destination node and by relation. As in Graph, there is at most one edge per (src, dst), the first
+ * one in the file, and the edges between unknown nodes are dropped. The degrees of the nodes and the sizes of the
+ * relations are maintained as the nodes and the edges are switched.
+ * <p>
+ * The structure is immutable, and can be shared by views (see emptyView()) that have their own nodes and edges.
+ * <p>
+ * @author Peng Lin penglin03@gmail.com
+ */
+final class SampleGraph implements IntAdjacency {
+
+    private final String[] nodeIds;
+
+    private final String[] nodeLabels;
+
+    private final int[] srcs;
+
+    private final int[] dsts;
+
+    private final int[] rels;
+
+    private final List<Relation<String, String>> relations;
+
+    private final Map<Relation<String, String>, Integer> relationIndex;
+
+    private final int[] outStart;
+
+    private final int[] outEdges;
+
+    private final int[] inStart;
+
+    private final int[] inEdges;
+
+    private final int[] relStart;
+
+    private final int[] relEdges;
+
+    private final boolean[] nodeAlive;
+
+    private final boolean[] edgeAlive;
+
+    private final int[] degrees;
+
+    private final int[] relCounts;
+
+    private int numOfNodes;
+
+    private int numOfEdges;
+
+    private SampleGraph(String[] nodeIds, String[] nodeLabels, int[] srcs, int[] dsts, int[] rels,
+                        List<Relation<String, String>> relations) {
+        this.nodeIds = nodeIds;
+        this.nodeLabels = nodeLabels;
+        this.srcs = srcs;
+        this.dsts = dsts;
+        this.rels = rels;
+        this.relations = relations;
+        this.relationIndex = new HashMap<>();
+        for (int r = 0; r < relations.size(); r++) {
+            relationIndex.put(relations.get(r), r);
+        }
+        this.outStart = new int[nodeIds.length + 1];
+        this.outEdges = groupBy(srcs, nodeIds.length, outStart);
+        this.inStart = new int[nodeIds.length + 1];
+        this.inEdges = groupBy(dsts, nodeIds.length, inStart);
+        this.relStart = new int[relations.size() + 1];
+        this.relEdges = groupBy(rels, relations.size(), relStart);
+
+        this.nodeAlive = new boolean[nodeIds.length];
+        this.edgeAlive = new boolean[srcs.length];
+        this.degrees = new int[nodeIds.length];
+        this.relCounts = new int[relations.size()];
+        Arrays.fill(nodeAlive, true);
+        Arrays.fill(edgeAlive, true);
+        for (int e = 0; e < srcs.length; e++) {
+            degrees[srcs[e]]++;
+            degrees[dsts[e]]++;
+            relCounts[rels[e]]++;
+        }
+        this.numOfNodes = nodeIds.length;
+        this.numOfEdges = srcs.length;
+    }
+
+    /**
+     * A view sharing the structure of the base, with no nodes and no edges.
+     */
+    private SampleGraph(SampleGraph base) {
+        this.nodeIds = base.nodeIds;
+        this.nodeLabels = base.nodeLabels;
+        this.srcs = base.srcs;
+        this.dsts = base.dsts;
+        this.rels = base.rels;
+        this.relations = base.relations;
+        this.relationIndex = base.relationIndex;
+        this.outStart = base.outStart;
+        this.outEdges = base.outEdges;
+        this.inStart = base.inStart;
+        this.inEdges = base.inEdges;
+        this.relStart = base.relStart;
+        this.relEdges = base.relEdges;
+        this.nodeAlive = new boolean[nodeIds.length];
+        this.edgeAlive = new boolean[srcs.length];
+        this.degrees = new int[nodeIds.length];
+        this.relCounts = new int[relations.size()];
+        this.numOfNodes = 0;
+        this.numOfEdges = 0;
+    }
+
+    /**
+     * The counting sort of the items 0..keys.length-1 by their keys, stable.
+     *
+     * @param start gets the start of every key in the returned items, with start[numOfKeys] = keys.length.
+     */
+    private static int[] groupBy(int[] keys, int numOfKeys, int[] start) {
+        for (int key : keys) {
+            start[key + 1]++;
+        }
+        for (int k = 0; k < numOfKeys; k++) {
+            start[k + 1] += start[k];
+        }
+        int[] next = Arrays.copyOf(start, numOfKeys);
+        int[] items = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            items[next[keys[i]]++] = i;
+        }
+        return items;
+    }
+
+    public static SampleGraph load(String vertexFile, String edgeFile) throws IOException {
+        Map<String, Integer> nodeIndex = new HashMap<>();
+        List<String> ids = new ArrayList<>();
+        List<String> labels = new ArrayList<>();
+        BufferedReader br;
+        String line;
+
+        br = new BufferedReader(new FileReader(vertexFile));
+        while ((line = br.readLine()) != null) {
+            String[] tokens = line.split("\t");
+            String id = tokens[0];
+            if (!nodeIndex.containsKey(id)) {
+                nodeIndex.put(id, ids.size());
+                ids.add(id);
+                labels.add(tokens[1].intern());
+            }
+        }
+        br.close();
+        int n = ids.size();
+
+        int[] srcs = new int[1024];
+        int[] dsts = new int[1024];
+        int[] rels = new int[1024];
+        int m = 0;
+        List<Relation<String, String>> relations = new ArrayList<>();
+        Map<Relation<String, String>, Integer> relationIndex = new HashMap<>();
+        br = new BufferedReader(new FileReader(edgeFile));
+        while ((line = br.readLine()) != null) {
+            String[] tokens = line.split("\t");
+            Integer src = nodeIndex.get(tokens[0]);
+            Integer dst = nodeIndex.get(tokens[1]);
+            if (src == null || dst == null) {
+                continue;
+            }
+            Relation<String, String> r = Relation.createRelation(labels.get(src), labels.get(dst), tokens[2].intern());
+            Integer rIndex = relationIndex.get(r);
+            if (rIndex == null) {
+                rIndex = relations.size();
+                relationIndex.put(r, rIndex);
+                relations.add(r);
+            }
+            if (m == srcs.length) {
+                srcs = Arrays.copyOf(srcs, 2 * m);
+                dsts = Arrays.copyOf(dsts, 2 * m);
+                rels = Arrays.copyOf(rels, 2 * m);
+            }
+            srcs[m] = src;
+            dsts[m] = dst;
+            rels[m] = rIndex;
+            m++;
+        }
+        br.close();
+
+        // Keep the first edge of every (src, dst): the edges of a source are grouped in order, and their
+        // destinations are marked by the source.
+        int[] start = new int[n + 1];
+        int[] bySrc = groupBy(Arrays.copyOf(srcs, m), n, start);
+        int[] marks = new int[n];
+        Arrays.fill(marks, -1);
+        boolean[] isKept = new boolean[m];
+        for (int v = 0; v < n; v++) {
+            for (int k = start[v]; k < start[v + 1]; k++) {
+                int e = bySrc[k];
+                if (marks[dsts[e]] != v) {
+                    marks[dsts[e]] = v;
+                    isKept[e] = true;
+                }
+            }
+        }
+        int numOfKept = 0;
+        for (int e = 0; e < m; e++) {
+            if (isKept[e]) {
+                srcs[numOfKept] = srcs[e];
+                dsts[numOfKept] = dsts[e];
+                rels[numOfKept] = rels[e];
+                numOfKept++;
+            }
+        }
+
+        return new SampleGraph(ids.toArray(new String[0]), labels.toArray(new String[0]),
+                Arrays.copyOf(srcs, numOfKept), Arrays.copyOf(dsts, numOfKept), Arrays.copyOf(rels, numOfKept),
+                relations);
+    }
+
+    public SampleGraph emptyView() {
+        return new SampleGraph(this);
+    }
+
+    /**
+     * @return the bound of the node ids, i.e., the number of nodes loaded.
+     */
+    @Override
+    public int nodeBound() {
+        return nodeIds.length;
+    }
+
+    public int numOfNodes() {
+        return numOfNodes;
+    }
+
+    public int numOfEdges() {
+        return numOfEdges;
+    }
+
+    public boolean hasNode(int v) {
+        return nodeAlive[v];
+    }
+
+    public boolean hasEdge(int e) {
+        return edgeAlive[e];
+    }
+
+    public int degree(int v) {
+        return degrees[v];
+    }
+
+    public int srcOf(int e) {
+        return srcs[e];
+    }
+
+    public int dstOf(int e) {
+        return dsts[e];
+    }
+
+    /**
+     * The out-edges (resp. in-edges) of v are outEdge(v, k) (resp. inEdge(v, k)) for k < outSize(v) (resp. inSize(v)),
+     * including those switched off.
+     */
+    @Override
+    public int outSize(int v) {
+        return outStart[v + 1] - outStart[v];
+    }
+
+    public int outEdge(int v, int k) {
+        return outEdges[outStart[v] + k];
+    }
+
+    @Override
+    public int inSize(int v) {
+        return inStart[v + 1] - inStart[v];
+    }
+
+    public int inEdge(int v, int k) {
+        return inEdges[inStart[v] + k];
+    }
+
+    /**
+     * @return the dst of the k-th out-edge of v, or -1 if the edge is removed.
+     */
+    @Override
+    public int outNeighbor(int v, int k) {
+        int e = outEdge(v, k);
+        return edgeAlive[e] ? dstOf(e) : -1;
+    }
+
+    /**
+     * @return the src of the k-th in-edge of v, or -1 if the edge is removed.
+     */
+    @Override
+    public int inNeighbor(int v, int k) {
+        int e = inEdge(v, k);
+        return edgeAlive[e] ? srcOf(e) : -1;
+    }
+
+    /**
+     * @return the id of the relation, or -1 if it has no edge loaded.
+     */
+    public int relationId(Relation<String, String> r) {
+        Integer rIndex = relationIndex.get(r);
+        return rIndex == null ? -1 : rIndex;
+    }
+
+    public int numOfRelationIds() {
+        return relations.size();
+    }
+
+    public Relation<String, String> relation(int r) {
+        return relations.get(r);
+    }
+
+    /**
+     * @return the current number of edges of the relation.
+     */
+    public int relationCount(int r) {
+        return relCounts[r];
+    }
+
+    public int relationCount(Relation<String, String> r) {
+        int rIndex = relationId(r);
+        return rIndex < 0 ? 0 : relCounts[rIndex];
+    }
+
+    /**
+     * The edges of the relation r are relationEdge(r, k) for k < relationSize(r), including those switched off.
+     */
+    public int relationSize(int r) {
+        return relStart[r + 1] - relStart[r];
+    }
+
+    public int relationEdge(int r, int k) {
+        return relEdges[relStart[r] + k];
+    }
+
+    /**
+     * @return the relations having edges, by their numbers of edges (ascending).
+     */
+    public List<Relation<String, String>> relationsByCount() {
+        List<Integer> rIndexes = new ArrayList<>();
+        for (int r = 0; r < relCounts.length; r++) {
+            if (relCounts[r] > 0) {
+                rIndexes.add(r);
+            }
+        }
+        rIndexes.sort(Comparator.comparingInt(r -> relCounts[r]));
+        List<Relation<String, String>> relationList = new ArrayList<>(rIndexes.size());
+        for (int r : rIndexes) {
+            relationList.add(relations.get(r));
+        }
+        return relationList;
+    }
+
+    /**
+     * @return the nodes, by their degrees (descending), by a bucket sort.
+     */
+    public int[] nodesByDegree() {
+        int maxDegree = 0;
+        for (int v = 0; v < nodeAlive.length; v++) {
+            if (nodeAlive[v]) {
+                maxDegree = Math.max(maxDegree, degrees[v]);
+            }
+        }
+        int[] start = new int[maxDegree + 2];
+        for (int v = 0; v < nodeAlive.length; v++) {
+            if (nodeAlive[v]) {
+                start[maxDegree - degrees[v] + 1]++;
+            }
+        }
+        for (int d = 0; d <= maxDegree; d++) {
+            start[d + 1] += start[d];
+        }
+        int[] order = new int[numOfNodes];
+        for (int v = 0; v < nodeAlive.length; v++) {
+            if (nodeAlive[v]) {
+                order[start[maxDegree - degrees[v]]++] = v;
+            }
+        }
+        return order;
+    }
+
+    public boolean addNode(int v) {
+        if (nodeAlive[v]) {
+            return false;
+        }
+        nodeAlive[v] = true;
+        numOfNodes++;
+        return true;
+    }
+
+    /**
+     * Switch the edge on, with its nodes.
+     */
+    public boolean addEdge(int e) {
+        if (edgeAlive[e]) {
+            return false;
+        }
+        addNode(srcs[e]);
+        addNode(dsts[e]);
+        edgeAlive[e] = true;
+        degrees[srcs[e]]++;
+        degrees[dsts[e]]++;
+        relCounts[rels[e]]++;
+        numOfEdges++;
+        return true;
+    }
+
+    public boolean removeEdge(int e) {
+        if (!edgeAlive[e]) {
+            return false;
+        }
+        edgeAlive[e] = false;
+        degrees[srcs[e]]--;
+        degrees[dsts[e]]--;
+        relCounts[rels[e]]--;
+        numOfEdges--;
+        return true;
+    }
+
+    /**
+     * Switch the node off, with its edges.
+     */
+    public boolean removeNode(int v) {
+        if (!nodeAlive[v]) {
+            return false;
+        }
+        for (int k = outStart[v]; k < outStart[v + 1]; k++) {
+            removeEdge(outEdges[k]);
+        }
+        for (int k = inStart[v]; k < inStart[v + 1]; k++) {
+            removeEdge(inEdges[k]);
+        }
+        nodeAlive[v] = false;
+        numOfNodes--;
+        return true;
+    }
+
+    public void removeIsolatedNodes() {
+        for (int v = 0; v < nodeAlive.length; v++) {
+            if (nodeAlive[v] && degrees[v] == 0) {
+                nodeAlive[v] = false;
+                numOfNodes--;
+            }
+        }
+    }
+
+    /**
+     * Save the graph as gfc_str_nodes.tsv and gfc_str_edges.tsv, and the given relations with their numbers of edges
+     * as gfc_all_relations.tsv, into the directory.
+     */
+    public void save(File dir, List<Relation<String, String>> relationList) throws IOException {
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(new File(dir, "gfc_all_relations.tsv")))) {
+            for (Relation<String, String> r : relationList) {
+                bw.write(r.toString() + "\t" + relationCount(r));
+                bw.newLine();
+            }
+        }
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(new File(dir, "gfc_str_nodes.tsv")))) {
+            for (int v = 0; v < nodeAlive.length; v++) {
+                if (nodeAlive[v]) {
+                    bw.write(nodeIds[v] + "\t" + nodeLabels[v]);
+                    bw.newLine();
+                }
+            }
+        }
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(new File(dir, "gfc_str_edges.tsv")))) {
+            for (int e = 0; e < edgeAlive.length; e++) {
+                if (edgeAlive[e]) {
+                    bw.write(nodeIds[srcs[e]] + "\t" + nodeIds[dsts[e]] + "\t" + relations.get(rels[e]).edgeLabel());
+                    bw.newLine();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the sizes, as GraphDatabase.toSizeString() gives them.
+     */
+    public String toSizeString() {
+        Set<String> labels = new HashSet<>();
+        for (int v = 0; v < nodeAlive.length; v++) {
+            if (nodeAlive[v]) {
+                labels.add(nodeLabels[v]);
+            }
+        }
+        Set<String> edgeLabels = new HashSet<>();
+        int numOfRelations = 0;
+        for (int r = 0; r < relCounts.length; r++) {
+            if (relCounts[r] > 0) {
+                edgeLabels.add(relations.get(r).edgeLabel());
+                numOfRelations++;
+            }
+        }
+        return "# |V| = " + numOfNodes + "\n" +
+                "# |E| = " + numOfEdges + "\n" +
+                "# |L| = " + labels.size() + "\n" +
+                "# |R| = " + edgeLabels.size() + "\n" +
+                "# |T| = " + numOfRelations;
+    }
+}
@@ -0,0 +1,454 @@
+package edu.wsu.eecs.gfc.core;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Sampling graphs into different sizes, as GraphSampler does, by passes over gfc_str_edges.tsv, without loading
+ * the graph, for the graphs that do not fit in memory.
+ * <p>
+ * Only the node dictionary (the sorted node ids, with their labels) and int counters per node and per relation are
+ * kept in memory. The first pass over the edges counts the edges of every relation, which decides the relations kept
+ * (by the range of their sizes, and one of every skip relations, as in GraphSampler); the following passes decide
+ * the tiers of every kept edge, and the last one writes every edge to the edge files of all its tiers at once.
+ * A final pass over the nodes writes the node files. The output has the gfc_str_* layout of GraphSampler, and is the
+ * same as the output of the corresponding GraphSampler method, given at most one edge per (src, dst) in the input.
+ * <p>
+ * @author Peng Lin penglin03@gmail.com
+ */
+public class StreamingGraphSampler {
+
+    private static final String SEP = File.separator;
+
+    private static final double[] SIZE_ARR = {1.0, 0.8, 0.6, 0.4, 0.2};
+
+    private static final int NUM_OF_TIERS = 5;
+
+    private final String nodeFile;
+
+    private final String edgeFile;
+
+    // The node ids, sorted, with their labels and their positions in the node file.
+    private final String[] nodeIds;
+
+    private final int[] nodeLabels;
+
+    private final int[] nodePositions;
+
+    private final List<String> labels;
+
+    private final List<String> edgeLabels;
+
+    private final Map<String, Integer> edgeLabelIndex;
+
+    private final List<Relation<String, String>> relations;
+
+    // The relations of every edge label, by (src label, dst label).
+    private final List<Map<Long, Integer>> relationIndex;
+
+    private int[] relCounts;
+
+    private StreamingGraphSampler(String inputDir) throws IOException {
+        this.nodeFile = inputDir + SEP + "gfc_str_nodes.tsv";
+        this.edgeFile = inputDir + SEP + "gfc_str_edges.tsv";
+        this.labels = new ArrayList<>();
+        this.edgeLabels = new ArrayList<>();
+        this.edgeLabelIndex = new HashMap<>();
+        this.relations = new ArrayList<>();
+        this.relationIndex = new ArrayList<>();
+        this.relCounts = new int[16];
+
+        List<String> ids = new ArrayList<>();
+        List<String> idLabels = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new FileReader(nodeFile))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] tokens = line.split("\t");
+                ids.add(tokens[0]);
+                idLabels.add(tokens[1].intern());
+            }
+        }
+        Integer[] order = new Integer[ids.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        // By ids, and the first line of an id first.
+        Arrays.sort(order, Comparator.comparing(ids::get));
+        Map<String, Integer> labelIndex = new HashMap<>();
+        int n = 0;
+        String[] sortedIds = new String[order.length];
+        int[] sortedLabels = new int[order.length];
+        int[] positions = new int[order.length];
+        for (int i : order) {
+            if (n > 0 && sortedIds[n - 1].equals(ids.get(i))) {
+                continue;
+            }
+            sortedIds[n] = ids.get(i);
+            sortedLabels[n] = labelIndex.computeIfAbsent(idLabels.get(i), l -> {
+                labels.add(l);
+                return labels.size() - 1;
+            });
+            positions[n] = i;
+            n++;
+        }
+        this.nodeIds = Arrays.copyOf(sortedIds, n);
+        this.nodeLabels = Arrays.copyOf(sortedLabels, n);
+        this.nodePositions = Arrays.copyOf(positions, n);
+    }
+
+    /**
+     * Load the node dictionary, and count the edges of every relation, by one pass over the edges.
+     */
+    public static StreamingGraphSampler createInit(String inputDir) throws IOException {
+        StreamingGraphSampler sampler = new StreamingGraphSampler(inputDir);
+        sampler.scanEdges((src, dst, r, line) -> sampler.relCounts[r]++);
+        System.out.println("OriginalSize:\n# |V| = " + sampler.nodeIds.length + "\n# |E| = " + sampler.numOfEdges(null)
+                + "\n# |T| = " + sampler.relations.size());
+        return sampler;
+    }
+
+    /**
+     * Tiers t5..t1 keep 100%, 80%, ..., 20% of the edges, by removing the nodes of the highest degrees first,
+     * as GraphSampler.sampleByEdges does.
+     */
+    public static void sampleByEdges(String inputDir, String outputDir, int maxTripleFreq, int minTripleFreq, int skip) throws IOException {
+        StreamingGraphSampler sampler = createInit(inputDir);
+        boolean[] isKept = sampler.keptRelations(maxTripleFreq, minTripleFreq, skip);
+
+        // The nodes are removed by their degrees (descending), and an edge goes with the first of its nodes removed.
+        int[] degrees = new int[sampler.nodeIds.length];
+        sampler.scanEdges((src, dst, r, line) -> {
+            if (isKept[r]) {
+                degrees[src]++;
+                degrees[dst]++;
+            }
+        });
+        int[] ranks = sampler.ranksByDegree(degrees);
+        int[] numOfEdgesByRank = new int[ranks.length + 1];
+        sampler.scanEdges((src, dst, r, line) -> {
+            if (isKept[r]) {
+                numOfEdgesByRank[Math.min(ranks[src], ranks[dst])]++;
+            }
+        });
+
+        // The number of the nodes removed for every tier, as the first node reaching the size.
+        int fullSize = sampler.numOfEdges(isKept);
+        int[] numOfRemoved = new int[NUM_OF_TIERS];
+        Arrays.fill(numOfRemoved, -1);
+        int remaining = fullSize;
+        int index = 0;
+        for (int k = 0; k < ranks.length && index < NUM_OF_TIERS; k++) {
+            if (remaining <= (int) (fullSize * SIZE_ARR[index])) {
+                numOfRemoved[index++] = k;
+            }
+            remaining -= numOfEdgesByRank[k];
+        }
+
+        sampler.save(outputDir, false, (src, dst, r, rank) -> {
+            int mask = 0;
+            if (isKept[r]) {
+                int minRank = Math.min(ranks[src], ranks[dst]);
+                for (int i = 0; i < NUM_OF_TIERS; i++) {
+                    if (numOfRemoved[i] >= 0 && minRank >= numOfRemoved[i]) {
+                        mask |= 1 << (NUM_OF_TIERS - i - 1);
+                    }
+                }
+            }
+            return mask;
+        }, false);
+    }
+
+    /**
+     * Tier t(i - 1) removes 1/i of the edges of every relation of tier t(i), the first ones in the file,
+     * as GraphSampler.sampleByEdges2 does.
+     */
+    public static void sampleByEdges2(String inputDir, String outputDir, int maxTripleFreq, int minTripleFreq, int skip) throws IOException {
+        StreamingGraphSampler sampler = createInit(inputDir);
+        boolean[] isKept = sampler.keptRelations(maxTripleFreq, minTripleFreq, skip);
+
+        // The number of the first edges of every relation removed from every tier.
+        int numOfRelations = sampler.relations.size();
+        int[][] numOfRemoved = new int[NUM_OF_TIERS + 1][numOfRelations];
+        for (int r = 0; r < numOfRelations; r++) {
+            int count = isKept[r] ? sampler.relCounts[r] : 0;
+            for (int index = NUM_OF_TIERS; index > 1; index--) {
+                int n = (count - numOfRemoved[index][r]) / index;
+                numOfRemoved[index - 1][r] = numOfRemoved[index][r] + n;
+            }
+        }
+
+        // The t5 keeps the isolated nodes, as GraphSampler.sampleByEdges2 does.
+        sampler.save(outputDir, true, (src, dst, r, rank) -> {
+            int mask = 0;
+            if (isKept[r]) {
+                for (int index = 1; index <= NUM_OF_TIERS; index++) {
+                    if (rank >= numOfRemoved[index][r]) {
+                        mask |= 1 << (index - 1);
+                    }
+                }
+            }
+            return mask;
+        }, false);
+    }
+
+    /**
+     * Tier t(i + 1) adds the (i + 5k)-th relations (by sizes, k < step) to tier t(i), as GraphSampler.sampleByRelations
+     * does.
+     */
+    public static void sampleByRelations(String inputDir, String outputDir, int maxTripleFreq, int minTripleFreq, int step) throws IOException {
+        StreamingGraphSampler sampler = createInit(inputDir);
+        boolean[] isKept = sampler.keptRelations(maxTripleFreq, minTripleFreq, 1);
+
+        // The first tier of every relation, or 0 for none.
+        int[] firstTiers = new int[sampler.relations.size()];
+        List<Integer> relationList = sampler.relationsByCount(isKept, sampler.relCounts);
+        for (int rIndex = 0; rIndex < NUM_OF_TIERS * step && rIndex < relationList.size(); rIndex++) {
+            firstTiers[relationList.get(rIndex)] = rIndex % NUM_OF_TIERS + 1;
+        }
+
+        sampler.save(outputDir, false, (src, dst, r, rank) ->
+                firstTiers[r] == 0 ? 0 : ((1 << NUM_OF_TIERS) - 1) & ~((1 << (firstTiers[r] - 1)) - 1), true);
+    }
+
+    /**
+     * Visits the edges of the file, with the dense ids of their nodes (in the node dictionary) and relations.
+     */
+    private interface EdgeVisitor {
+        void visit(int src, int dst, int r, String line);
+    }
+
+    /**
+     * Decides the tiers of the edges: bit (i - 1) is set iff the edge is in tier ti.
+     *
+     * @param rank is the position of the edge among the edges of its relation, in the file.
+     */
+    private interface TierMask {
+        int tiers(int src, int dst, int r, int rank);
+    }
+
+    /**
+     * Pass over the edges, skipping those of unknown nodes.
+     */
+    private void scanEdges(EdgeVisitor visitor) throws IOException {
+        try (BufferedReader br = new BufferedReader(new FileReader(edgeFile))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                int t1 = line.indexOf('\t');
+                int t2 = line.indexOf('\t', t1 + 1);
+                int t3 = line.indexOf('\t', t2 + 1);
+                int src = Arrays.binarySearch(nodeIds, line.substring(0, t1));
+                int dst = Arrays.binarySearch(nodeIds, line.substring(t1 + 1, t2));
+                if (src < 0 || dst < 0) {
+                    continue;
+                }
+                String edgeLabel = t3 < 0 ? line.substring(t2 + 1) : line.substring(t2 + 1, t3);
+                visitor.visit(src, dst, relationId(src, dst, edgeLabel), line);
+            }
+        }
+    }
+
+    private int relationId(int src, int dst, String edgeLabel) {
+        Integer l = edgeLabelIndex.get(edgeLabel);
+        if (l == null) {
+            l = edgeLabels.size();
+            edgeLabels.add(edgeLabel.intern());
+            edgeLabelIndex.put(edgeLabels.get(l), l);
+            relationIndex.add(new HashMap<>());
+        }
+        long key = ((long) nodeLabels[src] << 32) | nodeLabels[dst];
+        Integer r = relationIndex.get(l).get(key);
+        if (r == null) {
+            r = relations.size();
+            relationIndex.get(l).put(key, r);
+            relations.add(Relation.createRelation(labels.get(nodeLabels[src]), labels.get(nodeLabels[dst]), edgeLabels.get(l)));
+            if (r == relCounts.length) {
+                relCounts = Arrays.copyOf(relCounts, 2 * r);
+            }
+        }
+        return r;
+    }
+
+    private int numOfEdges(boolean[] isKept) {
+        int m = 0;
+        for (int r = 0; r < relations.size(); r++) {
+            if (isKept == null || isKept[r]) {
+                m += relCounts[r];
+            }
+        }
+        return m;
+    }
+
+    /**
+     * @return the relations of sizes in range, and then one of every skip relations by sizes, as GraphSampler keeps.
+     */
+    private boolean[] keptRelations(int maxTripleFreq, int minTripleFreq, int skip) {
+        boolean[] isKept = new boolean[relations.size()];
+        for (int r = 0; r < relations.size(); r++) {
+            isKept[r] = relCounts[r] >= minTripleFreq && relCounts[r] <= maxTripleFreq;
+        }
+        System.out.println("Sampling relations every skip = " + skip);
+        List<Integer> relationList = relationsByCount(isKept, relCounts);
+        for (int k = 0; k < relationList.size(); k++) {
+            if (k % skip != 0) {
+                isKept[relationList.get(k)] = false;
+            }
+        }
+        System.out.println("SampledSize:\n# |E| = " + numOfEdges(isKept) + "\n# |T| = " + relationsByCount(isKept, relCounts).size());
+        return isKept;
+    }
+
+    /**
+     * @return the relations of edges (and kept, if given), by their numbers of edges (ascending).
+     */
+    private List<Integer> relationsByCount(boolean[] isKept, int[] counts) {
+        List<Integer> relationList = new ArrayList<>();
+        for (int r = 0; r < relations.size(); r++) {
+            if ((isKept == null || isKept[r]) && counts[r] > 0) {
+                relationList.add(r);
+            }
+        }
+        relationList.sort(Comparator.comparingInt(r -> counts[r]));
+        return relationList;
+    }
+
+    /**
+     * @return the ranks of the nodes by their degrees (descending), and then by their positions in the node file,
+     * by a bucket sort.
+     */
+    private int[] ranksByDegree(int[] degrees) {
+        int n = nodeIds.length;
+        // The positions are distinct lines of the node file.
+        int numOfLines = 0;
+        for (int p : nodePositions) {
+            numOfLines = Math.max(numOfLines, p + 1);
+        }
+        int[] nodeAtPosition = new int[numOfLines];
+        Arrays.fill(nodeAtPosition, -1);
+        for (int v = 0; v < n; v++) {
+            nodeAtPosition[nodePositions[v]] = v;
+        }
+        int maxDegree = 0;
+        for (int d : degrees) {
+            maxDegree = Math.max(maxDegree, d);
+        }
+        int[] start = new int[maxDegree + 2];
+        for (int d : degrees) {
+            start[maxDegree - d + 1]++;
+        }
+        for (int d = 0; d <= maxDegree; d++) {
+            start[d + 1] += start[d];
+        }
+        int[] ranks = new int[n];
+        for (int v : nodeAtPosition) {
+            if (v >= 0) {
+                ranks[v] = start[maxDegree - degrees[v]]++;
+            }
+        }
+        return ranks;
+    }
+
+    /**
+     * Write the tiers t1..t5: the edges of every tier by the last pass over the edges, and then the nodes, which are
+     * either all the nodes or only those of the edges of the tier (the tier t5 only, if isT5AllNodes).
+     *
+     * The common relations are ordered as in the tier t5 (or t1, if isFromT1), and the 10 first of them are the input
+     * relations of every tier, as GraphSampler gives them.
+     */
+    private void save(String outputDir, boolean isT5AllNodes, TierMask tierMask, boolean isFromT1) throws IOException {
+        int n = nodeIds.length;
+        int numOfRelations = relations.size();
+        BitSet[] tierNodes = new BitSet[NUM_OF_TIERS];
+        int[][] tierCounts = new int[NUM_OF_TIERS][numOfRelations];
+        int[] ranks = new int[numOfRelations];
+        BufferedWriter[] writers = new BufferedWriter[NUM_OF_TIERS];
+        for (int i = 0; i < NUM_OF_TIERS; i++) {
+            tierNodes[i] = new BitSet(n);
+            File dir = new File(outputDir + SEP, "t" + (i + 1));
+            if (!dir.exists()) {
+                dir.mkdirs();
+            }
+            writers[i] = new BufferedWriter(new FileWriter(new File(dir, "gfc_str_edges.tsv")));
+        }
+        try {
+            scanEdges((src, dst, r, line) -> {
+                int mask = tierMask.tiers(src, dst, r, ranks[r]++);
+                for (int i = 0; i < NUM_OF_TIERS; i++) {
+                    if ((mask & (1 << i)) != 0) {
+                        tierNodes[i].set(src);
+                        tierNodes[i].set(dst);
+                        tierCounts[i][r]++;
+                        try {
+                            writers[i].write(nodeIds[src] + "\t" + nodeIds[dst] + "\t" + relations.get(r).edgeLabel());
+                            writers[i].newLine();
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                }
+            });
+        } finally {
+            for (BufferedWriter bw : writers) {
+                bw.close();
+            }
+        }
+        if (isT5AllNodes) {
+            tierNodes[NUM_OF_TIERS - 1].set(0, n);
+        }
+
+        // The nodes, in the order of the node file, the first line of every id.
+        BitSet isWritten = new BitSet(n);
+        for (int i = 0; i < NUM_OF_TIERS; i++) {
+            writers[i] = new BufferedWriter(new FileWriter(outputDir + SEP + "t" + (i + 1) + SEP + "gfc_str_nodes.tsv"));
+        }
+        try (BufferedReader br = new BufferedReader(new FileReader(nodeFile))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] tokens = line.split("\t");
+                int v = Arrays.binarySearch(nodeIds, tokens[0]);
+                if (isWritten.get(v)) {
+                    continue;
+                }
+                isWritten.set(v);
+                for (int i = 0; i < NUM_OF_TIERS; i++) {
+                    if (tierNodes[i].get(v)) {
+                        writers[i].write(nodeIds[v] + "\t" + labels.get(nodeLabels[v]));
+                        writers[i].newLine();
+                    }
+                }
+            }
+        } finally {
+            for (BufferedWriter bw : writers) {
+                bw.close();
+            }
+        }
+
+        List<Relation<String, String>> commonRelations = new ArrayList<>();
+        for (int k = 0; k < NUM_OF_TIERS; k++) {
+            int i = isFromT1 ? k : NUM_OF_TIERS - 1 - k;
+            int[] counts = tierCounts[i];
+            List<Relation<String, String>> relationList = new ArrayList<>();
+            try (BufferedWriter bw = new BufferedWriter(new FileWriter(outputDir + SEP + "t" + (i + 1) + SEP + "gfc_all_relations.tsv"))) {
+                for (int r : relationsByCount(null, counts)) {
+                    relationList.add(relations.get(r));
+                    bw.write(relations.get(r).toString() + "\t" + counts[r]);
+                    bw.newLine();
+                }
+            }
+            GraphSampler.retainCommonRelations(commonRelations, relationList, k == 0);
+            int m = 0;
+            for (int count : counts) {
+                m += count;
+            }
+            System.out.println("Graph_t" + (i + 1) + ":\n# |V| = " + tierNodes[i].cardinality() + "\n# |E| = " + m
+                    + "\n# |T| = " + relationList.size());
+        }
+
+        GraphSampler.saveCommonRelations(outputDir, commonRelations);
+        GraphSampler.saveInputRelations(outputDir, NUM_OF_TIERS, GraphSampler.defaultRelations(commonRelations));
+    }
+}
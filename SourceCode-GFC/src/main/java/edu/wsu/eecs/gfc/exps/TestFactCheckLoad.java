@@ -0,0 +1,87 @@
+package edu.wsu.eecs.gfc.exps;
+
+import edu.wsu.eecs.gfc.core.FactCheckClient;
+import edu.wsu.eecs.gfc.core.IO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A load generator of a fact checking server (see TestFactCheckServer).
+ * <p>
+ * A uniform sample of the candidates of the candidate file (at most the 6th argument, 10000 by default) is sent,
+ * one request at a time per client, by concurrent clients, each over its own connection, for a number of rounds. The client-side latencies and the throughput are reported,
+ * followed by the metrics of the server.
+ *
+ * @author Peng Lin penglin03@gmail.com
+ */
+public class TestFactCheckLoad {
+
+    private static final long DEFAULT_SAMPLE_SEED = 357;
+
+    public static void main(String[] args) throws Exception {
+        String host = args[0];
+        int port = Integer.parseInt(args[1]);
+        String candidateFile = args[2];
+        int nClients = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+        int nRounds = args.length > 4 ? Integer.parseInt(args[4]) : 1;
+        int sampleSize = args.length > 5 ? Integer.parseInt(args[5]) : 10000;
+
+        List<String[]> candidates = IO.sampleCandidates(candidateFile, sampleSize, new Random(DEFAULT_SAMPLE_SEED));
+        System.out.println("Candidates: " + candidates.size() + ", Clients: " + nClients + ", Rounds: " + nRounds);
+
+        ExecutorService pool = Executors.newFixedThreadPool(nClients);
+        List<Future<long[]>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int c = 0; c < nClients; c++) {
+            int client = c;
+            futures.add(pool.submit(() -> {
+                // Each client checks the candidates client, client + nClients, ...
+                List<Long> latencies = new ArrayList<>();
+                try (FactCheckClient fc = FactCheckClient.connect(host, port)) {
+                    for (int round = 0; round < nRounds; round++) {
+                        for (int i = client; i < candidates.size(); i += nClients) {
+                            String[] tokens = candidates.get(i);
+                            long t = System.nanoTime();
+                            fc.check(tokens[0], tokens.length > 1 ? tokens[1] : "", tokens.length > 2 ? tokens[2] : "");
+                            latencies.add(System.nanoTime() - t);
+                        }
+                    }
+                }
+                long[] result = new long[latencies.size()];
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = latencies.get(i);
+                }
+                return result;
+            }));
+        }
+        List<Long> all = new ArrayList<>();
+        for (Future<long[]> future : futures) {
+            for (long l : future.get()) {
+                all.add(l);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+
+        long[] latencies = new long[all.size()];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = all.get(i);
+        }
+        Arrays.sort(latencies);
+        if (latencies.length > 0) {
+            System.out.println("Requests: " + latencies.length
+                    + ", Throughput = " + String.format("%.1f", latencies.length / seconds) + " req/s"
+                    + ", p50 = " + latencies[latencies.length / 2] / 1000.0 + " us"
+                    + ", p99 = " + latencies[(int) (latencies.length * 0.99)] / 1000.0 + " us");
+        }
+        try (FactCheckClient fc = FactCheckClient.connect(host, port)) {
+            System.out.println("Server: " + fc.stats());
+        }
+    }
+}
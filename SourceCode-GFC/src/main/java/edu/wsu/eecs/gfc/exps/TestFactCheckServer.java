@@ -0,0 +1,51 @@
+package edu.wsu.eecs.gfc.exps;
+
+import com.google.common.base.Stopwatch;
+import edu.wsu.eecs.gfc.core.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The caller to run a fact checking server on a saved rule set (e.g., rules.gfcr saved by TestFactScorer).
+ * <p>
+ * The data nodes and the rule set are loaded once, and the server answers check requests on the local port
+ * until it is killed.
+ *
+ * @author Peng Lin penglin03@gmail.com
+ */
+public class TestFactCheckServer {
+
+    public static void main(String[] args) throws Exception {
+        String inputDir = args[0];
+        String ruleFile = args[1];
+        int port = Integer.parseInt(args[2]);
+        int nThreads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        int maxBatchSize = args.length > 4 ? Integer.parseInt(args[4]) : 256;
+        int queueCapacity = args.length > 5 ? Integer.parseInt(args[5]) : 65536;
+
+        System.out.println("Configurations:"
+                + "\nInputDir = " + inputDir
+                + "\nruleFile = " + ruleFile
+                + "\nport = " + port
+                + "\nnThreads = " + nThreads
+                + "\nmaxBatchSize = " + maxBatchSize
+                + "\nqueueCapacity = " + queueCapacity);
+
+        System.out.println("Loading the data nodes....");
+        Graph<String, String> graph = IO.loadStringNodes(inputDir);
+        System.out.println("Graph: " + graph.toSizeString());
+
+        System.out.println("Loading the rule set....");
+        Stopwatch w = Stopwatch.createStarted();
+        RuleSet ruleSet = RuleSet.load(ruleFile);
+        w.stop();
+        System.out.println("Relations: " + ruleSet.relations().size() + ", Rules: " + ruleSet.numOfRules()
+                + ", Time = " + w.elapsed(TimeUnit.MILLISECONDS) + " ms");
+
+        FactScorer scorer = FactScorer.createInit(graph, nThreads).addRuleSet(ruleSet);
+        FactCheckServer server = FactCheckServer.createInit(scorer, nThreads, maxBatchSize, queueCapacity);
+        port = server.start(port);
+        System.out.println("Serving on port " + port + "....");
+        server.await();
+    }
+}
@@ -0,0 +1,106 @@
+package edu.wsu.eecs.gfc.exps;
+
+import com.google.common.base.Stopwatch;
+import edu.wsu.eecs.gfc.core.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The caller to score a file of candidate facts by GFCs.
+ * <p>
+ * The rules of each input relation are mined as in TestGFC, and a logistic regression model is trained on their hits.
+ * Then the candidates (subject, edge label, object) of the candidate file are scored in parallel chunks,
+ * and written to scores.tsv in the output directory.
+ * The rules and the models are also saved to rules.gfcr in the output directory, to be reused by TestRuleSetScorer.
+ *
+ * @author Peng Lin penglin03@gmail.com
+ */
+public class TestFactScorer {
+
+    private static final int GLOBAL_HOPS = 2;
+
+    public static void main(String[] args) throws Exception {
+        String inputDir = args[0];
+        String outputDir = args[1];
+        new File(outputDir).mkdirs();
+
+        double minSupp = Double.parseDouble(args[2]);
+        double minConf = Double.parseDouble(args[3]);
+        int maxSize = Integer.parseInt(args[4]);
+        int topK = Integer.parseInt(args[5]);
+        String candidateFile = args[6];
+        int nThreads = args.length > 7 ? Integer.parseInt(args[7]) : Runtime.getRuntime().availableProcessors();
+        int chunkSize = args.length > 8 ? Integer.parseInt(args[8]) : 100000;
+
+        System.out.println("Configurations:"
+                + "\nInputDir = " + inputDir
+                + "\nOutputDir = " + outputDir
+                + "\nminSupp = " + minSupp
+                + "\nminConf = " + minConf
+                + "\nmaxSize = " + maxSize
+                + "\ntop-K = " + topK
+                + "\ncandidateFile = " + candidateFile
+                + "\nnThreads = " + nThreads
+                + "\nchunkSize = " + chunkSize);
+
+        System.out.println("Loading the data graph....");
+        Graph<String, String> graph = IO.loadStringGraph(inputDir);
+        System.out.println("Graph: " + graph.toSizeString());
+
+        System.out.println("Loading the ontology....");
+        DirectedAcyclicGraph<String, String> onto = IO.loadDAGOntology(inputDir);
+        System.out.println("Indexing the ontology....");
+        Map<String, Map<Integer, Set<String>>> ontoIndex = Utility.indexOntology(onto, GLOBAL_HOPS);
+
+        System.out.println("Indexing the data graph....");
+        GraphDatabase<String, String> bigGraph = GraphDatabase.buildFromGraph(graph, ontoIndex);
+        System.out.println("BigGraph: " + bigGraph.toSizeString());
+
+        System.out.println("Loading the input relations....");
+        List<Relation<String, String>> relationList = IO.loadRelations(inputDir);
+
+        RuleMiner<String, String> miner = RuleMiner.createInit(bigGraph, minSupp, minConf, maxSize, topK);
+        FactScorer scorer = FactScorer.createInit(graph, nThreads, chunkSize);
+        RuleSet ruleSet = RuleSet.createEmpty();
+
+        for (Relation<String, String> r : relationList) {
+            System.out.println("----------------------------------------");
+            System.out.println("Mining for r(x, y) = " + r);
+
+            List<Relation<String, String>> inputRelations = new ArrayList<>();
+            inputRelations.add(r);
+            FactSampler<String, String> sampler = new FactSampler<>(bigGraph, new ArrayList<>(inputRelations));
+
+            bigGraph.buildSimLabelsMap(0);
+
+            Stopwatch w = Stopwatch.createStarted();
+            List<OGFCRule<String, String>> patterns = miner.OGFC_stream(r, sampler.getDataTrain().get(true), sampler.getDataTrain().get(false));
+            w.stop();
+            System.out.println("Discovered number of patterns: |P| = " + patterns.size() + ", Time = " + w.elapsed(TimeUnit.SECONDS));
+
+            RuleHitMatrix<String, String> trainHits = RuleHitMatrix.createFromData(patterns, sampler.getDataTrain());
+            LogisticRegression model = trainHits.numOfExamples() > 0 ? FactChecker.trainLogisticRegression(trainHits) : null;
+            scorer.addRules(r, patterns, model);
+            ruleSet.add(r, patterns, model);
+
+            System.out.println("Restore the sampled facts....");
+            sampler.restore();
+        }
+
+        System.out.println("----------------------------------------");
+        System.out.println("Saving the rule set....");
+        ruleSet.save(new File(outputDir, "rules.gfcr").getPath());
+
+        System.out.println("Scoring the candidate facts....");
+        Stopwatch w = Stopwatch.createStarted();
+        long nCandidates = scorer.scoreFile(candidateFile, new File(outputDir, "scores.tsv").getPath());
+        w.stop();
+        System.out.println("Scored candidates: " + nCandidates + ", Time = " + w.elapsed(TimeUnit.SECONDS));
+        System.out.println("-------------------DONE-----------------");
+    }
+}
@@ -5,6 +5,7 @@ import edu.wsu.eecs.gfc.core.*;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -27,6 +28,13 @@ public class TestGFC {
         double minConf = Double.parseDouble(args[3]);
         int maxSize = Integer.parseInt(args[4]);
         int topK = Integer.parseInt(args[5]);
+        List<String> options = Arrays.asList(args).subList(Math.min(6, args.length), args.length);
+        boolean isWeka = options.contains("weka");
+        boolean isOutput = options.contains("output");
+        int numOfFolds = options.contains("cv") ? 10 : 0;
+        AdjacencyFormat adjacencyFormat = options.contains("offheap") ? AdjacencyFormat.OFF_HEAP
+                : options.contains("compressed") ? AdjacencyFormat.COMPRESSED : AdjacencyFormat.FLAT;
+        boolean isProject = options.contains("project");
 
         System.out.println("Configurations:"
                 + "\nInputDir = " + inputDir
@@ -34,10 +42,15 @@ public class TestGFC {
                 + "\nminSupp = " + minSupp
                 + "\nminConf = " + minConf
                 + "\nmaxSize = " + maxSize
-                + "\ntop-K = " + topK);
+                + "\ntop-K = " + topK
+                + "\nweka = " + isWeka
+                + "\noutput = " + isOutput
+                + "\ncv = " + numOfFolds
+                + "\nproject = " + isProject
+                + "\nadjacency = " + adjacencyFormat);
 
         System.out.println("Loading the data graph....");
-        Graph<String, String> graph = IO.loadStringGraph(inputDir);
+        Graph<String, String> graph = IO.loadStringGraph(inputDir, adjacencyFormat);
         System.out.println("Graph: " + graph.toSizeString());
 
         System.out.println("Loading the ontology....");
@@ -52,6 +65,7 @@ public class TestGFC {
         System.out.println("Loading the input relations....");
         List<Relation<String, String>> relationList = IO.loadRelations(inputDir);
 
+        AsyncWriter writer = isOutput ? AsyncWriter.createInit() : null;
         RuleMiner<String, String> miner = RuleMiner.createInit(bigGraph, minSupp, minConf, maxSize, topK);
 
         for (Relation<String, String> r : relationList) {
@@ -74,18 +88,42 @@ public class TestGFC {
             bigGraph.buildSimLabelsMap(0);
 
             Stopwatch w = Stopwatch.createStarted();
-            List<OGFCRule<String, String>> patterns = miner.OGFC_stream(r, sampler.getDataTrain().get(true), sampler.getDataTrain().get(false));
+            RuleMiner<String, String> rMiner = miner;
+            GraphDatabase<String, String> projection = null;
+            if (isProject) {
+                // The facts of both the training and the testing are the examples, so that the rules can check all of them.
+                List<Edge<String, String>> examples = new ArrayList<>();
+                for (Map<Boolean, List<Edge<String, String>>> data : Arrays.asList(sampler.getDataTrain(), sampler.getDataTest())) {
+                    examples.addAll(data.get(true));
+                    examples.addAll(data.get(false));
+                }
+                projection = bigGraph.project(r, examples, maxSize);
+                System.out.println("Projection: " + projection.getGraph().toSizeString());
+                rMiner = RuleMiner.createInit(projection, minSupp, minConf, maxSize, topK);
+            }
+            List<OGFCRule<String, String>> patterns = rMiner.OGFC_stream(r, sampler.getDataTrain().get(true), sampler.getDataTrain().get(false));
             w.stop();
 
             System.out.println("Discovered number of patterns: |P| = " + patterns.size() + ", Time = " + w.elapsed(TimeUnit.SECONDS));
+            RuleHitMatrix<String, String> trainHits = RuleHitMatrix.createFromData(patterns, sampler.getDataTrain());
+            RuleHitMatrix<String, String> testHits = RuleHitMatrix.createFromData(patterns, sampler.getDataTest());
             System.out.println("FactChecker: OFact_R: "
-                    + FactChecker.predictByHits(patterns, sampler.getDataTest()));
+                    + FactChecker.predictByHits(testHits));
             System.out.println("FactChecker: OFact    "
-                    + FactChecker.predictByLogisticRegression(patterns, r, sampler.getDataTrain(), sampler.getDataTest(), outputDir, "lr"));
+                    + (isWeka
+                    ? FactChecker.predictByLogisticRegression(trainHits, testHits, r, outputDir, "lr", writer, numOfFolds)
+                    : FactChecker.predictByNativeLogisticRegression(trainHits, testHits, r, outputDir, "lr", writer, numOfFolds)));
 
             System.out.println("Restore the sampled facts....");
             sampler.restore();
+            if (projection != null) {
+                projection.close();
+            }
+        }
+        if (writer != null) {
+            writer.close();
         }
+        bigGraph.close();
         System.out.println("-------------------DONE-----------------");
     }
 }
@@ -0,0 +1,152 @@
+package edu.wsu.eecs.gfc.exps;
+
+import com.google.common.base.Stopwatch;
+import edu.wsu.eecs.gfc.core.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The caller to test GFC mining for the input relations concurrently.
+ * <p>
+ * The data graph is loaded and indexed once, and the database is shared read-only by all the relations.
+ * Each relation is tested by a task of a bounded pool, on its own hold-out view of the database, which excludes
+ * the sampled testing facts of the relation without changing the database for the other relations.
+ * The results (and the progress) of each relation are written to its own log in the output directory.
+ *
+ * @author Peng Lin penglin03@gmail.com
+ */
+public class TestGFCConcurrent {
+
+    private static final int GLOBAL_HOPS = 2;
+
+    private static final long DEFAULT_SAMPLER_SEED = 357;
+
+    public static void main(String[] args) throws Exception {
+        String inputDir = args[0];
+        String outputDir = args[1];
+        new File(outputDir).mkdirs();
+
+        double minSupp = Double.parseDouble(args[2]);
+        double minConf = Double.parseDouble(args[3]);
+        int maxSize = Integer.parseInt(args[4]);
+        int topK = Integer.parseInt(args[5]);
+        int nThreads = args.length > 6 ? Integer.parseInt(args[6]) : Runtime.getRuntime().availableProcessors();
+        List<String> options = Arrays.asList(args).subList(Math.min(7, args.length), args.length);
+        boolean isWeka = options.contains("weka");
+        boolean isOutput = options.contains("output");
+        int numOfFolds = options.contains("cv") ? 10 : 0;
+        AdjacencyFormat adjacencyFormat = options.contains("offheap") ? AdjacencyFormat.OFF_HEAP
+                : options.contains("compressed") ? AdjacencyFormat.COMPRESSED : AdjacencyFormat.FLAT;
+
+        System.out.println("Configurations:"
+                + "\nInputDir = " + inputDir
+                + "\nOutputDir = " + outputDir
+                + "\nminSupp = " + minSupp
+                + "\nminConf = " + minConf
+                + "\nmaxSize = " + maxSize
+                + "\ntop-K = " + topK
+                + "\nnThreads = " + nThreads
+                + "\nweka = " + isWeka
+                + "\noutput = " + isOutput
+                + "\ncv = " + numOfFolds
+                + "\nadjacency = " + adjacencyFormat);
+
+        System.out.println("Loading the data graph....");
+        Graph<String, String> graph = IO.loadStringGraph(inputDir, adjacencyFormat);
+        System.out.println("Graph: " + graph.toSizeString());
+
+        System.out.println("Loading the ontology....");
+        DirectedAcyclicGraph<String, String> onto = IO.loadDAGOntology(inputDir);
+        System.out.println("Indexing the ontology....");
+        Map<String, Map<Integer, Set<String>>> ontoIndex = Utility.indexOntology(onto, GLOBAL_HOPS);
+
+        System.out.println("Indexing the data graph....");
+        GraphDatabase<String, String> bigGraph = GraphDatabase.buildFromGraph(graph, ontoIndex);
+        bigGraph.buildSimLabelsMap(0);
+        System.out.println("BigGraph: " + bigGraph.toSizeString());
+
+        System.out.println("Loading the input relations....");
+        List<Relation<String, String>> relationList = IO.loadRelations(inputDir);
+
+        AsyncWriter writer = isOutput ? AsyncWriter.createInit() : null;
+        Stopwatch wAll = Stopwatch.createStarted();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(nThreads, relationList.size())));
+        List<Future<String>> results = new ArrayList<>();
+        for (Relation<String, String> r : relationList) {
+            results.add(pool.submit(() -> testRelation(bigGraph, r, outputDir, minSupp, minConf, maxSize, topK, isWeka, writer, numOfFolds)));
+        }
+        pool.shutdown();
+
+        for (Future<String> result : results) {
+            System.out.print(result.get());
+        }
+        if (writer != null) {
+            writer.close();
+        }
+        wAll.stop();
+        System.out.println("Total Time = " + wAll.elapsed(TimeUnit.SECONDS));
+        bigGraph.close();
+        System.out.println("-------------------DONE-----------------");
+    }
+
+    private static String testRelation(GraphDatabase<String, String> bigGraph,
+                                       Relation<String, String> r,
+                                       String outputDir,
+                                       double minSupp, double minConf, int maxSize, int topK,
+                                       boolean isWeka, AsyncWriter writer, int numOfFolds) throws Exception {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(log, true);
+        out.println("----------------------------------------");
+        out.println("Testing for r(x, y) = " + r);
+
+        List<Relation<String, String>> inputRelations = new ArrayList<>();
+        inputRelations.add(r);
+        // The hold-out view of this relation, without its positive testing facts.
+        FactSampler<String, String> sampler = FactSampler.createHoldOut(bigGraph, inputRelations, new Random(DEFAULT_SAMPLER_SEED), out);
+
+        if (sampler.getDataTest().get(true).size() == 0) {
+            out.println("Not enough true testing data. Skip....");
+        } else if (sampler.getDataTest().get(false).size() == 0) {
+            out.println("Not enough false testing data. Skip....");
+        } else {
+            RuleMiner<String, String> miner = RuleMiner.createInit(sampler.getBigGraph(), minSupp, minConf, maxSize, topK, out);
+
+            Stopwatch w = Stopwatch.createStarted();
+            List<OGFCRule<String, String>> patterns = miner.OGFC_stream(r, sampler.getDataTrain().get(true), sampler.getDataTrain().get(false));
+            w.stop();
+
+            out.println("Discovered number of patterns: |P| = " + patterns.size() + ", Time = " + w.elapsed(TimeUnit.SECONDS));
+            RuleHitMatrix<String, String> trainHits = RuleHitMatrix.createFromData(patterns, sampler.getDataTrain());
+            RuleHitMatrix<String, String> testHits = RuleHitMatrix.createFromData(patterns, sampler.getDataTest());
+            out.println("FactChecker: OFact_R: "
+                    + FactChecker.predictByHits(testHits));
+            out.println("FactChecker: OFact    "
+                    + (isWeka
+                    ? FactChecker.predictByLogisticRegression(trainHits, testHits, r, outputDir, "lr", writer, numOfFolds)
+                    : FactChecker.predictByNativeLogisticRegression(trainHits, testHits, r, outputDir, "lr", writer, numOfFolds)));
+        }
+        out.flush();
+
+        String rName = r.srcLabel() + "_" + r.edgeLabel() + "_" + r.dstLabel();
+        try (FileWriter fw = new FileWriter(new File(outputDir, rName + "_gfc.log"))) {
+            fw.write(log.toString());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return log.toString();
+    }
+}
@@ -0,0 +1,144 @@
+package edu.wsu.eecs.gfc.exps;
+
+import com.google.common.base.Stopwatch;
+import edu.wsu.eecs.gfc.core.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The caller to test GFC mining and fact checking over many splits (k folds, or n seeded splits) of the facts,
+ * with one load of the graph, and to report the mean and the standard deviation of the metrics.
+ * @author Peng Lin penglin03@gmail.com
+ */
+public class TestGFCSplits {
+
+    private static final int GLOBAL_HOPS = 2;
+
+    private static final double TRAIN_FRACTION = 0.8;
+
+    private static final double NEG_POS_RATIO = 4;
+
+    public static void main(String[] args) throws Exception {
+        String inputDir = args[0];
+        String outputDir = args[1];
+        new File(outputDir).mkdirs();
+
+        double minSupp = Double.parseDouble(args[2]);
+        double minConf = Double.parseDouble(args[3]);
+        int maxSize = Integer.parseInt(args[4]);
+        int topK = Integer.parseInt(args[5]);
+        String mode = args.length > 6 ? args[6] : "kfold";
+        int numOfSplits = args.length > 7 ? Integer.parseInt(args[7]) : 5;
+        long seed = args.length > 8 ? Long.parseLong(args[8]) : 357;
+
+        System.out.println("Configurations:"
+                + "\nInputDir = " + inputDir
+                + "\nOutputDir = " + outputDir
+                + "\nminSupp = " + minSupp
+                + "\nminConf = " + minConf
+                + "\nmaxSize = " + maxSize
+                + "\ntop-K = " + topK
+                + "\nmode = " + mode
+                + "\nnumOfSplits = " + numOfSplits
+                + "\nseed = " + seed);
+
+        System.out.println("Loading the data graph....");
+        Graph<String, String> graph = IO.loadStringGraph(inputDir);
+        System.out.println("Graph: " + graph.toSizeString());
+
+        System.out.println("Loading the ontology....");
+        DirectedAcyclicGraph<String, String> onto = IO.loadDAGOntology(inputDir);
+        System.out.println("Indexing the ontology....");
+        Map<String, Map<Integer, Set<String>>> ontoIndex = Utility.indexOntology(onto, GLOBAL_HOPS);
+
+        System.out.println("Indexing the data graph....");
+        GraphDatabase<String, String> bigGraph = GraphDatabase.buildFromGraph(graph, ontoIndex);
+        System.out.println("BigGraph: " + bigGraph.toSizeString());
+
+        System.out.println("Loading the input relations....");
+        List<Relation<String, String>> relationList = IO.loadRelations(inputDir);
+
+        RuleMiner<String, String> miner = RuleMiner.createInit(bigGraph, minSupp, minConf, maxSize, topK);
+
+        for (Relation<String, String> r : relationList) {
+            System.out.println("----------------------------------------");
+            System.out.println("Testing for r(x, y) = " + r);
+
+            List<Relation<String, String>> inputRelations = new ArrayList<>();
+            inputRelations.add(r);
+            FactSplitter<String, String> splitter = FactSplitter.createInit(bigGraph, inputRelations, seed, NEG_POS_RATIO);
+            System.out.println("Facts: " + splitter.numOfPositives() + " positive, " + splitter.numOfNegatives() + " negative");
+
+            Iterable<FactSplitter<String, String>.Split> splits = mode.equals("seeds")
+                    ? splitter.seededSplits(numOfSplits, TRAIN_FRACTION)
+                    : splitter.kFolds(numOfSplits);
+            List<EvalMetrics> metricsList = new ArrayList<>();
+            for (FactSplitter<String, String>.Split split : splits) {
+                Map<Boolean, List<Edge<String, String>>> dataTrain = split.dataTrain();
+                Map<Boolean, List<Edge<String, String>>> dataTest = split.dataTest();
+                if (dataTest.get(true).isEmpty() || dataTest.get(false).isEmpty()) {
+                    System.out.println("Split " + split.index() + ": Not enough testing data. Skip....");
+                    continue;
+                }
+
+                split.hideTestFacts();
+                bigGraph.buildSimLabelsMap(0);
+
+                Stopwatch w = Stopwatch.createStarted();
+                List<OGFCRule<String, String>> patterns = miner.OGFC_stream(r, dataTrain.get(true), dataTrain.get(false));
+                w.stop();
+
+                RuleHitMatrix<String, String> trainHits = RuleHitMatrix.createFromData(patterns, dataTrain);
+                RuleHitMatrix<String, String> testHits = RuleHitMatrix.createFromData(patterns, dataTest);
+                EvalMetrics metrics = FactChecker.evaluateNativeLogisticRegression(trainHits, testHits);
+                metricsList.add(metrics);
+                System.out.println("Split " + split.index() + ": |P| = " + patterns.size()
+                        + ", Time = " + w.elapsed(TimeUnit.SECONDS)
+                        + "\tOFact_R: " + FactChecker.predictByHits(testHits)
+                        + "\tOFact: " + metrics);
+
+                split.restore();
+            }
+            System.out.println("FactChecker: OFact mean " + summarize(metricsList, false));
+            System.out.println("FactChecker: OFact std  " + summarize(metricsList, true));
+        }
+        System.out.println("-------------------DONE-----------------");
+    }
+
+    /**
+     * @return the mean (or the standard deviation) of accuracy, precision, recall, F1, ROC-AUC and PR-AUC over the splits.
+     */
+    private static String summarize(List<EvalMetrics> metricsList, boolean isStd) {
+        int n = metricsList.size();
+        double[][] values = new double[6][n];
+        for (int i = 0; i < n; i++) {
+            EvalMetrics m = metricsList.get(i);
+            values[0][i] = m.accuracy;
+            values[1][i] = m.precision;
+            values[2][i] = m.recall;
+            values[3][i] = m.f1;
+            values[4][i] = m.rocAuc;
+            values[5][i] = m.prAuc;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (double[] v : values) {
+            double mean = 0;
+            for (double x : v) {
+                mean += x;
+            }
+            mean = n > 0 ? mean / n : 0;
+            double var = 0;
+            for (double x : v) {
+                var += (x - mean) * (x - mean);
+            }
+            var = n > 1 ? var / (n - 1) : 0;
+            sb.append(sb.length() > 0 ? "\t" : "").append(isStd ? Math.sqrt(var) : mean);
+        }
+        return sb.toString();
+    }
+}
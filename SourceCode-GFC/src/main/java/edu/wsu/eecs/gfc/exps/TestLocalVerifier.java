@@ -0,0 +1,115 @@
+package edu.wsu.eecs.gfc.exps;
+
+import com.google.common.base.Stopwatch;
+import edu.wsu.eecs.gfc.core.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The caller to check the testing facts by verifying the rules in the local neighborhoods of the facts
+ * (see LocalRuleVerifier), compared with looking the facts up in the global match sets of the rules.
+ * <p>
+ * The rules of each input relation are mined as in TestGFC. For every testing fact and every rule, the local check
+ * and the global lookup are compared, and the latency of the local check of a fact against all the rules is reported.
+ *
+ * @author Peng Lin penglin03@gmail.com
+ */
+public class TestLocalVerifier {
+
+    private static final int GLOBAL_HOPS = 2;
+
+    public static void main(String[] args) throws Exception {
+        String inputDir = args[0];
+        double minSupp = Double.parseDouble(args[2]);
+        double minConf = Double.parseDouble(args[3]);
+        int maxSize = Integer.parseInt(args[4]);
+        int topK = Integer.parseInt(args[5]);
+        int cacheSize = args.length > 6 ? Integer.parseInt(args[6]) : 10000;
+
+        System.out.println("Configurations:"
+                + "\nInputDir = " + inputDir
+                + "\nminSupp = " + minSupp
+                + "\nminConf = " + minConf
+                + "\nmaxSize = " + maxSize
+                + "\ntop-K = " + topK
+                + "\ncacheSize = " + cacheSize);
+
+        System.out.println("Loading the data graph....");
+        Graph<String, String> graph = IO.loadStringGraph(inputDir);
+        System.out.println("Graph: " + graph.toSizeString());
+
+        System.out.println("Loading the ontology....");
+        DirectedAcyclicGraph<String, String> onto = IO.loadDAGOntology(inputDir);
+        System.out.println("Indexing the ontology....");
+        Map<String, Map<Integer, Set<String>>> ontoIndex = Utility.indexOntology(onto, GLOBAL_HOPS);
+
+        System.out.println("Indexing the data graph....");
+        GraphDatabase<String, String> bigGraph = GraphDatabase.buildFromGraph(graph, ontoIndex);
+        System.out.println("BigGraph: " + bigGraph.toSizeString());
+
+        System.out.println("Loading the input relations....");
+        List<Relation<String, String>> relationList = IO.loadRelations(inputDir);
+
+        RuleMiner<String, String> miner = RuleMiner.createInit(bigGraph, minSupp, minConf, maxSize, topK);
+        LocalRuleVerifier<String, String> verifier = LocalRuleVerifier.createInit(bigGraph, cacheSize);
+
+        for (Relation<String, String> r : relationList) {
+            System.out.println("----------------------------------------");
+            System.out.println("Mining for r(x, y) = " + r);
+
+            List<Relation<String, String>> inputRelations = new ArrayList<>();
+            inputRelations.add(r);
+            FactSampler<String, String> sampler = new FactSampler<>(bigGraph, new ArrayList<>(inputRelations));
+
+            bigGraph.buildSimLabelsMap(0);
+            verifier.clearCache();
+
+            Stopwatch w = Stopwatch.createStarted();
+            List<OGFCRule<String, String>> patterns = miner.OGFC_stream(r, sampler.getDataTrain().get(true), sampler.getDataTrain().get(false));
+            w.stop();
+            System.out.println("Discovered number of patterns: |P| = " + patterns.size() + ", Time = " + w.elapsed(TimeUnit.SECONDS));
+
+            List<Edge<String, String>> facts = new ArrayList<>(sampler.getDataTest().get(true));
+            facts.addAll(sampler.getDataTest().get(false));
+            long nBoth = 0;
+            long nGlobalOnly = 0;
+            long nLocalOnly = 0;
+            long[] latencies = new long[facts.size()];
+            for (int i = 0; i < facts.size(); i++) {
+                Edge<String, String> e = facts.get(i);
+                long start = System.nanoTime();
+                List<OGFCRule<String, String>> localHits = verifier.check(patterns, e.srcNode(), e.dstNode());
+                latencies[i] = System.nanoTime() - start;
+                for (OGFCRule<String, String> phi : patterns) {
+                    boolean isGlobal = phi.matchSet().get(phi.x()).contains(e.srcNode())
+                            && phi.matchSet().get(phi.y()).contains(e.dstNode());
+                    boolean isLocal = localHits.contains(phi);
+                    if (isGlobal && isLocal) {
+                        nBoth++;
+                    } else if (isGlobal) {
+                        nGlobalOnly++;
+                    } else if (isLocal) {
+                        nLocalOnly++;
+                    }
+                }
+            }
+            System.out.println("Testing facts: " + facts.size()
+                    + ", (fact, rule) hits: both = " + nBoth + ", global only = " + nGlobalOnly + ", local only = " + nLocalOnly);
+            if (latencies.length > 0) {
+                Arrays.sort(latencies);
+                System.out.println("Local check latency (us): p50 = " + latencies[latencies.length / 2] / 1000.0
+                        + ", p99 = " + latencies[(int) (latencies.length * 0.99)] / 1000.0);
+            }
+            System.out.println("Ego network cache: " + verifier.cacheStats());
+
+            System.out.println("Restore the sampled facts....");
+            sampler.restore();
+        }
+        System.out.println("-------------------DONE-----------------");
+    }
+}
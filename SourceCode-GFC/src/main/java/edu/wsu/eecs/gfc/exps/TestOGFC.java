@@ -24,6 +24,13 @@ public class TestOGFC {
         double minConf = Double.parseDouble(args[3]);
         int maxSize = Integer.parseInt(args[4]);
         int topK = Integer.parseInt(args[5]);
+        List<String> options = Arrays.asList(args).subList(Math.min(6, args.length), args.length);
+        boolean isIncremental = options.contains("incremental");
+        boolean isWeka = options.contains("weka");
+        boolean isOutput = options.contains("output");
+        int numOfFolds = options.contains("cv") ? 10 : 0;
+        AdjacencyFormat adjacencyFormat = options.contains("offheap") ? AdjacencyFormat.OFF_HEAP
+                : options.contains("compressed") ? AdjacencyFormat.COMPRESSED : AdjacencyFormat.FLAT;
 
         System.out.println("Configurations:"
                 + "\nInputDir = " + inputDir
@@ -31,10 +38,15 @@ public class TestOGFC {
                 + "\nminSupp = " + minSupp
                 + "\nminConf = " + minConf
                 + "\nmaxSize = " + maxSize
-                + "\ntop-K = " + topK);
+                + "\ntop-K = " + topK
+                + "\nincremental = " + isIncremental
+                + "\nweka = " + isWeka
+                + "\noutput = " + isOutput
+                + "\ncv = " + numOfFolds
+                + "\nadjacency = " + adjacencyFormat);
 
         System.out.println("Loading the data graph....");
-        Graph<String, String> graph = IO.loadStringGraph(inputDir);
+        Graph<String, String> graph = IO.loadStringGraph(inputDir, adjacencyFormat);
         System.out.println("Graph: " + graph.toSizeString());
 
         System.out.println("Loading the ontology....");
@@ -49,6 +61,7 @@ public class TestOGFC {
         System.out.println("Loading the input relations....");
         List<Relation<String, String>> relationList = IO.loadRelations(inputDir);
 
+        AsyncWriter writer = isOutput ? AsyncWriter.createInit() : null;
         RuleMiner<String, String> miner = RuleMiner.createInit(bigGraph, minSupp, minConf, maxSize, topK);
 
         for (Relation<String, String> r : relationList) {
@@ -80,8 +93,8 @@ public class TestOGFC {
                 // Preprocessing: filter out those relations with too may candidate patterns.
                 List<Relation<String, String>> tmpList = new ArrayList<>();
                 for (Relation<String, String> rSim : similarRelations) {
-                    if (bigGraph.getEdges(rSim).size() >= 20
-                            && bigGraph.getEdges(rSim).size() <= 250
+                    if (bigGraph.numOfEdges(rSim) >= 20
+                            && bigGraph.numOfEdges(rSim) <= 250
                             && bigGraph.getEdges(rSim.srcLabel()).size() <= 5000
                             && bigGraph.getEdges(rSim.srcLabel()).size() <= 5000) {
                         tmpList.add(rSim);
@@ -91,8 +104,8 @@ public class TestOGFC {
                 System.out.println(Arrays.toString(tmpList.toArray()));
 
                 tmpList.sort(Comparator.comparingInt(
-                        er -> bigGraph.getNodes(er.srcLabel()).size()
-                                * bigGraph.getNodes(er.dstLabel()).size()));
+                        er -> bigGraph.numOfNodes(er.srcLabel())
+                                * bigGraph.numOfNodes(er.dstLabel())));
 
                 // By default, pick one similar relation for each level.
                 // This is to align the number of similar relations by distance.
@@ -121,24 +134,42 @@ public class TestOGFC {
                 continue;
             }
 
+            Map<Integer, List<OGFCRule<String, String>>> hopPatterns = null;
+            if (isIncremental) {
+                Stopwatch w = Stopwatch.createStarted();
+                hopPatterns = miner.OGFC_stream_multiHop(r, sampler.getDataTrain().get(true), sampler.getDataTrain().get(false), GLOBAL_HOPS);
+                w.stop();
+                System.out.println("Mined hops 0.." + GLOBAL_HOPS + " at once, Time = " + w.elapsed(TimeUnit.SECONDS));
+            }
+
             for (int i = 0; i <= GLOBAL_HOPS; i++) {
                 bigGraph.buildSimLabelsMap(i);
 
                 Stopwatch w = Stopwatch.createStarted();
-                List<OGFCRule<String, String>> patterns = miner.OGFC_stream(r, sampler.getDataTrain().get(true), sampler.getDataTrain().get(false));
+                List<OGFCRule<String, String>> patterns = isIncremental
+                        ? hopPatterns.get(i)
+                        : miner.OGFC_stream(r, sampler.getDataTrain().get(true), sampler.getDataTrain().get(false));
                 w.stop();
 
                 System.out.println("Hop = " + i + ", r = " + r);
                 System.out.println("Discovered number of patterns: |P| = " + patterns.size() + ", Time = " + w.elapsed(TimeUnit.SECONDS));
+                RuleHitMatrix<String, String> trainHits = RuleHitMatrix.createFromData(patterns, sampler.getDataTrain());
+                RuleHitMatrix<String, String> testHits = RuleHitMatrix.createFromData(patterns, sampler.getDataTest());
                 System.out.println("FactChecker: OFact_R: "
-                        + FactChecker.predictByHits(patterns, sampler.getDataTest()));
+                        + FactChecker.predictByHits(testHits));
                 System.out.println("FactChecker: OFact    "
-                        + FactChecker.predictByLogisticRegression(patterns, r, sampler.getDataTrain(), sampler.getDataTest(), outputDir, "lr"));
+                        + (isWeka
+                        ? FactChecker.predictByLogisticRegression(trainHits, testHits, r, outputDir, "lr", writer, numOfFolds)
+                        : FactChecker.predictByNativeLogisticRegression(trainHits, testHits, r, outputDir, "lr", writer, numOfFolds)));
             }
 
             System.out.println("Restore the sampled facts....");
             sampler.restore();
         }
+        if (writer != null) {
+            writer.close();
+        }
+        bigGraph.close();
         System.out.println("-------------------DONE-----------------");
     }
 }
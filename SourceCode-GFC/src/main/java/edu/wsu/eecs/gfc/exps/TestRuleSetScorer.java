@@ -0,0 +1,78 @@
+package edu.wsu.eecs.gfc.exps;
+
+import com.google.common.base.Stopwatch;
+import edu.wsu.eecs.gfc.core.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The caller to score a file of candidate facts by a saved rule set, without mining the rules again.
+ * <p>
+ * Only the nodes of the data graph are loaded, to resolve the candidates, and the rule set file
+ * (e.g., rules.gfcr saved by TestFactScorer) is memory-mapped.
+ * After the batch scoring, a sample of the candidates (at most the 7th argument, 10000 by default) is also checked
+ * one by one by the inverted rule index, to report the single-fact latency.
+ *
+ * @author Peng Lin penglin03@gmail.com
+ */
+public class TestRuleSetScorer {
+
+    private static final long DEFAULT_SAMPLE_SEED = 357;
+
+    public static void main(String[] args) throws Exception {
+        String inputDir = args[0];
+        String ruleFile = args[1];
+        String candidateFile = args[2];
+        String outputFile = args[3];
+        int nThreads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+        int chunkSize = args.length > 5 ? Integer.parseInt(args[5]) : 100000;
+        int sampleSize = args.length > 6 ? Integer.parseInt(args[6]) : 10000;
+
+        System.out.println("Configurations:"
+                + "\nInputDir = " + inputDir
+                + "\nruleFile = " + ruleFile
+                + "\ncandidateFile = " + candidateFile
+                + "\noutputFile = " + outputFile
+                + "\nnThreads = " + nThreads
+                + "\nchunkSize = " + chunkSize
+                + "\nsampleSize = " + sampleSize);
+
+        System.out.println("Loading the data nodes....");
+        Graph<String, String> graph = IO.loadStringNodes(inputDir);
+        System.out.println("Graph: " + graph.toSizeString());
+
+        System.out.println("Loading the rule set....");
+        Stopwatch w = Stopwatch.createStarted();
+        RuleSet ruleSet = RuleSet.load(ruleFile);
+        w.stop();
+        System.out.println("Relations: " + ruleSet.relations().size() + ", Rules: " + ruleSet.numOfRules()
+                + ", Time = " + w.elapsed(TimeUnit.MILLISECONDS) + " ms");
+
+        FactScorer scorer = FactScorer.createInit(graph, nThreads, chunkSize).addRuleSet(ruleSet);
+
+        System.out.println("Scoring the candidate facts....");
+        w = Stopwatch.createStarted();
+        long nCandidates = scorer.scoreFile(candidateFile, outputFile);
+        w.stop();
+        System.out.println("Scored candidates: " + nCandidates + ", Time = " + w.elapsed(TimeUnit.SECONDS));
+
+        System.out.println("Checking a sample of the candidate facts one by one....");
+        List<String[]> candidates = IO.sampleCandidates(candidateFile, sampleSize, new Random(DEFAULT_SAMPLE_SEED));
+        if (!candidates.isEmpty()) {
+            long[] latencies = new long[candidates.size()];
+            for (int i = 0; i < latencies.length; i++) {
+                long start = System.nanoTime();
+                scorer.scoreFact(candidates.get(i));
+                latencies[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(latencies);
+            System.out.println("Single-fact latency (us): p50 = " + latencies[latencies.length / 2] / 1000.0
+                    + ", p99 = " + latencies[(int) (latencies.length * 0.99)] / 1000.0
+                    + ", max = " + latencies[latencies.length - 1] / 1000.0);
+        }
+        System.out.println("-------------------DONE-----------------");
+    }
+}
@@ -0,0 +1,48 @@
+package edu.wsu.eecs.gfc.exps;
+
+import com.google.common.base.Stopwatch;
+import edu.wsu.eecs.gfc.core.StreamingGraphSampler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The caller to sample a graph into the size tiers t1..t5 by passes over its files, without loading it.
+ * @author Peng Lin penglin03@gmail.com
+ */
+public class TestStreamingSampler {
+
+    public static void main(String[] args) throws Exception {
+        String inputDir = args[0];
+        String outputDir = args[1];
+        String method = args[2];
+        int maxTripleFreq = Integer.parseInt(args[3]);
+        int minTripleFreq = Integer.parseInt(args[4]);
+        int skip = Integer.parseInt(args[5]);
+
+        System.out.println("Configurations:"
+                + "\nInputDir = " + inputDir
+                + "\nOutputDir = " + outputDir
+                + "\nmethod = " + method
+                + "\nmaxTripleFreq = " + maxTripleFreq
+                + "\nminTripleFreq = " + minTripleFreq
+                + "\nskip = " + skip);
+
+        Stopwatch w = Stopwatch.createStarted();
+        switch (method) {
+            case "edges":
+                StreamingGraphSampler.sampleByEdges(inputDir, outputDir, maxTripleFreq, minTripleFreq, skip);
+                break;
+            case "edges2":
+                StreamingGraphSampler.sampleByEdges2(inputDir, outputDir, maxTripleFreq, minTripleFreq, skip);
+                break;
+            case "relations":
+                StreamingGraphSampler.sampleByRelations(inputDir, outputDir, maxTripleFreq, minTripleFreq, skip);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown method: " + method + ". Use edges, edges2 or relations.");
+        }
+        w.stop();
+        System.out.println("Sampled in " + w.elapsed(TimeUnit.SECONDS) + "s");
+        System.out.println("-------------------DONE-----------------");
+    }
+}